@@ -0,0 +1,217 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.benchmark;
+
+import com.google.protobuf.util.JsonFormat;
+import com.yelp.nrtsearch.server.LuceneServerTestConfigurationFactory;
+import com.yelp.nrtsearch.server.config.LuceneServerConfiguration;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest.MultiValuedField;
+import com.yelp.nrtsearch.server.grpc.AddDocumentResponse;
+import com.yelp.nrtsearch.server.grpc.CreateIndexRequest;
+import com.yelp.nrtsearch.server.grpc.FieldDefRequest;
+import com.yelp.nrtsearch.server.grpc.GrpcServer;
+import com.yelp.nrtsearch.server.grpc.LuceneServerGrpc;
+import com.yelp.nrtsearch.server.grpc.Mode;
+import com.yelp.nrtsearch.server.grpc.RefreshRequest;
+import com.yelp.nrtsearch.server.grpc.StartIndexRequest;
+import com.yelp.nrtsearch.server.luceneserver.IndexState;
+import com.yelp.nrtsearch.server.luceneserver.ShardState;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import io.prometheus.client.CollectorRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Synthetic index hosted by an in process server, used as the data set for benchmarks. Documents
+ * are generated from a fixed seed, so all runs use the same data.
+ */
+public class BenchmarkIndex {
+  public static final String INDEX_NAME = "benchmark_index";
+  public static final int NUM_CATEGORIES = 100;
+  public static final String[] WORDS =
+      new String[] {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet"
+      };
+  private static final int ADD_BATCH_SIZE = 5000;
+  private static final String FIELDS_JSON =
+      String.join(
+          "\n",
+          "{",
+          "  \"indexName\": \"" + INDEX_NAME + "\",",
+          "  \"field\": [",
+          "    {\"name\": \"doc_id\", \"type\": \"ATOM\", \"storeDocValues\": true},",
+          "    {\"name\": \"category\", \"type\": \"ATOM\", \"search\": true,"
+              + " \"storeDocValues\": true},",
+          "    {\"name\": \"int_field\", \"type\": \"INT\", \"search\": true,"
+              + " \"storeDocValues\": true},",
+          "    {\"name\": \"long_field\", \"type\": \"LONG\", \"storeDocValues\": true},",
+          "    {\"name\": \"double_field\", \"type\": \"DOUBLE\", \"storeDocValues\": true},",
+          "    {\"name\": \"multi_long_field\", \"type\": \"LONG\", \"multiValued\": true,"
+              + " \"storeDocValues\": true},",
+          "    {\"name\": \"text_field\", \"type\": \"TEXT\", \"search\": true}",
+          "  ]",
+          "}");
+
+  private final TemporaryFolder folder = new TemporaryFolder();
+  private final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+  private GrpcServer grpcServer;
+
+  /**
+   * Start server, and create the index containing the given number of documents.
+   *
+   * @param numDocs number of documents to index
+   * @param extraConfig additional server configuration yaml
+   * @throws Exception on error starting server or indexing
+   */
+  public void start(int numDocs, String extraConfig) throws Exception {
+    folder.create();
+    LuceneServerConfiguration configuration =
+        LuceneServerTestConfigurationFactory.getConfig(
+            Mode.STANDALONE, folder.getRoot(), extraConfig);
+    grpcServer =
+        new GrpcServer(
+            new CollectorRegistry(),
+            grpcCleanup,
+            configuration,
+            folder,
+            null,
+            configuration.getIndexDir(),
+            INDEX_NAME,
+            configuration.getPort(),
+            null,
+            Collections.emptyList());
+
+    LuceneServerGrpc.LuceneServerBlockingStub blockingStub = grpcServer.getBlockingStub();
+    blockingStub.createIndex(CreateIndexRequest.newBuilder().setIndexName(INDEX_NAME).build());
+    blockingStub.registerFields(getFieldDefRequest());
+    blockingStub.startIndex(StartIndexRequest.newBuilder().setIndexName(INDEX_NAME).build());
+
+    Random random = new Random(1234);
+    List<AddDocumentRequest> batch = new ArrayList<>(ADD_BATCH_SIZE);
+    for (int i = 0; i < numDocs; ++i) {
+      batch.add(createDocument(i, random));
+      if (batch.size() == ADD_BATCH_SIZE) {
+        addDocuments(batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      addDocuments(batch);
+    }
+    blockingStub.refresh(RefreshRequest.newBuilder().setIndexName(INDEX_NAME).build());
+  }
+
+  /** Shutdown server and remove all index data. */
+  public void stop() throws IOException {
+    if (grpcServer != null) {
+      grpcServer.getGlobalState().close();
+      grpcServer.shutdown();
+      grpcServer = null;
+    }
+    folder.delete();
+  }
+
+  public IndexState getIndexState() throws IOException {
+    return grpcServer.getGlobalState().getIndex(INDEX_NAME);
+  }
+
+  public ShardState getShardState() throws IOException {
+    return getIndexState().getShard(0);
+  }
+
+  /** Get the field registration request for the benchmark index. */
+  public static FieldDefRequest getFieldDefRequest() throws IOException {
+    FieldDefRequest.Builder builder = FieldDefRequest.newBuilder();
+    JsonFormat.parser().merge(FIELDS_JSON, builder);
+    return builder.build();
+  }
+
+  /**
+   * Create a synthetic document.
+   *
+   * @param id document id
+   * @param random source of randomness for field values
+   */
+  public static AddDocumentRequest createDocument(int id, Random random) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10; ++i) {
+      if (i > 0) {
+        text.append(' ');
+      }
+      text.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    MultiValuedField.Builder multiLong = MultiValuedField.newBuilder();
+    int numMultiValues = random.nextInt(4);
+    for (int i = 0; i < numMultiValues; ++i) {
+      multiLong.addValue(String.valueOf(random.nextLong()));
+    }
+    return AddDocumentRequest.newBuilder()
+        .setIndexName(INDEX_NAME)
+        .putFields("doc_id", singleValue(String.valueOf(id)))
+        .putFields("category", singleValue("category_" + random.nextInt(NUM_CATEGORIES)))
+        .putFields("int_field", singleValue(String.valueOf(random.nextInt(1000))))
+        .putFields("long_field", singleValue(String.valueOf(random.nextLong())))
+        .putFields("double_field", singleValue(String.valueOf(random.nextDouble())))
+        .putFields("multi_long_field", multiLong.build())
+        .putFields("text_field", singleValue(text.toString()))
+        .build();
+  }
+
+  private static MultiValuedField singleValue(String value) {
+    return MultiValuedField.newBuilder().addValue(value).build();
+  }
+
+  private void addDocuments(List<AddDocumentRequest> requests) throws Exception {
+    CountDownLatch finishLatch = new CountDownLatch(1);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    StreamObserver<AddDocumentRequest> requestObserver =
+        grpcServer
+            .getStub()
+            .addDocuments(
+                new StreamObserver<>() {
+                  @Override
+                  public void onNext(AddDocumentResponse value) {}
+
+                  @Override
+                  public void onError(Throwable t) {
+                    error.set(t);
+                    finishLatch.countDown();
+                  }
+
+                  @Override
+                  public void onCompleted() {
+                    finishLatch.countDown();
+                  }
+                });
+    requests.forEach(requestObserver::onNext);
+    requestObserver.onCompleted();
+    if (!finishLatch.await(5, TimeUnit.MINUTES)) {
+      throw new IllegalStateException("Timed out adding benchmark documents");
+    }
+    if (error.get() != null) {
+      throw new IllegalStateException("Error adding benchmark documents", error.get());
+    }
+  }
+}
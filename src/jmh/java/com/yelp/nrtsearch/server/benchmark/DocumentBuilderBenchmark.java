@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.benchmark;
+
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
+import com.yelp.nrtsearch.server.luceneserver.AddDocumentHandler;
+import com.yelp.nrtsearch.server.luceneserver.AddDocumentHandler.DocumentsContext;
+import com.yelp.nrtsearch.server.luceneserver.IndexState;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmark for converting an {@link AddDocumentRequest} into lucene documents. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DocumentBuilderBenchmark {
+  private static final int NUM_REQUESTS = 1024;
+
+  private final BenchmarkIndex benchmarkIndex = new BenchmarkIndex();
+  private IndexState indexState;
+  private AddDocumentRequest[] requests;
+  private int requestIndex;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    benchmarkIndex.start(0, "");
+    indexState = benchmarkIndex.getIndexState();
+    Random random = new Random(5678);
+    requests = new AddDocumentRequest[NUM_REQUESTS];
+    for (int i = 0; i < NUM_REQUESTS; ++i) {
+      requests[i] = BenchmarkIndex.createDocument(i, random);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    benchmarkIndex.stop();
+  }
+
+  @Benchmark
+  public DocumentsContext getDocumentsContext() throws Exception {
+    AddDocumentRequest request = requests[requestIndex];
+    requestIndex = (requestIndex + 1) % NUM_REQUESTS;
+    return AddDocumentHandler.LuceneDocumentBuilder.getDocumentsContext(request, indexState);
+  }
+}
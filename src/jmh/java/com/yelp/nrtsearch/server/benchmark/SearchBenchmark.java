@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.benchmark;
+
+import com.yelp.nrtsearch.server.grpc.BooleanClause;
+import com.yelp.nrtsearch.server.grpc.BooleanQuery;
+import com.yelp.nrtsearch.server.grpc.Collector;
+import com.yelp.nrtsearch.server.grpc.MatchQuery;
+import com.yelp.nrtsearch.server.grpc.Query;
+import com.yelp.nrtsearch.server.grpc.RangeQuery;
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import com.yelp.nrtsearch.server.grpc.SearchResponse;
+import com.yelp.nrtsearch.server.grpc.TermQuery;
+import com.yelp.nrtsearch.server.grpc.TermsCollector;
+import com.yelp.nrtsearch.server.luceneserver.IndexState;
+import com.yelp.nrtsearch.server.luceneserver.QueryNodeMapper;
+import com.yelp.nrtsearch.server.luceneserver.SearchHandler.FillDocsTask;
+import com.yelp.nrtsearch.server.luceneserver.ShardState;
+import com.yelp.nrtsearch.server.luceneserver.search.SearchContext;
+import com.yelp.nrtsearch.server.luceneserver.search.SearchRequestProcessor;
+import com.yelp.nrtsearch.server.luceneserver.search.SearcherResult;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+import org.apache.lucene.search.ScoreDoc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the stages of the search request pipeline: query building, search context
+ * creation, hit collection, terms aggregation and hit field retrieval. Each stage is measured
+ * separately against a synthetic index, using the same request types as {@link
+ * com.yelp.nrtsearch.server.luceneserver.SearchHandler}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+  private static final List<String> RETRIEVE_FIELDS =
+      Arrays.asList(
+          "doc_id", "category", "int_field", "long_field", "double_field", "multi_long_field");
+
+  @Param({"100000"})
+  public int numDocs;
+
+  @Param({"500"})
+  public int topHits;
+
+  @Param({"false", "true"})
+  public boolean columnarFetch;
+
+  private final BenchmarkIndex benchmarkIndex = new BenchmarkIndex();
+  private IndexState indexState;
+  private ShardState shardState;
+  private SearcherAndTaxonomy searcherAndTaxonomy;
+  private SearchRequest searchRequest;
+  private SearchRequest termsRequest;
+  private SearchContext searchContext;
+  private SearchContext termsContext;
+  private int[] hitDocIds;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    benchmarkIndex.start(numDocs, "columnarFetch: " + columnarFetch);
+    indexState = benchmarkIndex.getIndexState();
+    shardState = benchmarkIndex.getShardState();
+    searcherAndTaxonomy = shardState.acquire();
+
+    searchRequest =
+        SearchRequest.newBuilder()
+            .setIndexName(BenchmarkIndex.INDEX_NAME)
+            .setTopHits(topHits)
+            .setQuery(buildQuery())
+            .addAllRetrieveFields(RETRIEVE_FIELDS)
+            .build();
+    termsRequest =
+        searchRequest.toBuilder()
+            .setTopHits(0)
+            .clearRetrieveFields()
+            .putCollectors(
+                "categories",
+                Collector.newBuilder()
+                    .setTerms(
+                        TermsCollector.newBuilder()
+                            .setField("category")
+                            .setSize(BenchmarkIndex.NUM_CATEGORIES))
+                    .build())
+            .build();
+    searchContext = buildContext(searchRequest);
+    termsContext = buildContext(termsRequest);
+
+    ScoreDoc[] scoreDocs = collect(searchContext).getTopDocs().scoreDocs;
+    hitDocIds = Arrays.stream(scoreDocs).mapToInt(scoreDoc -> scoreDoc.doc).toArray();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (searcherAndTaxonomy != null) {
+      shardState.release(searcherAndTaxonomy);
+      searcherAndTaxonomy = null;
+    }
+    benchmarkIndex.stop();
+  }
+
+  private static Query buildQuery() {
+    return Query.newBuilder()
+        .setBooleanQuery(
+            BooleanQuery.newBuilder()
+                .addClauses(
+                    BooleanClause.newBuilder()
+                        .setOccur(BooleanClause.Occur.MUST)
+                        .setQuery(
+                            Query.newBuilder()
+                                .setMatchQuery(
+                                    MatchQuery.newBuilder()
+                                        .setField("text_field")
+                                        .setQuery("alpha bravo charlie"))))
+                .addClauses(
+                    BooleanClause.newBuilder()
+                        .setOccur(BooleanClause.Occur.FILTER)
+                        .setQuery(
+                            Query.newBuilder()
+                                .setRangeQuery(
+                                    RangeQuery.newBuilder()
+                                        .setField("int_field")
+                                        .setLower("100")
+                                        .setUpper("900"))))
+                .addClauses(
+                    BooleanClause.newBuilder()
+                        .setOccur(BooleanClause.Occur.MUST_NOT)
+                        .setQuery(
+                            Query.newBuilder()
+                                .setTermQuery(
+                                    TermQuery.newBuilder()
+                                        .setField("category")
+                                        .setTextValue("category_0")))))
+        .build();
+  }
+
+  private SearchContext buildContext(SearchRequest request) throws IOException {
+    return SearchRequestProcessor.buildContextForRequest(
+        request, indexState, shardState, searcherAndTaxonomy, null);
+  }
+
+  private SearcherResult collect(SearchContext context) throws IOException {
+    return searcherAndTaxonomy.searcher.search(
+        context.getQuery(), context.getCollector().getWrappedManager());
+  }
+
+  @Benchmark
+  public org.apache.lucene.search.Query queryNodeMapper() {
+    return QueryNodeMapper.getInstance().getQuery(searchRequest.getQuery(), indexState);
+  }
+
+  @Benchmark
+  public SearchContext buildContextForRequest() throws IOException {
+    return buildContext(searchRequest);
+  }
+
+  @Benchmark
+  public SearcherResult searchCollection() throws IOException {
+    return collect(searchContext);
+  }
+
+  @Benchmark
+  public SearcherResult termsCollection() throws IOException {
+    return collect(termsContext);
+  }
+
+  @Benchmark
+  public List<SearchResponse.Hit.Builder> fillDocs() {
+    List<SearchResponse.Hit.Builder> hits = new ArrayList<>(hitDocIds.length);
+    for (int docId : hitDocIds) {
+      hits.add(SearchResponse.Hit.newBuilder().setLuceneDocId(docId));
+    }
+    hits.sort(Comparator.comparingInt(SearchResponse.Hit.Builder::getLuceneDocId));
+    new FillDocsTask(searchContext, hits).run();
+    return hits;
+  }
+}
@@ -60,8 +60,11 @@ public class ArchiverModule extends AbstractModule {
   @Inject
   @Singleton
   @Provides
-  public Tar providesTar() {
-    return new TarImpl(Tar.CompressionMode.LZ4);
+  public Tar providesTar(LuceneServerConfiguration luceneServerConfiguration) {
+    return new TarImpl(
+        Tar.CompressionMode.LZ4,
+        luceneServerConfiguration.getBackupCompressionConfig(),
+        luceneServerConfiguration.getRestoreConfig());
   }
 
   private static class ContentDownloaderNoTar implements Provider<ContentDownloader> {
@@ -79,7 +82,8 @@ public class ArchiverModule extends AbstractModule {
               .withShutDownThreadPools(false)
               .build(),
           luceneServerConfiguration.getBucketName(),
-          true);
+          true,
+          luceneServerConfiguration.getRestoreConfig());
     }
   }
 
@@ -91,14 +95,18 @@ public class ArchiverModule extends AbstractModule {
 
     public ContentDownloader get() {
       return new ContentDownloaderImpl(
-          new TarImpl(Tar.CompressionMode.LZ4),
+          new TarImpl(
+              Tar.CompressionMode.LZ4,
+              luceneServerConfiguration.getBackupCompressionConfig(),
+              luceneServerConfiguration.getRestoreConfig()),
           TransferManagerBuilder.standard()
               .withS3Client(s3)
               .withExecutorFactory(() -> Executors.newFixedThreadPool(NUM_S3_THREADS))
               .withShutDownThreadPools(false)
               .build(),
           luceneServerConfiguration.getBucketName(),
-          true);
+          true,
+          luceneServerConfiguration.getRestoreConfig());
     }
   }
 
@@ -128,7 +136,8 @@ public class ArchiverModule extends AbstractModule {
 
     public FileCompressAndUploader get() {
       return new FileCompressAndUploader(
-          new TarImpl(Tar.CompressionMode.LZ4),
+          new TarImpl(
+              Tar.CompressionMode.LZ4, luceneServerConfiguration.getBackupCompressionConfig()),
           TransferManagerBuilder.standard()
               .withS3Client(s3)
               .withExecutorFactory(() -> Executors.newFixedThreadPool(NUM_S3_THREADS))
@@ -173,7 +182,8 @@ public class ArchiverModule extends AbstractModule {
           luceneServerConfiguration.getBucketName(),
           archiveDir,
           tar,
-          luceneServerConfiguration.getDownloadAsStream());
+          luceneServerConfiguration.getDownloadAsStream(),
+          luceneServerConfiguration.getRestoreConfig());
     }
   }
 
@@ -37,6 +37,39 @@ public interface Archiver {
       boolean stream)
       throws IOException;
 
+  /**
+   * Upload the directory and files at the provided path, the same as {@link #upload(String,
+   * String, Path, Collection, Collection, boolean)}. Files in preUploadedFiles have already been
+   * uploaded with {@link #uploadIndexFiles(String, String, Path, Collection)}, and do not need to
+   * be uploaded again. The default implementation ignores preUploadedFiles and uploads everything.
+   */
+  default String upload(
+      final String serviceName,
+      final String resource,
+      Path path,
+      Collection<String> filesToInclude,
+      Collection<String> parentDirectoriesToInclude,
+      boolean stream,
+      Collection<String> preUploadedFiles)
+      throws IOException {
+    return upload(serviceName, resource, path, filesToInclude, parentDirectoriesToInclude, stream);
+  }
+
+  /**
+   * Upload individual index data files ahead of the backup that will include them. The files are
+   * not part of any version until a later {@link #upload(String, String, Path, Collection,
+   * Collection, boolean, Collection)} lists them.
+   *
+   * @param serviceName service name
+   * @param resource index resource name
+   * @param path index root directory
+   * @param fileNames names of files in the index data directory
+   * @throws IOException on error uploading files
+   */
+  void uploadIndexFiles(
+      final String serviceName, final String resource, Path path, Collection<String> fileNames)
+      throws IOException;
+
   boolean blessVersion(final String serviceName, final String resource, String versionHash)
       throws IOException;
 
@@ -21,17 +21,16 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
 import com.amazonaws.services.s3.transfer.*;
 import com.google.inject.Inject;
+import com.yelp.nrtsearch.server.config.RestoreConfig;
 import com.yelp.nrtsearch.server.utils.S3Downloader;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
-import net.jpountz.lz4.LZ4FrameInputStream;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -66,6 +65,16 @@ public class ArchiverImpl implements Archiver {
       final Path archiverDirectory,
       final Tar tar,
       final boolean downloadAsStream) {
+    this(s3, bucketName, archiverDirectory, tar, downloadAsStream, RestoreConfig.defaultConfig());
+  }
+
+  public ArchiverImpl(
+      final AmazonS3 s3,
+      final String bucketName,
+      final Path archiverDirectory,
+      final Tar tar,
+      final boolean downloadAsStream,
+      final RestoreConfig restoreConfig) {
     this.s3 = s3;
     this.transferManager =
         TransferManagerBuilder.standard()
@@ -77,7 +86,7 @@ public class ArchiverImpl implements Archiver {
     this.archiverDirectory = archiverDirectory;
     this.tar = tar;
     this.versionManger = new VersionManager(s3, bucketName);
-    this.s3Downloader = new S3Downloader(s3, executor);
+    this.s3Downloader = new S3Downloader(s3, executor, restoreConfig);
     this.downloadAsStream = downloadAsStream;
   }
 
@@ -166,6 +175,15 @@ public class ArchiverImpl implements Archiver {
     return resources;
   }
 
+  /**
+   * Versions are uploaded as a single archive of all their files, so individual files cannot be
+   * uploaded ahead of the version that includes them. This is a no-op, and the files are uploaded
+   * with the next version, which does not skip any pre-uploaded files.
+   */
+  @Override
+  public void uploadIndexFiles(
+      String serviceName, String resource, Path path, Collection<String> fileNames) {}
+
   @Override
   public String upload(
       final String serviceName,
@@ -322,12 +340,7 @@ public class ArchiverImpl implements Archiver {
       s3InputStream = new FileInputStream(tmpFile.toFile());
     }
 
-    final InputStream compressorInputStream;
-    if (tar.getCompressionMode().equals(Tar.CompressionMode.LZ4)) {
-      compressorInputStream = new LZ4FrameInputStream(s3InputStream);
-    } else {
-      compressorInputStream = new GzipCompressorInputStream(s3InputStream, true);
-    }
+    final InputStream compressorInputStream = tar.getDecompressorInputStream(s3InputStream);
     try (final TarArchiveInputStream tarArchiveInputStream =
         new TarArchiveInputStream(compressorInputStream); ) {
       if (Files.exists(destDirectory)) {
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.backup;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.yelp.nrtsearch.server.config.SegmentUploadConfig;
+import com.yelp.nrtsearch.server.monitoring.SegmentUploadMetrics;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uploads new index segment files with the incremental archiver as soon as they are written by a
+ * flush or merge, instead of waiting for the next backed up commit. Uploads run on a small thread
+ * pool, with an optional limit on the average upload rate. When a commit is backed up, {@link
+ * #awaitUploaded(Collection)} reports which of its files are already uploaded, so the commit only
+ * needs to upload the remaining files and the manifest.
+ */
+public class BackgroundSegmentUploader implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(BackgroundSegmentUploader.class);
+  static final String RESULT_UPLOADED = "uploaded";
+  static final String RESULT_FAILED = "failed";
+  static final String RESULT_SKIPPED = "skipped";
+
+  private final Archiver archiver;
+  private final String serviceName;
+  private final String resource;
+  private final Path indexRootDir;
+  private final Path indexDataDir;
+  private final String indexName;
+  private final RateLimiter rateLimiter;
+  private final ThreadPoolExecutor executor;
+
+  // files that have been successfully uploaded
+  private final Set<String> uploaded = ConcurrentHashMap.newKeySet();
+  // files that are queued or uploading, guarded by this
+  private final Map<String, PendingUpload> pending = new HashMap<>();
+  private long pendingBytes;
+  private boolean closed;
+
+  private static class PendingUpload {
+    private final long size;
+    private Future<?> future;
+
+    PendingUpload(long size) {
+      this.size = size;
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param archiver incremental archiver used to upload files
+   * @param serviceName service name
+   * @param resource index data resource name
+   * @param indexRootDir index root directory
+   * @param indexName index name, used for metrics
+   * @param config segment upload config
+   */
+  public BackgroundSegmentUploader(
+      Archiver archiver,
+      String serviceName,
+      String resource,
+      Path indexRootDir,
+      String indexName,
+      SegmentUploadConfig config) {
+    this.archiver = archiver;
+    this.serviceName = serviceName;
+    this.resource = resource;
+    this.indexRootDir = indexRootDir;
+    this.indexDataDir = IndexArchiver.getIndexDataDir(indexRootDir);
+    this.indexName = indexName;
+    this.rateLimiter =
+        config.getMaxUploadRateBytes() > 0
+            ? RateLimiter.create(Math.max(1.0, config.getMaxUploadRateBytes() / 1024.0))
+            : null;
+    this.executor =
+        new ThreadPoolExecutor(
+            config.getMaxConcurrentUploads(),
+            config.getMaxConcurrentUploads(),
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new NamedThreadFactory("SegmentUploader-" + indexName));
+    updateBacklogMetrics();
+  }
+
+  /**
+   * Get if a file should be uploaded ahead of its commit. Commit points are only uploaded with the
+   * commit, and the write lock is never uploaded.
+   */
+  static boolean isSegmentFile(String fileName) {
+    return !fileName.startsWith(IndexFileNames.SEGMENTS)
+        && !fileName.startsWith(IndexFileNames.PENDING_SEGMENTS)
+        && !fileName.equals(IndexWriter.WRITE_LOCK_NAME);
+  }
+
+  /**
+   * Queue upload of any of the given index data files that are not already uploaded or queued.
+   * Files that are not yet on disk, such as small flushed segments still cached in memory, are
+   * ignored; they will be seen again on a later call or uploaded by the commit.
+   *
+   * @param fileNames names of files in the index data directory
+   */
+  public synchronized void addFiles(Collection<String> fileNames) {
+    if (closed) {
+      return;
+    }
+    for (String fileName : fileNames) {
+      if (!isSegmentFile(fileName)
+          || uploaded.contains(fileName)
+          || pending.containsKey(fileName)) {
+        continue;
+      }
+      long size;
+      try {
+        size = Files.size(indexDataDir.resolve(fileName));
+      } catch (IOException e) {
+        continue;
+      }
+      PendingUpload pendingUpload = new PendingUpload(size);
+      pending.put(fileName, pendingUpload);
+      pendingBytes += size;
+      pendingUpload.future = executor.submit(() -> uploadFile(fileName, size));
+    }
+    updateBacklogMetrics();
+  }
+
+  private void uploadFile(String fileName, long size) {
+    String result = RESULT_UPLOADED;
+    try {
+      if (Files.exists(indexDataDir.resolve(fileName))) {
+        if (rateLimiter != null) {
+          rateLimiter.acquire((int) Math.min(Integer.MAX_VALUE, Math.max(1, size / 1024)));
+        }
+        archiver.uploadIndexFiles(serviceName, resource, indexRootDir, Set.of(fileName));
+        uploaded.add(fileName);
+      } else {
+        // merged away before it could be uploaded
+        result = RESULT_SKIPPED;
+      }
+    } catch (NoSuchFileException e) {
+      result = RESULT_SKIPPED;
+    } catch (Exception e) {
+      logger.warn("Error uploading segment file: " + fileName + ", index: " + indexName, e);
+      result = RESULT_FAILED;
+    } finally {
+      SegmentUploadMetrics.uploads.labels(indexName, result).inc();
+      synchronized (this) {
+        removePending(fileName);
+      }
+    }
+  }
+
+  private void removePending(String fileName) {
+    PendingUpload pendingUpload = pending.remove(fileName);
+    if (pendingUpload != null) {
+      pendingBytes -= pendingUpload.size;
+      updateBacklogMetrics();
+    }
+  }
+
+  private void updateBacklogMetrics() {
+    SegmentUploadMetrics.backlogFiles.labels(indexName).set(pending.size());
+    SegmentUploadMetrics.backlogBytes.labels(indexName).set(pendingBytes);
+  }
+
+  /**
+   * Determine which of the files in a commit have already been uploaded. Uploads that are in
+   * progress are waited for. Uploads that have not started yet are cancelled, since the commit
+   * will upload those files along with the rest of its remaining files. Tracking for files that
+   * no longer exist on disk is dropped.
+   *
+   * @param commitFiles names of all files in the commit
+   * @return commit files that are already uploaded
+   * @throws InterruptedException if interrupted while waiting for uploads
+   */
+  public Set<String> awaitUploaded(Collection<String> commitFiles) throws InterruptedException {
+    Set<String> preUploaded = new HashSet<>();
+    for (String fileName : commitFiles) {
+      Future<?> future = null;
+      synchronized (this) {
+        PendingUpload pendingUpload = pending.get(fileName);
+        if (pendingUpload != null) {
+          if (pendingUpload.future.cancel(false)) {
+            removePending(fileName);
+          } else {
+            future = pendingUpload.future;
+          }
+        }
+      }
+      if (future != null) {
+        try {
+          future.get();
+        } catch (ExecutionException | CancellationException ignored) {
+          // upload failure is logged by the task, the commit will upload the file
+        }
+      }
+      if (uploaded.contains(fileName)) {
+        preUploaded.add(fileName);
+      }
+    }
+    uploaded.removeIf(fileName -> !Files.exists(indexDataDir.resolve(fileName)));
+
+    SegmentUploadMetrics.preUploadedFiles.labels(indexName).inc(preUploaded.size());
+    return preUploaded;
+  }
+
+  /**
+   * Get if this uploader uploads files to the given service and index data resource, so that its
+   * uploaded files can be skipped by a backup to that resource.
+   */
+  public boolean uploadsTo(String serviceName, String resource) {
+    return this.serviceName.equals(serviceName) && this.resource.equals(resource);
+  }
+
+  /** Get number of files that are queued or uploading. */
+  public synchronized int getBacklogFiles() {
+    return pending.size();
+  }
+
+  /** Stop uploading files. Queued uploads are dropped, and in progress uploads are abandoned. */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    executor.shutdownNow();
+    pending.clear();
+    pendingBytes = 0;
+    updateBacklogMetrics();
+  }
+}
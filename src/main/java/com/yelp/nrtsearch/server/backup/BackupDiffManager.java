@@ -293,16 +293,44 @@ public class BackupDiffManager implements Archiver {
       Collection<String> parentDirectoriesToInclude,
       boolean stream)
       throws IOException {
+    return upload(
+        serviceName,
+        resource,
+        path,
+        filesToInclude,
+        parentDirectoriesToInclude,
+        stream,
+        Collections.emptyList());
+  }
+
+  @Override
+  public String upload(
+      String serviceName,
+      String resource,
+      Path path, // path to resource_name/shard0/index/
+      Collection<String> filesToInclude,
+      Collection<String> parentDirectoriesToInclude,
+      boolean stream,
+      Collection<String> preUploadedFiles)
+      throws IOException {
     BackupDiffManager.BackupDiffInfo backupDiffInfo =
         generateDiff(serviceName, resource, filesToInclude);
 
-    // upload new files since last backup
-    uploadFiles(serviceName, resource, path, backupDiffInfo.getToBeAdded());
+    // upload new files since last backup, skipping any uploaded ahead of time
+    Set<String> remainingFiles =
+        Sets.difference(backupDiffInfo.getToBeAdded(), new HashSet<>(preUploadedFiles));
+    uploadFiles(serviceName, resource, path, remainingFiles);
 
     // uploadDiff file itself
     return uploadDiff(serviceName, resource, backupDiffInfo);
   }
 
+  @Override
+  public void uploadIndexFiles(
+      String serviceName, String resource, Path path, Collection<String> fileNames) {
+    uploadFiles(serviceName, resource, path, fileNames);
+  }
+
   public void uploadFiles(
       String serviceName, String resourceName, Path indexFilePath, Collection<String> files) {
     final LinkedList<Future> futures = new LinkedList<>();
@@ -26,6 +26,8 @@ import com.amazonaws.services.s3.transfer.PersistableTransfer;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
 import com.google.inject.Inject;
+import com.yelp.nrtsearch.server.config.RestoreConfig;
+import com.yelp.nrtsearch.server.utils.ParallelPartInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -42,9 +44,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicLong;
-import net.jpountz.lz4.LZ4FrameInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,17 +56,31 @@ public class ContentDownloaderImpl implements ContentDownloader {
   private final boolean downloadAsStream;
   private final TransferManager transferManager;
   private final String bucketName;
+  private final RestoreConfig restoreConfig;
   private static final Logger logger = LoggerFactory.getLogger(ContentDownloaderImpl.class);
-  private final ThreadPoolExecutor executor =
-      (ThreadPoolExecutor) Executors.newFixedThreadPool(NUM_S3_THREADS);
+  private final ThreadPoolExecutor executor;
 
   @Inject
   public ContentDownloaderImpl(
       Tar tar, TransferManager transferManager, String bucketName, boolean downloadAsStream) {
+    this(tar, transferManager, bucketName, downloadAsStream, RestoreConfig.defaultConfig());
+  }
+
+  public ContentDownloaderImpl(
+      Tar tar,
+      TransferManager transferManager,
+      String bucketName,
+      boolean downloadAsStream,
+      RestoreConfig restoreConfig) {
     this.tar = tar;
     this.transferManager = transferManager;
     this.bucketName = bucketName;
     this.downloadAsStream = downloadAsStream;
+    this.restoreConfig = restoreConfig;
+    this.executor =
+        (ThreadPoolExecutor)
+            Executors.newFixedThreadPool(
+                Math.max(NUM_S3_THREADS, restoreConfig.getPartConcurrency()));
   }
 
   @Override
@@ -119,14 +133,7 @@ public class ContentDownloaderImpl implements ContentDownloader {
       InputStream s3InputStream,
       String hash)
       throws IOException {
-    final InputStream compressorInputStream;
-    if (tar.getCompressionMode().equals(Tar.CompressionMode.LZ4)) {
-      compressorInputStream = new LZ4FrameInputStream(s3InputStream);
-    } else if (tar.getCompressionMode().equals(Tar.CompressionMode.GZIP)) {
-      compressorInputStream = new GzipCompressorInputStream(s3InputStream, true);
-    } else {
-      compressorInputStream = s3InputStream;
-    }
+    final InputStream compressorInputStream = tar.getDecompressorInputStream(s3InputStream);
     try (final TarArchiveInputStream tarArchiveInputStream =
         new TarArchiveInputStream(compressorInputStream); ) {
       extractContent(
@@ -187,9 +194,23 @@ public class ContentDownloaderImpl implements ContentDownloader {
   }
 
   private InputStream getObjectStream(String key, int numParts) {
-    // enumerate the individual part streams and return a combined view
-    Enumeration<InputStream> objectEnum = getObjectEnum(key, numParts);
-    return new SequenceInputStream(objectEnum);
+    if (!restoreConfig.isParallelDownload()) {
+      // enumerate the individual part streams and return a combined view
+      Enumeration<InputStream> objectEnum = getObjectEnum(key, numParts);
+      return new SequenceInputStream(objectEnum);
+    }
+    // drain the individual parts concurrently and return a combined view
+    return new ParallelPartInputStream(
+        numParts,
+        part ->
+            transferManager
+                .getAmazonS3Client()
+                .getObject(new GetObjectRequest(bucketName, key).withPartNumber(part))
+                .getObjectContent(),
+        executor,
+        restoreConfig.getPartConcurrency(),
+        restoreConfig.getMemoryBudget(),
+        restoreConfig.getSpillPath());
   }
 
   private Enumeration<InputStream> getObjectEnum(String key, int numParts) {
@@ -27,6 +27,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import org.apache.commons.io.FileUtils;
@@ -145,6 +146,26 @@ public class IndexArchiver implements Archiver {
       Collection<String> parentDirectoriesToInclude,
       boolean stream)
       throws IOException {
+    return upload(
+        serviceName,
+        resource,
+        path,
+        filesToInclude,
+        parentDirectoriesToInclude,
+        stream,
+        Collections.emptyList());
+  }
+
+  @Override
+  public String upload(
+      String serviceName,
+      String resource,
+      Path path,
+      Collection<String> filesToInclude,
+      Collection<String> parentDirectoriesToInclude,
+      boolean stream,
+      Collection<String> preUploadedFiles)
+      throws IOException {
     if ((validIndexDir(path))) {
       return backupDiffManager.upload(
           serviceName,
@@ -152,7 +173,8 @@ public class IndexArchiver implements Archiver {
           getIndexDataDir(path),
           filesToInclude,
           parentDirectoriesToInclude,
-          true);
+          true,
+          preUploadedFiles);
     } else if (validGlobalStateDir(path)
         || IndexBackupUtils.isBackendGlobalState(resource)
         || IndexBackupUtils.isIndexState(resource)) {
@@ -165,6 +187,13 @@ public class IndexArchiver implements Archiver {
     }
   }
 
+  @Override
+  public void uploadIndexFiles(
+      String serviceName, String resource, Path path, Collection<String> fileNames) {
+    backupDiffManager.uploadFiles(
+        serviceName, getIndexDataResourceName(resource), getIndexDataDir(path), fileNames);
+  }
+
   @VisibleForTesting
   boolean validGlobalStateDir(Path stateDir) throws IOException {
     if (Files.exists(stateDir)) {
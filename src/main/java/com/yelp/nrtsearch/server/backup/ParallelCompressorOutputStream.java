@@ -0,0 +1,215 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.backup;
+
+import com.yelp.nrtsearch.server.backup.Tar.CompressionMode;
+import com.yelp.nrtsearch.server.monitoring.BackupCompressionMetrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+/**
+ * Output stream that splits its data into fixed size blocks, and compresses each block on an
+ * executor as an independent LZ4 frame or gzip member. Compressed blocks are written to the
+ * destination stream in order. Since concatenated LZ4 frames and gzip members form a valid stream,
+ * the output can be read with {@link net.jpountz.lz4.LZ4FrameInputStream} or a {@link
+ * org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream} that decompresses
+ * concatenated members. The number of blocks waiting to be written is bounded, which limits
+ * memory use when the destination is slower than compression.
+ */
+public class ParallelCompressorOutputStream extends OutputStream {
+  private static final String OPERATION = "compress";
+
+  private final OutputStream out;
+  private final CompressionMode compressionMode;
+  private final ExecutorService executor;
+  private final int blockSize;
+  private final int maxInFlightBlocks;
+  private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+  private final String modeLabel;
+  private final long startNanos = System.nanoTime();
+
+  private byte[] buffer;
+  private int bufferLength;
+  private long totalUncompressedBytes;
+  private boolean anyBlocks;
+  private boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param out destination stream
+   * @param compressionMode compression for blocks, LZ4 or GZIP
+   * @param executor executor to compress blocks
+   * @param blockSize uncompressed size of each block
+   * @param maxInFlightBlocks max number of blocks being compressed or waiting to be written
+   */
+  public ParallelCompressorOutputStream(
+      OutputStream out,
+      CompressionMode compressionMode,
+      ExecutorService executor,
+      int blockSize,
+      int maxInFlightBlocks) {
+    if (compressionMode != CompressionMode.LZ4 && compressionMode != CompressionMode.GZIP) {
+      throw new IllegalArgumentException("Unsupported compression mode: " + compressionMode);
+    }
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize must be > 0");
+    }
+    if (maxInFlightBlocks <= 0) {
+      throw new IllegalArgumentException("maxInFlightBlocks must be > 0");
+    }
+    this.out = out;
+    this.compressionMode = compressionMode;
+    this.executor = executor;
+    this.blockSize = blockSize;
+    this.maxInFlightBlocks = maxInFlightBlocks;
+    this.modeLabel = compressionMode.name();
+    this.buffer = new byte[blockSize];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    buffer[bufferLength++] = (byte) b;
+    if (bufferLength == blockSize) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    while (len > 0) {
+      int toCopy = Math.min(len, blockSize - bufferLength);
+      System.arraycopy(b, off, buffer, bufferLength, toCopy);
+      bufferLength += toCopy;
+      off += toCopy;
+      len -= toCopy;
+      if (bufferLength == blockSize) {
+        submitBlock();
+      }
+    }
+  }
+
+  /**
+   * Compress any buffered data as a block, and write all pending blocks. Flushing often produces
+   * small blocks, which reduces compression ratio.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (bufferLength > 0) {
+      submitBlock();
+    }
+    while (!pending.isEmpty()) {
+      writeNextBlock();
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      // always produce at least one frame, so that the output is a valid compressed stream
+      if (bufferLength > 0 || !anyBlocks) {
+        submitBlock();
+      }
+      while (!pending.isEmpty()) {
+        writeNextBlock();
+      }
+      double elapsedSec = (System.nanoTime() - startNanos) / 1000000000.0;
+      if (elapsedSec > 0) {
+        BackupCompressionMetrics.throughputMBPerSec
+            .labels(OPERATION, modeLabel)
+            .set(totalUncompressedBytes / (1024.0 * 1024.0) / elapsedSec);
+      }
+    } finally {
+      closed = true;
+      for (Future<byte[]> future : pending) {
+        future.cancel(true);
+      }
+      pending.clear();
+      out.close();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private void submitBlock() throws IOException {
+    final byte[] block = buffer;
+    final int length = bufferLength;
+    anyBlocks = true;
+    totalUncompressedBytes += length;
+    pending.add(executor.submit(() -> compressBlock(block, length)));
+    buffer = new byte[blockSize];
+    bufferLength = 0;
+    while (pending.size() >= maxInFlightBlocks) {
+      writeNextBlock();
+    }
+  }
+
+  private void writeNextBlock() throws IOException {
+    Future<byte[]> future = pending.poll();
+    byte[] compressed;
+    try {
+      compressed = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while compressing block", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Error compressing block", e.getCause());
+    }
+    out.write(compressed);
+  }
+
+  private byte[] compressBlock(byte[] block, int length) throws IOException {
+    long blockStartNanos = System.nanoTime();
+    ByteArrayOutputStream compressedStream = new ByteArrayOutputStream(length / 2 + 64);
+    try (OutputStream compressorStream = newCompressorStream(compressedStream)) {
+      compressorStream.write(block, 0, length);
+    }
+    byte[] compressed = compressedStream.toByteArray();
+    BackupCompressionMetrics.uncompressedBytes.labels(OPERATION, modeLabel).inc(length);
+    BackupCompressionMetrics.compressedBytes.labels(OPERATION, modeLabel).inc(compressed.length);
+    BackupCompressionMetrics.blockTimeMs
+        .labels(OPERATION, modeLabel)
+        .inc((System.nanoTime() - blockStartNanos) / 1000000.0);
+    return compressed;
+  }
+
+  private OutputStream newCompressorStream(OutputStream compressedStream) throws IOException {
+    if (compressionMode == CompressionMode.LZ4) {
+      return new LZ4FrameOutputStream(compressedStream);
+    } else {
+      return new GzipCompressorOutputStream(compressedStream);
+    }
+  }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.backup;
+
+import com.yelp.nrtsearch.server.monitoring.BackupCompressionMetrics;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import net.jpountz.xxhash.StreamingXXHash32;
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * Input stream that decompresses a stream of LZ4 frames, decompressing blocks on an executor. The
+ * compressed stream is parsed on the reading thread, and blocks are decompressed ahead of the
+ * reader, up to a bounded number of blocks. This requires frames with independent blocks, which is
+ * the default for {@link net.jpountz.lz4.LZ4FrameOutputStream}, so both archives built by {@link
+ * ParallelCompressorOutputStream} and single frame archives can be decompressed in parallel.
+ * Concatenated and skippable frames, as well as block and content checksums are supported.
+ */
+public class ParallelLZ4DecompressorInputStream extends InputStream {
+  private static final String OPERATION = "decompress";
+  private static final String MODE = Tar.CompressionMode.LZ4.name();
+  private static final int MAGIC = 0x184D2204;
+  private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+  private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+  private static final int FLG_VERSION_MASK = 0xC0;
+  private static final int FLG_VERSION = 0x40;
+  private static final int FLG_BLOCK_INDEPENDENCE = 0x20;
+  private static final int FLG_BLOCK_CHECKSUM = 0x10;
+  private static final int FLG_CONTENT_SIZE = 0x08;
+  private static final int FLG_CONTENT_CHECKSUM = 0x04;
+  private static final int FLG_DICT_ID = 0x01;
+  private static final int UNCOMPRESSED_BLOCK_FLAG = 0x80000000;
+
+  private static final LZ4SafeDecompressor DECOMPRESSOR =
+      LZ4Factory.fastestInstance().safeDecompressor();
+  private static final XXHash32 HASH = XXHashFactory.fastestInstance().hash32();
+
+  private final InputStream in;
+  private final ExecutorService executor;
+  private final int maxInFlightBlocks;
+  private final Deque<Entry> pending = new ArrayDeque<>();
+  private final StreamingXXHash32 contentHash =
+      XXHashFactory.fastestInstance().newStreamingHash32(0);
+  private final long startNanos = System.nanoTime();
+
+  // state of the frame being parsed
+  private boolean inFrame;
+  private boolean blockChecksum;
+  private boolean contentChecksum;
+  private int maxBlockSize;
+  private boolean endOfStream;
+
+  // block being read
+  private byte[] current;
+  private int currentPos;
+  private int currentLength;
+  private long totalUncompressedBytes;
+  private boolean closed;
+
+  /**
+   * Get if the next frame in the stream has independent blocks, and so can be decompressed by
+   * this class. The stream position is not changed.
+   *
+   * @param inputStream compressed stream
+   * @return if the first frame has independent blocks
+   * @throws IOException on error reading stream
+   */
+  public static boolean hasIndependentBlocks(BufferedInputStream inputStream) throws IOException {
+    inputStream.mark(5);
+    try {
+      byte[] header = new byte[5];
+      int read = 0;
+      while (read < header.length) {
+        int n = inputStream.read(header, read, header.length - read);
+        if (n < 0) {
+          return false;
+        }
+        read += n;
+      }
+      return readIntLE(header, 0) == MAGIC && (header[4] & FLG_BLOCK_INDEPENDENCE) != 0;
+    } finally {
+      inputStream.reset();
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param in compressed stream
+   * @param executor executor to decompress blocks
+   * @param maxInFlightBlocks max number of blocks being decompressed or waiting to be read
+   */
+  public ParallelLZ4DecompressorInputStream(
+      InputStream in, ExecutorService executor, int maxInFlightBlocks) {
+    if (maxInFlightBlocks <= 0) {
+      throw new IllegalArgumentException("maxInFlightBlocks must be > 0");
+    }
+    this.in = in;
+    this.executor = executor;
+    this.maxInFlightBlocks = maxInFlightBlocks;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureData()) {
+      return -1;
+    }
+    return current[currentPos++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureData()) {
+      return -1;
+    }
+    int toCopy = Math.min(len, currentLength - currentPos);
+    System.arraycopy(current, currentPos, b, off, toCopy);
+    currentPos += toCopy;
+    return toCopy;
+  }
+
+  @Override
+  public int available() {
+    return current == null ? 0 : currentLength - currentPos;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (Entry entry : pending) {
+      if (entry.block != null) {
+        entry.block.cancel(true);
+      }
+    }
+    pending.clear();
+    current = null;
+    in.close();
+  }
+
+  private boolean ensureData() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (current == null || currentPos == currentLength) {
+      if (!nextBlock()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean nextBlock() throws IOException {
+    fillPending();
+    Entry entry = pending.poll();
+    if (entry == null) {
+      current = null;
+      double elapsedSec = (System.nanoTime() - startNanos) / 1000000000.0;
+      if (elapsedSec > 0) {
+        BackupCompressionMetrics.throughputMBPerSec
+            .labels(OPERATION, MODE)
+            .set(totalUncompressedBytes / (1024.0 * 1024.0) / elapsedSec);
+      }
+      return false;
+    }
+    if (entry.block == null) {
+      // end of frame
+      if (entry.checkContent && (int) contentHash.getValue() != entry.contentChecksum) {
+        throw new IOException("LZ4 frame content checksum mismatch");
+      }
+      contentHash.reset();
+      current = null;
+      return true;
+    }
+    DecodedBlock decoded;
+    try {
+      decoded = entry.block.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while decompressing block", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Error decompressing block", e.getCause());
+    }
+    if (entry.checkContent) {
+      contentHash.update(decoded.data, 0, decoded.length);
+    }
+    totalUncompressedBytes += decoded.length;
+    current = decoded.data;
+    currentPos = 0;
+    currentLength = decoded.length;
+    return true;
+  }
+
+  private void fillPending() throws IOException {
+    while (!endOfStream && pending.size() < maxInFlightBlocks) {
+      if (!inFrame && !readFrameHeader()) {
+        endOfStream = true;
+        return;
+      }
+      readBlock();
+    }
+  }
+
+  /** Read the next frame header, skipping skippable frames. Returns false at end of stream. */
+  private boolean readFrameHeader() throws IOException {
+    while (true) {
+      byte[] magicBytes = new byte[4];
+      int read = in.readNBytes(magicBytes, 0, 4);
+      if (read == 0) {
+        return false;
+      } else if (read < 4) {
+        throw new EOFException("Truncated LZ4 frame magic");
+      }
+      int magic = readIntLE(magicBytes, 0);
+      if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+        skipFully(Integer.toUnsignedLong(readIntLE(readFully(4), 0)));
+        continue;
+      }
+      if (magic != MAGIC) {
+        throw new IOException("Invalid LZ4 frame magic: " + Integer.toHexString(magic));
+      }
+      break;
+    }
+    byte[] flgBd = readFully(2);
+    int flg = flgBd[0] & 0xFF;
+    int bd = flgBd[1] & 0xFF;
+    if ((flg & FLG_VERSION_MASK) != FLG_VERSION) {
+      throw new IOException("Unsupported LZ4 frame version");
+    }
+    if ((flg & FLG_BLOCK_INDEPENDENCE) == 0) {
+      throw new IOException("LZ4 frames with linked blocks cannot be decompressed in parallel");
+    }
+    if ((flg & FLG_DICT_ID) != 0) {
+      throw new IOException("LZ4 frames with a dictionary id are not supported");
+    }
+    int blockSizeId = (bd >> 4) & 0x07;
+    if (blockSizeId < 4) {
+      throw new IOException("Invalid LZ4 frame block size id: " + blockSizeId);
+    }
+    int descriptorLength = (flg & FLG_CONTENT_SIZE) != 0 ? 10 : 2;
+    byte[] descriptor = new byte[descriptorLength];
+    descriptor[0] = flgBd[0];
+    descriptor[1] = flgBd[1];
+    if (descriptorLength > 2) {
+      System.arraycopy(readFully(8), 0, descriptor, 2, 8);
+    }
+    int headerChecksum = readFully(1)[0] & 0xFF;
+    if (((HASH.hash(descriptor, 0, descriptorLength, 0) >> 8) & 0xFF) != headerChecksum) {
+      throw new IOException("LZ4 frame header checksum mismatch");
+    }
+    blockChecksum = (flg & FLG_BLOCK_CHECKSUM) != 0;
+    contentChecksum = (flg & FLG_CONTENT_CHECKSUM) != 0;
+    maxBlockSize = 1 << (8 + 2 * blockSizeId);
+    inFrame = true;
+    return true;
+  }
+
+  private void readBlock() throws IOException {
+    int blockHeader = readIntLE(readFully(4), 0);
+    if (blockHeader == 0) {
+      int expectedChecksum = contentChecksum ? readIntLE(readFully(4), 0) : 0;
+      pending.add(new Entry(null, contentChecksum, expectedChecksum));
+      inFrame = false;
+      return;
+    }
+    boolean uncompressed = (blockHeader & UNCOMPRESSED_BLOCK_FLAG) != 0;
+    int length = blockHeader & ~UNCOMPRESSED_BLOCK_FLAG;
+    if (length > maxBlockSize) {
+      throw new IOException("LZ4 block size exceeds frame max block size: " + length);
+    }
+    byte[] data = readFully(length);
+    boolean checkBlock = blockChecksum;
+    int expectedBlockChecksum = checkBlock ? readIntLE(readFully(4), 0) : 0;
+    int blockMaxSize = maxBlockSize;
+    Future<DecodedBlock> block;
+    if (uncompressed && !checkBlock) {
+      block = CompletableFuture.completedFuture(new DecodedBlock(data, length));
+    } else {
+      block =
+          executor.submit(
+              () ->
+                  decodeBlock(
+                      data, uncompressed, blockMaxSize, checkBlock, expectedBlockChecksum));
+    }
+    pending.add(new Entry(block, contentChecksum, 0));
+  }
+
+  private static DecodedBlock decodeBlock(
+      byte[] data,
+      boolean uncompressed,
+      int blockMaxSize,
+      boolean checkBlock,
+      int expectedBlockChecksum)
+      throws IOException {
+    if (checkBlock && HASH.hash(data, 0, data.length, 0) != expectedBlockChecksum) {
+      throw new IOException("LZ4 block checksum mismatch");
+    }
+    if (uncompressed) {
+      return new DecodedBlock(data, data.length);
+    }
+    long blockStartNanos = System.nanoTime();
+    byte[] decompressed = new byte[blockMaxSize];
+    int length;
+    try {
+      length = DECOMPRESSOR.decompress(data, 0, data.length, decompressed, 0, blockMaxSize);
+    } catch (LZ4Exception e) {
+      throw new IOException("Invalid LZ4 block", e);
+    }
+    BackupCompressionMetrics.uncompressedBytes.labels(OPERATION, MODE).inc(length);
+    BackupCompressionMetrics.compressedBytes.labels(OPERATION, MODE).inc(data.length);
+    BackupCompressionMetrics.blockTimeMs
+        .labels(OPERATION, MODE)
+        .inc((System.nanoTime() - blockStartNanos) / 1000000.0);
+    return new DecodedBlock(decompressed, length);
+  }
+
+  private byte[] readFully(int length) throws IOException {
+    byte[] bytes = new byte[length];
+    if (in.readNBytes(bytes, 0, length) != length) {
+      throw new EOFException("Truncated LZ4 frame");
+    }
+    return bytes;
+  }
+
+  private void skipFully(long length) throws IOException {
+    while (length > 0) {
+      long skipped = in.skip(length);
+      if (skipped <= 0) {
+        if (in.read() < 0) {
+          throw new EOFException("Truncated LZ4 skippable frame");
+        }
+        skipped = 1;
+      }
+      length -= skipped;
+    }
+  }
+
+  private static int readIntLE(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF)
+        | (bytes[offset + 1] & 0xFF) << 8
+        | (bytes[offset + 2] & 0xFF) << 16
+        | (bytes[offset + 3] & 0xFF) << 24;
+  }
+
+  /** Decompressed block data. */
+  private static class DecodedBlock {
+    private final byte[] data;
+    private final int length;
+
+    private DecodedBlock(byte[] data, int length) {
+      this.data = data;
+      this.length = length;
+    }
+  }
+
+  /** Pending block in stream order, or an end of frame marker if block is null. */
+  private static class Entry {
+    private final Future<DecodedBlock> block;
+    private final boolean checkContent;
+    private final int contentChecksum;
+
+    private Entry(Future<DecodedBlock> block, boolean checkContent, int contentChecksum) {
+      this.block = block;
+      this.checkContent = checkContent;
+      this.contentChecksum = contentChecksum;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.backup;
+
+import com.yelp.nrtsearch.server.utils.MemoryBudget;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+/**
+ * Extracts a tar stream, writing file data on an executor. The tar stream is read sequentially on
+ * the calling thread, so reading and decompression overlap with file writes. Each file is written
+ * in chunks with positional writes to its {@link FileChannel}, allowing chunks of the same file to
+ * be written concurrently. The memory used by chunks waiting to be written is bounded by a {@link
+ * MemoryBudget}, which may be shared with the download of the tar stream. When no writes are
+ * pending, the budget can only be held by data this thread has not read yet, so the next chunk is
+ * read even if it exceeds the budget.
+ */
+public class ParallelTarExtractor {
+  private static final int CHUNK_SIZE = 1024 * 1024;
+
+  private final ExecutorService executor;
+  private final MemoryBudget memoryBudget;
+  private final AtomicInteger pendingWrites = new AtomicInteger();
+
+  /**
+   * Constructor.
+   *
+   * @param executor executor to write file chunks
+   * @param memoryBudget memory limit for chunks waiting to be written
+   */
+  public ParallelTarExtractor(ExecutorService executor, MemoryBudget memoryBudget) {
+    this.executor = executor;
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Extract all files in the tar stream into the destination directory.
+   *
+   * @param tarArchiveInputStream tar stream
+   * @param destDirectory destination directory
+   * @throws IOException on error reading tar or writing files
+   */
+  public void extract(TarArchiveInputStream tarArchiveInputStream, Path destDirectory)
+      throws IOException {
+    Deque<OpenFile> openFiles = new ArrayDeque<>();
+    try {
+      for (TarArchiveEntry tarArchiveEntry = tarArchiveInputStream.getNextTarEntry();
+          tarArchiveEntry != null;
+          tarArchiveEntry = tarArchiveInputStream.getNextTarEntry()) {
+        if (tarArchiveEntry.isDirectory()) {
+          continue;
+        }
+        final Path destFile = destDirectory.resolve(tarArchiveEntry.getName());
+        final Path parentDirectory = destFile.getParent();
+        if (!Files.exists(parentDirectory)) {
+          Files.createDirectories(parentDirectory);
+        }
+        OpenFile openFile =
+            new OpenFile(
+                FileChannel.open(
+                    destFile,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE));
+        openFiles.add(openFile);
+        submitWrites(tarArchiveInputStream, tarArchiveEntry.getSize(), openFile);
+        closeCompleted(openFiles, false);
+      }
+      closeCompleted(openFiles, true);
+    } finally {
+      // let pending writes finish, so that their memory is released back to the budget
+      for (OpenFile openFile : openFiles) {
+        for (Future<?> write : openFile.writes) {
+          try {
+            write.get();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (ExecutionException ignored) {
+            // extraction already failed
+          }
+        }
+        openFile.channel.close();
+      }
+    }
+  }
+
+  private void submitWrites(
+      TarArchiveInputStream tarArchiveInputStream, long entrySize, OpenFile openFile)
+      throws IOException {
+    long position = 0;
+    while (true) {
+      long remaining = entrySize > 0 ? entrySize - position : CHUNK_SIZE;
+      if (remaining <= 0) {
+        break;
+      }
+      int chunkLength = (int) Math.min(CHUNK_SIZE, remaining);
+      reserve(chunkLength);
+      byte[] chunk;
+      int read;
+      try {
+        chunk = new byte[chunkLength];
+        read = tarArchiveInputStream.readNBytes(chunk, 0, chunk.length);
+      } catch (Throwable t) {
+        memoryBudget.release(chunkLength);
+        throw t;
+      }
+      if (read == 0) {
+        memoryBudget.release(chunkLength);
+        break;
+      }
+      final long chunkPosition = position;
+      pendingWrites.incrementAndGet();
+      try {
+        openFile.writes.add(
+            executor.submit(
+                () -> {
+                  try {
+                    ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, read);
+                    long writePosition = chunkPosition;
+                    while (buffer.hasRemaining()) {
+                      writePosition += openFile.channel.write(buffer, writePosition);
+                    }
+                  } finally {
+                    writeDone(chunkLength);
+                  }
+                  return null;
+                }));
+      } catch (RejectedExecutionException e) {
+        writeDone(chunkLength);
+        throw e;
+      }
+      position += read;
+      if (read < chunk.length) {
+        break;
+      }
+    }
+  }
+
+  private void reserve(int bytes) throws IOException {
+    try {
+      // pending writes always release their memory, other consumers may need this thread to read
+      memoryBudget.reserve(bytes, () -> pendingWrites.get() > 0);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while extracting tar", e);
+    }
+  }
+
+  private void writeDone(int bytes) {
+    // must be decremented before the release wakes up a waiting reserve
+    pendingWrites.decrementAndGet();
+    memoryBudget.release(bytes);
+  }
+
+  /** Close files with completed writes, in order. If wait is true, wait for all writes. */
+  private static void closeCompleted(Deque<OpenFile> openFiles, boolean wait) throws IOException {
+    while (!openFiles.isEmpty()) {
+      OpenFile openFile = openFiles.peek();
+      if (!wait && !openFile.isDone()) {
+        return;
+      }
+      for (Future<?> write : openFile.writes) {
+        try {
+          write.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while extracting tar", e);
+        } catch (ExecutionException e) {
+          throw new IOException("Error writing extracted file", e.getCause());
+        }
+      }
+      openFiles.poll();
+      openFile.channel.close();
+    }
+  }
+
+  /** File being written, and its pending chunk writes. */
+  private static class OpenFile {
+    private final FileChannel channel;
+    private final List<Future<?>> writes = new ArrayList<>();
+
+    private OpenFile(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private boolean isDone() {
+      for (Future<?> write : writes) {
+        if (!write.isDone()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -21,8 +21,10 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.file.Path;
 import java.util.Collection;
+import net.jpountz.lz4.LZ4FrameInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 
 public interface Tar {
   void extractTar(Path sourceFile, Path destDir) throws IOException;
@@ -75,6 +77,25 @@ public interface Tar {
 
   CompressionMode getCompressionMode();
 
+  /**
+   * Wrap a stream of compressed tar data with a stream that decompresses it, based on the
+   * compression mode.
+   *
+   * @param inputStream compressed tar data
+   * @return stream of uncompressed tar data
+   * @throws IOException on error reading stream
+   */
+  default InputStream getDecompressorInputStream(InputStream inputStream) throws IOException {
+    switch (getCompressionMode()) {
+      case LZ4:
+        return new LZ4FrameInputStream(inputStream);
+      case GZIP:
+        return new GzipCompressorInputStream(inputStream, true);
+      default:
+        return inputStream;
+    }
+  }
+
   enum CompressionMode {
     GZIP,
     LZ4,
@@ -16,6 +16,8 @@
 package com.yelp.nrtsearch.server.backup;
 
 import com.google.inject.Inject;
+import com.yelp.nrtsearch.server.config.BackupCompressionConfig;
+import com.yelp.nrtsearch.server.config.RestoreConfig;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -26,32 +28,135 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import net.jpountz.lz4.LZ4FrameInputStream;
 import net.jpountz.lz4.LZ4FrameOutputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.io.IOUtils;
+import org.apache.lucene.util.NamedThreadFactory;
 
 public class TarImpl implements Tar {
+  private static final long THREAD_KEEP_ALIVE_SEC = 60;
+  private static final BackupCompressionConfig SINGLE_THREADED_CONFIG =
+      new BackupCompressionConfig(1, 4 * 1024 * 1024, 0);
+
   private final CompressionMode compressionMode;
+  private final BackupCompressionConfig compressionConfig;
+  private final RestoreConfig restoreConfig;
+  private volatile ThreadPoolExecutor compressionExecutor;
+  private volatile ThreadPoolExecutor extractExecutor;
 
   @Inject
   public TarImpl(CompressionMode compressionMode) {
+    this(compressionMode, SINGLE_THREADED_CONFIG);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param compressionMode compression for built and extracted tars
+   * @param compressionConfig config for compressing and decompressing blocks in parallel
+   */
+  public TarImpl(CompressionMode compressionMode, BackupCompressionConfig compressionConfig) {
+    this(compressionMode, compressionConfig, RestoreConfig.defaultConfig());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param compressionMode compression for built and extracted tars
+   * @param compressionConfig config for compressing and decompressing blocks in parallel
+   * @param restoreConfig config for writing extracted files in parallel
+   */
+  public TarImpl(
+      CompressionMode compressionMode,
+      BackupCompressionConfig compressionConfig,
+      RestoreConfig restoreConfig) {
     this.compressionMode = compressionMode;
+    this.compressionConfig = compressionConfig;
+    this.restoreConfig = restoreConfig;
+  }
+
+  private ExecutorService getCompressionExecutor() {
+    if (compressionExecutor == null) {
+      synchronized (this) {
+        if (compressionExecutor == null) {
+          compressionExecutor =
+              createExecutor(compressionConfig.getThreads(), "tar-compression");
+        }
+      }
+    }
+    return compressionExecutor;
+  }
+
+  private ExecutorService getExtractExecutor() {
+    if (extractExecutor == null) {
+      synchronized (this) {
+        if (extractExecutor == null) {
+          extractExecutor = createExecutor(restoreConfig.getExtractThreads(), "tar-extract");
+        }
+      }
+    }
+    return extractExecutor;
+  }
+
+  private static ThreadPoolExecutor createExecutor(int threads, String name) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            THREAD_KEEP_ALIVE_SEC,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new NamedThreadFactory(name));
+    // threads are only needed while a backup or restore is running
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   @Override
-  public void extractTar(Path sourceFile, Path destDir) throws IOException {
-    final FileInputStream fileInputStream = new FileInputStream(sourceFile.toFile());
-    final InputStream compressorInputStream;
+  public InputStream getDecompressorInputStream(InputStream inputStream) throws IOException {
+    if (compressionMode.equals(CompressionMode.LZ4) && compressionConfig.isParallel()) {
+      BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
+      if (ParallelLZ4DecompressorInputStream.hasIndependentBlocks(bufferedInputStream)) {
+        return new ParallelLZ4DecompressorInputStream(
+            bufferedInputStream,
+            getCompressionExecutor(),
+            compressionConfig.getMaxInFlightBlocks());
+      }
+      return new LZ4FrameInputStream(bufferedInputStream);
+    }
+    // gzip members cannot be located without inflating the stream, so gzip is always
+    // decompressed on the reading thread
+    return Tar.super.getDecompressorInputStream(inputStream);
+  }
+
+  private OutputStream getCompressorOutputStream(OutputStream outputStream) throws IOException {
+    if (compressionConfig.isParallel()) {
+      return new ParallelCompressorOutputStream(
+          outputStream,
+          compressionMode,
+          getCompressionExecutor(),
+          compressionConfig.getBlockSizeBytes(),
+          compressionConfig.getMaxInFlightBlocks());
+    }
     if (compressionMode.equals(CompressionMode.LZ4)) {
-      compressorInputStream = new LZ4FrameInputStream(fileInputStream);
+      return new LZ4FrameOutputStream(outputStream);
     } else {
-      compressorInputStream = new GzipCompressorInputStream(fileInputStream, true);
+      return new GzipCompressorOutputStream(outputStream);
     }
+  }
+
+  @Override
+  public void extractTar(Path sourceFile, Path destDir) throws IOException {
+    final FileInputStream fileInputStream = new FileInputStream(sourceFile.toFile());
+    final InputStream compressorInputStream = getDecompressorInputStream(fileInputStream);
     try (final TarArchiveInputStream tarArchiveInputStream =
         new TarArchiveInputStream(compressorInputStream); ) {
       extractTar(tarArchiveInputStream, destDir);
@@ -62,6 +167,11 @@ public class TarImpl implements Tar {
   public void extractTar(
       final TarArchiveInputStream tarArchiveInputStream, final Path destDirectory)
       throws IOException {
+    if (restoreConfig.getExtractThreads() > 1) {
+      new ParallelTarExtractor(getExtractExecutor(), restoreConfig.getMemoryBudget())
+          .extract(tarArchiveInputStream, destDirectory);
+      return;
+    }
     for (TarArchiveEntry tarArchiveEntry = tarArchiveInputStream.getNextTarEntry();
         tarArchiveEntry != null;
         tarArchiveEntry = tarArchiveInputStream.getNextTarEntry()) {
@@ -109,12 +219,7 @@ public class TarImpl implements Tar {
       Collection<String> filesToInclude,
       Collection<String> parentDirectoriesToInclude)
       throws IOException {
-    final OutputStream compressorOutputStream;
-    if (compressionMode.equals(CompressionMode.LZ4)) {
-      compressorOutputStream = new LZ4FrameOutputStream(destinationStream);
-    } else {
-      compressorOutputStream = new GzipCompressorOutputStream(destinationStream);
-    }
+    final OutputStream compressorOutputStream = getCompressorOutputStream(destinationStream);
     try (final TarArchiveOutputStream tarArchiveOutputStream =
         new TarArchiveOutputStream(compressorOutputStream)) {
       buildTar(tarArchiveOutputStream, sourceDir, filesToInclude, parentDirectoriesToInclude);
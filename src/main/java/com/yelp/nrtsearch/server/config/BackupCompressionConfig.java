@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.config;
+
+/** Class containing configuration for compressing and decompressing tar backups. */
+public class BackupCompressionConfig {
+  private static final String CONFIG_PREFIX = "backupCompression.";
+  static final int DEFAULT_THREADS = 1;
+  static final String DEFAULT_BLOCK_SIZE = "4mb";
+  static final long MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+  private final int threads;
+  private final int blockSizeBytes;
+  private final int maxInFlightBlocks;
+
+  /**
+   * Create instance from provided configuration reader.
+   *
+   * @param configReader config reader
+   * @return class instance
+   */
+  public static BackupCompressionConfig fromConfig(YamlConfigReader configReader) {
+    int threads = configReader.getInteger(CONFIG_PREFIX + "threads", DEFAULT_THREADS);
+    String blockSize = configReader.getString(CONFIG_PREFIX + "blockSize", DEFAULT_BLOCK_SIZE);
+    long blockSizeBytes = QueryCacheConfig.sizeStrToBytes(blockSize);
+    if (blockSizeBytes <= 0 || blockSizeBytes > MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("blockSize must be > 0 and <= 64mb");
+    }
+    int maxInFlightBlocks = configReader.getInteger(CONFIG_PREFIX + "maxInFlightBlocks", 0);
+    return new BackupCompressionConfig(threads, (int) blockSizeBytes, maxInFlightBlocks);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param threads number of threads used to compress and decompress blocks, 1 disables parallel
+   *     compression
+   * @param blockSizeBytes uncompressed size of independently compressed blocks
+   * @param maxInFlightBlocks max number of blocks being compressed or decompressed at once, or 0
+   *     to use twice the number of threads
+   */
+  public BackupCompressionConfig(int threads, int blockSizeBytes, int maxInFlightBlocks) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("threads must be > 0");
+    }
+    if (blockSizeBytes <= 0) {
+      throw new IllegalArgumentException("blockSize must be > 0");
+    }
+    if (maxInFlightBlocks < 0) {
+      throw new IllegalArgumentException("maxInFlightBlocks must be >= 0");
+    }
+    this.threads = threads;
+    this.blockSizeBytes = blockSizeBytes;
+    this.maxInFlightBlocks = maxInFlightBlocks == 0 ? 2 * threads : maxInFlightBlocks;
+  }
+
+  /** Get number of threads used to compress and decompress blocks. */
+  public int getThreads() {
+    return threads;
+  }
+
+  /** Get if blocks are compressed and decompressed in parallel. */
+  public boolean isParallel() {
+    return threads > 1;
+  }
+
+  /** Get uncompressed size of independently compressed blocks. */
+  public int getBlockSizeBytes() {
+    return blockSizeBytes;
+  }
+
+  /** Get max number of blocks being compressed or decompressed at once. */
+  public int getMaxInFlightBlocks() {
+    return maxInFlightBlocks;
+  }
+}
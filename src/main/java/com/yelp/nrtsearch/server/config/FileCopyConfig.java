@@ -20,11 +20,14 @@ public class FileCopyConfig {
   static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
   static final int DEFAULT_ACK_EVERY = 1000;
   static final int DEFAULT_MAX_IN_FLIGHT = 2000;
+  static final int DEFAULT_COPY_CONCURRENCY = 1;
 
   private final boolean ackedCopy;
   private final int chunkSize;
   private final int ackEvery;
   private final int maxInFlight;
+  private final int copyConcurrency;
+  private final boolean zeroCopy;
 
   /**
    * Create instance from provided configuration reader.
@@ -37,7 +40,11 @@ public class FileCopyConfig {
     int chunkSize = configReader.getInteger("FileCopyConfig.chunkSize", DEFAULT_CHUNK_SIZE);
     int ackEvery = configReader.getInteger("FileCopyConfig.ackEvery", DEFAULT_ACK_EVERY);
     int maxInFlight = configReader.getInteger("FileCopyConfig.maxInFlight", DEFAULT_MAX_IN_FLIGHT);
-    return new FileCopyConfig(ackedCopy, chunkSize, ackEvery, maxInFlight);
+    int copyConcurrency =
+        configReader.getInteger("FileCopyConfig.copyConcurrency", DEFAULT_COPY_CONCURRENCY);
+    boolean zeroCopy = configReader.getBoolean("FileCopyConfig.zeroCopy", false);
+    return new FileCopyConfig(
+        ackedCopy, chunkSize, ackEvery, maxInFlight, copyConcurrency, zeroCopy);
   }
 
   /**
@@ -49,13 +56,38 @@ public class FileCopyConfig {
    * @param maxInFlight maximum in flight chunks
    */
   public FileCopyConfig(boolean ackedCopy, int chunkSize, int ackEvery, int maxInFlight) {
+    this(ackedCopy, chunkSize, ackEvery, maxInFlight, DEFAULT_COPY_CONCURRENCY, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param ackedCopy if acked file copy should be used
+   * @param chunkSize file chunk size
+   * @param ackEvery chunks to send between acks
+   * @param maxInFlight maximum in flight chunks
+   * @param copyConcurrency maximum number of files a replica copy job receives concurrently
+   * @param zeroCopy if the primary should send memory mapped file chunks without copying
+   */
+  public FileCopyConfig(
+      boolean ackedCopy,
+      int chunkSize,
+      int ackEvery,
+      int maxInFlight,
+      int copyConcurrency,
+      boolean zeroCopy) {
     if (ackEvery > maxInFlight) {
       throw new IllegalArgumentException("ackEvery must be less than or equal to maxInFlight");
     }
+    if (copyConcurrency < 1) {
+      throw new IllegalArgumentException("copyConcurrency must be at least 1");
+    }
     this.ackedCopy = ackedCopy;
     this.chunkSize = chunkSize;
     this.ackEvery = ackEvery;
     this.maxInFlight = maxInFlight;
+    this.copyConcurrency = copyConcurrency;
+    this.zeroCopy = zeroCopy;
   }
 
   /** Get if acked copy should be used. */
@@ -77,4 +109,14 @@ public class FileCopyConfig {
   public int getMaxInFlight() {
     return maxInFlight;
   }
+
+  /** Get maximum number of files copied concurrently by a replica copy job. */
+  public int getCopyConcurrency() {
+    return copyConcurrency;
+  }
+
+  /** Get if the primary should send memory mapped file chunks without copying. */
+  public boolean getZeroCopy() {
+    return zeroCopy;
+  }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.config;
+
+/** Class containing configuration for building and caching field global ordinals. */
+public class GlobalOrdinalsConfig {
+  private static final String CONFIG_PREFIX = "globalOrdinals.";
+  static final boolean DEFAULT_INCREMENTAL = true;
+  static final String DEFAULT_MAX_MEMORY = "10%";
+
+  private final boolean incremental;
+  private final long maxMemoryBytes;
+
+  /**
+   * Create instance from provided configuration reader.
+   *
+   * @param configReader config reader
+   * @return class instance
+   */
+  public static GlobalOrdinalsConfig fromConfig(YamlConfigReader configReader) {
+    boolean incremental =
+        configReader.getBoolean(CONFIG_PREFIX + "incremental", DEFAULT_INCREMENTAL);
+    String maxMemory = configReader.getString(CONFIG_PREFIX + "maxMemory", DEFAULT_MAX_MEMORY);
+    long maxMemoryBytes = QueryCacheConfig.sizeStrToBytes(maxMemory);
+    return new GlobalOrdinalsConfig(incremental, maxMemoryBytes);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param incremental if global ordinals may be built incrementally from the previous reader
+   * @param maxMemoryBytes maximum memory for cached global ordinals
+   */
+  public GlobalOrdinalsConfig(boolean incremental, long maxMemoryBytes) {
+    if (maxMemoryBytes <= 0) {
+      throw new IllegalArgumentException("maxMemory must be > 0");
+    }
+    this.incremental = incremental;
+    this.maxMemoryBytes = maxMemoryBytes;
+  }
+
+  /** Get if global ordinals may be built incrementally from the previous reader. */
+  public boolean getIncremental() {
+    return incremental;
+  }
+
+  /** Get maximum memory to use for cached global ordinals. */
+  public long getMaxMemoryBytes() {
+    return maxMemoryBytes;
+  }
+}
@@ -60,6 +60,8 @@ public class LuceneServerConfiguration {
   private static final String DEFAULT_SERVICE_NAME = "nrtsearch-generic";
   static final long DEFAULT_INITIAL_SYNC_PRIMARY_WAIT_MS = 30000;
   static final long DEFAULT_INITIAL_SYNC_MAX_TIME_MS = 600000; // 10m
+  static final int DEFAULT_PIPELINED_INDEXING_MAX_IN_FLIGHT_BATCHES = 4;
+  static final int DEFAULT_SEARCH_STREAM_HITS_CHUNK_SIZE = 1000;
   private final int port;
   private final int replicationPort;
   private final int replicaReplicationPortPingInterval;
@@ -82,6 +84,13 @@ public class LuceneServerConfiguration {
   private final ThreadPoolConfiguration threadPoolConfiguration;
   private final IndexPreloadConfig preloadConfig;
   private final QueryCacheConfig queryCacheConfig;
+  private final ResultCacheConfig resultCacheConfig;
+  private final GlobalOrdinalsConfig globalOrdinalsConfig;
+  private final TrafficCaptureConfig trafficCaptureConfig;
+  private final BackupCompressionConfig backupCompressionConfig;
+  private final RestoreConfig restoreConfig;
+  private final SegmentUploadConfig segmentUploadConfig;
+  private final NrtPointNotifyConfig nrtPointNotifyConfig;
   private final WarmerConfig warmerConfig;
   private final boolean downloadAsStream;
   private final boolean fileSendDelay;
@@ -99,6 +108,10 @@ public class LuceneServerConfiguration {
   private final int discoveryFileUpdateIntervalMs;
   private final FSTLoadMode completionCodecLoadMode;
   private final boolean filterIncompatibleSegmentReaders;
+  private final boolean columnarFetch;
+  private final boolean pipelinedIndexing;
+  private final int pipelinedIndexingMaxInFlightBatches;
+  private final int searchStreamHitsChunkSize;
 
   private final YamlConfigReader configReader;
   private final long maxConnectionAgeForReplication;
@@ -148,6 +161,13 @@ public class LuceneServerConfiguration {
     backupWithIncArchiver = configReader.getBoolean("backupWithIncArchiver", false);
     preloadConfig = IndexPreloadConfig.fromConfig(configReader);
     queryCacheConfig = QueryCacheConfig.fromConfig(configReader);
+    resultCacheConfig = ResultCacheConfig.fromConfig(configReader);
+    globalOrdinalsConfig = GlobalOrdinalsConfig.fromConfig(configReader);
+    trafficCaptureConfig = TrafficCaptureConfig.fromConfig(configReader);
+    backupCompressionConfig = BackupCompressionConfig.fromConfig(configReader);
+    restoreConfig = RestoreConfig.fromConfig(configReader);
+    segmentUploadConfig = SegmentUploadConfig.fromConfig(configReader);
+    nrtPointNotifyConfig = NrtPointNotifyConfig.fromConfig(configReader);
     warmerConfig = WarmerConfig.fromConfig(configReader);
     downloadAsStream = configReader.getBoolean("downloadAsStream", true);
     fileSendDelay = configReader.getBoolean("fileSendDelay", false);
@@ -172,6 +192,21 @@ public class LuceneServerConfiguration {
         FSTLoadMode.valueOf(configReader.getString("completionCodecLoadMode", "ON_HEAP"));
     filterIncompatibleSegmentReaders =
         configReader.getBoolean("filterIncompatibleSegmentReaders", false);
+    columnarFetch = configReader.getBoolean("columnarFetch", false);
+    pipelinedIndexing = configReader.getBoolean("pipelinedIndexing", false);
+    pipelinedIndexingMaxInFlightBatches =
+        configReader.getInteger(
+            "pipelinedIndexingMaxInFlightBatches",
+            DEFAULT_PIPELINED_INDEXING_MAX_IN_FLIGHT_BATCHES);
+    if (pipelinedIndexingMaxInFlightBatches < 1) {
+      throw new IllegalArgumentException("pipelinedIndexingMaxInFlightBatches must be >= 1");
+    }
+    searchStreamHitsChunkSize =
+        configReader.getInteger(
+            "searchStreamHitsChunkSize", DEFAULT_SEARCH_STREAM_HITS_CHUNK_SIZE);
+    if (searchStreamHitsChunkSize < 1) {
+      throw new IllegalArgumentException("searchStreamHitsChunkSize must be >= 1");
+    }
   }
 
   public ThreadPoolConfiguration getThreadPoolConfiguration() {
@@ -262,6 +297,34 @@ public class LuceneServerConfiguration {
     return queryCacheConfig;
   }
 
+  public ResultCacheConfig getResultCacheConfig() {
+    return resultCacheConfig;
+  }
+
+  public GlobalOrdinalsConfig getGlobalOrdinalsConfig() {
+    return globalOrdinalsConfig;
+  }
+
+  public TrafficCaptureConfig getTrafficCaptureConfig() {
+    return trafficCaptureConfig;
+  }
+
+  public BackupCompressionConfig getBackupCompressionConfig() {
+    return backupCompressionConfig;
+  }
+
+  public RestoreConfig getRestoreConfig() {
+    return restoreConfig;
+  }
+
+  public SegmentUploadConfig getSegmentUploadConfig() {
+    return segmentUploadConfig;
+  }
+
+  public NrtPointNotifyConfig getNrtPointNotifyConfig() {
+    return nrtPointNotifyConfig;
+  }
+
   public WarmerConfig getWarmerConfig() {
     return warmerConfig;
   }
@@ -334,6 +397,22 @@ public class LuceneServerConfiguration {
     return filterIncompatibleSegmentReaders;
   }
 
+  public boolean getColumnarFetch() {
+    return columnarFetch;
+  }
+
+  public boolean getPipelinedIndexing() {
+    return pipelinedIndexing;
+  }
+
+  public int getPipelinedIndexingMaxInFlightBatches() {
+    return pipelinedIndexingMaxInFlightBatches;
+  }
+
+  public int getSearchStreamHitsChunkSize() {
+    return searchStreamHitsChunkSize;
+  }
+
   /**
    * Substitute all sub strings of the form ${FOO} with the environment variable value env[FOO].
    * Variable names may only contain letters, numbers, and underscores. If a variable is not present
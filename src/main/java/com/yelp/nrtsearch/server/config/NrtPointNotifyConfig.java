@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.config;
+
+/**
+ * Class containing configuration for how a primary notifies replicas of new nrt points.
+ * Notifications are sent to all replicas concurrently. A replica that fails to respond is
+ * quarantined, and skipped for new nrt points, for a back off period that doubles with each
+ * consecutive failure.
+ */
+public class NrtPointNotifyConfig {
+  private static final String CONFIG_PREFIX = "nrtPointNotify.";
+  static final long DEFAULT_DEADLINE_MS = 5000;
+  static final long DEFAULT_QUARANTINE_MS = 1000;
+  static final long DEFAULT_MAX_QUARANTINE_MS = 60000;
+
+  private final long deadlineMs;
+  private final long quarantineMs;
+  private final long maxQuarantineMs;
+
+  /**
+   * Create instance from provided configuration reader.
+   *
+   * @param configReader config reader
+   * @return class instance
+   */
+  public static NrtPointNotifyConfig fromConfig(YamlConfigReader configReader) {
+    long deadlineMs = configReader.getLong(CONFIG_PREFIX + "deadlineMs", DEFAULT_DEADLINE_MS);
+    long quarantineMs =
+        configReader.getLong(CONFIG_PREFIX + "quarantineMs", DEFAULT_QUARANTINE_MS);
+    long maxQuarantineMs =
+        configReader.getLong(CONFIG_PREFIX + "maxQuarantineMs", DEFAULT_MAX_QUARANTINE_MS);
+    return new NrtPointNotifyConfig(deadlineMs, quarantineMs, maxQuarantineMs);
+  }
+
+  /** Get config with default values. */
+  public static NrtPointNotifyConfig defaultConfig() {
+    return new NrtPointNotifyConfig(
+        DEFAULT_DEADLINE_MS, DEFAULT_QUARANTINE_MS, DEFAULT_MAX_QUARANTINE_MS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param deadlineMs deadline for each replica notification
+   * @param quarantineMs time a replica is skipped after its first failed notification, 0 disables
+   *     quarantine
+   * @param maxQuarantineMs max time a replica is skipped after consecutive failed notifications
+   */
+  public NrtPointNotifyConfig(long deadlineMs, long quarantineMs, long maxQuarantineMs) {
+    if (deadlineMs <= 0) {
+      throw new IllegalArgumentException("deadlineMs must be > 0");
+    }
+    if (quarantineMs < 0) {
+      throw new IllegalArgumentException("quarantineMs must be >= 0");
+    }
+    if (maxQuarantineMs < quarantineMs) {
+      throw new IllegalArgumentException("maxQuarantineMs must be >= quarantineMs");
+    }
+    this.deadlineMs = deadlineMs;
+    this.quarantineMs = quarantineMs;
+    this.maxQuarantineMs = maxQuarantineMs;
+  }
+
+  /** Get deadline for each replica notification. */
+  public long getDeadlineMs() {
+    return deadlineMs;
+  }
+
+  /** Get time a replica is skipped after its first failed notification. */
+  public long getQuarantineMs() {
+    return quarantineMs;
+  }
+
+  /** Get max time a replica is skipped after consecutive failed notifications. */
+  public long getMaxQuarantineMs() {
+    return maxQuarantineMs;
+  }
+
+  /**
+   * Get the time a replica is skipped after a number of consecutive failed notifications.
+   *
+   * @param consecutiveFailures number of consecutive failures, at least 1
+   * @return quarantine time in ms
+   */
+  public long getQuarantineMs(int consecutiveFailures) {
+    int shift = Math.min(consecutiveFailures - 1, 30);
+    return Math.min(quarantineMs << shift, maxQuarantineMs);
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.config;
+
+import com.yelp.nrtsearch.server.utils.MemoryBudget;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Class containing configuration for downloading and extracting index and state restores. Holds the
+ * {@link MemoryBudget} shared by all restore downloads and extractions using this config.
+ */
+public class RestoreConfig {
+  private static final String CONFIG_PREFIX = "restore.";
+  static final boolean DEFAULT_PARALLEL_DOWNLOAD = false;
+  static final int DEFAULT_PART_CONCURRENCY = 20;
+  static final String DEFAULT_MAX_BUFFERED_BYTES = "256mb";
+  static final int DEFAULT_EXTRACT_THREADS = 1;
+
+  private final boolean parallelDownload;
+  private final int partConcurrency;
+  private final long maxBufferedBytes;
+  private final MemoryBudget memoryBudget;
+  private final String spillDirectory;
+  private final int extractThreads;
+
+  /**
+   * Create instance from provided configuration reader.
+   *
+   * @param configReader config reader
+   * @return class instance
+   */
+  public static RestoreConfig fromConfig(YamlConfigReader configReader) {
+    boolean parallelDownload =
+        configReader.getBoolean(CONFIG_PREFIX + "parallelDownload", DEFAULT_PARALLEL_DOWNLOAD);
+    int partConcurrency =
+        configReader.getInteger(CONFIG_PREFIX + "partConcurrency", DEFAULT_PART_CONCURRENCY);
+    String maxBuffered =
+        configReader.getString(CONFIG_PREFIX + "maxBufferedBytes", DEFAULT_MAX_BUFFERED_BYTES);
+    long maxBufferedBytes = QueryCacheConfig.sizeStrToBytes(maxBuffered);
+    String spillDirectory = configReader.getString(CONFIG_PREFIX + "spillDirectory", "");
+    int extractThreads =
+        configReader.getInteger(CONFIG_PREFIX + "extractThreads", DEFAULT_EXTRACT_THREADS);
+    return new RestoreConfig(
+        parallelDownload, partConcurrency, maxBufferedBytes, spillDirectory, extractThreads);
+  }
+
+  /**
+   * Get config with default values.
+   *
+   * @return default config
+   */
+  public static RestoreConfig defaultConfig() {
+    return new RestoreConfig(
+        DEFAULT_PARALLEL_DOWNLOAD,
+        DEFAULT_PART_CONCURRENCY,
+        QueryCacheConfig.sizeStrToBytes(DEFAULT_MAX_BUFFERED_BYTES),
+        "",
+        DEFAULT_EXTRACT_THREADS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param parallelDownload if streamed downloads should buffer parts concurrently, instead of
+   *     reading each part stream in order
+   * @param partConcurrency max number of object parts downloaded at once
+   * @param maxBufferedBytes max memory shared by buffered downloaded parts and data waiting to be
+   *     written to extracted files
+   * @param spillDirectory directory for downloaded parts that do not fit in memory, or empty to
+   *     use the system temporary directory
+   * @param extractThreads number of threads writing extracted files, 1 writes files on the
+   *     extracting thread
+   */
+  public RestoreConfig(
+      boolean parallelDownload,
+      int partConcurrency,
+      long maxBufferedBytes,
+      String spillDirectory,
+      int extractThreads) {
+    if (partConcurrency <= 0) {
+      throw new IllegalArgumentException("partConcurrency must be > 0");
+    }
+    if (maxBufferedBytes <= 0) {
+      throw new IllegalArgumentException("maxBufferedBytes must be > 0");
+    }
+    if (extractThreads <= 0) {
+      throw new IllegalArgumentException("extractThreads must be > 0");
+    }
+    this.parallelDownload = parallelDownload;
+    this.partConcurrency = partConcurrency;
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.memoryBudget = new MemoryBudget(maxBufferedBytes);
+    this.spillDirectory = spillDirectory;
+    this.extractThreads = extractThreads;
+  }
+
+  /** Get if streamed downloads buffer parts concurrently. */
+  public boolean isParallelDownload() {
+    return parallelDownload;
+  }
+
+  /** Get max number of object parts downloaded at once. */
+  public int getPartConcurrency() {
+    return partConcurrency;
+  }
+
+  /** Get max memory shared by buffered downloaded parts and extracted file data. */
+  public long getMaxBufferedBytes() {
+    return maxBufferedBytes;
+  }
+
+  /** Get the memory budget shared by all restores using this config. */
+  public MemoryBudget getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /** Get directory for parts that do not fit in memory, or empty for the system temp directory. */
+  public String getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  /** Get directory for parts that do not fit in memory, resolving the default directory. */
+  public Path getSpillPath() {
+    return spillDirectory.isEmpty()
+        ? Paths.get(System.getProperty("java.io.tmpdir"))
+        : Paths.get(spillDirectory);
+  }
+
+  /** Get number of threads writing extracted files. */
+  public int getExtractThreads() {
+    return extractThreads;
+  }
+}
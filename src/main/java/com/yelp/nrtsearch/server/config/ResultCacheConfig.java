@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.config;
+
+/** Class containing configuration for the search response cache. */
+public class ResultCacheConfig {
+  private static final String CONFIG_PREFIX = "resultCache.";
+  static final int DEFAULT_MAX_ENTRIES = 1000;
+  static final String DEFAULT_MAX_MEMORY = "64MB";
+
+  private final boolean enabled;
+  private final int maxEntries;
+  private final long maxMemoryBytes;
+
+  /**
+   * Create instance from provided configuration reader.
+   *
+   * @param configReader config reader
+   * @return class instance
+   */
+  public static ResultCacheConfig fromConfig(YamlConfigReader configReader) {
+    boolean enabled = configReader.getBoolean(CONFIG_PREFIX + "enabled", false);
+    int maxEntries = configReader.getInteger(CONFIG_PREFIX + "maxEntries", DEFAULT_MAX_ENTRIES);
+    String maxMemory = configReader.getString(CONFIG_PREFIX + "maxMemory", DEFAULT_MAX_MEMORY);
+    long maxMemoryBytes = QueryCacheConfig.sizeStrToBytes(maxMemory);
+    return new ResultCacheConfig(enabled, maxEntries, maxMemoryBytes);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param enabled toggle for enabling result cache
+   * @param maxEntries max search responses the cache will hold
+   * @param maxMemoryBytes maximum cache memory size
+   */
+  public ResultCacheConfig(boolean enabled, int maxEntries, long maxMemoryBytes) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries must be > 0");
+    }
+    if (maxMemoryBytes <= 0) {
+      throw new IllegalArgumentException("maxMemory must be > 0");
+    }
+    this.enabled = enabled;
+    this.maxEntries = maxEntries;
+    this.maxMemoryBytes = maxMemoryBytes;
+  }
+
+  /** Get if result cache is enabled. */
+  public boolean getEnabled() {
+    return enabled;
+  }
+
+  /** Get maximum number of responses to cache. */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /** Get maximum memory to use for cache. */
+  public long getMaxMemoryBytes() {
+    return maxMemoryBytes;
+  }
+}
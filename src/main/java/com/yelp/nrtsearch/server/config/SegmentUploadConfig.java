@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.config;
+
+/**
+ * Class containing configuration for uploading new index segment files in the background, ahead
+ * of the commit that backs them up. Only used when backing up with the incremental archiver.
+ */
+public class SegmentUploadConfig {
+  private static final String CONFIG_PREFIX = "segmentUpload.";
+  static final boolean DEFAULT_ENABLED = false;
+  static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 2;
+  static final String DEFAULT_MAX_UPLOAD_RATE = "0";
+
+  private final boolean enabled;
+  private final int maxConcurrentUploads;
+  private final long maxUploadRateBytes;
+
+  /**
+   * Create instance from provided configuration reader.
+   *
+   * @param configReader config reader
+   * @return class instance
+   */
+  public static SegmentUploadConfig fromConfig(YamlConfigReader configReader) {
+    boolean enabled = configReader.getBoolean(CONFIG_PREFIX + "enabled", DEFAULT_ENABLED);
+    int maxConcurrentUploads =
+        configReader.getInteger(
+            CONFIG_PREFIX + "maxConcurrentUploads", DEFAULT_MAX_CONCURRENT_UPLOADS);
+    String maxUploadRate =
+        configReader.getString(CONFIG_PREFIX + "maxUploadRate", DEFAULT_MAX_UPLOAD_RATE);
+    long maxUploadRateBytes = QueryCacheConfig.sizeStrToBytes(maxUploadRate);
+    return new SegmentUploadConfig(enabled, maxConcurrentUploads, maxUploadRateBytes);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param enabled if new segment files should be uploaded in the background
+   * @param maxConcurrentUploads max number of files uploaded at once
+   * @param maxUploadRateBytes max average upload rate in bytes per second, or 0 for no limit
+   */
+  public SegmentUploadConfig(boolean enabled, int maxConcurrentUploads, long maxUploadRateBytes) {
+    if (maxConcurrentUploads <= 0) {
+      throw new IllegalArgumentException("maxConcurrentUploads must be > 0");
+    }
+    if (maxUploadRateBytes < 0) {
+      throw new IllegalArgumentException("maxUploadRate must be >= 0");
+    }
+    this.enabled = enabled;
+    this.maxConcurrentUploads = maxConcurrentUploads;
+    this.maxUploadRateBytes = maxUploadRateBytes;
+  }
+
+  /** Get if new segment files should be uploaded in the background. */
+  public boolean getEnabled() {
+    return enabled;
+  }
+
+  /** Get max number of files uploaded at once. */
+  public int getMaxConcurrentUploads() {
+    return maxConcurrentUploads;
+  }
+
+  /** Get max average upload rate in bytes per second, or 0 for no limit. */
+  public long getMaxUploadRateBytes() {
+    return maxUploadRateBytes;
+  }
+}
@@ -18,6 +18,18 @@ package com.yelp.nrtsearch.server.config;
 /** Configuration for various ThreadPool Settings used in nrtsearch */
 public class ThreadPoolConfiguration {
 
+  /** Type of executor to use for a thread pool. */
+  public enum ExecutorMode {
+    /** Fixed size pool of platform threads, with a bounded task queue. */
+    PLATFORM,
+    /**
+     * Thread per task executor using virtual threads. The number of running tasks is limited by a
+     * semaphore sized to the pool virtual concurrency. If the runtime does not support virtual
+     * threads, the {@link #PLATFORM} executor is used instead.
+     */
+    VIRTUAL
+  }
+
   private static final int DEFAULT_MAX_SEARCHING_THREADS =
       ((Runtime.getRuntime().availableProcessors() * 3) / 2) + 1;
   private static final int DEFAULT_MAX_SEARCH_BUFFERED_ITEMS =
@@ -30,17 +42,29 @@ public class ThreadPoolConfiguration {
   private static final int DEFAULT_MAX_INDEXING_BUFFERED_ITEMS =
       Math.max(200, 2 * DEFAULT_MAX_INDEXING_THREADS);
 
+  private static final int DEFAULT_MAX_DOC_PARSING_THREADS = DEFAULT_MAX_INDEXING_THREADS;
+  private static final int DEFAULT_MAX_DOC_PARSING_BUFFERED_ITEMS =
+      DEFAULT_MAX_INDEXING_BUFFERED_ITEMS;
+
   private static final int DEFAULT_MAX_GRPC_LUCENESERVER_THREADS = DEFAULT_MAX_INDEXING_THREADS;
   private static final int DEFAULT_MAX_GRPC_LUCENESERVER_BUFFERED_ITEMS =
       DEFAULT_MAX_INDEXING_BUFFERED_ITEMS;
 
+  private static final int DEFAULT_MAX_SEARCH_STREAM_THREADS =
+      DEFAULT_MAX_GRPC_LUCENESERVER_THREADS;
+  private static final int DEFAULT_MAX_SEARCH_STREAM_BUFFERED_ITEMS =
+      DEFAULT_MAX_GRPC_LUCENESERVER_BUFFERED_ITEMS;
+
   private static final int DEFAULT_MAX_GRPC_REPLICATIONSERVER_THREADS =
       DEFAULT_MAX_INDEXING_THREADS;
   private static final int DEFAULT_MAX_GRPC_REPLICATIONSERVER_BUFFERED_ITEMS =
       DEFAULT_MAX_INDEXING_BUFFERED_ITEMS;
 
+  public static final int DEFAULT_VIRTUAL_CONCURRENCY_MULTIPLIER = 10;
+
   public static final int DEFAULT_MIN_PARALLEL_FETCH_NUM_FIELDS = 20;
   public static final int DEFAULT_MIN_PARALLEL_FETCH_NUM_HITS = 50;
+  public static final int DEFAULT_MIN_PARALLEL_FETCH_TASK_COST = 1000;
 
   private final int maxSearchingThreads;
   private final int maxSearchBufferedItems;
@@ -49,16 +73,40 @@ public class ThreadPoolConfiguration {
   private final int minParallelFetchNumFields;
   private final int minParallelFetchNumHits;
   private final boolean parallelFetchByField;
+  private final boolean segmentParallelFetch;
+  private final int minParallelFetchTaskCost;
 
   private final int maxIndexingThreads;
   private final int maxIndexingBufferedItems;
 
+  private final int maxDocParsingThreads;
+  private final int maxDocParsingBufferedItems;
+
   private final int maxGrpcLuceneserverThreads;
   private final int maxGrpcLuceneserverBufferedItems;
 
   private final int maxGrpcReplicationserverThreads;
   private final int maxGrpcReplicationserverBufferedItems;
 
+  private final int maxSearchStreamThreads;
+  private final int maxSearchStreamBufferedItems;
+
+  private final ExecutorMode searchExecutorMode;
+  private final ExecutorMode fetchExecutorMode;
+  private final ExecutorMode indexingExecutorMode;
+  private final ExecutorMode docParsingExecutorMode;
+  private final ExecutorMode grpcLuceneserverExecutorMode;
+  private final ExecutorMode grpcReplicationserverExecutorMode;
+  private final ExecutorMode searchStreamExecutorMode;
+
+  private final int searchVirtualConcurrency;
+  private final int fetchVirtualConcurrency;
+  private final int indexingVirtualConcurrency;
+  private final int docParsingVirtualConcurrency;
+  private final int grpcLuceneserverVirtualConcurrency;
+  private final int grpcReplicationserverVirtualConcurrency;
+  private final int searchStreamVirtualConcurrency;
+
   public ThreadPoolConfiguration(YamlConfigReader configReader) {
     maxSearchingThreads =
         configReader.getInteger(
@@ -78,6 +126,12 @@ public class ThreadPoolConfiguration {
             "threadPoolConfiguration.minParallelFetchNumHits", DEFAULT_MIN_PARALLEL_FETCH_NUM_HITS);
     parallelFetchByField =
         configReader.getBoolean("threadPoolConfiguration.parallelFetchByField", true);
+    segmentParallelFetch =
+        configReader.getBoolean("threadPoolConfiguration.segmentParallelFetch", false);
+    minParallelFetchTaskCost =
+        configReader.getInteger(
+            "threadPoolConfiguration.minParallelFetchTaskCost",
+            DEFAULT_MIN_PARALLEL_FETCH_TASK_COST);
 
     maxIndexingThreads =
         configReader.getInteger(
@@ -87,6 +141,14 @@ public class ThreadPoolConfiguration {
             "threadPoolConfiguration.maxIndexingBufferedItems",
             DEFAULT_MAX_INDEXING_BUFFERED_ITEMS);
 
+    maxDocParsingThreads =
+        configReader.getInteger(
+            "threadPoolConfiguration.maxDocParsingThreads", DEFAULT_MAX_DOC_PARSING_THREADS);
+    maxDocParsingBufferedItems =
+        configReader.getInteger(
+            "threadPoolConfiguration.maxDocParsingBufferedItems",
+            DEFAULT_MAX_DOC_PARSING_BUFFERED_ITEMS);
+
     maxGrpcLuceneserverThreads =
         configReader.getInteger(
             "threadPoolConfiguration.maxGrpcLuceneserverThreads",
@@ -104,6 +166,55 @@ public class ThreadPoolConfiguration {
         configReader.getInteger(
             "threadPoolConfiguration.maxGrpcReplicationserverBufferedItems",
             DEFAULT_MAX_GRPC_REPLICATIONSERVER_BUFFERED_ITEMS);
+
+    maxSearchStreamThreads =
+        configReader.getInteger(
+            "threadPoolConfiguration.maxSearchStreamThreads", DEFAULT_MAX_SEARCH_STREAM_THREADS);
+    maxSearchStreamBufferedItems =
+        configReader.getInteger(
+            "threadPoolConfiguration.maxSearchStreamBufferedItems",
+            DEFAULT_MAX_SEARCH_STREAM_BUFFERED_ITEMS);
+
+    searchExecutorMode = getExecutorMode(configReader, "searchExecutorMode");
+    fetchExecutorMode = getExecutorMode(configReader, "fetchExecutorMode");
+    indexingExecutorMode = getExecutorMode(configReader, "indexingExecutorMode");
+    docParsingExecutorMode = getExecutorMode(configReader, "docParsingExecutorMode");
+    grpcLuceneserverExecutorMode = getExecutorMode(configReader, "grpcLuceneserverExecutorMode");
+    grpcReplicationserverExecutorMode =
+        getExecutorMode(configReader, "grpcReplicationserverExecutorMode");
+    searchStreamExecutorMode = getExecutorMode(configReader, "searchStreamExecutorMode");
+
+    searchVirtualConcurrency =
+        getVirtualConcurrency(configReader, "searchVirtualConcurrency", maxSearchingThreads);
+    fetchVirtualConcurrency =
+        getVirtualConcurrency(configReader, "fetchVirtualConcurrency", maxFetchThreads);
+    indexingVirtualConcurrency =
+        getVirtualConcurrency(configReader, "indexingVirtualConcurrency", maxIndexingThreads);
+    docParsingVirtualConcurrency =
+        getVirtualConcurrency(configReader, "docParsingVirtualConcurrency", maxDocParsingThreads);
+    grpcLuceneserverVirtualConcurrency =
+        getVirtualConcurrency(
+            configReader, "grpcLuceneserverVirtualConcurrency", maxGrpcLuceneserverThreads);
+    grpcReplicationserverVirtualConcurrency =
+        getVirtualConcurrency(
+            configReader,
+            "grpcReplicationserverVirtualConcurrency",
+            maxGrpcReplicationserverThreads);
+    searchStreamVirtualConcurrency =
+        getVirtualConcurrency(
+            configReader, "searchStreamVirtualConcurrency", maxSearchStreamThreads);
+  }
+
+  private static int getVirtualConcurrency(
+      YamlConfigReader configReader, String key, int poolThreads) {
+    return configReader.getInteger(
+        "threadPoolConfiguration." + key, poolThreads * DEFAULT_VIRTUAL_CONCURRENCY_MULTIPLIER);
+  }
+
+  private static ExecutorMode getExecutorMode(YamlConfigReader configReader, String key) {
+    String modeString =
+        configReader.getString("threadPoolConfiguration." + key, ExecutorMode.PLATFORM.name());
+    return ExecutorMode.valueOf(modeString.toUpperCase());
   }
 
   public int getMaxSearchingThreads() {
@@ -130,6 +241,14 @@ public class ThreadPoolConfiguration {
     return parallelFetchByField;
   }
 
+  public boolean getSegmentParallelFetch() {
+    return segmentParallelFetch;
+  }
+
+  public int getMinParallelFetchTaskCost() {
+    return minParallelFetchTaskCost;
+  }
+
   public int getMaxIndexingThreads() {
     return maxIndexingThreads;
   }
@@ -138,6 +257,14 @@ public class ThreadPoolConfiguration {
     return maxIndexingBufferedItems;
   }
 
+  public int getMaxDocParsingThreads() {
+    return maxDocParsingThreads;
+  }
+
+  public int getMaxDocParsingBufferedItems() {
+    return maxDocParsingBufferedItems;
+  }
+
   public int getMaxGrpcLuceneserverThreads() {
     return maxGrpcLuceneserverThreads;
   }
@@ -153,4 +280,68 @@ public class ThreadPoolConfiguration {
   public int getMaxGrpcReplicationserverBufferedItems() {
     return maxGrpcReplicationserverBufferedItems;
   }
+
+  public int getMaxSearchStreamThreads() {
+    return maxSearchStreamThreads;
+  }
+
+  public int getMaxSearchStreamBufferedItems() {
+    return maxSearchStreamBufferedItems;
+  }
+
+  public ExecutorMode getSearchExecutorMode() {
+    return searchExecutorMode;
+  }
+
+  public ExecutorMode getFetchExecutorMode() {
+    return fetchExecutorMode;
+  }
+
+  public ExecutorMode getIndexingExecutorMode() {
+    return indexingExecutorMode;
+  }
+
+  public ExecutorMode getDocParsingExecutorMode() {
+    return docParsingExecutorMode;
+  }
+
+  public ExecutorMode getGrpcLuceneserverExecutorMode() {
+    return grpcLuceneserverExecutorMode;
+  }
+
+  public ExecutorMode getGrpcReplicationserverExecutorMode() {
+    return grpcReplicationserverExecutorMode;
+  }
+
+  public ExecutorMode getSearchStreamExecutorMode() {
+    return searchStreamExecutorMode;
+  }
+
+  public int getSearchVirtualConcurrency() {
+    return searchVirtualConcurrency;
+  }
+
+  public int getFetchVirtualConcurrency() {
+    return fetchVirtualConcurrency;
+  }
+
+  public int getIndexingVirtualConcurrency() {
+    return indexingVirtualConcurrency;
+  }
+
+  public int getDocParsingVirtualConcurrency() {
+    return docParsingVirtualConcurrency;
+  }
+
+  public int getGrpcLuceneserverVirtualConcurrency() {
+    return grpcLuceneserverVirtualConcurrency;
+  }
+
+  public int getGrpcReplicationserverVirtualConcurrency() {
+    return grpcReplicationserverVirtualConcurrency;
+  }
+
+  public int getSearchStreamVirtualConcurrency() {
+    return searchStreamVirtualConcurrency;
+  }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.config;
+
+/** Class containing configuration for capturing server request traffic to a local log. */
+public class TrafficCaptureConfig {
+  private static final String CONFIG_PREFIX = "trafficCapture.";
+  static final boolean DEFAULT_ENABLED = false;
+  static final String DEFAULT_DIRECTORY = "";
+  static final double DEFAULT_SAMPLE_RATE = 1.0;
+  static final boolean DEFAULT_CAPTURE_INDEXING = true;
+  static final String DEFAULT_MAX_FILE_SIZE = "100mb";
+  static final int DEFAULT_MAX_FILES = 10;
+  static final int DEFAULT_MAX_QUEUED_REQUESTS = 10000;
+
+  private final boolean enabled;
+  private final String directory;
+  private final double sampleRate;
+  private final boolean captureIndexing;
+  private final long maxFileSizeBytes;
+  private final int maxFiles;
+  private final int maxQueuedRequests;
+
+  /**
+   * Create instance from provided configuration reader.
+   *
+   * @param configReader config reader
+   * @return class instance
+   */
+  public static TrafficCaptureConfig fromConfig(YamlConfigReader configReader) {
+    boolean enabled = configReader.getBoolean(CONFIG_PREFIX + "enabled", DEFAULT_ENABLED);
+    String directory = configReader.getString(CONFIG_PREFIX + "directory", DEFAULT_DIRECTORY);
+    double sampleRate = configReader.getDouble(CONFIG_PREFIX + "sampleRate", DEFAULT_SAMPLE_RATE);
+    boolean captureIndexing =
+        configReader.getBoolean(CONFIG_PREFIX + "captureIndexing", DEFAULT_CAPTURE_INDEXING);
+    String maxFileSize =
+        configReader.getString(CONFIG_PREFIX + "maxFileSize", DEFAULT_MAX_FILE_SIZE);
+    long maxFileSizeBytes = QueryCacheConfig.sizeStrToBytes(maxFileSize);
+    int maxFiles = configReader.getInteger(CONFIG_PREFIX + "maxFiles", DEFAULT_MAX_FILES);
+    int maxQueuedRequests =
+        configReader.getInteger(CONFIG_PREFIX + "maxQueuedRequests", DEFAULT_MAX_QUEUED_REQUESTS);
+    return new TrafficCaptureConfig(
+        enabled,
+        directory,
+        sampleRate,
+        captureIndexing,
+        maxFileSizeBytes,
+        maxFiles,
+        maxQueuedRequests);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param enabled if traffic capture is enabled
+   * @param directory directory to write capture log files
+   * @param sampleRate fraction of search requests and indexing streams to capture
+   * @param captureIndexing if add document streams should be captured
+   * @param maxFileSizeBytes size at which the capture log is rotated to a new file
+   * @param maxFiles max number of capture log files to keep, oldest files are deleted first
+   * @param maxQueuedRequests max number of requests waiting to be written, requests are dropped
+   *     when the queue is full
+   */
+  public TrafficCaptureConfig(
+      boolean enabled,
+      String directory,
+      double sampleRate,
+      boolean captureIndexing,
+      long maxFileSizeBytes,
+      int maxFiles,
+      int maxQueuedRequests) {
+    if (enabled) {
+      if (directory == null || directory.isEmpty()) {
+        throw new IllegalArgumentException("directory must be set when traffic capture is enabled");
+      }
+      if (sampleRate <= 0 || sampleRate > 1) {
+        throw new IllegalArgumentException("sampleRate must be in (0, 1]");
+      }
+      if (maxFileSizeBytes <= 0) {
+        throw new IllegalArgumentException("maxFileSize must be > 0");
+      }
+      if (maxFiles <= 0) {
+        throw new IllegalArgumentException("maxFiles must be > 0");
+      }
+      if (maxQueuedRequests <= 0) {
+        throw new IllegalArgumentException("maxQueuedRequests must be > 0");
+      }
+    }
+    this.enabled = enabled;
+    this.directory = directory;
+    this.sampleRate = sampleRate;
+    this.captureIndexing = captureIndexing;
+    this.maxFileSizeBytes = maxFileSizeBytes;
+    this.maxFiles = maxFiles;
+    this.maxQueuedRequests = maxQueuedRequests;
+  }
+
+  /** Get if traffic capture is enabled. */
+  public boolean getEnabled() {
+    return enabled;
+  }
+
+  /** Get directory to write capture log files. */
+  public String getDirectory() {
+    return directory;
+  }
+
+  /** Get fraction of search requests and indexing streams to capture. */
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  /** Get if add document streams should be captured. */
+  public boolean getCaptureIndexing() {
+    return captureIndexing;
+  }
+
+  /** Get size at which the capture log is rotated to a new file. */
+  public long getMaxFileSizeBytes() {
+    return maxFileSizeBytes;
+  }
+
+  /** Get max number of capture log files to keep. */
+  public int getMaxFiles() {
+    return maxFiles;
+  }
+
+  /** Get max number of requests waiting to be written. */
+  public int getMaxQueuedRequests() {
+    return maxQueuedRequests;
+  }
+}
@@ -28,18 +28,19 @@ import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.name.Named;
 import com.google.protobuf.Any;
-import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
 import com.yelp.nrtsearch.LuceneServerModule;
 import com.yelp.nrtsearch.server.MetricsRequestHandler;
 import com.yelp.nrtsearch.server.backup.Archiver;
+import com.yelp.nrtsearch.server.config.FileCopyConfig;
 import com.yelp.nrtsearch.server.config.LuceneServerConfiguration;
 import com.yelp.nrtsearch.server.config.QueryCacheConfig;
 import com.yelp.nrtsearch.server.luceneserver.*;
 import com.yelp.nrtsearch.server.luceneserver.AddDocumentHandler.DocumentIndexer;
 import com.yelp.nrtsearch.server.luceneserver.analysis.AnalyzerCreator;
+import com.yelp.nrtsearch.server.luceneserver.capture.TrafficCapture;
 import com.yelp.nrtsearch.server.luceneserver.custom.request.CustomRequestProcessor;
 import com.yelp.nrtsearch.server.luceneserver.field.FieldDefCreator;
 import com.yelp.nrtsearch.server.luceneserver.index.IndexStateManager;
@@ -49,7 +50,9 @@ import com.yelp.nrtsearch.server.luceneserver.index.handlers.SettingsV2Handler;
 import com.yelp.nrtsearch.server.luceneserver.rescore.RescorerCreator;
 import com.yelp.nrtsearch.server.luceneserver.script.ScriptService;
 import com.yelp.nrtsearch.server.luceneserver.search.FetchTaskCreator;
+import com.yelp.nrtsearch.server.luceneserver.search.cache.GlobalOrdinalLookupCache;
 import com.yelp.nrtsearch.server.luceneserver.search.cache.NrtQueryCache;
+import com.yelp.nrtsearch.server.luceneserver.search.cache.SearchResultCache;
 import com.yelp.nrtsearch.server.luceneserver.search.collectors.CollectorCreator;
 import com.yelp.nrtsearch.server.luceneserver.similarity.SimilarityCreator;
 import com.yelp.nrtsearch.server.luceneserver.warming.Warmer;
@@ -81,8 +84,6 @@ import java.util.stream.Collectors;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.QueryCache;
 import org.apache.lucene.search.suggest.document.CompletionPostingsFormatUtil;
-import org.apache.lucene.store.IOContext;
-import org.apache.lucene.store.IndexInput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -208,6 +209,7 @@ public class LuceneServer {
       replicationServer.shutdown();
     }
     pluginsService.shutdown();
+    TrafficCapture.getInstance().close();
   }
 
   /** Await termination on the main thread since the grpc library uses daemon threads. */
@@ -235,8 +237,20 @@ public class LuceneServer {
     IndexMetrics.register(collectorRegistry);
     // register query cache metrics
     new QueryCacheCollector().register(collectorRegistry);
+    // register search result cache metrics
+    new SearchResultCacheCollector().register(collectorRegistry);
+    // register global ordinal cache metrics
+    new GlobalOrdinalCacheCollector().register(collectorRegistry);
     // register deadline cancellation metrics
     DeadlineMetrics.register(collectorRegistry);
+    // register warming metrics
+    WarmingMetrics.register(collectorRegistry);
+    // register traffic capture metrics
+    TrafficCaptureMetrics.register(collectorRegistry);
+    // register backup compression metrics
+    BackupCompressionMetrics.register(collectorRegistry);
+    // register segment upload metrics
+    SegmentUploadMetrics.register(collectorRegistry);
     // register directory size metrics
     new DirSizeCollector(globalState).register(collectorRegistry);
   }
@@ -319,6 +333,9 @@ public class LuceneServer {
           configuration.getCompletionCodecLoadMode());
 
       initQueryCache(configuration);
+      SearchResultCache.initialize(configuration.getResultCacheConfig());
+      GlobalOrdinalLookupCache.initialize(configuration.getGlobalOrdinalsConfig());
+      TrafficCapture.initialize(configuration.getTrafficCaptureConfig());
       initExtendableComponents(configuration, plugins);
 
       this.globalState = GlobalState.createState(configuration, incArchiver, archiver);
@@ -718,7 +735,21 @@ public class LuceneServer {
     @Override
     public StreamObserver<AddDocumentRequest> addDocuments(
         StreamObserver<AddDocumentResponse> responseObserver) {
+      StreamObserver<AddDocumentRequest> requestObserver;
+      if (globalState.getConfiguration().getPipelinedIndexing()) {
+        requestObserver =
+            new PipelinedAddDocumentsObserver(
+                globalState,
+                (ServerCallStreamObserver<AddDocumentResponse>) responseObserver,
+                globalState.getConfiguration().getPipelinedIndexingMaxInFlightBatches());
+      } else {
+        requestObserver = createAddDocumentsObserver(responseObserver);
+      }
+      return TrafficCapture.getInstance().captureAddDocuments(requestObserver);
+    }
 
+    private StreamObserver<AddDocumentRequest> createAddDocumentsObserver(
+        StreamObserver<AddDocumentResponse> responseObserver) {
       return new StreamObserver<>() {
         Multimap<String, Future<Long>> futures = HashMultimap.create();
         // Map of {indexName: addDocumentRequestQueue}
@@ -901,7 +932,7 @@ public class LuceneServer {
         StreamObserver<RefreshResponse> refreshResponseStreamObserver) {
       try {
         IndexState indexState = globalState.getIndex(refreshRequest.getIndexName());
-        final ShardState shardState = indexState.getShard(0);
+        final ShardState shardState = indexState.getSearchShard();
         long t0 = System.nanoTime();
         shardState.maybeRefreshBlocking();
         long t1 = System.nanoTime();
@@ -948,12 +979,18 @@ public class LuceneServer {
                     () -> {
                       try {
                         IndexState indexState = globalState.getIndex(commitRequest.getIndexName());
-                        long gen = indexState.commit(backupFromIncArchiver);
-                        CommitResponse reply =
+                        long[] gens = indexState.commitShards(backupFromIncArchiver);
+                        long gen = gens[0];
+                        CommitResponse.Builder replyBuilder =
                             CommitResponse.newBuilder()
                                 .setGen(gen)
-                                .setPrimaryId(globalState.getEphemeralId())
-                                .build();
+                                .setPrimaryId(globalState.getEphemeralId());
+                        if (gens.length > 1) {
+                          for (long shardGen : gens) {
+                            replyBuilder.addShardGens(shardGen);
+                          }
+                        }
+                        CommitResponse reply = replyBuilder.build();
                         logger.debug(
                             String.format(
                                 "CommitHandler committed to index: %s for sequenceId: %s",
@@ -1049,6 +1086,7 @@ public class LuceneServer {
         IndexState indexState = globalState.getIndex(searchRequest.getIndexName());
         setResponseCompression(
             searchRequest.getResponseCompression(), searchResponseStreamObserver);
+        TrafficCapture.getInstance().captureSearch(searchRequest);
         SearchHandler searchHandler = new SearchHandler(searchThreadPoolExecutor);
         SearchResponse reply = searchHandler.handle(indexState, searchRequest);
         searchResponseStreamObserver.onNext(reply);
@@ -1144,6 +1182,94 @@ public class LuceneServer {
       }
     }
 
+    @Override
+    public void searchStream(
+        SearchRequest searchRequest, StreamObserver<SearchResponse> searchResponseStreamObserver) {
+      SearchHandler.StreamFlowControl flowControl =
+          searchResponseStreamObserver instanceof ServerCallStreamObserver
+              ? new SearchHandler.StreamFlowControl(
+                  (ServerCallStreamObserver<SearchResponse>) searchResponseStreamObserver)
+              : null;
+      // flow control callbacks are delivered on this thread, so the search must run elsewhere
+      try {
+        globalState
+            .getSearchStreamService()
+            .execute(
+                Context.current()
+                    .wrap(
+                        () ->
+                            doSearchStream(
+                                searchRequest, searchResponseStreamObserver, flowControl)));
+      } catch (RejectedExecutionException e) {
+        logger.error(
+            "Threadpool is full, unable to submit searchStream for index {}",
+            searchRequest.getIndexName());
+        searchResponseStreamObserver.onError(
+            Status.RESOURCE_EXHAUSTED
+                .withDescription(
+                    "Threadpool is full, unable to submit searchStream for index: "
+                        + searchRequest.getIndexName())
+                .augmentDescription(e.getMessage())
+                .asRuntimeException());
+      }
+    }
+
+    private void doSearchStream(
+        SearchRequest searchRequest,
+        StreamObserver<SearchResponse> searchResponseStreamObserver,
+        SearchHandler.StreamFlowControl flowControl) {
+      try {
+        IndexState indexState = globalState.getIndex(searchRequest.getIndexName());
+        setResponseCompression(
+            searchRequest.getResponseCompression(), searchResponseStreamObserver);
+        SearchHandler searchHandler = new SearchHandler(searchThreadPoolExecutor);
+        searchHandler.handleStream(
+            indexState,
+            searchRequest,
+            searchResponseStreamObserver,
+            flowControl,
+            globalState.getConfiguration().getSearchStreamHitsChunkSize());
+        searchResponseStreamObserver.onCompleted();
+      } catch (IOException e) {
+        logger.warn(
+            "error while trying to read index state dir for indexName: "
+                + searchRequest.getIndexName(),
+            e);
+        searchResponseStreamObserver.onError(
+            Status.INTERNAL
+                .withDescription(
+                    "error while trying to read index state dir for indexName: "
+                        + searchRequest.getIndexName())
+                .augmentDescription(e.getMessage())
+                .withCause(e)
+                .asRuntimeException());
+      } catch (Exception e) {
+        String searchRequestJson = null;
+        try {
+          searchRequestJson = protoMessagePrinter.print(searchRequest);
+        } catch (InvalidProtocolBufferException ignored) {
+          // Ignore as invalid proto would have thrown an exception earlier
+        }
+        logger.warn(
+            String.format(
+                "error while trying to execute searchStream for index %s: request: %s",
+                searchRequest.getIndexName(), searchRequestJson),
+            e);
+        if (e instanceof StatusRuntimeException) {
+          searchResponseStreamObserver.onError(e);
+        } else {
+          searchResponseStreamObserver.onError(
+              Status.UNKNOWN
+                  .withDescription(
+                      String.format(
+                          "error while trying to execute searchStream for index %s. check logs for full searchRequest.",
+                          searchRequest.getIndexName()))
+                  .augmentDescription(e.getMessage())
+                  .asRuntimeException());
+        }
+      }
+    }
+
     @Override
     public void delete(
         AddDocumentRequest addDocumentRequest,
@@ -1519,12 +1645,16 @@ public class LuceneServer {
         StreamObserver<GetAllSnapshotGenResponse> responseObserver) {
       try {
         Set<Long> snapshotGens =
-            globalState.getIndex(request.getIndexName()).getShard(0).snapshotGenToVersion.keySet();
+            globalState
+                .getIndex(request.getIndexName())
+                .getSingleShard("Snapshot")
+                .snapshotGenToVersion
+                .keySet();
         GetAllSnapshotGenResponse response =
             GetAllSnapshotGenResponse.newBuilder().addAllIndexGens(snapshotGens).build();
         responseObserver.onNext(response);
         responseObserver.onCompleted();
-      } catch (IOException e) {
+      } catch (IOException | IllegalStateException e) {
         logger.error(
             "Error getting all snapshotted index gens for index: {}", request.getIndexName(), e);
         responseObserver.onError(e);
@@ -1938,24 +2068,19 @@ public class LuceneServer {
         FileInfo fileInfoRequest, StreamObserver<RawFileChunk> rawFileChunkStreamObserver) {
       try {
         IndexState indexState = globalState.getIndex(fileInfoRequest.getIndexName());
-        ShardState shardState = indexState.getShard(0);
-        try (IndexInput luceneFile =
-            shardState.indexDir.openInput(fileInfoRequest.getFileName(), IOContext.DEFAULT)) {
-          long len = luceneFile.length();
-          long pos = fileInfoRequest.getFpStart();
-          luceneFile.seek(pos);
-          byte[] buffer = new byte[1024 * 64];
-          long totalRead;
-          totalRead = pos;
-          while (totalRead < len) {
-            int chunkSize = (int) Math.min(buffer.length, (len - totalRead));
-            luceneFile.readBytes(buffer, 0, chunkSize);
+        ShardState shardState = indexState.getSingleShard("File copy");
+        FileCopyConfig fileCopyConfig = globalState.getConfiguration().getFileCopyConfig();
+        try (FileChunkReader fileChunkReader =
+            FileChunkReader.open(
+                shardState.indexDir,
+                fileInfoRequest.getFileName(),
+                fileInfoRequest.getFpStart(),
+                fileCopyConfig.getChunkSize(),
+                fileCopyConfig.getZeroCopy())) {
+          while (fileChunkReader.hasRemaining()) {
             RawFileChunk rawFileChunk =
-                RawFileChunk.newBuilder()
-                    .setContent(ByteString.copyFrom(buffer, 0, chunkSize))
-                    .build();
+                RawFileChunk.newBuilder().setContent(fileChunkReader.nextChunk()).build();
             rawFileChunkStreamObserver.onNext(rawFileChunk);
-            totalRead += chunkSize;
             if (globalState.getConfiguration().getFileSendDelay()) {
               randomDelay(ThreadLocalRandom.current());
             }
@@ -1978,16 +2103,13 @@ public class LuceneServer {
         StreamObserver<RawFileChunk> rawFileChunkStreamObserver) {
       return new StreamObserver<>() {
         private IndexState indexState;
-        private IndexInput luceneFile;
-        private byte[] buffer;
+        private FileChunkReader fileChunkReader;
         private final int ackEvery =
             globalState.getConfiguration().getFileCopyConfig().getAckEvery();
         private final int maxInflight =
             globalState.getConfiguration().getFileCopyConfig().getMaxInFlight();
         private int lastAckedSeq = 0;
         private int currentSeq = 0;
-        private long fileOffset;
-        private long fileLength;
 
         @Override
         public void onNext(FileInfo fileInfoRequest) {
@@ -1995,17 +2117,19 @@ public class LuceneServer {
             if (indexState == null) {
               // Start transfer
               indexState = globalState.getIndex(fileInfoRequest.getIndexName());
-              ShardState shardState = indexState.getShard(0);
+              ShardState shardState = indexState.getSingleShard("File copy");
               if (shardState == null) {
                 throw new IllegalStateException(
                     "Error getting shard state for: " + fileInfoRequest.getIndexName());
               }
-              luceneFile =
-                  shardState.indexDir.openInput(fileInfoRequest.getFileName(), IOContext.DEFAULT);
-              luceneFile.seek(fileInfoRequest.getFpStart());
-              fileOffset = fileInfoRequest.getFpStart();
-              fileLength = luceneFile.length();
-              buffer = new byte[globalState.getConfiguration().getFileCopyConfig().getChunkSize()];
+              FileCopyConfig fileCopyConfig = globalState.getConfiguration().getFileCopyConfig();
+              fileChunkReader =
+                  FileChunkReader.open(
+                      shardState.indexDir,
+                      fileInfoRequest.getFileName(),
+                      fileInfoRequest.getFpStart(),
+                      fileCopyConfig.getChunkSize(),
+                      fileCopyConfig.getZeroCopy());
             } else {
               // ack existing transfer
               lastAckedSeq = fileInfoRequest.getAckSeqNum();
@@ -2014,19 +2138,16 @@ public class LuceneServer {
                     "Invalid ackSeqNum: " + fileInfoRequest.getAckSeqNum());
               }
             }
-            while (fileOffset < fileLength && (currentSeq - lastAckedSeq) < maxInflight) {
-              int chunkSize = (int) Math.min(buffer.length, (fileLength - fileOffset));
-              luceneFile.readBytes(buffer, 0, chunkSize);
+            while (fileChunkReader.hasRemaining() && (currentSeq - lastAckedSeq) < maxInflight) {
               currentSeq++;
               RawFileChunk rawFileChunk =
                   RawFileChunk.newBuilder()
-                      .setContent(ByteString.copyFrom(buffer, 0, chunkSize))
+                      .setContent(fileChunkReader.nextChunk())
                       .setSeqNum(currentSeq)
                       .setAck((currentSeq % ackEvery) == 0)
                       .build();
               rawFileChunkStreamObserver.onNext(rawFileChunk);
-              fileOffset += chunkSize;
-              if (fileOffset == fileLength) {
+              if (!fileChunkReader.hasRemaining()) {
                 rawFileChunkStreamObserver.onCompleted();
               }
             }
@@ -2053,13 +2174,13 @@ public class LuceneServer {
         }
 
         private void maybeCloseFile() {
-          if (luceneFile != null) {
+          if (fileChunkReader != null) {
             try {
-              luceneFile.close();
+              fileChunkReader.close();
             } catch (IOException e) {
               logger.warn("Error closing index file", e);
             }
-            luceneFile = null;
+            fileChunkReader = null;
           }
         }
       };
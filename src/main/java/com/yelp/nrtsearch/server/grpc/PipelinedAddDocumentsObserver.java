@@ -0,0 +1,242 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.grpc;
+
+import com.yelp.nrtsearch.server.luceneserver.AddDocumentHandler.DocumentIndexer;
+import com.yelp.nrtsearch.server.luceneserver.AddDocumentHandler.DocumentsContext;
+import com.yelp.nrtsearch.server.luceneserver.GlobalState;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Request observer for the addDocuments stream that pipelines document conversion and indexing.
+ * Requests are grouped into batches of the index addDocumentsMaxBufferLen. Each full batch is
+ * converted into lucene documents on the doc parsing executor, and then handed off to the indexing
+ * executor to be added to the index writer.
+ *
+ * <p>Flow control is applied to the gRPC stream. Only a limited number of batches may be in flight
+ * at one time, additional messages are not requested from the client until a batch completes. This
+ * bounds the memory used by a stream, regardless of how fast the client sends requests.
+ */
+public class PipelinedAddDocumentsObserver implements StreamObserver<AddDocumentRequest> {
+  private static final Logger logger = LoggerFactory.getLogger(PipelinedAddDocumentsObserver.class);
+
+  private final GlobalState globalState;
+  private final ServerCallStreamObserver<AddDocumentResponse> responseObserver;
+  private final int maxInFlightBatches;
+
+  // Map of {indexName: current batch}
+  private final Map<String, List<AddDocumentRequest>> batchMap = new HashMap<>();
+  // Map of {indexName: max indexed sequence number}, insertion ordered
+  private final Map<String, Long> indexGenMap = new LinkedHashMap<>();
+  private int inFlightBatches = 0;
+  private boolean waitingForBatch = false;
+  // client has completed the request stream, respond once in flight batches are indexed
+  private boolean streamCompleted = false;
+  private boolean finished = false;
+
+  /**
+   * Constructor. Disables automatic flow control on the response observer, so must be called
+   * before returning from the service method.
+   *
+   * @param globalState global state
+   * @param responseObserver response observer for the addDocuments call
+   * @param maxInFlightBatches max number of batches being converted or indexed at one time
+   */
+  public PipelinedAddDocumentsObserver(
+      GlobalState globalState,
+      ServerCallStreamObserver<AddDocumentResponse> responseObserver,
+      int maxInFlightBatches) {
+    this.globalState = globalState;
+    this.responseObserver = responseObserver;
+    this.maxInFlightBatches = maxInFlightBatches;
+    responseObserver.disableAutoRequest();
+    responseObserver.request(1);
+  }
+
+  private int getAddDocumentsMaxBufferLen(String indexName) {
+    try {
+      return globalState.getIndex(indexName).getAddDocumentsMaxBufferLen();
+    } catch (Exception e) {
+      String error = String.format("Index %s does not exist, unable to add documents", indexName);
+      logger.error(error, e);
+      throw Status.INVALID_ARGUMENT.withDescription(error).withCause(e).asRuntimeException();
+    }
+  }
+
+  @Override
+  public void onNext(AddDocumentRequest addDocumentRequest) {
+    String indexName = addDocumentRequest.getIndexName();
+    synchronized (this) {
+      if (finished) {
+        return;
+      }
+      List<AddDocumentRequest> batch = batchMap.get(indexName);
+      int maxBufferLen;
+      try {
+        maxBufferLen = getAddDocumentsMaxBufferLen(indexName);
+      } catch (Exception e) {
+        finishWithError(e);
+        return;
+      }
+      if (batch == null) {
+        batch = new ArrayList<>(maxBufferLen);
+        batchMap.put(indexName, batch);
+      }
+      batch.add(addDocumentRequest);
+      if (batch.size() >= maxBufferLen) {
+        batchMap.put(indexName, new ArrayList<>(maxBufferLen));
+        submitBatch(indexName, batch);
+      }
+      if (inFlightBatches < maxInFlightBatches) {
+        responseObserver.request(1);
+      } else {
+        logger.debug("Max in flight batches reached, pausing addDocuments stream");
+        waitingForBatch = true;
+      }
+    }
+  }
+
+  /** Submit batch to be converted and indexed, must be called while holding the lock. */
+  private void submitBatch(String indexName, List<AddDocumentRequest> batch) {
+    DocumentIndexer documentIndexer = new DocumentIndexer(globalState, batch, indexName);
+    indexGenMap.putIfAbsent(indexName, -1L);
+    CompletableFuture<List<DocumentsContext>> parseFuture;
+    try {
+      parseFuture =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return documentIndexer.buildDocuments();
+                } catch (Exception e) {
+                  throw new CompletionException(e);
+                }
+              },
+              globalState.getDocParsingService());
+    } catch (RejectedExecutionException e) {
+      logger.error("Threadpool is full, unable to submit document parsing job");
+      finishWithError(
+          Status.RESOURCE_EXHAUSTED
+              .withDescription("Threadpool is full, unable to submit document parsing job")
+              .augmentDescription(e.getMessage())
+              .asRuntimeException());
+      return;
+    }
+    inFlightBatches++;
+    parseFuture
+        .thenApplyAsync(
+            (List<DocumentsContext> documentsContexts) -> {
+              try {
+                return documentIndexer.indexDocuments(documentsContexts);
+              } catch (Exception e) {
+                throw new CompletionException(e);
+              }
+            },
+            globalState.getIndexService())
+        .whenComplete((gen, t) -> onBatchCompleted(indexName, gen, t));
+  }
+
+  private synchronized void onBatchCompleted(String indexName, Long gen, Throwable t) {
+    inFlightBatches--;
+    if (t != null) {
+      Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+      logger.warn("error while trying to addDocuments", cause);
+      finishWithError(
+          Status.INTERNAL
+              .withDescription("error while trying to addDocuments ")
+              .augmentDescription(cause.getMessage())
+              .withCause(cause)
+              .asRuntimeException());
+      return;
+    }
+    logger.debug("Indexing returned sequence-number {}", gen);
+    indexGenMap.merge(indexName, gen, Math::max);
+    if (streamCompleted) {
+      if (inFlightBatches == 0) {
+        finishWithResponse();
+      }
+    } else if (waitingForBatch && !finished) {
+      waitingForBatch = false;
+      responseObserver.request(1);
+    }
+  }
+
+  /** Send error to client if a response has not already been sent. */
+  private synchronized void finishWithError(Throwable t) {
+    if (!finished) {
+      finished = true;
+      responseObserver.onError(t);
+    }
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    logger.warn("addDocuments Cancelled", t);
+    finishWithError(t);
+  }
+
+  @Override
+  public synchronized void onCompleted() {
+    if (finished) {
+      return;
+    }
+    // index the left over docs
+    for (Map.Entry<String, List<AddDocumentRequest>> entry : batchMap.entrySet()) {
+      if (!entry.getValue().isEmpty()) {
+        submitBatch(entry.getKey(), entry.getValue());
+      }
+    }
+    batchMap.clear();
+    streamCompleted = true;
+    if (inFlightBatches == 0) {
+      finishWithResponse();
+    }
+  }
+
+  /** Send the indexing response to the client, must be called while holding the lock. */
+  private void finishWithResponse() {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    // TODO: this should return a map on index to genId in the response
+    String genId = "-1";
+    for (Long gen : indexGenMap.values()) {
+      genId = String.valueOf(gen);
+    }
+    try {
+      responseObserver.onNext(
+          AddDocumentResponse.newBuilder()
+              .setGenId(genId)
+              .setPrimaryId(globalState.getEphemeralId())
+              .build());
+      responseObserver.onCompleted();
+    } catch (Throwable e) {
+      logger.warn("Unable to send addDocuments response", e);
+    }
+  }
+}
@@ -259,6 +259,31 @@ public class ReplicationServerClient implements Closeable {
     return this.blockingStub.newNRTPoint(request);
   }
 
+  /**
+   * Notify the replica of a new nrt point without blocking.
+   *
+   * @param indexName index name
+   * @param primaryGen primary generation
+   * @param version searcher version of the nrt point
+   * @param deadline deadline for the notification
+   * @param responseObserver observer notified when the replica responds or the call fails
+   */
+  public void newNRTPointAsync(
+      String indexName,
+      long primaryGen,
+      long version,
+      Deadline deadline,
+      StreamObserver<TransferStatus> responseObserver) {
+    NewNRTPoint request =
+        NewNRTPoint.newBuilder()
+            .setMagicNumber(BINARY_MAGIC)
+            .setIndexName(indexName)
+            .setPrimaryGen(primaryGen)
+            .setVersion(version)
+            .build();
+    this.asyncStub.withDeadline(deadline).newNRTPoint(request, responseObserver);
+  }
+
   public SearcherVersion writeNRTPoint(String indexName) {
     return blockingStub.writeNRTPoint(
         IndexName.newBuilder().setMagicNumber(BINARY_MAGIC).setIndexName(indexName).build());
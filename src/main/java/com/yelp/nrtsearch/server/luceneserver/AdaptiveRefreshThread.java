@@ -0,0 +1,302 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import com.yelp.nrtsearch.server.monitoring.NrtMetrics;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.ReferenceManager;
+
+/**
+ * Thread that periodically refreshes a {@link ReferenceManager} to make index changes visible.
+ * Provides the same generation tracking as {@link ControlledRealTimeReopenThread}, but adapts the
+ * refresh schedule:
+ *
+ * <ul>
+ *   <li>The refresh is skipped when the current reader already contains all index changes
+ *   <li>While callers are waiting for a generation, refreshes happen at the min refresh interval,
+ *       but back off when refreshing (including searcher warming) is expensive, so that refreshing
+ *       takes at most a fixed fraction of the time
+ *   <li>Otherwise, refreshes happen at the max refresh interval
+ *   <li>The time between refreshes never exceeds the max refresh interval
+ * </ul>
+ *
+ * @param <T> type of reference to refresh
+ */
+public class AdaptiveRefreshThread<T> extends Thread implements Closeable {
+  // target for the max fraction of time spent refreshing, when waiting for a generation
+  static final double REFRESH_COST_FACTOR = 10.0;
+
+  /** Checks if the current reference contains all index changes. */
+  @FunctionalInterface
+  public interface CurrentChecker {
+    /**
+     * Get if the current reference is up to date with the index writer.
+     *
+     * @throws IOException on error checking reader
+     */
+    boolean isCurrent() throws IOException;
+  }
+
+  private final ReferenceManager<T> manager;
+  private final IndexWriter writer;
+  private final CurrentChecker currentChecker;
+  private final String indexName;
+  private final long targetMaxStaleNS;
+  private final long targetMinStaleNS;
+  private final ReentrantLock reopenLock = new ReentrantLock();
+  private final Condition reopenCond = reopenLock.newCondition();
+  private final HandleRefresh handleRefresh = new HandleRefresh();
+
+  private volatile boolean finish;
+  private volatile long waitingGen;
+  private volatile long searchingGen;
+  private volatile long lastRefreshNS;
+  // generation captured before a refresh, visible once the refresh completes
+  private long refreshStartGen;
+
+  /**
+   * Constructor.
+   *
+   * @param writer index writer
+   * @param manager reference manager to refresh
+   * @param currentChecker checks if the manager reference is current
+   * @param targetMaxStaleSec max time between refreshes
+   * @param targetMinStaleSec min time between refreshes when callers are waiting for a generation,
+   *     before any back off
+   * @param indexName index name for metrics
+   */
+  public AdaptiveRefreshThread(
+      IndexWriter writer,
+      ReferenceManager<T> manager,
+      CurrentChecker currentChecker,
+      double targetMaxStaleSec,
+      double targetMinStaleSec,
+      String indexName) {
+    if (targetMaxStaleSec < targetMinStaleSec) {
+      throw new IllegalArgumentException(
+          "targetMaxStaleSec (= "
+              + targetMaxStaleSec
+              + ") < targetMinStaleSec (="
+              + targetMinStaleSec
+              + ")");
+    }
+    this.writer = writer;
+    this.manager = manager;
+    this.currentChecker = currentChecker;
+    this.indexName = indexName;
+    this.targetMaxStaleNS = (long) (1000000000 * targetMaxStaleSec);
+    this.targetMinStaleNS = (long) (1000000000 * targetMinStaleSec);
+    manager.addListener(handleRefresh);
+  }
+
+  private class HandleRefresh implements ReferenceManager.RefreshListener {
+    @Override
+    public void beforeRefresh() {
+      // save the gen as of when we started the reopen, this is
+      // copied to searchingGen once the reopen completes:
+      setRefreshStartGen(writer.getMaxCompletedSequenceNumber());
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) {
+      refreshDone();
+    }
+  }
+
+  private synchronized void setRefreshStartGen(long gen) {
+    refreshStartGen = gen;
+  }
+
+  private synchronized void refreshDone() {
+    advanceSearchingGen(refreshStartGen);
+  }
+
+  private synchronized void advanceSearchingGen(long gen) {
+    if (gen > searchingGen) {
+      searchingGen = gen;
+    }
+    notifyAll();
+  }
+
+  @Override
+  public synchronized void close() {
+    manager.removeListener(handleRefresh);
+
+    finish = true;
+
+    // So thread wakes up and notices it should finish:
+    reopenLock.lock();
+    try {
+      reopenCond.signal();
+    } finally {
+      reopenLock.unlock();
+    }
+
+    try {
+      join();
+    } catch (InterruptedException ie) {
+      throw new RuntimeException(ie);
+    }
+
+    // Max it out so any waiting search threads will return:
+    searchingGen = Long.MAX_VALUE;
+    notifyAll();
+  }
+
+  /**
+   * Waits for the target generation to become visible in the searcher. If the current searcher is
+   * older than the target generation, this method will block until the searcher is reopened, by
+   * another via {@link ReferenceManager#maybeRefresh} or until the {@link ReferenceManager} is
+   * closed.
+   *
+   * @param targetGen the generation to wait for
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void waitForGeneration(long targetGen) throws InterruptedException {
+    waitForGeneration(targetGen, -1);
+  }
+
+  /**
+   * Waits for the target generation to become visible in the searcher, up to a maximum specified
+   * milli-seconds.
+   *
+   * @param targetGen the generation to wait for
+   * @param maxMS maximum milliseconds to wait, or -1 to wait indefinitely
+   * @return true if the targetGeneration is now available, or false if maxMS wait time was
+   *     exceeded
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public synchronized boolean waitForGeneration(long targetGen, int maxMS)
+      throws InterruptedException {
+    if (targetGen > searchingGen) {
+      // Notify the reopen thread that the waitingGen has
+      // changed, so it may wake up and realize it should
+      // not sleep for much or any longer before reopening:
+      reopenLock.lock();
+
+      // Need to find waitingGen inside lock as it's used to determine
+      // stale time
+      waitingGen = Math.max(waitingGen, targetGen);
+
+      try {
+        reopenCond.signal();
+      } finally {
+        reopenLock.unlock();
+      }
+
+      long startMS = System.nanoTime() / 1000000;
+
+      while (targetGen > searchingGen) {
+        if (maxMS < 0) {
+          wait();
+        } else {
+          long msLeft = (startMS + maxMS) - System.nanoTime() / 1000000;
+          if (msLeft <= 0) {
+            return false;
+          } else {
+            wait(msLeft);
+          }
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Get the time to wait between refreshes. This is the min interval when callers are waiting for a
+   * generation, and the max interval otherwise. The interval backs off for expensive refreshes, but
+   * never exceeds the max interval.
+   *
+   * @param hasWaiting if callers are waiting for a generation
+   * @param refreshNS duration of the last refresh
+   * @return refresh interval in nanoseconds
+   */
+  long getRefreshIntervalNS(boolean hasWaiting, long refreshNS) {
+    long baseIntervalNS = hasWaiting ? targetMinStaleNS : targetMaxStaleNS;
+    long costIntervalNS = (long) (refreshNS * REFRESH_COST_FACTOR);
+    return Math.min(Math.max(baseIntervalNS, costIntervalNS), targetMaxStaleNS);
+  }
+
+  @Override
+  public void run() {
+    long lastReopenStartNS = System.nanoTime();
+    // last time the searcher was known to contain all changes
+    long lastCurrentNS = lastReopenStartNS;
+    while (!finish) {
+      boolean hasWaiting;
+
+      // Loop until we've waited long enough before the
+      // next reopen:
+      reopenLock.lock();
+      try {
+        while (true) {
+          if (finish) {
+            return;
+          }
+          hasWaiting = waitingGen > searchingGen;
+          long intervalNS = getRefreshIntervalNS(hasWaiting, lastRefreshNS);
+          NrtMetrics.refreshIntervalSec.labels(indexName).set(intervalNS / 1000000000.0);
+          long sleepNS = lastReopenStartNS + intervalNS - System.nanoTime();
+          if (sleepNS <= 0) {
+            break;
+          }
+          reopenCond.awaitNanos(sleepNS);
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        reopenLock.unlock();
+      }
+
+      if (finish) {
+        break;
+      }
+
+      lastReopenStartNS = System.nanoTime();
+      try {
+        // all operations completed before the check are visible if the reader is current
+        long currentGen = writer.getMaxCompletedSequenceNumber();
+        if (currentChecker.isCurrent()) {
+          NrtMetrics.refreshDecisions.labels(indexName, "skip").inc();
+          lastCurrentNS = System.nanoTime();
+          advanceSearchingGen(currentGen);
+          continue;
+        }
+        NrtMetrics.refreshDecisions.labels(indexName, hasWaiting ? "waiting" : "scheduled").inc();
+        manager.maybeRefreshBlocking();
+        long refreshEndNS = System.nanoTime();
+        lastRefreshNS = refreshEndNS - lastReopenStartNS;
+        NrtMetrics.refreshTime.labels(indexName).observe(lastRefreshNS / 1000000.0);
+        NrtMetrics.refreshLag.labels(indexName).observe((refreshEndNS - lastCurrentNS) / 1000000.0);
+        lastCurrentNS = refreshEndNS;
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      }
+    }
+  }
+
+  /** Returns which {@code generation} the current searcher is guaranteed to include. */
+  public long getSearchingGen() {
+    return searchingGen;
+  }
+}
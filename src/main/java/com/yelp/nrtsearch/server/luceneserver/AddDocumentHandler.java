@@ -17,22 +17,30 @@ package com.yelp.nrtsearch.server.luceneserver;
 
 import com.google.protobuf.ProtocolStringList;
 import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
-import com.yelp.nrtsearch.server.grpc.FacetHierarchyPath;
 import com.yelp.nrtsearch.server.luceneserver.field.FieldDef;
 import com.yelp.nrtsearch.server.luceneserver.field.IdFieldDef;
 import com.yelp.nrtsearch.server.luceneserver.field.IndexableFieldDef;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,6 +79,10 @@ public class AddDocumentHandler {
   }
 
   public static class LuceneDocumentBuilder {
+    private static final List<String> ROOT_NESTED_PATH = List.of(IndexState.ROOT);
+    // reusable buffers for collecting document field names, one set per indexing thread
+    private static final ThreadLocal<FieldNamesBuffer> FIELD_NAMES_BUFFER =
+        ThreadLocal.withInitial(FieldNamesBuffer::new);
 
     public static DocumentsContext getDocumentsContext(
         AddDocumentRequest addDocumentRequest, IndexState indexState)
@@ -82,8 +94,7 @@ public class AddDocumentHandler {
       }
 
       ((IndexableFieldDef) (IndexState.getMetaField(IndexState.NESTED_PATH)))
-          .parseDocumentField(
-              documentsContext.getRootDocument(), List.of(IndexState.ROOT), List.of());
+          .parseDocumentField(documentsContext.getRootDocument(), ROOT_NESTED_PATH, List.of());
 
       // Include all fields and meta-fields in field names
       extractFieldNames(documentsContext);
@@ -92,24 +103,56 @@ public class AddDocumentHandler {
 
     /** Extract all field names for each document and stores it into a hidden field */
     private static void extractFieldNames(DocumentsContext documentsContext) {
-      extractFieldNamesForDocument(documentsContext.getRootDocument());
-      documentsContext.getChildDocuments().values().stream()
-          .flatMap(List::stream)
-          .forEach(LuceneDocumentBuilder::extractFieldNamesForDocument);
+      IndexableFieldDef fieldNamesFieldDef =
+          (IndexableFieldDef) IndexState.getMetaField(IndexState.FIELD_NAMES);
+      FieldNamesBuffer buffer = FIELD_NAMES_BUFFER.get();
+      extractFieldNamesForDocument(documentsContext.getRootDocument(), fieldNamesFieldDef, buffer);
+      if (documentsContext.hasNested()) {
+        for (List<Document> childDocuments : documentsContext.getChildDocuments().values()) {
+          for (Document childDocument : childDocuments) {
+            extractFieldNamesForDocument(childDocument, fieldNamesFieldDef, buffer);
+          }
+        }
+      }
     }
 
     /** Extract all field names in the document and stores it into a hidden field */
-    private static void extractFieldNamesForDocument(Document document) {
-      IndexableFieldDef fieldNamesFieldDef =
-          (IndexableFieldDef) IndexState.getMetaField(IndexState.FIELD_NAMES);
+    private static void extractFieldNamesForDocument(
+        Document document, IndexableFieldDef fieldNamesFieldDef, FieldNamesBuffer buffer) {
+      buffer.clear();
+      List<IndexableField> documentFields = document.getFields();
+      for (int i = 0; i < documentFields.size(); ++i) {
+        buffer.add(documentFields.get(i).name());
+      }
+      fieldNamesFieldDef.parseDocumentField(document, buffer.fieldNames, List.of());
+      buffer.clear();
+    }
 
-      List<String> fieldNames =
-          document.getFields().stream()
-              .map(IndexableField::name)
-              .distinct()
-              .collect(Collectors.toList());
+    /**
+     * Buffer used to collect the distinct field names of a document, in first seen order. Fields
+     * with multiple values are usually added to a document consecutively, so checking against the
+     * last added name avoids most set lookups.
+     */
+    private static class FieldNamesBuffer {
+      private final List<String> fieldNames = new ArrayList<>();
+      private final Set<String> seenNames = new HashSet<>();
+      private String lastName;
+
+      void add(String name) {
+        if (name.equals(lastName)) {
+          return;
+        }
+        lastName = name;
+        if (seenNames.add(name)) {
+          fieldNames.add(name);
+        }
+      }
 
-      fieldNamesFieldDef.parseDocumentField(document, fieldNames, List.of());
+      void clear() {
+        fieldNames.clear();
+        seenNames.clear();
+        lastName = null;
+      }
     }
 
     /** Parses a field's value, which is a MultiValuedField in all cases */
@@ -129,9 +172,16 @@ public class AddDocumentHandler {
         DocumentsContext documentsContext)
         throws AddDocumentHandlerException {
       ProtocolStringList fieldValues = value.getValueList();
-      List<FacetHierarchyPath> facetHierarchyPaths = value.getFaceHierarchyPathsList();
-      List<List<String>> facetHierarchyPathValues =
-          facetHierarchyPaths.stream().map(fp -> fp.getValueList()).collect(Collectors.toList());
+      List<List<String>> facetHierarchyPathValues;
+      int facetHierarchyPathsCount = value.getFaceHierarchyPathsCount();
+      if (facetHierarchyPathsCount == 0) {
+        facetHierarchyPathValues = Collections.emptyList();
+      } else {
+        facetHierarchyPathValues = new ArrayList<>(facetHierarchyPathsCount);
+        for (int i = 0; i < facetHierarchyPathsCount; ++i) {
+          facetHierarchyPathValues.add(value.getFaceHierarchyPaths(i).getValueList());
+        }
+      }
       if (!facetHierarchyPathValues.isEmpty()) {
         if (facetHierarchyPathValues.size() != fieldValues.size()) {
           throw new AddDocumentHandlerException(
@@ -167,6 +217,9 @@ public class AddDocumentHandler {
   }
 
   public static class DocumentIndexer implements Callable<Long> {
+    // round-robin shard assignment for documents in indices without an id field
+    private static final AtomicInteger nextShard = new AtomicInteger();
+
     private final GlobalState globalState;
     private final List<AddDocumentRequest> addDocumentRequestList;
     private final String indexName;
@@ -181,23 +234,142 @@ public class AddDocumentHandler {
     }
 
     public long runIndexingJob() throws Exception {
+      return indexDocuments(buildDocuments());
+    }
+
+    /**
+     * Convert all the requests in this job into lucene documents. This does not modify the index,
+     * so may be run on a different thread than {@link #indexDocuments(List)}.
+     *
+     * @return documents for each request, in request order
+     * @throws Exception if the index does not exist, or a request is invalid
+     */
+    public List<DocumentsContext> buildDocuments() throws Exception {
+      List<DocumentsContext> documentsContexts = new ArrayList<>(addDocumentRequestList.size());
+      try {
+        IndexState indexState = globalState.getIndex(this.indexName);
+        for (AddDocumentRequest addDocumentRequest : addDocumentRequestList) {
+          documentsContexts.add(
+              AddDocumentHandler.LuceneDocumentBuilder.getDocumentsContext(
+                  addDocumentRequest, indexState));
+        }
+      } catch (Exception e) {
+        logger.warn("addDocuments Cancelled", e);
+        throw e; // parent thread should catch and send error back to client
+      }
+      return documentsContexts;
+    }
+
+    /**
+     * Add documents built by {@link #buildDocuments()} to the index writer.
+     *
+     * @param documentsContexts documents to index, in request order
+     * @return index writer max completed sequence number after indexing
+     * @throws Exception on error writing documents
+     */
+    public long indexDocuments(List<DocumentsContext> documentsContexts) throws Exception {
       logger.debug(
           String.format(
               "running indexing job on threadId: %s",
               Thread.currentThread().getName() + Thread.currentThread().getId()));
-      Queue<Document> documents = new LinkedBlockingDeque<>();
       IndexState indexState;
-      ShardState shardState;
       IdFieldDef idFieldDef;
-
       try {
         indexState = globalState.getIndex(this.indexName);
-        shardState = indexState.getShard(0);
         idFieldDef = indexState.getIdFieldDef().orElse(null);
-        for (AddDocumentRequest addDocumentRequest : addDocumentRequestList) {
-          DocumentsContext documentsContext =
-              AddDocumentHandler.LuceneDocumentBuilder.getDocumentsContext(
-                  addDocumentRequest, indexState);
+      } catch (Exception e) {
+        logger.warn("addDocuments Cancelled", e);
+        throw e; // parent thread should catch and send error back to client
+      }
+
+      int numShards = indexState.getShards().size();
+      if (numShards == 1) {
+        return indexShardDocuments(
+            documentsContexts, indexState, indexState.getShard(0), idFieldDef);
+      }
+      // route each document to a shard, keeping request order within each shard
+      List<List<DocumentsContext>> shardDocuments = new ArrayList<>(numShards);
+      for (int i = 0; i < numShards; ++i) {
+        shardDocuments.add(new ArrayList<>());
+      }
+      for (DocumentsContext documentsContext : documentsContexts) {
+        int shardOrd = getShardOrd(documentsContext.getRootDocument(), idFieldDef, numShards);
+        shardDocuments.get(shardOrd).add(documentsContext);
+      }
+      // index each shard's documents in parallel on the indexing executor. This job may itself be
+      // running on the indexing executor, so any shard task no worker has started yet is run on
+      // this thread instead of waiting for it, which guarantees progress when the pool is busy.
+      List<FutureTask<Long>> shardTasks = new ArrayList<>(numShards);
+      for (int i = 0; i < numShards; ++i) {
+        if (!shardDocuments.get(i).isEmpty()) {
+          List<DocumentsContext> shardContexts = shardDocuments.get(i);
+          ShardState shardState = indexState.getShard(i);
+          shardTasks.add(
+              new FutureTask<>(
+                  () -> indexShardDocuments(shardContexts, indexState, shardState, idFieldDef)));
+        }
+      }
+      // the first task is always run on this thread
+      for (int i = 1; i < shardTasks.size(); ++i) {
+        try {
+          globalState.getIndexService().execute(shardTasks.get(i));
+        } catch (RejectedExecutionException e) {
+          // run on this thread
+          break;
+        }
+      }
+      long maxGen = -1;
+      Exception failure = null;
+      for (FutureTask<Long> shardTask : shardTasks) {
+        // no-op if a worker already started the task
+        shardTask.run();
+      }
+      for (FutureTask<Long> shardTask : shardTasks) {
+        try {
+          maxGen = Math.max(maxGen, shardTask.get());
+        } catch (ExecutionException e) {
+          Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          if (failure == null) {
+            failure = cause;
+          } else {
+            failure.addSuppressed(cause);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return maxGen;
+    }
+
+    /**
+     * Get the shard a document should be indexed into. If the index has an id field, the shard is
+     * determined by the hash of the id, so that updates replace the document in the same shard.
+     * Otherwise, documents are distributed round-robin.
+     *
+     * @param rootDocument root lucene document
+     * @param idFieldDef index id field, or null
+     * @param numShards number of index shards
+     * @return shard ordinal
+     */
+    static int getShardOrd(Document rootDocument, IdFieldDef idFieldDef, int numShards) {
+      if (idFieldDef != null) {
+        BytesRef id = idFieldDef.getTerm(rootDocument).bytes();
+        return Math.floorMod(
+            StringHelper.murmurhash3_x86_32(id.bytes, id.offset, id.length, 0), numShards);
+      }
+      return Math.floorMod(nextShard.getAndIncrement(), numShards);
+    }
+
+    private long indexShardDocuments(
+        List<DocumentsContext> documentsContexts,
+        IndexState indexState,
+        ShardState shardState,
+        IdFieldDef idFieldDef)
+        throws Exception {
+      Queue<Document> documents = new LinkedBlockingDeque<>();
+      try {
+        for (DocumentsContext documentsContext : documentsContexts) {
           if (documentsContext.hasNested()) {
             try {
               if (idFieldDef != null) {
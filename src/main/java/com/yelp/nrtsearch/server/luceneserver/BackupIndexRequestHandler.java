@@ -17,6 +17,7 @@ package com.yelp.nrtsearch.server.luceneserver;
 
 import com.google.gson.Gson;
 import com.yelp.nrtsearch.server.backup.Archiver;
+import com.yelp.nrtsearch.server.backup.BackgroundSegmentUploader;
 import com.yelp.nrtsearch.server.grpc.BackupIndexRequest;
 import com.yelp.nrtsearch.server.grpc.BackupIndexResponse;
 import com.yelp.nrtsearch.server.grpc.CreateSnapshotRequest;
@@ -317,6 +318,19 @@ public class BackupIndexRequestHandler implements Handler<BackupIndexRequest, Ba
       if (filesToInclude.isEmpty()) {
         filesToInclude = getSegmentFilesInSnapshot(indexState, snapshotId);
       }
+      // skip files already uploaded in the background, queued files are uploaded here
+      BackgroundSegmentUploader segmentUploader = indexState.getShard(0).getSegmentUploader();
+      Collection<String> preUploadedFiles;
+      if (segmentUploader != null && segmentUploader.uploadsTo(serviceName, resourceData)) {
+        try {
+          preUploadedFiles = segmentUploader.awaitUploaded(filesToInclude);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted waiting for segment uploads", e);
+        }
+      } else {
+        preUploadedFiles = Collections.emptyList();
+      }
       versionHash =
           incrementalArchiver.upload(
               serviceName,
@@ -324,7 +338,8 @@ public class BackupIndexRequestHandler implements Handler<BackupIndexRequest, Ba
               indexState.getRootDir(),
               filesToInclude,
               parentDirectoriesToInclude,
-              stream);
+              stream,
+              preUploadedFiles);
       incrementalArchiver.blessVersion(serviceName, resourceData, versionHash);
     }
     backupIndexResponseBuilder.setDataVersionHash(versionHash);
@@ -71,7 +71,7 @@ public class BuildSuggestHandler implements Handler<BuildSuggestRequest, BuildSu
 
   /** Load all previously built suggesters. */
   public void load(IndexState indexState, JsonObject saveState) throws IOException {
-    ShardState shardState = indexState.getShard(0);
+    ShardState shardState = indexState.getSearchShard();
     for (Map.Entry<String, JsonElement> ent : saveState.entrySet()) {
       String suggestName = ent.getKey();
       JsonObject buildSuggestRequestAsJsonObject = ent.getValue().getAsJsonObject();
@@ -100,7 +100,7 @@ public class BuildSuggestHandler implements Handler<BuildSuggestRequest, BuildSu
       throws IOException {
     String suggestName = buildSuggestRequest.getSuggestName();
 
-    ShardState shardState = indexState.getShard(0);
+    ShardState shardState = indexState.getSearchShard();
 
     Lookup oldSuggester = indexState.getSuggesters().get(suggestName);
     if (oldSuggester != null && oldSuggester instanceof Closeable) {
@@ -463,7 +463,7 @@ public class BuildSuggestHandler implements Handler<BuildSuggestRequest, BuildSu
   public BuildSuggestResponse handle(IndexState indexState, BuildSuggestRequest buildSuggestRequest)
       throws HandlerException {
 
-    ShardState shardState = indexState.getShard(0);
+    ShardState shardState = indexState.getSearchShard();
     final JsonObject buildSuggestRequestAsJsonObject;
     try {
       // convert Proto object to Json String
@@ -43,7 +43,7 @@ public class CreateSnapshotHandler
       IndexState indexState, CreateSnapshotRequest createSnapshotRequest) throws IOException {
     indexState.verifyStarted();
 
-    final ShardState shardState = indexState.getShard(0);
+    final ShardState shardState = indexState.getSingleShard("Snapshot");
 
     if (!indexState.hasCommit()) {
       throw new RuntimeException("this index has no commits; please call commit first");
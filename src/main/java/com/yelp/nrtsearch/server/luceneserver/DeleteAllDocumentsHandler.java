@@ -29,11 +29,12 @@ public class DeleteAllDocumentsHandler
   public DeleteAllDocumentsResponse handle(
       IndexState indexState, DeleteAllDocumentsRequest deleteAllDocumentsRequest)
       throws DeleteAllDocumentsHandlerException {
-    final ShardState shardState = indexState.getShard(0);
     indexState.verifyStarted();
-    long gen;
+    long gen = -1;
     try {
-      gen = shardState.writer.deleteAll();
+      for (ShardState shardState : indexState.getShards().values()) {
+        gen = Math.max(gen, shardState.writer.deleteAll());
+      }
     } catch (IOException e) {
       logger.warn(
           "ThreadId: {}, writer.deleteAll failed",
@@ -32,22 +32,26 @@ public class DeleteByQueryHandler implements Handler<DeleteByQueryRequest, AddDo
   public AddDocumentResponse handle(
       IndexState indexState, DeleteByQueryRequest deleteByQueryRequest)
       throws DeleteByQueryHandlerException {
-    final ShardState shardState = indexState.getShard(0);
     indexState.verifyStarted();
 
     List<Query> queryList =
         deleteByQueryRequest.getQueryList().stream()
             .map(query -> queryNodeMapper.getQuery(query, indexState))
             .collect(Collectors.toList());
+    Query[] queries = queryList.toArray(new Query[] {});
+    long genId = -1;
     try {
-      shardState.writer.deleteDocuments(queryList.toArray(new Query[] {}));
+      // documents may be in any shard
+      for (ShardState shardState : indexState.getShards().values()) {
+        shardState.writer.deleteDocuments(queries);
+        genId = Math.max(genId, shardState.writer.getMaxCompletedSequenceNumber());
+      }
     } catch (IOException e) {
       logger.warn(
           "ThreadId: {}, writer.deleteDocuments failed",
           Thread.currentThread().getName() + Thread.currentThread().getId());
       throw new DeleteByQueryHandlerException(e);
     }
-    long genId = shardState.writer.getMaxCompletedSequenceNumber();
     return AddDocumentResponse.newBuilder()
         .setGenId(String.valueOf(genId))
         .setPrimaryId(indexState.getGlobalState().getEphemeralId())
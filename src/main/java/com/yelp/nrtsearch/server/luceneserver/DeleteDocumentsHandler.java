@@ -33,7 +33,6 @@ public class DeleteDocumentsHandler implements Handler<AddDocumentRequest, AddDo
   @Override
   public AddDocumentResponse handle(IndexState indexState, AddDocumentRequest addDocumentRequest)
       throws DeleteDocumentsHandlerException {
-    final ShardState shardState = indexState.getShard(0);
     indexState.verifyStarted();
 
     Map<String, AddDocumentRequest.MultiValuedField> fields = addDocumentRequest.getFieldsMap();
@@ -48,15 +47,20 @@ public class DeleteDocumentsHandler implements Handler<AddDocumentRequest, AddDo
         terms.add(new Term(fieldName, fieldValue));
       }
     }
+    Term[] termsArray = terms.toArray(new Term[0]);
+    long genId = -1;
     try {
-      shardState.writer.deleteDocuments(terms.stream().toArray(Term[]::new));
+      // documents may be in any shard
+      for (ShardState shardState : indexState.getShards().values()) {
+        shardState.writer.deleteDocuments(termsArray);
+        genId = Math.max(genId, shardState.writer.getMaxCompletedSequenceNumber());
+      }
     } catch (IOException e) {
       logger.warn(
           "ThreadId: {}, writer.deleteDocuments failed",
           Thread.currentThread().getName() + Thread.currentThread().getId());
       throw new DeleteDocumentsHandlerException(e);
     }
-    long genId = shardState.writer.getMaxCompletedSequenceNumber();
     return AddDocumentResponse.newBuilder()
         .setGenId(String.valueOf(genId))
         .setPrimaryId(indexState.getGlobalState().getEphemeralId())
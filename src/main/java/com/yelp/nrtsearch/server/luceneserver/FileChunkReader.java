@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.NRTCachingDirectory;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * Reads an index file as a sequence of {@link ByteString} chunks, for sending to replicas in
+ * {@link com.yelp.nrtsearch.server.grpc.RawFileChunk}s.
+ *
+ * <p>The default implementation reads through a lucene {@link IndexInput} into a heap buffer, and
+ * copies each chunk into a new {@link ByteString}. The zero copy implementation memory maps the
+ * file, and wraps slices of the mapping as {@link ByteString}s without copying. The bytes are then
+ * only copied once, when gRPC serializes the message into its transport buffer.
+ */
+public abstract class FileChunkReader implements Closeable {
+  // size of each file mapping, unless a single chunk is larger
+  static final long MAP_WINDOW_SIZE = 1L << 24;
+
+  protected final int chunkSize;
+  protected final long fileLength;
+  protected long fileOffset;
+
+  /**
+   * Open a chunk reader for an index file. If zero copy is requested, but the file is not on the
+   * local filesystem (such as files still held in memory by an {@link NRTCachingDirectory}), the
+   * reader falls back to using an {@link IndexInput}.
+   *
+   * @param directory index directory
+   * @param fileName index file name
+   * @param fpStart offset to start reading from
+   * @param chunkSize max size of each chunk
+   * @param zeroCopy if memory mapped zero copy chunks should be used
+   * @return chunk reader
+   * @throws IOException on error opening file
+   */
+  public static FileChunkReader open(
+      Directory directory, String fileName, long fpStart, int chunkSize, boolean zeroCopy)
+      throws IOException {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be > 0");
+    }
+    if (zeroCopy) {
+      Path filePath = getFilePath(directory, fileName);
+      if (filePath != null) {
+        return MappedFileChunkReader.open(filePath, fpStart, chunkSize, MAP_WINDOW_SIZE);
+      }
+    }
+    IndexInput indexInput = directory.openInput(fileName, IOContext.DEFAULT);
+    try {
+      return new IndexInputChunkReader(indexInput, fpStart, chunkSize);
+    } catch (Throwable t) {
+      IOUtils.closeWhileHandlingException(indexInput);
+      throw t;
+    }
+  }
+
+  /**
+   * Get the filesystem path of an index file, or null if the file is not readable directly from
+   * the filesystem.
+   */
+  static Path getFilePath(Directory directory, String fileName) throws IOException {
+    if (directory instanceof NRTCachingDirectory
+        && Arrays.asList(((NRTCachingDirectory) directory).listCachedFiles()).contains(fileName)) {
+      return null;
+    }
+    Directory unwrapped = FilterDirectory.unwrap(directory);
+    if (unwrapped instanceof FSDirectory) {
+      return ((FSDirectory) unwrapped).getDirectory().resolve(fileName);
+    }
+    return null;
+  }
+
+  protected FileChunkReader(long fileLength, long fpStart, int chunkSize) {
+    if (fpStart < 0 || fpStart > fileLength) {
+      throw new IllegalArgumentException(
+          "Invalid start offset: " + fpStart + ", file length: " + fileLength);
+    }
+    this.fileLength = fileLength;
+    this.fileOffset = fpStart;
+    this.chunkSize = chunkSize;
+  }
+
+  /** Get the total file length. */
+  public long getFileLength() {
+    return fileLength;
+  }
+
+  /** Get the offset of the next chunk to read. */
+  public long getFileOffset() {
+    return fileOffset;
+  }
+
+  /** Get if there is more file data to read. */
+  public boolean hasRemaining() {
+    return fileOffset < fileLength;
+  }
+
+  /**
+   * Read the next file chunk. The chunk may reference memory owned by this reader, but remains
+   * valid after the reader is closed.
+   *
+   * @return next chunk
+   * @throws IOException on error reading file
+   */
+  public ByteString nextChunk() throws IOException {
+    if (!hasRemaining()) {
+      throw new IllegalStateException("No file data remaining");
+    }
+    int size = (int) Math.min(chunkSize, fileLength - fileOffset);
+    ByteString chunk = readChunk(size);
+    fileOffset += size;
+    return chunk;
+  }
+
+  /**
+   * Read a chunk of the given size from the current file offset.
+   *
+   * @param size chunk size
+   * @return chunk data
+   * @throws IOException on error reading file
+   */
+  protected abstract ByteString readChunk(int size) throws IOException;
+
+  /**
+   * Reads chunks through a lucene {@link IndexInput}, copying each into a new {@link ByteString}.
+   */
+  static class IndexInputChunkReader extends FileChunkReader {
+    private final IndexInput indexInput;
+    private final byte[] buffer;
+
+    IndexInputChunkReader(IndexInput indexInput, long fpStart, int chunkSize) throws IOException {
+      super(indexInput.length(), fpStart, chunkSize);
+      this.indexInput = indexInput;
+      this.buffer = new byte[chunkSize];
+      indexInput.seek(fpStart);
+    }
+
+    @Override
+    protected ByteString readChunk(int size) throws IOException {
+      indexInput.readBytes(buffer, 0, size);
+      return ByteString.copyFrom(buffer, 0, size);
+    }
+
+    @Override
+    public void close() throws IOException {
+      indexInput.close();
+    }
+  }
+
+  /**
+   * Reads chunks by memory mapping the file, in windows of {@link #MAP_WINDOW_SIZE} bytes. Chunks
+   * are read only slices of the mapping, which is unmapped by the garbage collector when no longer
+   * referenced. The mapping cannot be released explicitly, since chunks may still be referenced by
+   * in flight messages after the reader is closed. Small windows bound the address space held by
+   * mappings waiting for collection.
+   */
+  static class MappedFileChunkReader extends FileChunkReader {
+    private final FileChannel fileChannel;
+    private final long mapWindowSize;
+    private MappedByteBuffer mappedRegion;
+    private long regionStart;
+
+    /**
+     * Open a reader for the given file. The file channel is closed if the reader cannot be
+     * created.
+     *
+     * @param filePath file to read
+     * @param fpStart offset to start reading from
+     * @param chunkSize max size of each chunk
+     * @param mapWindowSize max size of each memory mapped region
+     * @return chunk reader
+     * @throws IOException on error opening file
+     */
+    static MappedFileChunkReader open(
+        Path filePath, long fpStart, int chunkSize, long mapWindowSize) throws IOException {
+      FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ);
+      try {
+        return new MappedFileChunkReader(fileChannel, fpStart, chunkSize, mapWindowSize);
+      } catch (Throwable t) {
+        IOUtils.closeWhileHandlingException(fileChannel);
+        throw t;
+      }
+    }
+
+    private MappedFileChunkReader(
+        FileChannel fileChannel, long fpStart, int chunkSize, long mapWindowSize)
+        throws IOException {
+      super(fileChannel.size(), fpStart, chunkSize);
+      this.fileChannel = fileChannel;
+      this.mapWindowSize = mapWindowSize;
+    }
+
+    @Override
+    protected ByteString readChunk(int size) throws IOException {
+      if (mappedRegion == null || fileOffset + size > regionStart + mappedRegion.capacity()) {
+        regionStart = fileOffset;
+        long regionSize = Math.min(fileLength - fileOffset, Math.max(mapWindowSize, size));
+        mappedRegion = fileChannel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+      }
+      int position = (int) (fileOffset - regionStart);
+      return UnsafeByteOperations.unsafeWrap(mappedRegion.slice(position, size));
+    }
+
+    @Override
+    public void close() throws IOException {
+      // the mapping stays valid after the channel is closed
+      mappedRegion = null;
+      fileChannel.close();
+    }
+  }
+}
@@ -63,8 +63,10 @@ public abstract class GlobalState implements Closeable {
   private final Path indexDirBase;
 
   private final ExecutorService indexService;
+  private final ExecutorService docParsingService;
   private final ExecutorService fetchService;
   private final ThreadPoolExecutor searchThreadPoolExecutor;
+  private final ExecutorService searchStreamService;
 
   public static GlobalState createState(LuceneServerConfiguration luceneServerConfiguration)
       throws IOException {
@@ -107,6 +109,10 @@ public abstract class GlobalState implements Closeable {
         ThreadPoolExecutorFactory.getThreadPoolExecutor(
             ThreadPoolExecutorFactory.ExecutorType.INDEX,
             luceneServerConfiguration.getThreadPoolConfiguration());
+    this.docParsingService =
+        ThreadPoolExecutorFactory.getThreadPoolExecutor(
+            ThreadPoolExecutorFactory.ExecutorType.DOC_PARSING,
+            luceneServerConfiguration.getThreadPoolConfiguration());
     this.searchThreadPoolExecutor =
         ThreadPoolExecutorFactory.getThreadPoolExecutor(
             ThreadPoolExecutorFactory.ExecutorType.SEARCH,
@@ -115,6 +121,10 @@ public abstract class GlobalState implements Closeable {
         ThreadPoolExecutorFactory.getThreadPoolExecutor(
             ThreadPoolExecutorFactory.ExecutorType.FETCH,
             luceneServerConfiguration.getThreadPoolConfiguration());
+    this.searchStreamService =
+        ThreadPoolExecutorFactory.getThreadPoolExecutor(
+            ThreadPoolExecutorFactory.ExecutorType.SEARCH_STREAM,
+            luceneServerConfiguration.getThreadPoolConfiguration());
     this.configuration = luceneServerConfiguration;
   }
 
@@ -153,6 +163,8 @@ public abstract class GlobalState implements Closeable {
   @Override
   public void close() throws IOException {
     indexService.shutdown();
+    docParsingService.shutdown();
+    searchStreamService.shutdown();
     TimeLimitingCollector.getGlobalTimerThread().stopTimer();
     try {
       TimeLimitingCollector.getGlobalTimerThread().join();
@@ -260,6 +272,16 @@ public abstract class GlobalState implements Closeable {
     return indexService.submit(job);
   }
 
+  /** Get executor used to write documents to the index. */
+  public ExecutorService getIndexService() {
+    return indexService;
+  }
+
+  /** Get executor used to convert add document requests into lucene documents. */
+  public ExecutorService getDocParsingService() {
+    return docParsingService;
+  }
+
   public ThreadPoolConfiguration getThreadPoolConfiguration() {
     return threadPoolConfiguration;
   }
@@ -272,6 +294,14 @@ public abstract class GlobalState implements Closeable {
     return fetchService;
   }
 
+  /**
+   * Get executor that runs streaming searches, which must not run on the thread of their gRPC call
+   * so that the call's flow control callbacks can be delivered.
+   */
+  public ExecutorService getSearchStreamService() {
+    return searchStreamService;
+  }
+
   public String getEphemeralId() {
     return ephemeralId;
   }
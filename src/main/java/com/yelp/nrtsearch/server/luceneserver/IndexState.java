@@ -256,7 +256,11 @@ public abstract class IndexState implements Closeable {
               archiver,
               configuration.getServiceName(),
               indexName,
-              warmerConfig.getMaxWarmingQueries());
+              warmerConfig.getMaxWarmingQueries(),
+              warmerConfig.getWarmingQueriesFormat(),
+              warmerConfig.getMaxWarmingTimeSec(),
+              warmerConfig.getWarmingQueryTimeoutSec(),
+              warmerConfig.getWarmingShutdownTimeoutSec());
     }
   }
 
@@ -371,12 +375,49 @@ public abstract class IndexState implements Closeable {
   /** Get mapping of ordinal to shard state. */
   public abstract Map<Integer, ShardState> getShards();
 
+  /**
+   * Get the shard used to search and refresh the index. For an index with multiple shards, this
+   * shard acquires searchers over, and refreshes, all shards (see {@link
+   * ShardState#isShardedSearch()}).
+   */
+  public ShardState getSearchShard() {
+    return getShard(0);
+  }
+
+  /**
+   * Get the shard of an index that must have only one shard. Used by operations on the files of a
+   * single shard, such as snapshots and file copies.
+   *
+   * @param operation description of the operation, used in the error message
+   * @return shard state
+   * @throws IllegalStateException if the index has multiple shards
+   */
+  public ShardState getSingleShard(String operation) {
+    if (getNumShards() > 1) {
+      throw new IllegalStateException(
+          operation + " is not supported for index with multiple shards: " + getName());
+    }
+    return getShard(0);
+  }
+
   /**
    * Commit all state and shards. If backupFromIncArchiver is passed in it will also attempt to use
    * IndexArchiver to upload files to remote storage
+   *
+   * @return commit generation of the index shard
+   * @throws IllegalStateException if the index has multiple shards, use {@link
+   *     #commitShards(boolean)} instead
    */
   public abstract long commit(boolean backupFromIncArchiver) throws IOException;
 
+  /**
+   * Commit all state and shards. If backupFromIncArchiver is passed in it will also attempt to use
+   * IndexArchiver to upload files to remote storage
+   *
+   * @return commit generation of each shard, in shard order
+   */
+  public abstract long[] commitShards(boolean backupFromIncArchiver) throws IOException;
+
   /** True if this index has at least one commit. */
   public abstract boolean hasCommit() throws IOException;
 
@@ -410,6 +451,9 @@ public abstract class IndexState implements Closeable {
   /** Max size to use for nrt caching directory wrapper. */
   public abstract double getNrtCachingDirectoryMaxSizeMB();
 
+  /** Get the number of shards the index is split into on this node. */
+  public abstract int getNumShards();
+
   // Live Settings
 
   /** Min time before the IndexSearch is automatically re-opened. */
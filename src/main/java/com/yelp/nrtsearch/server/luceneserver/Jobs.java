@@ -17,8 +17,12 @@ package com.yelp.nrtsearch.server.luceneserver;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.PriorityQueue;
+import java.util.Set;
 import org.apache.lucene.replicator.nrt.CopyJob;
 import org.apache.lucene.replicator.nrt.Node;
 import org.apache.lucene.store.AlreadyClosedException;
@@ -33,6 +37,8 @@ class Jobs extends Thread implements Closeable {
   private static final Logger logger = LoggerFactory.getLogger(Jobs.class);
 
   private final PriorityQueue<CopyJob> queue = new PriorityQueue<>();
+  // parallel copy jobs that cannot make progress until one of their file copies completes
+  private final Set<SimpleCopyJob> waitingJobs = new HashSet<>();
 
   private final Node node;
 
@@ -102,9 +108,14 @@ class Jobs extends Thread implements Closeable {
       }
 
       if (result == false) {
-        // Job isn't done yet; put it back:
+        // Job isn't done yet; put it back, or park it until a file copy completes so that other
+        // jobs can run:
         synchronized (this) {
-          queue.offer(topJob);
+          if (topJob.isAwaitingProgress()) {
+            waitingJobs.add(topJob);
+          } else {
+            queue.offer(topJob);
+          }
         }
       } else {
         // Job finished, now notify caller:
@@ -128,8 +139,12 @@ class Jobs extends Thread implements Closeable {
 
     synchronized (this) {
       // Gracefully cancel any jobs we didn't finish:
+      List<SimpleCopyJob> remainingJobs = new ArrayList<>(waitingJobs);
+      waitingJobs.clear();
       while (queue.isEmpty() == false) {
-        SimpleCopyJob job = (SimpleCopyJob) queue.poll();
+        remainingJobs.add((SimpleCopyJob) queue.poll());
+      }
+      for (SimpleCopyJob job : remainingJobs) {
         node.message("top: Jobs: now cancel job=" + job);
         try {
           job.cancel("jobs closing", null);
@@ -147,6 +162,8 @@ class Jobs extends Thread implements Closeable {
 
   public synchronized void launch(CopyJob job) {
     if (finish == false) {
+      SimpleCopyJob simpleCopyJob = (SimpleCopyJob) job;
+      simpleCopyJob.setProgressListener(() -> onProgress(simpleCopyJob));
       queue.offer(job);
       notify();
     } else {
@@ -154,9 +171,19 @@ class Jobs extends Thread implements Closeable {
     }
   }
 
+  /** Requeue a job parked waiting for a file copy to complete. */
+  private synchronized void onProgress(SimpleCopyJob job) {
+    if (waitingJobs.remove(job)) {
+      queue.offer(job);
+      notify();
+    }
+  }
+
   /** Cancels any existing jobs that are copying the same file names as this one */
   public synchronized void cancelConflictingJobs(CopyJob newJob) throws IOException {
-    for (CopyJob job : queue) {
+    List<CopyJob> jobs = new ArrayList<>(queue);
+    jobs.addAll(waitingJobs);
+    for (CopyJob job : jobs) {
       if (job.conflicts(newJob)) {
         node.message(
             "top: now cancel existing conflicting job=" + job + " due to newJob=" + newJob);
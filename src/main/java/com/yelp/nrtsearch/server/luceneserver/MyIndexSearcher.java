@@ -28,17 +28,14 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.BulkScorer;
 import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
-import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.LeafCollector;
-import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
-import org.apache.lucene.search.suggest.document.CompletionQuery;
-import org.apache.lucene.util.Bits;
 
 /**
- * This is sadly necessary because for ToParentBlockJoinQuery we must invoke .scorer not
- * .bulkScorer, yet for DrillSideways we must do exactly the opposite!
+ * Index searcher that provides custom index slicing for parallel search. Documents of each segment
+ * are collected with the {@link BulkScorer}, which lets queries such as large disjunctions score
+ * documents in windows.
  */
 public class MyIndexSearcher extends IndexSearcher {
 
@@ -239,13 +236,7 @@ public class MyIndexSearcher extends IndexSearcher {
   @Override
   protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector)
       throws IOException {
-    boolean isDrillSidewaysQueryOrCompletionQuery =
-        weight.getQuery() instanceof CompletionQuery
-            || weight.getQuery().toString().contains("DrillSidewaysQuery");
     for (LeafReaderContext ctx : leaves) { // search each subreader
-      // we force the use of Scorer (not BulkScorer) to make sure
-      // that the scorer passed to LeafCollector.setScorer supports
-      // Scorer.getChildren
       final LeafCollector leafCollector;
       try {
         leafCollector = collector.getLeafCollector(ctx);
@@ -254,32 +245,13 @@ public class MyIndexSearcher extends IndexSearcher {
         // continue with the following leaf
         continue;
       }
-      if (isDrillSidewaysQueryOrCompletionQuery) {
-        BulkScorer scorer = weight.bulkScorer(ctx);
-        if (scorer != null) {
-          try {
-            scorer.score(leafCollector, ctx.reader().getLiveDocs());
-          } catch (CollectionTerminatedException e) {
-            // collection was terminated prematurely
-            // continue with the following leaf
-          }
-        }
-      } else {
-        Scorer scorer = weight.scorer(ctx);
-        if (scorer != null) {
-          leafCollector.setScorer(scorer);
-          final Bits liveDocs = ctx.reader().getLiveDocs();
-          final DocIdSetIterator it = scorer.iterator();
-          try {
-            for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-              if (liveDocs == null || liveDocs.get(doc)) {
-                leafCollector.collect(doc);
-              }
-            }
-          } catch (CollectionTerminatedException e) {
-            // collection was terminated prematurely
-            // continue with the following leaf
-          }
+      BulkScorer scorer = weight.bulkScorer(ctx);
+      if (scorer != null) {
+        try {
+          scorer.score(leafCollector, ctx.reader().getLiveDocs());
+        } catch (CollectionTerminatedException e) {
+          // collection was terminated prematurely
+          // continue with the following leaf
         }
       }
     }
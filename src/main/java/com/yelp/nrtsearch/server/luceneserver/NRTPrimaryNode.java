@@ -15,6 +15,7 @@
  */
 package com.yelp.nrtsearch.server.luceneserver;
 
+import com.yelp.nrtsearch.server.config.NrtPointNotifyConfig;
 import com.yelp.nrtsearch.server.grpc.FilesMetadata;
 import com.yelp.nrtsearch.server.grpc.ReplicationServerClient;
 import com.yelp.nrtsearch.server.grpc.TransferStatus;
@@ -23,7 +24,7 @@ import com.yelp.nrtsearch.server.monitoring.NrtMetrics;
 import com.yelp.nrtsearch.server.utils.HostPort;
 import io.grpc.Deadline;
 import io.grpc.Status;
-import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -40,6 +41,8 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.SegmentCommitInfo;
 import org.apache.lucene.replicator.nrt.FileMetaData;
@@ -57,6 +60,7 @@ public class NRTPrimaryNode extends PrimaryNode {
   private final HostPort hostPort;
   private final String indexName;
   private final IndexStateManager indexStateManager;
+  private final NrtPointNotifier nrtPointNotifier;
   final List<MergePreCopy> warmingSegments = Collections.synchronizedList(new ArrayList<>());
   final Queue<ReplicaDetails> replicasInfos = new ConcurrentLinkedQueue<>();
 
@@ -74,12 +78,27 @@ public class NRTPrimaryNode extends PrimaryNode {
     this.hostPort = hostPort;
     this.indexName = indexStateManager.getCurrent().getName();
     this.indexStateManager = indexStateManager;
+    this.nrtPointNotifier =
+        new NrtPointNotifier(
+            indexName,
+            primaryGen,
+            indexStateManager
+                .getCurrent()
+                .getGlobalState()
+                .getConfiguration()
+                .getNrtPointNotifyConfig(),
+            replicasInfos,
+            this::message);
   }
 
   public static class ReplicaDetails {
     private final int replicaId;
     private final HostPort hostPort;
     private final ReplicationServerClient replicationServerClient;
+    // state of new nrt point notifications sent to this replica
+    private final AtomicBoolean notifyInFlight = new AtomicBoolean();
+    private volatile int consecutiveNotifyFailures;
+    private volatile long quarantineEndNanos;
 
     public int getReplicaId() {
       return replicaId;
@@ -93,6 +112,11 @@ public class NRTPrimaryNode extends PrimaryNode {
       return hostPort;
     }
 
+    /** Get if this replica is currently skipped for new nrt point notifications. */
+    public boolean isQuarantined() {
+      return consecutiveNotifyFailures > 0 && System.nanoTime() - quarantineEndNanos < 0;
+    }
+
     ReplicaDetails(int replicaId, ReplicationServerClient replicationServerClient) {
       this.replicaId = replicaId;
       this.replicationServerClient = replicationServerClient;
@@ -184,33 +208,135 @@ public class NRTPrimaryNode extends PrimaryNode {
     NrtMetrics.searcherVersion.labels(indexName).set(version);
     NrtMetrics.nrtPrimaryPointCount.labels(indexName).inc();
 
-    // Notify current replicas:
-    Iterator<ReplicaDetails> it = replicasInfos.iterator();
-    while (it.hasNext()) {
-      ReplicaDetails replicaDetails = it.next();
-      int replicaID = replicaDetails.replicaId;
-      ReplicationServerClient currentReplicaServerClient = replicaDetails.replicationServerClient;
-      try {
-        currentReplicaServerClient.newNRTPoint(indexName, primaryGen, version);
-      } catch (StatusRuntimeException e) {
-        Status status = e.getStatus();
-        if (status.getCode().equals(Status.UNAVAILABLE.getCode())) {
-          logger.warn(
-              "NRTPRimaryNode: sendNRTPoint, lost connection to replicaId: {} host: {} port: {}",
-              replicaDetails.replicaId,
-              replicaDetails.replicationServerClient.getHost(),
-              replicaDetails.replicationServerClient.getPort());
-          currentReplicaServerClient.close();
-          it.remove();
+    nrtPointNotifier.notifyReplicas(version);
+  }
+
+  /**
+   * Sends new nrt point notifications to replicas. All replicas are notified concurrently with
+   * async stubs, without waiting for responses, and each replica has at most one notification in
+   * flight. A replica that is still processing a notification is sent the latest version once it
+   * responds. A replica that fails is quarantined, and skipped until a later nrt point, for a back
+   * off period that doubles with each consecutive failure. Unavailable replicas are removed.
+   */
+  static class NrtPointNotifier {
+    private final String indexName;
+    private final long primaryGen;
+    private final NrtPointNotifyConfig nrtPointNotifyConfig;
+    private final Queue<ReplicaDetails> replicasInfos;
+    private final Consumer<String> messageConsumer;
+    private volatile long latestNotifyVersion = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param indexName index name
+     * @param primaryGen primary generation
+     * @param nrtPointNotifyConfig notification config
+     * @param replicasInfos current replicas, unavailable replicas are removed from this queue
+     * @param messageConsumer consumer for replication debug messages
+     */
+    NrtPointNotifier(
+        String indexName,
+        long primaryGen,
+        NrtPointNotifyConfig nrtPointNotifyConfig,
+        Queue<ReplicaDetails> replicasInfos,
+        Consumer<String> messageConsumer) {
+      this.indexName = indexName;
+      this.primaryGen = primaryGen;
+      this.nrtPointNotifyConfig = nrtPointNotifyConfig;
+      this.replicasInfos = replicasInfos;
+      this.messageConsumer = messageConsumer;
+    }
+
+    /**
+     * Notify all current replicas of a new nrt point.
+     *
+     * @param version searcher version of the nrt point
+     */
+    void notifyReplicas(long version) {
+      latestNotifyVersion = version;
+      for (ReplicaDetails replicaDetails : replicasInfos) {
+        if (replicaDetails.isQuarantined()) {
+          NrtMetrics.nrtPointNotifySkipped.labels(indexName, "quarantined").inc();
+        } else if (!replicaDetails.notifyInFlight.compareAndSet(false, true)) {
+          NrtMetrics.nrtPointNotifySkipped.labels(indexName, "in_flight").inc();
+        } else {
+          notifyReplica(replicaDetails, version);
         }
+      }
+    }
+
+    private void notifyReplica(ReplicaDetails replicaDetails, long version) {
+      long startNanos = System.nanoTime();
+      try {
+        replicaDetails.replicationServerClient.newNRTPointAsync(
+            indexName,
+            primaryGen,
+            version,
+            Deadline.after(nrtPointNotifyConfig.getDeadlineMs(), TimeUnit.MILLISECONDS),
+            new StreamObserver<>() {
+              @Override
+              public void onNext(TransferStatus value) {}
+
+              @Override
+              public void onError(Throwable t) {
+                onNotifyFailure(replicaDetails, t);
+              }
+
+              @Override
+              public void onCompleted() {
+                NrtMetrics.nrtPointNotifyTime
+                    .labels(indexName, getReplicaLabel(replicaDetails))
+                    .observe((System.nanoTime() - startNanos) / 1000000.0);
+                replicaDetails.consecutiveNotifyFailures = 0;
+                onNotifyDone(replicaDetails, version);
+              }
+            });
       } catch (Exception e) {
+        onNotifyFailure(replicaDetails, e);
+      }
+    }
+
+    private void onNotifyFailure(ReplicaDetails replicaDetails, Throwable t) {
+      NrtMetrics.nrtPointNotifyFailure.labels(indexName, getReplicaLabel(replicaDetails)).inc();
+      Status status = Status.fromThrowable(t);
+      if (status.getCode().equals(Status.UNAVAILABLE.getCode())) {
+        logger.warn(
+            "NRTPRimaryNode: sendNRTPoint, lost connection to replicaId: {} host: {} port: {}",
+            replicaDetails.replicaId,
+            replicaDetails.replicationServerClient.getHost(),
+            replicaDetails.replicationServerClient.getPort());
+        replicaDetails.replicationServerClient.close();
+        replicasInfos.remove(replicaDetails);
+      } else {
+        int failures = replicaDetails.consecutiveNotifyFailures + 1;
+        long quarantineMs = nrtPointNotifyConfig.getQuarantineMs(failures);
+        replicaDetails.quarantineEndNanos =
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quarantineMs);
+        replicaDetails.consecutiveNotifyFailures = failures;
         String msg =
             String.format(
-                "top: failed to connect R%d for newNRTPoint; skipping: %s",
-                replicaID, e.getMessage());
-        message(msg);
+                "top: failed newNRTPoint for R%d, quarantined for %d ms after %d failures: %s",
+                replicaDetails.replicaId, quarantineMs, failures, t.getMessage());
+        messageConsumer.accept(msg);
         logger.warn(msg);
       }
+      replicaDetails.notifyInFlight.set(false);
+    }
+
+    private void onNotifyDone(ReplicaDetails replicaDetails, long version) {
+      replicaDetails.notifyInFlight.set(false);
+      // send any version published while this notification was in flight
+      long latestVersion = latestNotifyVersion;
+      if (latestVersion > version
+          && !replicaDetails.isQuarantined()
+          && replicaDetails.notifyInFlight.compareAndSet(false, true)) {
+        notifyReplica(replicaDetails, latestVersion);
+      }
+    }
+
+    private static String getReplicaLabel(ReplicaDetails replicaDetails) {
+      return replicaDetails.hostPort.getHostName() + ":" + replicaDetails.hostPort.getPort();
     }
   }
 
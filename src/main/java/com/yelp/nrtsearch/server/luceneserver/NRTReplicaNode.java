@@ -30,6 +30,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.replicator.nrt.CopyJob;
@@ -41,6 +45,7 @@ import org.apache.lucene.replicator.nrt.ReplicaDeleterManager;
 import org.apache.lucene.replicator.nrt.ReplicaNode;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +57,8 @@ public class NRTReplicaNode extends ReplicaNode {
   private final ReplicaDeleterManager replicaDeleterManager;
   private final String indexName;
   private final boolean ackedCopy;
+  private final int copyConcurrency;
+  private final ExecutorService copyExecutor;
   private final boolean filterIncompatibleSegmentReaders;
   final Jobs jobs;
 
@@ -69,6 +76,7 @@ public class NRTReplicaNode extends ReplicaNode {
       SearcherFactory searcherFactory,
       PrintStream printStream,
       boolean ackedCopy,
+      int copyConcurrency,
       boolean decInitialCommit,
       boolean filterIncompatibleSegmentReaders)
       throws IOException {
@@ -76,6 +84,20 @@ public class NRTReplicaNode extends ReplicaNode {
     this.primaryAddress = primaryAddress;
     this.indexName = indexName;
     this.ackedCopy = ackedCopy;
+    this.copyConcurrency = copyConcurrency;
+    if (copyConcurrency > 1) {
+      // same as Executors.newFixedThreadPool except we want a NamedThreadFactory
+      copyExecutor =
+          new ThreadPoolExecutor(
+              copyConcurrency,
+              copyConcurrency,
+              0L,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(),
+              new NamedThreadFactory("R" + replicaId + "." + indexName + ".copyFiles"));
+    } else {
+      copyExecutor = null;
+    }
     this.hostPort = hostPort;
     replicaDeleterManager = decInitialCommit ? new ReplicaDeleterManager(this) : null;
     this.filterIncompatibleSegmentReaders = filterIncompatibleSegmentReaders;
@@ -158,7 +180,9 @@ public class NRTReplicaNode extends ReplicaNode {
         highPriority,
         onceDone,
         indexName,
-        ackedCopy);
+        ackedCopy,
+        copyConcurrency,
+        copyExecutor);
   }
 
   private CopyState getCopyStateFromPrimary() throws IOException {
@@ -253,6 +277,9 @@ public class NRTReplicaNode extends ReplicaNode {
         job.cancel("jobs closing", null);
       }
     }
+    if (copyExecutor != null) {
+      copyExecutor.shutdownNow();
+    }
     primaryAddress.close();
     super.close();
   }
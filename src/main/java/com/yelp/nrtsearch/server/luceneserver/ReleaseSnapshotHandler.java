@@ -28,7 +28,7 @@ public class ReleaseSnapshotHandler
   @Override
   public ReleaseSnapshotResponse handle(
       IndexState indexState, ReleaseSnapshotRequest releaseSnapshotRequest) {
-    final ShardState shardState = indexState.getShard(0);
+    final ShardState shardState = indexState.getSingleShard("Snapshot");
     final IndexState.Gens gens =
         new IndexState.Gens(
             CreateSnapshotHandler.getSnapshotIdAsString(releaseSnapshotRequest.getSnapshotId()));
@@ -18,6 +18,7 @@ package com.yelp.nrtsearch.server.luceneserver;
 import com.google.common.collect.Lists;
 import com.google.protobuf.Struct;
 import com.google.protobuf.util.JsonFormat;
+import com.yelp.nrtsearch.server.config.ThreadPoolConfiguration;
 import com.yelp.nrtsearch.server.grpc.DeadlineUtils;
 import com.yelp.nrtsearch.server.grpc.FacetResult;
 import com.yelp.nrtsearch.server.grpc.ProfileResult;
@@ -29,6 +30,7 @@ import com.yelp.nrtsearch.server.grpc.SearchResponse.Hit.FieldValue;
 import com.yelp.nrtsearch.server.grpc.SearchResponse.SearchState;
 import com.yelp.nrtsearch.server.grpc.TotalHits;
 import com.yelp.nrtsearch.server.luceneserver.doc.LoadedDocValues;
+import com.yelp.nrtsearch.server.luceneserver.doc.NumericColumn;
 import com.yelp.nrtsearch.server.luceneserver.facet.DrillSidewaysImpl;
 import com.yelp.nrtsearch.server.luceneserver.facet.FacetTopDocs;
 import com.yelp.nrtsearch.server.luceneserver.field.BooleanFieldDef;
@@ -39,11 +41,16 @@ import com.yelp.nrtsearch.server.luceneserver.field.ObjectFieldDef;
 import com.yelp.nrtsearch.server.luceneserver.field.PolygonfieldDef;
 import com.yelp.nrtsearch.server.luceneserver.field.VirtualFieldDef;
 import com.yelp.nrtsearch.server.luceneserver.rescore.RescoreTask;
+import com.yelp.nrtsearch.server.luceneserver.search.FetchScheduler;
 import com.yelp.nrtsearch.server.luceneserver.search.FieldFetchContext;
 import com.yelp.nrtsearch.server.luceneserver.search.SearchContext;
 import com.yelp.nrtsearch.server.luceneserver.search.SearchCutoffWrapper.CollectionTimeoutException;
 import com.yelp.nrtsearch.server.luceneserver.search.SearchRequestProcessor;
 import com.yelp.nrtsearch.server.luceneserver.search.SearcherResult;
+import com.yelp.nrtsearch.server.luceneserver.search.cache.SearchResultCache;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -53,7 +60,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -76,6 +85,7 @@ import org.slf4j.LoggerFactory;
 public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
 
   private static final Logger logger = LoggerFactory.getLogger(SearchHandler.class);
+  private static final long MAX_STREAM_READY_WAIT_MS = 50;
   private final ThreadPoolExecutor threadPoolExecutor;
   private final boolean warming;
 
@@ -95,10 +105,51 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
   @Override
   public SearchResponse handle(IndexState indexState, SearchRequest searchRequest)
       throws SearchHandlerException {
+    return handle(indexState, searchRequest, null, null, 0);
+  }
+
+  /**
+   * Execute search, sending hits to the response observer in chunks as their fields are fetched.
+   * This bounds the memory used for requests with a large number of hits, since the complete
+   * response is never built. Each chunk is a {@link SearchResponse} containing only hits, in ranked
+   * order. The final message contains no hits, but has all other response values, such as total
+   * hits, facet and collector results, search state, and diagnostics. Fetch tasks process the hits
+   * of one chunk at a time. The caller is responsible for completing the response observer.
+   *
+   * @param indexState index state
+   * @param searchRequest search request
+   * @param responseObserver observer to send hit chunks and the final response to
+   * @param flowControl flow control for the response observer, or null to send chunks without
+   *     waiting for the client
+   * @param hitsChunkSize max number of hits in each chunk
+   * @throws SearchHandlerException on error executing search
+   */
+  public void handleStream(
+      IndexState indexState,
+      SearchRequest searchRequest,
+      StreamObserver<SearchResponse> responseObserver,
+      StreamFlowControl flowControl,
+      int hitsChunkSize)
+      throws SearchHandlerException {
+    if (hitsChunkSize <= 0) {
+      throw new IllegalArgumentException("hitsChunkSize must be > 0");
+    }
+    SearchResponse finalResponse =
+        handle(indexState, searchRequest, responseObserver, flowControl, hitsChunkSize);
+    responseObserver.onNext(finalResponse);
+  }
+
+  private SearchResponse handle(
+      IndexState indexState,
+      SearchRequest searchRequest,
+      StreamObserver<SearchResponse> hitsObserver,
+      StreamFlowControl flowControl,
+      int hitsChunkSize)
+      throws SearchHandlerException {
     // this request may have been waiting in the grpc queue too long
     DeadlineUtils.checkDeadline("SearchHandler: start", "SEARCH");
 
-    ShardState shardState = indexState.getShard(0);
+    ShardState shardState = indexState.getSearchShard();
 
     // Index won't be started if we are currently warming
     if (!warming) {
@@ -109,11 +160,28 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
 
     SearcherTaxonomyManager.SearcherAndTaxonomy s = null;
     SearchContext searchContext;
+    SearchResponse searchResponse;
     try {
       s =
           getSearcherAndTaxonomy(
               searchRequest, indexState, shardState, diagnostics, threadPoolExecutor);
 
+      SearchResultCache resultCache =
+          warming || hitsObserver != null ? null : SearchResultCache.getInstance();
+      SearchResultCache.CacheKey cacheKey = null;
+      if (resultCache != null && SearchResultCache.isCacheable(searchRequest)) {
+        cacheKey =
+            SearchResultCache.createKey(
+                (DirectoryReader) s.searcher.getIndexReader(), searchRequest);
+        if (cacheKey != null) {
+          SearchResponse cachedResponse = resultCache.get(cacheKey);
+          if (cachedResponse != null) {
+            addToWarmer(indexState, searchRequest);
+            return fromCachedResponse(cachedResponse, diagnostics, s);
+          }
+        }
+      }
+
       ProfileResult.Builder profileResultBuilder = null;
       if (searchRequest.getProfile()) {
         profileResultBuilder = ProfileResult.newBuilder();
@@ -212,11 +280,21 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
 
       hits = getHitsFromOffset(hits, searchContext.getStartHit(), searchContext.getTopHits());
 
-      // create Hit.Builder for each hit, and populate with lucene doc id and ranking info
-      setResponseHits(searchContext, hits);
-
-      // fill Hit.Builder with requested fields
-      fetchFields(searchContext);
+      setTotalHits(searchContext, hits);
+      if (hitsObserver == null) {
+        // create Hit.Builder for each hit, and populate with lucene doc id and ranking info
+        addResponseHits(
+            searchContext,
+            searchContext.getResponseBuilder(),
+            hits.scoreDocs,
+            0,
+            hits.scoreDocs.length);
+
+        // fill Hit.Builder with requested fields
+        fetchFields(searchContext, searchContext.getResponseBuilder().getHitsBuilderList());
+      } else {
+        streamHits(searchContext, hits, hitsObserver, flowControl, hitsChunkSize);
+      }
 
       SearchState.Builder searchState = SearchState.newBuilder();
       searchContext.getResponseBuilder().setSearchState(searchState);
@@ -242,6 +320,12 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
       if (profileResultBuilder != null) {
         searchContext.getResponseBuilder().setProfileResult(profileResultBuilder);
       }
+
+      searchResponse = searchContext.getResponseBuilder().build();
+      // partial results from a timeout are not cached, the next request may finish in time
+      if (cacheKey != null && !searchResponse.getHitTimeout()) {
+        resultCache.put(cacheKey, searchResponse);
+      }
     } catch (IOException | InterruptedException | ExecutionException e) {
       logger.warn(e.getMessage(), e);
       throw new SearchHandlerException(e);
@@ -264,7 +348,15 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
       }
     }
 
-    // Add searchRequest to warmer if needed
+    addToWarmer(indexState, searchRequest);
+
+    // if we are out of time, don't bother with serialization
+    DeadlineUtils.checkDeadline("SearchHandler: end", "SEARCH");
+    return searchResponse;
+  }
+
+  /** Add searchRequest to warmer if needed. */
+  private void addToWarmer(IndexState indexState, SearchRequest searchRequest) {
     try {
       if (!warming && indexState.getWarmer() != null) {
         indexState.getWarmer().addSearchRequest(searchRequest);
@@ -272,10 +364,106 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
     } catch (Exception e) {
       logger.error("Unable to add warming query", e);
     }
+  }
 
-    // if we are out of time, don't bother with serialization
-    DeadlineUtils.checkDeadline("SearchHandler: end", "SEARCH");
-    return searchContext.getResponseBuilder().build();
+  /**
+   * Build the response for a request served from the result cache. The cached diagnostics describe
+   * the search that populated the cache, so they are replaced with those of this request, which
+   * only has searcher acquisition timings since no search was done. The search state is updated
+   * with the current time and the searcher used for this request.
+   *
+   * @param cachedResponse response from the result cache
+   * @param diagnostics diagnostics for this request
+   * @param s searcher used for this request
+   * @return response for this request
+   */
+  private static SearchResponse fromCachedResponse(
+      SearchResponse cachedResponse,
+      SearchResponse.Diagnostics.Builder diagnostics,
+      SearcherTaxonomyManager.SearcherAndTaxonomy s) {
+    SearchResponse.Builder responseBuilder = cachedResponse.toBuilder().setDiagnostics(diagnostics);
+    responseBuilder
+        .getSearchStateBuilder()
+        .setTimestamp(System.currentTimeMillis() / 1000)
+        .setSearcherVersion(((DirectoryReader) s.searcher.getIndexReader()).getVersion());
+    return responseBuilder.build();
+  }
+
+  /**
+   * Send hits to the observer in chunks. Fields are fetched for one chunk at a time, and each chunk
+   * is released once sent. If flow control is provided, wait until the client is ready for more
+   * data before sending each chunk, so that chunks do not accumulate in the transport buffer.
+   *
+   * @param searchContext search parameters
+   * @param hits hits to send
+   * @param hitsObserver observer to send hit chunks to
+   * @param flowControl flow control for the observer, or null
+   * @param hitsChunkSize max number of hits in each chunk
+   * @throws IOException on error reading index data
+   * @throws ExecutionException on error when performing parallel fetch
+   * @throws InterruptedException if parallel fetch is interrupted
+   */
+  private void streamHits(
+      SearchContext searchContext,
+      TopDocs hits,
+      StreamObserver<SearchResponse> hitsObserver,
+      StreamFlowControl flowControl,
+      int hitsChunkSize)
+      throws IOException, ExecutionException, InterruptedException {
+    for (int start = 0; start < hits.scoreDocs.length; start += hitsChunkSize) {
+      int end = Math.min(start + hitsChunkSize, hits.scoreDocs.length);
+      SearchResponse.Builder chunkBuilder = SearchResponse.newBuilder();
+      addResponseHits(searchContext, chunkBuilder, hits.scoreDocs, start, end);
+      fetchFields(searchContext, chunkBuilder.getHitsBuilderList());
+
+      if (flowControl != null) {
+        flowControl.awaitReady();
+      }
+      hitsObserver.onNext(chunkBuilder.build());
+    }
+  }
+
+  /**
+   * Flow control for a streamed search response, signaled by the call's onReady and onCancel
+   * callbacks. gRPC only allows registering these callbacks before the call handler returns, so
+   * this must be created in the handler. The callbacks are delivered on the call's thread, so the
+   * search must be run on another thread for them to arrive while it waits.
+   */
+  public static class StreamFlowControl {
+    private final ServerCallStreamObserver<SearchResponse> observer;
+
+    /**
+     * Constructor.
+     *
+     * @param observer observer for the call, must be in its handler
+     */
+    public StreamFlowControl(ServerCallStreamObserver<SearchResponse> observer) {
+      this.observer = observer;
+      observer.setOnReadyHandler(this::signal);
+      observer.setOnCancelHandler(this::signal);
+    }
+
+    private synchronized void signal() {
+      notifyAll();
+    }
+
+    /**
+     * Wait until the client is ready to receive more messages. The wait is bounded, so that the
+     * request deadline is still checked while the client is not reading.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void awaitReady() throws InterruptedException {
+      while (!observer.isReady()) {
+        if (observer.isCancelled()) {
+          throw Status.CANCELLED
+              .withDescription("searchStream cancelled by client")
+              .asRuntimeException();
+        }
+        DeadlineUtils.checkDeadline("SearchHandler: stream hits", "SEARCH");
+        wait(MAX_STREAM_READY_WAIT_MS);
+      }
+    }
   }
 
   /**
@@ -284,19 +472,19 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
    * com.yelp.nrtsearch.server.luceneserver.search.FetchTasks.FetchTask}s are executed.
    *
    * @param searchContext search parameters
+   * @param hits hit builders to fill, populated with lucene doc id and ranking info
    * @throws IOException on error reading index data
    * @throws ExecutionException on error when performing parallel fetch
    * @throws InterruptedException if parallel fetch is interrupted
    */
-  private void fetchFields(SearchContext searchContext)
+  private void fetchFields(SearchContext searchContext, List<Hit.Builder> hits)
       throws IOException, ExecutionException, InterruptedException {
-    if (searchContext.getResponseBuilder().getHitsBuilderList().isEmpty()) {
+    if (hits.isEmpty()) {
       return;
     }
 
     // sort hits by lucene doc id
-    List<Hit.Builder> hitBuilders =
-        new ArrayList<>(searchContext.getResponseBuilder().getHitsBuilderList());
+    List<Hit.Builder> hitBuilders = new ArrayList<>(hits);
     hitBuilders.sort(Comparator.comparing(Hit.Builder::getLuceneDocId));
 
     IndexState indexState = searchContext.getIndexState();
@@ -308,7 +496,9 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
     boolean parallelFetchByField =
         indexState.getThreadPoolConfiguration().getParallelFetchByField();
 
-    if (parallelFetchByField
+    if (indexState.getThreadPoolConfiguration().getSegmentParallelFetch()) {
+      segmentParallelFetch(searchContext, hitBuilders);
+    } else if (parallelFetchByField
         && fetch_thread_pool_size > 1
         && searchContext.getRetrieveFields().keySet().size() > min_parallel_fetch_num_fields
         && hitBuilders.size() > min_parallel_fetch_num_hits) {
@@ -402,9 +592,52 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
     }
 
     // execute all hits fetch tasks
-    searchContext
-        .getFetchTasks()
-        .processAllHits(searchContext, searchContext.getResponseBuilder().getHitsBuilderList());
+    searchContext.getFetchTasks().processAllHits(searchContext, hits);
+  }
+
+  /**
+   * Fetch fields for hits divided into ranges of lucene doc id by the {@link FetchScheduler}. The
+   * number of ranges depends on the fetch cost and the current load on the fetch executor, rather
+   * than hit and field count thresholds. The first range is fetched by the calling thread.
+   *
+   * @param searchContext search parameters
+   * @param hitBuilders hits to fetch, sorted by lucene doc id
+   * @throws ExecutionException on error when performing parallel fetch
+   * @throws InterruptedException if parallel fetch is interrupted
+   */
+  private void segmentParallelFetch(SearchContext searchContext, List<Hit.Builder> hitBuilders)
+      throws ExecutionException, InterruptedException {
+    IndexState indexState = searchContext.getIndexState();
+    ThreadPoolConfiguration threadPoolConfiguration = indexState.getThreadPoolConfiguration();
+    ExecutorService fetchExecutor = indexState.getFetchThreadPoolExecutor();
+    long totalCost =
+        FetchScheduler.getHitCost(searchContext.getRetrieveFields()) * hitBuilders.size();
+    int parallelism =
+        FetchScheduler.getParallelism(
+            fetchExecutor,
+            threadPoolConfiguration.getMaxFetchThreads(),
+            totalCost,
+            threadPoolConfiguration.getMinParallelFetchTaskCost());
+    List<List<Hit.Builder>> ranges =
+        FetchScheduler.partition(
+            hitBuilders,
+            searchContext.getSearcherAndTaxonomy().searcher.getIndexReader().leaves(),
+            parallelism);
+
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 1; i < ranges.size(); ++i) {
+      FillDocsTask fillDocsTask = new FillDocsTask(searchContext, ranges.get(i));
+      try {
+        futures.add(fetchExecutor.submit(fillDocsTask));
+      } catch (RejectedExecutionException e) {
+        // executor became saturated, fetch in this thread instead
+        fillDocsTask.run();
+      }
+    }
+    new FillDocsTask(searchContext, ranges.get(0)).run();
+    for (Future<?> future : futures) {
+      future.get();
+    }
   }
 
   /**
@@ -433,23 +666,40 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
   }
 
   /**
-   * Add {@link com.yelp.nrtsearch.server.grpc.SearchResponse.Hit.Builder}s to the context {@link
-   * SearchResponse.Builder} for each of the query hits. Populate the builders with the lucene doc
-   * id and ranking info.
+   * Set the total hits in the context {@link SearchResponse.Builder}.
    *
    * @param context search context
    * @param hits hits from query
    */
-  private static void setResponseHits(SearchContext context, TopDocs hits) {
+  private static void setTotalHits(SearchContext context, TopDocs hits) {
     TotalHits totalHits =
         TotalHits.newBuilder()
             .setRelation(TotalHits.Relation.valueOf(hits.totalHits.relation.name()))
             .setValue(hits.totalHits.value)
             .build();
     context.getResponseBuilder().setTotalHits(totalHits);
-    for (int hitIndex = 0; hitIndex < hits.scoreDocs.length; hitIndex++) {
-      var hitResponse = context.getResponseBuilder().addHitsBuilder();
-      ScoreDoc hit = hits.scoreDocs[hitIndex];
+  }
+
+  /**
+   * Add {@link com.yelp.nrtsearch.server.grpc.SearchResponse.Hit.Builder}s to a {@link
+   * SearchResponse.Builder} for each of the query hits. Populate the builders with the lucene doc
+   * id and ranking info.
+   *
+   * @param context search context
+   * @param responseBuilder builder to add hits to
+   * @param scoreDocs hits from query
+   * @param from index of first hit to add, inclusive
+   * @param to index of last hit to add, exclusive
+   */
+  private static void addResponseHits(
+      SearchContext context,
+      SearchResponse.Builder responseBuilder,
+      ScoreDoc[] scoreDocs,
+      int from,
+      int to) {
+    for (int hitIndex = from; hitIndex < to; hitIndex++) {
+      var hitResponse = responseBuilder.addHitsBuilder();
+      ScoreDoc hit = scoreDocs[hitIndex];
       hitResponse.setLuceneDocId(hit.doc);
       context.getCollector().fillHitRanking(hitResponse, hit);
     }
@@ -597,12 +847,12 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
       // to ensure a specific indexing change is visible:
       long t0 = System.nanoTime();
       long gen = searchRequest.getIndexGen();
-      if (gen > state.writer.getMaxCompletedSequenceNumber()) {
+      if (gen > state.getMaxCompletedSequenceNumber()) {
         throw new RuntimeException(
             "indexGen: requested indexGen ("
                 + gen
                 + ") is beyond the current maximum generation ("
-                + state.writer.getMaxCompletedSequenceNumber()
+                + state.getMaxCompletedSequenceNumber()
                 + ")");
       }
       state.waitForGeneration(gen);
@@ -864,6 +1114,23 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
         List<SearchResponse.Hit.Builder> sliceHits,
         LeafReaderContext sliceSegment)
         throws IOException {
+      boolean columnarFetch =
+          context
+              .getSearchContext()
+              .getIndexState()
+              .getGlobalState()
+              .getConfiguration()
+              .getColumnarFetch();
+      int[] sliceDocIds = null;
+      List<DocValuesColumn> columns = null;
+      if (columnarFetch) {
+        sliceDocIds = new int[sliceHits.size()];
+        for (int i = 0; i < sliceHits.size(); ++i) {
+          sliceDocIds[i] = sliceHits.get(i).getLuceneDocId() - sliceSegment.docBase;
+        }
+        columns = new ArrayList<>();
+      }
+
       for (Map.Entry<String, FieldDef> fieldDefEntry : context.getRetrieveFields().entrySet()) {
         if (fieldDefEntry.getValue() instanceof VirtualFieldDef) {
           fetchFromValueSource(
@@ -874,7 +1141,16 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
         } else if (fieldDefEntry.getValue() instanceof IndexableFieldDef) {
           IndexableFieldDef indexableFieldDef = (IndexableFieldDef) fieldDefEntry.getValue();
           if (indexableFieldDef.hasDocValues()) {
-            fetchFromDocVales(sliceHits, sliceSegment, fieldDefEntry.getKey(), indexableFieldDef);
+            LoadedDocValues<?> docValues = indexableFieldDef.getDocValues(sliceSegment);
+            if (columnarFetch && docValues instanceof LoadedDocValues.ColumnarValues) {
+              LoadedDocValues.ColumnarValues columnarValues =
+                  (LoadedDocValues.ColumnarValues) docValues;
+              NumericColumn column = new NumericColumn();
+              columnarValues.loadColumn(sliceDocIds, sliceDocIds.length, column);
+              columns.add(new DocValuesColumn(fieldDefEntry.getKey(), columnarValues, column));
+            } else {
+              fetchFromDocVales(sliceHits, sliceSegment, fieldDefEntry.getKey(), docValues);
+            }
           } else if (indexableFieldDef.isStored()) {
             fetchFromStored(context, sliceHits, fieldDefEntry.getKey(), indexableFieldDef);
           } else {
@@ -887,16 +1163,21 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
         }
       }
 
+      if (columns != null && !columns.isEmpty()) {
+        fillFromColumns(sliceHits, columns);
+      }
+
       // execute any per hit fetch tasks
       for (Hit.Builder hit : sliceHits) {
         context.getFetchTasks().processHit(context.getSearchContext(), sliceSegment, hit);
-        // TODO: combine with custom fetch tasks
-        if (context.getSearchContext().getHighlightFetchTask() != null) {
-          context
-              .getSearchContext()
-              .getHighlightFetchTask()
-              .processHit(context.getSearchContext(), sliceSegment, hit);
-        }
+      }
+      // TODO: combine with custom fetch tasks
+      // highlight all slice hits together, they are from the same segment
+      if (context.getSearchContext().getHighlightFetchTask() != null) {
+        context
+            .getSearchContext()
+            .getHighlightFetchTask()
+            .processSegmentHits(context.getSearchContext(), sliceSegment, sliceHits);
       }
     }
 
@@ -930,9 +1211,8 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
         List<SearchResponse.Hit.Builder> sliceHits,
         LeafReaderContext sliceSegment,
         String name,
-        IndexableFieldDef indexableFieldDef)
+        LoadedDocValues<?> docValues)
         throws IOException {
-      LoadedDocValues<?> docValues = indexableFieldDef.getDocValues(sliceSegment);
       for (SearchResponse.Hit.Builder hit : sliceHits) {
         int docID = hit.getLuceneDocId() - sliceSegment.docBase;
         docValues.setDocId(docID);
@@ -946,6 +1226,44 @@ public class SearchHandler implements Handler<SearchRequest, SearchResponse> {
       }
     }
 
+    /**
+     * Build hit field values from the raw doc value columns loaded for the slice. Each column
+     * contains the values for the slice hits, in hit order.
+     */
+    private static void fillFromColumns(
+        List<SearchResponse.Hit.Builder> sliceHits, List<DocValuesColumn> columns) {
+      Map<String, SearchResponse.Hit.CompositeFieldValue> hitFields =
+          new HashMap<>(columns.size() * 2);
+      for (int hitIndex = 0; hitIndex < sliceHits.size(); ++hitIndex) {
+        hitFields.clear();
+        for (DocValuesColumn docValuesColumn : columns) {
+          NumericColumn column = docValuesColumn.column;
+          SearchResponse.Hit.CompositeFieldValue.Builder compositeFieldValue =
+              SearchResponse.Hit.CompositeFieldValue.newBuilder();
+          int valueCount = column.getValueCount(hitIndex);
+          for (int i = 0; i < valueCount; ++i) {
+            compositeFieldValue.addFieldValue(
+                docValuesColumn.values.rawToFieldValue(column.getValue(hitIndex, i)));
+          }
+          hitFields.put(docValuesColumn.name, compositeFieldValue.build());
+        }
+        sliceHits.get(hitIndex).putAllFields(hitFields);
+      }
+    }
+
+    /** Raw doc values for a field, loaded for all the hits in a slice. */
+    private static class DocValuesColumn {
+      private final String name;
+      private final LoadedDocValues.ColumnarValues values;
+      private final NumericColumn column;
+
+      DocValuesColumn(String name, LoadedDocValues.ColumnarValues values, NumericColumn column) {
+        this.name = name;
+        this.values = values;
+        this.column = column;
+      }
+    }
+
     /** Fetch field value stored in the index */
     private static void fetchFromStored(
         FieldFetchContext context,
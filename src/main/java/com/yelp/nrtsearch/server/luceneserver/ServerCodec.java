@@ -21,6 +21,7 @@ import com.yelp.nrtsearch.server.luceneserver.index.IndexStateManager;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
 import org.apache.lucene.codecs.lucene84.Lucene84Codec;
 
 /** Implements per-index {@link Codec}. */
@@ -30,10 +31,21 @@ public class ServerCodec extends Lucene84Codec {
   public static final String DEFAULT_DOC_VALUES_FORMAT = "Lucene80";
 
   private final IndexStateManager stateManager;
-  // nocommit expose compression control
 
-  /** Sole constructor. */
+  /** Constructor using the default stored fields compression mode. */
   public ServerCodec(IndexStateManager stateManager) {
+    this(stateManager, Lucene50StoredFieldsFormat.Mode.BEST_SPEED);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param stateManager index state manager
+   * @param storedFieldsMode compression mode for stored fields written to new segments
+   */
+  public ServerCodec(
+      IndexStateManager stateManager, Lucene50StoredFieldsFormat.Mode storedFieldsMode) {
+    super(storedFieldsMode);
     this.stateManager = stateManager;
   }
 
@@ -15,6 +15,7 @@
  */
 package com.yelp.nrtsearch.server.luceneserver;
 
+import com.yelp.nrtsearch.server.backup.BackgroundSegmentUploader;
 import com.yelp.nrtsearch.server.config.LuceneServerConfiguration;
 import com.yelp.nrtsearch.server.grpc.DeadlineUtils;
 import com.yelp.nrtsearch.server.grpc.IndexLiveSettings;
@@ -36,6 +37,8 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -55,6 +58,7 @@ import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexReader;
@@ -62,13 +66,15 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.LiveIndexWriterConfig;
 import org.apache.lucene.index.MergePolicy;
 import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.PersistentSnapshotDeletionPolicy;
+import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.SortedSetDocValues;
-import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.search.SearcherFactory;
@@ -116,9 +122,15 @@ public class ShardState implements Closeable {
   // nocommit make private again, add methods to do stuff to it:
   public NRTReplicaNode nrtReplicaNode;
 
+  /** Only non-null if we are primary and new segment files are uploaded in the background */
+  private BackgroundSegmentUploader segmentUploader;
+
   /** Taxonomy writer */
   public DirectoryTaxonomyWriter taxoWriter;
 
+  /** If the index writer has a pending commit prepared by {@link #commitShards(List)}. */
+  private boolean commitPrepared = false;
+
   /**
    * Internal IndexWriter used by DirectoryTaxonomyWriter; we pull this out so we can
    * .deleteUnusedFiles after a snapshot is removed.
@@ -147,10 +159,16 @@ public class ShardState implements Closeable {
   private ReferenceManager<IndexSearcher> searcherManager;
 
   /** Thread to periodically reopen the index. */
-  private ControlledRealTimeReopenThread<SearcherTaxonomyManager.SearcherAndTaxonomy> reopenThread;
+  private AdaptiveRefreshThread<SearcherTaxonomyManager.SearcherAndTaxonomy> reopenThread;
 
   /** Used with NRT replication */
-  private ControlledRealTimeReopenThread<IndexSearcher> reopenThreadPrimary;
+  private AdaptiveRefreshThread<IndexSearcher> reopenThreadPrimary;
+
+  /**
+   * Provides the live searcher over all shards, only set on shard 0 of an index with multiple
+   * shards.
+   */
+  private ShardedSearcherManager shardedSearcherManager;
 
   /** Periodically wakes up and prunes old searchers from slm. */
   private SearcherPruningThread searcherPruningThread;
@@ -215,11 +233,20 @@ public class ShardState implements Closeable {
       assert nrtReplicaNode == null;
       // nocommit how to get taxonomy back?
       reopenThreadPrimary =
-          new ControlledRealTimeReopenThread<>(
+          new AdaptiveRefreshThread<>(
               writer,
               searcherManager,
+              () -> {
+                IndexSearcher searcher = searcherManager.acquire();
+                try {
+                  return isCurrent(searcher);
+                } finally {
+                  searcherManager.release(searcher);
+                }
+              },
               indexState.getMaxRefreshSec(),
-              indexState.getMinRefreshSec());
+              indexState.getMinRefreshSec(),
+              indexState.getName());
       reopenThreadPrimary.setName("LuceneNRTPrimaryReopen-" + name);
       reopenThreadPrimary.start();
     } else if (manager != null) {
@@ -227,13 +254,31 @@ public class ShardState implements Closeable {
         reopenThread.close();
       }
       reopenThread =
-          new ControlledRealTimeReopenThread<>(
-              writer, manager, indexState.getMaxRefreshSec(), indexState.getMinRefreshSec());
+          new AdaptiveRefreshThread<>(
+              writer,
+              manager,
+              () -> {
+                SearcherTaxonomyManager.SearcherAndTaxonomy s = manager.acquire();
+                try {
+                  return isCurrent(s.searcher);
+                } finally {
+                  manager.release(s);
+                }
+              },
+              indexState.getMaxRefreshSec(),
+              indexState.getMinRefreshSec(),
+              indexState.getName());
       reopenThread.setName("LuceneNRTReopen-" + name);
       reopenThread.start();
     }
   }
 
+  /** Get if the searcher reader contains all changes made by the index writer. */
+  private static boolean isCurrent(IndexSearcher searcher) throws IOException {
+    IndexReader reader = searcher.getIndexReader();
+    return reader instanceof DirectoryReader && ((DirectoryReader) reader).isCurrent();
+  }
+
   /** True if this index is started. */
   public boolean isStarted() {
     if (started) {
@@ -270,8 +315,16 @@ public class ShardState implements Closeable {
     return nrtReplicaNode != null;
   }
 
-  public void waitForGeneration(long gen) throws InterruptedException {
-    if (nrtPrimaryNode != null) {
+  public void waitForGeneration(long gen) throws InterruptedException, IOException {
+    if (shardedSearcherManager != null) {
+      for (ShardState shard : shardedSearcherManager.getShards()) {
+        // generations are per shard writer, the shard max completed sequence number covers all
+        // operations that completed before the requested generation was returned
+        shard.reopenThread.waitForGeneration(
+            Math.min(gen, shard.writer.getMaxCompletedSequenceNumber()));
+      }
+      shardedSearcherManager.maybeRefreshBlocking();
+    } else if (nrtPrimaryNode != null) {
       reopenThreadPrimary.waitForGeneration(gen);
     } else {
       reopenThread.waitForGeneration(gen);
@@ -317,8 +370,14 @@ public class ShardState implements Closeable {
 
     started = false;
     List<Closeable> closeables = new ArrayList<>();
+    if (shardedSearcherManager != null) {
+      closeables.add(shardedSearcherManager);
+      shardedSearcherManager = null;
+    }
     // nocommit catch exc & rollback:
     if (nrtPrimaryNode != null) {
+      closeables.add(segmentUploader);
+      segmentUploader = null;
       closeables.add(reopenThreadPrimary);
       closeables.add(searcherManager);
       // this closes writer:
@@ -345,9 +404,11 @@ public class ShardState implements Closeable {
       closeables.add(searcherPruningThread);
       closeables.add(slm);
       closeables.add(writer);
-      closeables.add(taxoWriter);
+      if (ownsTaxonomy()) {
+        closeables.add(taxoWriter);
+        closeables.add(taxoDir);
+      }
       closeables.add(indexDir);
-      closeables.add(taxoDir);
       writer = null;
     }
     slm = new SearcherLifetimeManager();
@@ -371,7 +432,7 @@ public class ShardState implements Closeable {
     // nocommit this does nothing on replica?  make a failing test!
     if (writer != null) {
       // nocommit: two phase commit?
-      if (taxoWriter != null) {
+      if (taxoWriter != null && ownsTaxonomy()) {
         taxoWriter.commit();
       }
       gen = writer.commit();
@@ -382,8 +443,142 @@ public class ShardState implements Closeable {
     return gen;
   }
 
+  /**
+   * Commit all the shards of an index. Every shard adds categories to the shard 0 taxonomy, so
+   * documents in any shard may reference ordinals added through other shards. To make sure each
+   * shard commit only references ordinals in the committed taxonomy, without blocking indexing,
+   * every shard writer first prepares its commit, then the taxonomy is committed, and finally the
+   * prepared shard commits are completed. Callers must not commit the shards concurrently.
+   *
+   * @param shards all index shards, in shard order
+   * @return commit generation of each shard, in shard order
+   * @throws IOException on error committing
+   */
+  public static long[] commitShards(List<ShardState> shards) throws IOException {
+    for (ShardState shard : shards) {
+      shard.prepareCommit();
+    }
+    ShardState taxonomyShard = shards.get(0);
+    synchronized (taxonomyShard) {
+      if (taxonomyShard.taxoWriter != null) {
+        taxonomyShard.taxoWriter.commit();
+      }
+    }
+    long[] gens = new long[shards.size()];
+    for (int i = 0; i < shards.size(); ++i) {
+      gens[i] = shards.get(i).finishCommit();
+    }
+    return gens;
+  }
+
+  /**
+   * Prepare the commit of the shard index writer, if not already prepared by a previous commit that
+   * did not complete.
+   */
+  private synchronized void prepareCommit() throws IOException {
+    DeadlineUtils.checkDeadline("ShardState: commit " + this.name, "COMMIT");
+    if (writer != null && !commitPrepared) {
+      writer.prepareCommit();
+      commitPrepared = true;
+    }
+  }
+
+  /** Complete the prepared commit of the shard index writer. */
+  private synchronized long finishCommit() throws IOException {
+    if (writer == null) {
+      return -1;
+    }
+    long gen = writer.commit();
+    commitPrepared = false;
+    return gen;
+  }
+
+  /**
+   * Get if this shard owns the taxonomy writer. All shards of an index use the taxonomy of shard 0,
+   * so that facet ordinals are consistent when searching across shards.
+   */
+  private boolean ownsTaxonomy() {
+    return shardOrd == 0;
+  }
+
+  /**
+   * Start searching over all the shards of an index. Must be called on shard 0 after all shards
+   * have been started as standalone. After this, acquiring a searcher from this shard provides a
+   * searcher over all shards.
+   *
+   * @param shards all index shards, including this one
+   * @throws IOException on error opening searcher
+   */
+  public synchronized void startShardedSearch(Collection<ShardState> shards) throws IOException {
+    if (shardOrd != 0) {
+      throw new IllegalStateException("Sharded search must be started on shard 0: " + name);
+    }
+    for (ShardState shard : shards) {
+      if (!shard.isStarted() || shard.writer == null) {
+        throw new IllegalStateException("Shard must be started as standalone: " + shard.name);
+      }
+    }
+    List<ShardState> shardList = new ArrayList<>(shards);
+    shardList.sort(Comparator.comparingInt(shard -> shard.shardOrd));
+    shardedSearcherManager =
+        new ShardedSearcherManager(shardList, taxoWriter, new ShardSearcherFactory(true, true));
+    // make changes visible after any shard refreshes
+    ReferenceManager.RefreshListener refreshListener =
+        new ReferenceManager.RefreshListener() {
+          @Override
+          public void beforeRefresh() {}
+
+          @Override
+          public void afterRefresh(boolean didRefresh) throws IOException {
+            ShardedSearcherManager currentManager = shardedSearcherManager;
+            if (didRefresh && currentManager != null) {
+              currentManager.maybeRefreshBlocking();
+            }
+          }
+        };
+    for (ShardState shard : shardList) {
+      shard.manager.addListener(refreshListener);
+    }
+  }
+
+  /** Get if this shard provides a searcher over all the shards of the index. */
+  public boolean isShardedSearch() {
+    return shardedSearcherManager != null;
+  }
+
+  /**
+   * Get the max completed sequence number of the index writer. For a sharded search, this is the
+   * max over all shards.
+   */
+  public long getMaxCompletedSequenceNumber() {
+    if (shardedSearcherManager != null) {
+      long maxSequenceNumber = -1;
+      for (ShardState shard : shardedSearcherManager.getShards()) {
+        maxSequenceNumber =
+            Math.max(maxSequenceNumber, shard.writer.getMaxCompletedSequenceNumber());
+      }
+      return maxSequenceNumber;
+    }
+    return writer.getMaxCompletedSequenceNumber();
+  }
+
+  /**
+   * Acquire a searcher for only the documents in this shard. Only valid for a shard started as
+   * standalone.
+   */
+  public SearcherTaxonomyManager.SearcherAndTaxonomy acquireShard() throws IOException {
+    return manager.acquire();
+  }
+
+  /** Release a searcher acquired with {@link #acquireShard()}. */
+  public void releaseShard(SearcherTaxonomyManager.SearcherAndTaxonomy s) throws IOException {
+    manager.release(s);
+  }
+
   public SearcherTaxonomyManager.SearcherAndTaxonomy acquire() throws IOException {
-    if (nrtPrimaryNode != null) {
+    if (shardedSearcherManager != null) {
+      return shardedSearcherManager.acquire();
+    } else if (nrtPrimaryNode != null) {
       return new SearcherTaxonomyManager.SearcherAndTaxonomy(
           nrtPrimaryNode.getSearcherManager().acquire(), null);
     } else if (nrtReplicaNode != null) {
@@ -395,7 +590,9 @@ public class ShardState implements Closeable {
   }
 
   public void release(SearcherTaxonomyManager.SearcherAndTaxonomy s) throws IOException {
-    if (nrtPrimaryNode != null) {
+    if (shardedSearcherManager != null) {
+      shardedSearcherManager.release(s);
+    } else if (nrtPrimaryNode != null) {
       nrtPrimaryNode.getSearcherManager().release(s.searcher);
     } else if (nrtReplicaNode != null) {
       nrtReplicaNode.getSearcherManager().release(s.searcher);
@@ -579,41 +776,57 @@ public class ShardState implements Closeable {
         openMode = IndexWriterConfig.OpenMode.APPEND;
       }
 
-      Path taxoDirFile;
-      if (rootDir == null) {
-        taxoDirFile = null;
+      if (ownsTaxonomy()) {
+        Path taxoDirFile;
+        if (rootDir == null) {
+          taxoDirFile = null;
+        } else {
+          taxoDirFile = rootDir.resolve(TAXONOMY_DATA_DIR_NAME);
+        }
+        taxoDir =
+            indexState
+                .getDirectoryFactory()
+                .open(
+                    taxoDirFile,
+                    indexState.getGlobalState().getConfiguration().getPreloadConfig());
+
+        taxoSnapshots =
+            new PersistentSnapshotDeletionPolicy(
+                new KeepOnlyLastCommitDeletionPolicy(),
+                taxoDir,
+                IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+
+        taxoWriter =
+            new DirectoryTaxonomyWriter(taxoDir, OpenMode.CREATE_OR_APPEND) {
+              @Override
+              protected IndexWriterConfig createIndexWriterConfig(
+                  IndexWriterConfig.OpenMode openMode) {
+                IndexWriterConfig iwc = super.createIndexWriterConfig(openMode);
+                iwc.setIndexDeletionPolicy(taxoSnapshots);
+                return iwc;
+              }
+
+              @Override
+              protected IndexWriter openIndexWriter(Directory dir, IndexWriterConfig iwc)
+                  throws IOException {
+                IndexWriter w = super.openIndexWriter(dir, iwc);
+                taxoInternalWriter = w;
+                return w;
+              }
+            };
       } else {
-        taxoDirFile = rootDir.resolve(TAXONOMY_DATA_DIR_NAME);
+        // facet ordinals must be consistent across shards, use the taxonomy of shard 0. The
+        // taxonomy writer supports adding categories and opening NRT taxonomy readers from many
+        // threads, as it already does for the indexing threads of a single shard. Commits are
+        // coordinated across shards by commitShards, only shard 0 closes the writer.
+        ShardState taxonomyShard = indexState.getShard(0);
+        if (taxonomyShard.taxoWriter == null) {
+          throw new IllegalStateException("Shard 0 must be started before shard: " + name);
+        }
+        taxoSnapshots = taxonomyShard.taxoSnapshots;
+        taxoWriter = taxonomyShard.taxoWriter;
+        taxoInternalWriter = taxonomyShard.taxoInternalWriter;
       }
-      taxoDir =
-          indexState
-              .getDirectoryFactory()
-              .open(taxoDirFile, indexState.getGlobalState().getConfiguration().getPreloadConfig());
-
-      taxoSnapshots =
-          new PersistentSnapshotDeletionPolicy(
-              new KeepOnlyLastCommitDeletionPolicy(),
-              taxoDir,
-              IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-
-      taxoWriter =
-          new DirectoryTaxonomyWriter(taxoDir, OpenMode.CREATE_OR_APPEND) {
-            @Override
-            protected IndexWriterConfig createIndexWriterConfig(
-                IndexWriterConfig.OpenMode openMode) {
-              IndexWriterConfig iwc = super.createIndexWriterConfig(openMode);
-              iwc.setIndexDeletionPolicy(taxoSnapshots);
-              return iwc;
-            }
-
-            @Override
-            protected IndexWriter openIndexWriter(Directory dir, IndexWriterConfig iwc)
-                throws IOException {
-              IndexWriter w = super.openIndexWriter(dir, iwc);
-              taxoInternalWriter = w;
-              return w;
-            }
-          };
 
       writer =
           new NrtIndexWriter(
@@ -635,9 +848,15 @@ public class ShardState implements Closeable {
 
       // nocommit must also pull snapshots for taxoReader?
 
+      // with multiple shards, searches use a reader over all shards, so shard readers do not
+      // need eager ordinals or metrics
+      boolean shardedIndex = indexState.getNumShards() > 1;
       manager =
           new SearcherTaxonomyManager(
-              writer, true, new ShardSearcherFactory(true, true), taxoWriter);
+              writer,
+              true,
+              new ShardSearcherFactory(!shardedIndex, !shardedIndex),
+              taxoWriter);
 
       restartReopenThread();
 
@@ -646,14 +865,10 @@ public class ShardState implements Closeable {
     } finally {
       if (!started) {
         IOUtils.closeWhileHandlingException(
-            reopenThread,
-            manager,
-            writer,
-            taxoWriter,
-            searcherPruningThread,
-            slm,
-            indexDir,
-            taxoDir);
+            reopenThread, manager, writer, searcherPruningThread, slm, indexDir);
+        if (ownsTaxonomy()) {
+          IOUtils.closeWhileHandlingException(taxoWriter, taxoDir);
+        }
         writer = null;
         slm = new SearcherLifetimeManager();
       }
@@ -946,6 +1161,7 @@ public class ShardState implements Closeable {
               new ShardSearcherFactory(true, false),
               verbose ? System.out : new PrintStream(OutputStream.nullOutputStream()),
               configuration.getFileCopyConfig().getAckedCopy(),
+              configuration.getFileCopyConfig().getCopyConcurrency(),
               configuration.getDecInitialCommit(),
               configuration.getFilterIncompatibleSegmentReaders());
       if (primaryGen != -1) {
@@ -1007,8 +1223,70 @@ public class ShardState implements Closeable {
     }
   }
 
+  /**
+   * Start uploading new segment files in the background, as they are written by merges and
+   * flushes. Merged segments are added before they are pre-copied to replicas. Flushed segments
+   * are added after each refresh. Must be called after {@link #start()} or {@link
+   * #startPrimary(long)}.
+   *
+   * @param uploader segment file uploader, closed with this shard
+   */
+  public synchronized void startSegmentUploader(BackgroundSegmentUploader uploader) {
+    if (writer == null || isReplica()) {
+      throw new IllegalStateException(
+          "Segment uploader can only be started on a started primary or standalone shard");
+    }
+    segmentUploader = uploader;
+
+    // a primary node installs a warmer that pre-copies merged segments to replicas
+    LiveIndexWriterConfig writerConfig = writer.getConfig();
+    IndexWriter.IndexReaderWarmer preCopyWarmer = writerConfig.getMergedSegmentWarmer();
+    writerConfig.setMergedSegmentWarmer(
+        reader -> {
+          if (reader instanceof SegmentReader) {
+            uploader.addFiles(((SegmentReader) reader).getSegmentInfo().files());
+          }
+          if (preCopyWarmer != null) {
+            preCopyWarmer.warm(reader);
+          }
+        });
+
+    addRefreshListener(
+        new ReferenceManager.RefreshListener() {
+          @Override
+          public void beforeRefresh() {}
+
+          @Override
+          public void afterRefresh(boolean didRefresh) throws IOException {
+            if (!didRefresh) {
+              return;
+            }
+            SearcherTaxonomyManager.SearcherAndTaxonomy s = acquire();
+            try {
+              Set<String> files = new HashSet<>();
+              for (LeafReaderContext context : s.searcher.getIndexReader().leaves()) {
+                LeafReader leafReader = FilterLeafReader.unwrap(context.reader());
+                if (leafReader instanceof SegmentReader) {
+                  files.addAll(((SegmentReader) leafReader).getSegmentInfo().files());
+                }
+              }
+              uploader.addFiles(files);
+            } finally {
+              release(s);
+            }
+          }
+        });
+  }
+
+  /** Get the background segment uploader, or null if segments are only uploaded on commit. */
+  public BackgroundSegmentUploader getSegmentUploader() {
+    return segmentUploader;
+  }
+
   public void addRefreshListener(ReferenceManager.RefreshListener listener) {
-    if (nrtPrimaryNode != null) {
+    if (shardedSearcherManager != null) {
+      shardedSearcherManager.addListener(listener);
+    } else if (nrtPrimaryNode != null) {
       nrtPrimaryNode.getSearcherManager().addListener(listener);
     } else if (nrtReplicaNode != null) {
       nrtReplicaNode.getSearcherManager().addListener(listener);
@@ -1018,7 +1296,9 @@ public class ShardState implements Closeable {
   }
 
   public void removeRefreshListener(ReferenceManager.RefreshListener listener) {
-    if (nrtPrimaryNode != null) {
+    if (shardedSearcherManager != null) {
+      shardedSearcherManager.removeListener(listener);
+    } else if (nrtPrimaryNode != null) {
       nrtPrimaryNode.getSearcherManager().removeListener(listener);
     } else if (nrtReplicaNode != null) {
       nrtReplicaNode.getSearcherManager().removeListener(listener);
@@ -1038,6 +1318,11 @@ public class ShardState implements Closeable {
         This is also run in a separate thread every near-real-time interval (1s) (see: restartReopenThread for Primary)
       */
       searcherManager.maybeRefreshBlocking();
+    } else if (shardedSearcherManager != null) {
+      for (ShardState shard : shardedSearcherManager.getShards()) {
+        shard.manager.maybeRefreshBlocking();
+      }
+      shardedSearcherManager.maybeRefreshBlocking();
     } else {
       /* SearchAndTaxnomyManager for stand alone mode */
       manager.maybeRefreshBlocking();
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * {@link DirectoryReader} that presents the segments of multiple index shards as a single point in
+ * time view. Shard versions are independent of each other, so the reader version is a composite
+ * version assigned by its creator, which must increase every time a new reader is opened over any
+ * changed shard. The version of each shard is available from {@link #getShardReaders()}.
+ *
+ * <p>Each reader has a unique {@link IndexReader.CacheKey}, so that caches keyed on the top level
+ * reader work as they do for a standard {@link DirectoryReader}. The key constructor is not public,
+ * so the key is taken from a reader over an empty in memory index that is opened with, and closed
+ * with, this reader.
+ *
+ * <p>The reader takes ownership of one reference to each shard reader, which are released when it
+ * is closed.
+ */
+public final class ShardedDirectoryReader extends DirectoryReader {
+  // Empty index opened by each reader to get a unique cache key. The key is needed for the top
+  // level caches, such as the search result cache, the global ordinal lookup cache and the sorted
+  // set doc values reader states, which are all keyed on the searcher index reader.
+  private static final Directory CACHE_KEY_INDEX = createCacheKeyIndex();
+
+  private final List<DirectoryReader> shardReaders;
+  private final long version;
+  private final DirectoryReader cacheKeyReader;
+  private final CacheHelper cacheHelper;
+
+  /**
+   * Constructor.
+   *
+   * @param shardReaders current reader for each shard, in shard order
+   * @param version composite reader version, must be greater than the version of any previous
+   *     reader over these shards
+   * @throws IOException on error creating reader
+   */
+  public ShardedDirectoryReader(List<DirectoryReader> shardReaders, long version)
+      throws IOException {
+    super(shardReaders.get(0).directory(), getSegmentReaders(shardReaders));
+    this.shardReaders = Collections.unmodifiableList(new ArrayList<>(shardReaders));
+    this.version = version;
+    this.cacheKeyReader = DirectoryReader.open(CACHE_KEY_INDEX);
+    CacheHelper keyReaderCacheHelper = cacheKeyReader.getReaderCacheHelper();
+    this.cacheHelper =
+        new CacheHelper() {
+          @Override
+          public CacheKey getKey() {
+            return keyReaderCacheHelper.getKey();
+          }
+
+          @Override
+          public void addClosedListener(ClosedListener listener) {
+            ensureOpen();
+            // called with the same key when the key reader is closed with this reader
+            keyReaderCacheHelper.addClosedListener(listener);
+          }
+        };
+  }
+
+  /**
+   * Get the initial composite version for a reader over the given shards, which is the sum of the
+   * shard versions. Readers opened after it should increment the previous reader version.
+   *
+   * @param shardReaders current reader for each shard
+   * @return initial reader version
+   */
+  public static long getInitialVersion(List<DirectoryReader> shardReaders) {
+    long versionSum = 0;
+    for (DirectoryReader reader : shardReaders) {
+      versionSum += reader.getVersion();
+    }
+    return versionSum;
+  }
+
+  private static Directory createCacheKeyIndex() {
+    Directory directory = new ByteBuffersDirectory();
+    try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+      writer.commit();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to create cache key index", e);
+    }
+    return directory;
+  }
+
+  private static LeafReader[] getSegmentReaders(List<DirectoryReader> shardReaders) {
+    List<LeafReader> segmentReaders = new ArrayList<>();
+    for (DirectoryReader reader : shardReaders) {
+      for (LeafReaderContext context : reader.leaves()) {
+        segmentReaders.add(context.reader());
+      }
+    }
+    return segmentReaders.toArray(new LeafReader[0]);
+  }
+
+  /** Get the readers for each shard, in shard order. */
+  public List<DirectoryReader> getShardReaders() {
+    return shardReaders;
+  }
+
+  @Override
+  protected DirectoryReader doOpenIfChanged() throws IOException {
+    List<DirectoryReader> newReaders = new ArrayList<>(shardReaders.size());
+    boolean changed = false;
+    boolean success = false;
+    try {
+      for (DirectoryReader reader : shardReaders) {
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
+        if (newReader == null) {
+          reader.incRef();
+          newReader = reader;
+        } else {
+          changed = true;
+        }
+        newReaders.add(newReader);
+      }
+      DirectoryReader result = changed ? new ShardedDirectoryReader(newReaders, version + 1) : null;
+      success = true;
+      return result;
+    } finally {
+      if (!success || !changed) {
+        IOUtils.applyToAll(newReaders, IndexReader::decRef);
+      }
+    }
+  }
+
+  @Override
+  protected DirectoryReader doOpenIfChanged(IndexCommit commit) {
+    throw new UnsupportedOperationException("Cannot open sharded reader from index commit");
+  }
+
+  @Override
+  protected DirectoryReader doOpenIfChanged(IndexWriter writer, boolean applyAllDeletes) {
+    throw new UnsupportedOperationException("Cannot open sharded reader from index writer");
+  }
+
+  @Override
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public boolean isCurrent() throws IOException {
+    for (DirectoryReader reader : shardReaders) {
+      if (!reader.isCurrent()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public IndexCommit getIndexCommit() {
+    throw new UnsupportedOperationException("Sharded reader does not have an index commit");
+  }
+
+  @Override
+  protected void doClose() throws IOException {
+    try {
+      // notifies the closed listeners
+      cacheKeyReader.close();
+    } finally {
+      IOUtils.applyToAll(shardReaders, IndexReader::decRef);
+    }
+  }
+
+  @Override
+  public CacheHelper getReaderCacheHelper() {
+    return cacheHelper;
+  }
+
+  @Override
+  public String toString() {
+    return "ShardedDirectoryReader(version=" + version + ", shards=" + shardReaders + ")";
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * {@link ReferenceManager} for searching all the shards of an index. Each searcher is over a {@link
+ * ShardedDirectoryReader} made from the current reader of every shard, along with a reader for the
+ * taxonomy shared by all shards. Shards are refreshed independently, this manager must then be
+ * refreshed to make the changes visible.
+ */
+public class ShardedSearcherManager extends ReferenceManager<SearcherAndTaxonomy> {
+  private final List<ShardState> shards;
+  private final SearcherFactory searcherFactory;
+
+  /**
+   * Constructor.
+   *
+   * @param shards started shards to search, in shard order
+   * @param taxoWriter taxonomy writer shared by all shards
+   * @param searcherFactory factory to create searcher for each new reader
+   * @throws IOException on error opening readers
+   */
+  public ShardedSearcherManager(
+      List<ShardState> shards, DirectoryTaxonomyWriter taxoWriter, SearcherFactory searcherFactory)
+      throws IOException {
+    this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+    this.searcherFactory = searcherFactory;
+    List<DirectoryReader> shardReaders = acquireShardReaders();
+    ShardedDirectoryReader reader;
+    try {
+      reader =
+          new ShardedDirectoryReader(
+              shardReaders, ShardedDirectoryReader.getInitialVersion(shardReaders));
+    } catch (Throwable t) {
+      IOUtils.applyToAll(shardReaders, IndexReader::decRef);
+      throw t;
+    }
+    // open taxonomy after the shard readers, so it contains all their categories
+    DirectoryTaxonomyReader taxoReader;
+    try {
+      taxoReader = new DirectoryTaxonomyReader(taxoWriter);
+    } catch (Throwable t) {
+      IOUtils.closeWhileHandlingException(reader);
+      throw t;
+    }
+    try {
+      current =
+          new SearcherAndTaxonomy(
+              SearcherManager.getSearcher(searcherFactory, reader, null), taxoReader);
+    } catch (Throwable t) {
+      IOUtils.closeWhileHandlingException(taxoReader);
+      throw t;
+    }
+  }
+
+  /** Get the shards searched by this manager, in shard order. */
+  public List<ShardState> getShards() {
+    return shards;
+  }
+
+  /** Acquire a reference to the current reader of each shard. */
+  private List<DirectoryReader> acquireShardReaders() throws IOException {
+    List<DirectoryReader> shardReaders = new ArrayList<>(shards.size());
+    boolean success = false;
+    try {
+      for (ShardState shard : shards) {
+        SearcherAndTaxonomy s = shard.acquireShard();
+        try {
+          DirectoryReader reader = (DirectoryReader) s.searcher.getIndexReader();
+          reader.incRef();
+          shardReaders.add(reader);
+        } finally {
+          shard.releaseShard(s);
+        }
+      }
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.applyToAll(shardReaders, IndexReader::decRef);
+      }
+    }
+    return shardReaders;
+  }
+
+  @Override
+  protected void decRef(SearcherAndTaxonomy ref) throws IOException {
+    ref.searcher.getIndexReader().decRef();
+    // same as SearcherTaxonomyManager, the taxonomy decRef should only fail if already closed
+    ref.taxonomyReader.decRef();
+  }
+
+  @Override
+  protected boolean tryIncRef(SearcherAndTaxonomy ref) throws IOException {
+    if (ref.searcher.getIndexReader().tryIncRef()) {
+      if (ref.taxonomyReader.tryIncRef()) {
+        return true;
+      } else {
+        ref.searcher.getIndexReader().decRef();
+      }
+    }
+    return false;
+  }
+
+  @Override
+  protected SearcherAndTaxonomy refreshIfNeeded(SearcherAndTaxonomy ref) throws IOException {
+    ShardedDirectoryReader oldReader = (ShardedDirectoryReader) ref.searcher.getIndexReader();
+    List<DirectoryReader> shardReaders = acquireShardReaders();
+    boolean changed = false;
+    for (int i = 0; i < shardReaders.size(); ++i) {
+      if (shardReaders.get(i) != oldReader.getShardReaders().get(i)) {
+        changed = true;
+        break;
+      }
+    }
+    if (!changed) {
+      IOUtils.applyToAll(shardReaders, IndexReader::decRef);
+      return null;
+    }
+
+    ShardedDirectoryReader newReader;
+    try {
+      newReader = new ShardedDirectoryReader(shardReaders, oldReader.getVersion() + 1);
+    } catch (Throwable t) {
+      IOUtils.applyToAll(shardReaders, IndexReader::decRef);
+      throw t;
+    }
+    DirectoryTaxonomyReader taxoReader;
+    try {
+      taxoReader = TaxonomyReader.openIfChanged(ref.taxonomyReader);
+      if (taxoReader == null) {
+        ref.taxonomyReader.incRef();
+        taxoReader = ref.taxonomyReader;
+      }
+    } catch (Throwable t) {
+      IOUtils.closeWhileHandlingException(newReader);
+      throw t;
+    }
+    try {
+      return new SearcherAndTaxonomy(
+          SearcherManager.getSearcher(searcherFactory, newReader, oldReader), taxoReader);
+    } catch (Throwable t) {
+      taxoReader.decRef();
+      throw t;
+    }
+  }
+
+  @Override
+  protected int getRefCount(SearcherAndTaxonomy reference) {
+    return reference.searcher.getIndexReader().getRefCount();
+  }
+}
@@ -18,15 +18,23 @@ package com.yelp.nrtsearch.server.luceneserver;
 import com.yelp.nrtsearch.server.grpc.FileInfo;
 import com.yelp.nrtsearch.server.grpc.RawFileChunk;
 import com.yelp.nrtsearch.server.grpc.ReplicationServerClient;
+import com.yelp.nrtsearch.server.monitoring.NrtMetrics;
+import io.grpc.Context;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.apache.lucene.replicator.nrt.CopyJob;
 import org.apache.lucene.replicator.nrt.CopyOneFile;
 import org.apache.lucene.replicator.nrt.CopyState;
@@ -34,17 +42,33 @@ import org.apache.lucene.replicator.nrt.FileMetaData;
 import org.apache.lucene.replicator.nrt.Node;
 import org.apache.lucene.replicator.nrt.NodeCommunicationException;
 import org.apache.lucene.replicator.nrt.ReplicaNode;
+import org.apache.lucene.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Copy job that pulls files from the primary over gRPC. By default, files are copied one at a time
+ * on the {@link Jobs} thread. When created with a copy concurrency greater than 1, up to that many
+ * files are received concurrently, each over its own stream, with the writes done on the provided
+ * copy executor. In both modes files are written to temp files, and only renamed to their final
+ * names in {@link #finish()}. Parallel file copies never hold the job lock while reading from the
+ * primary, and are aborted by cancelling their file stream.
+ */
 public class SimpleCopyJob extends CopyJob {
   private static final Logger logger = LoggerFactory.getLogger(SimpleCopyJob.class);
+  // max time to wait for a parallel file copy to complete, before visiting again
+  private static final long PARALLEL_VISIT_WAIT_MS = 50;
 
   private final CopyState copyState;
   private final ReplicationServerClient primaryAddres;
   private final String indexName;
   private final boolean ackedCopy;
+  private final int copyConcurrency;
+  private final ExecutorService copyExecutor;
+  private final List<ParallelFileCopy> inFlightCopies = new ArrayList<>();
+  private final BlockingDeque<ParallelFileCopy> completedCopies = new LinkedBlockingDeque<>();
   private Iterator<Map.Entry<String, FileMetaData>> iter;
+  private volatile Runnable progressListener;
 
   public SimpleCopyJob(
       String reason,
@@ -57,11 +81,59 @@ public class SimpleCopyJob extends CopyJob {
       String indexName,
       boolean ackedCopy)
       throws IOException {
+    this(
+        reason,
+        primaryAddress,
+        copyState,
+        dest,
+        files,
+        highPriority,
+        onceDone,
+        indexName,
+        ackedCopy,
+        1,
+        null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param reason reason for copy
+   * @param primaryAddress client to communicate with the primary
+   * @param copyState copy state from primary, or null
+   * @param dest replica node receiving files
+   * @param files files to copy
+   * @param highPriority if this is a high priority job
+   * @param onceDone callback for when job finishes
+   * @param indexName index name
+   * @param ackedCopy if acked file copy should be used
+   * @param copyConcurrency maximum number of files to copy concurrently
+   * @param copyExecutor executor to write files on when copyConcurrency > 1
+   * @throws IOException on error creating job
+   */
+  public SimpleCopyJob(
+      String reason,
+      ReplicationServerClient primaryAddress,
+      CopyState copyState,
+      ReplicaNode dest,
+      Map<String, FileMetaData> files,
+      boolean highPriority,
+      OnceDone onceDone,
+      String indexName,
+      boolean ackedCopy,
+      int copyConcurrency,
+      ExecutorService copyExecutor)
+      throws IOException {
     super(reason, files, dest, highPriority, onceDone);
+    if (copyConcurrency > 1 && copyExecutor == null) {
+      throw new IllegalArgumentException("copyExecutor required for parallel copy");
+    }
     this.copyState = copyState;
     this.primaryAddres = primaryAddress;
     this.indexName = indexName;
     this.ackedCopy = ackedCopy;
+    this.copyConcurrency = copyConcurrency;
+    this.copyExecutor = copyExecutor;
   }
 
   @Override
@@ -101,9 +173,19 @@ public class SimpleCopyJob extends CopyJob {
 
   @Override
   public void runBlocking() throws Exception {
-    while (visit() == false) ;
-    if (getFailed()) {
-      throw new RuntimeException("copy failed: " + cancelReason, exc);
+    while (visit() == false) {
+      try {
+        awaitProgress();
+      } catch (InterruptedException e) {
+        cancel("interrupted waiting for file copy", e);
+        Thread.currentThread().interrupt();
+        throw e;
+      }
+    }
+    synchronized (this) {
+      if (getFailed()) {
+        throw new RuntimeException("copy failed: " + cancelReason, exc);
+      }
     }
   }
 
@@ -126,8 +208,23 @@ public class SimpleCopyJob extends CopyJob {
     return false;
   }
 
+  @Override
+  public synchronized void cancel(String reason, Throwable exc) throws IOException {
+    try {
+      super.cancel(reason, exc);
+    } finally {
+      abortInFlightCopies();
+    }
+  }
+
   @Override
   public void finish() throws IOException {
+    double copySeconds = (System.nanoTime() - startNS) / 1000000000.0;
+    if (copySeconds > 0) {
+      NrtMetrics.nrtCopyJobThroughput
+          .labels(indexName)
+          .observe((totBytesCopied / 1024. / 1024.) / copySeconds);
+    }
     dest.message(
         String.format(
             Locale.ROOT,
@@ -163,7 +260,7 @@ public class SimpleCopyJob extends CopyJob {
   }
 
   @Override
-  public boolean getFailed() {
+  public synchronized boolean getFailed() {
     return exc != null;
   }
 
@@ -211,30 +308,20 @@ public class SimpleCopyJob extends CopyJob {
   /** Do an iota of work; returns true if all copying is done */
   public synchronized boolean visit() throws IOException {
     if (exc != null) {
-      // We were externally cancelled:
+      // We were externally cancelled, possibly by a transfer to a new job which does not
+      // call cancel:
+      abortInFlightCopies();
       return true;
     }
+    if (copyConcurrency > 1) {
+      return visitParallel();
+    }
     if (current == null) {
       if (iter.hasNext() == false) {
         return true;
       }
       Map.Entry<String, FileMetaData> next = iter.next();
-      FileMetaData metaData = next.getValue();
-      String fileName = next.getKey();
-      Iterator<RawFileChunk> rawFileChunkIterator;
-      try {
-        if (ackedCopy) {
-          FileChunkStreamingIterator fcsi = new FileChunkStreamingIterator();
-          primaryAddres.recvRawFileV2(fileName, 0, indexName, fcsi);
-          rawFileChunkIterator = fcsi;
-        } else {
-          rawFileChunkIterator = primaryAddres.recvRawFile(fileName, 0, indexName);
-        }
-      } catch (Throwable t) {
-        cancel("exc during start", t);
-        throw new NodeCommunicationException("exc during start", t);
-      }
-      current = new CopyOneFile(rawFileChunkIterator, dest, fileName, metaData);
+      current = startCopyOneFile(next.getKey(), next.getValue());
     }
     if (current.visit()) {
       // This file is done copying
@@ -248,6 +335,204 @@ public class SimpleCopyJob extends CopyJob {
     return false;
   }
 
+  /** Open a stream from the primary for the given file, and start copying it to a temp file. */
+  private CopyOneFile startCopyOneFile(String fileName, FileMetaData metaData) throws IOException {
+    Iterator<RawFileChunk> rawFileChunkIterator;
+    try {
+      if (ackedCopy) {
+        FileChunkStreamingIterator fcsi = new FileChunkStreamingIterator();
+        primaryAddres.recvRawFileV2(fileName, 0, indexName, fcsi);
+        rawFileChunkIterator = fcsi;
+      } else {
+        rawFileChunkIterator = primaryAddres.recvRawFile(fileName, 0, indexName);
+      }
+    } catch (Throwable t) {
+      cancel("exc during start", t);
+      throw new NodeCommunicationException("exc during start", t);
+    }
+    return new CopyOneFile(rawFileChunkIterator, dest, fileName, metaData);
+  }
+
+  /**
+   * Parallel version of {@link #visit()}. Starts file copies until copyConcurrency are in flight,
+   * then handles a completed copy if there is one, without waiting. Returns true once all files are
+   * copied.
+   */
+  private boolean visitParallel() throws IOException {
+    // an in progress file transferred from a previous job is copied along with the others
+    if (current != null) {
+      submitParallelCopy(current, null);
+      current = null;
+    }
+    while (inFlightCopies.size() < copyConcurrency && iter.hasNext()) {
+      Map.Entry<String, FileMetaData> next = iter.next();
+      startParallelCopy(next.getKey(), next.getValue());
+    }
+    if (inFlightCopies.isEmpty()) {
+      return true;
+    }
+
+    ParallelFileCopy parallelFileCopy = completedCopies.poll();
+    if (parallelFileCopy == null || !inFlightCopies.remove(parallelFileCopy)) {
+      // nothing completed, or the copy was already aborted
+      return false;
+    }
+    NrtMetrics.nrtCopyInFlightFiles.labels(indexName).dec();
+    CopyOneFile copyOneFile = parallelFileCopy.copyOneFile;
+    if (parallelFileCopy.error != null) {
+      throw new IOException("exc copying file " + copyOneFile.name, parallelFileCopy.error);
+    }
+    if (!parallelFileCopy.finished) {
+      // copy stopped early because the job was cancelled
+      return false;
+    }
+    copiedFiles.put(copyOneFile.name, copyOneFile.tmpName);
+    totBytesCopied += copyOneFile.getBytesCopied();
+    assert totBytesCopied <= totBytes
+        : "totBytesCopied=" + totBytesCopied + " totBytes=" + totBytes;
+    return false;
+  }
+
+  /**
+   * Open the stream for a file in its own cancellable context, so that aborting the copy also
+   * unblocks a pending read, and submit it to be copied.
+   */
+  private void startParallelCopy(String fileName, FileMetaData metaData) throws IOException {
+    Context.CancellableContext streamContext = Context.current().withCancellation();
+    CopyOneFile copyOneFile;
+    Context previous = streamContext.attach();
+    try {
+      copyOneFile = startCopyOneFile(fileName, metaData);
+    } catch (Throwable t) {
+      streamContext.cancel(t);
+      throw t;
+    } finally {
+      streamContext.detach(previous);
+    }
+    submitParallelCopy(copyOneFile, streamContext);
+  }
+
+  private void submitParallelCopy(
+      CopyOneFile copyOneFile, Context.CancellableContext streamContext) {
+    ParallelFileCopy parallelFileCopy = new ParallelFileCopy(copyOneFile, streamContext);
+    inFlightCopies.add(parallelFileCopy);
+    NrtMetrics.nrtCopyInFlightFiles.labels(indexName).inc();
+    copyExecutor.execute(parallelFileCopy);
+  }
+
+  /**
+   * Set a listener called when a parallel file copy completes, including copies aborted by a
+   * cancel, so this job may be able to make progress after {@link #isAwaitingProgress()} returned
+   * true. The listener is called from copy threads without the job lock held.
+   */
+  void setProgressListener(Runnable progressListener) {
+    this.progressListener = progressListener;
+  }
+
+  private void notifyProgress() {
+    Runnable listener = progressListener;
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
+  /**
+   * Get if the next {@link #visit()} cannot make progress until a parallel file copy completes.
+   * Always false for a job that copies one file at a time.
+   */
+  synchronized boolean isAwaitingProgress() {
+    return copyConcurrency > 1
+        && exc == null
+        && !inFlightCopies.isEmpty()
+        && (inFlightCopies.size() >= copyConcurrency || !iter.hasNext())
+        && completedCopies.isEmpty();
+  }
+
+  /**
+   * Wait a bounded amount of time for a parallel file copy to complete, leaving it to be handled by
+   * the next {@link #visit()}. Returns immediately for a job that copies one file at a time. Used
+   * when running the job on the calling thread, must not be called with the job lock held.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  void awaitProgress() throws InterruptedException {
+    if (copyConcurrency <= 1) {
+      return;
+    }
+    ParallelFileCopy completed =
+        completedCopies.pollFirst(PARALLEL_VISIT_WAIT_MS, TimeUnit.MILLISECONDS);
+    if (completed != null) {
+      completedCopies.addFirst(completed);
+    }
+  }
+
+  /**
+   * Stop all in flight parallel file copies. This does not block, the copy threads remove their own
+   * temp files.
+   */
+  private synchronized void abortInFlightCopies() {
+    for (ParallelFileCopy parallelFileCopy : inFlightCopies) {
+      parallelFileCopy.abort();
+      NrtMetrics.nrtCopyInFlightFiles.labels(indexName).dec();
+    }
+    inFlightCopies.clear();
+  }
+
+  /**
+   * Task to copy all the chunks of a single file on the copy executor. The file is only written and
+   * closed by this task, an abort sets a flag and cancels the file stream so that a blocked read
+   * fails. If the copy does not finish, the task closes the file and removes its temp file. A job
+   * that fails or is cancelled aborts all its copies from {@link #visit()} or {@link #cancel}, so
+   * the task does not read the job failure state.
+   */
+  private class ParallelFileCopy implements Runnable {
+    final CopyOneFile copyOneFile;
+    // null for a file stream opened by a previous job, which cannot be cancelled
+    final Context.CancellableContext streamContext;
+    volatile boolean finished = false;
+    volatile boolean aborted = false;
+    volatile Throwable error = null;
+
+    ParallelFileCopy(CopyOneFile copyOneFile, Context.CancellableContext streamContext) {
+      this.copyOneFile = copyOneFile;
+      this.streamContext = streamContext;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!aborted) {
+          if (copyOneFile.visit()) {
+            finished = true;
+            break;
+          }
+        }
+      } catch (Throwable t) {
+        if (!aborted) {
+          error = t;
+        }
+      } finally {
+        if (!finished) {
+          IOUtils.closeWhileHandlingException(copyOneFile);
+          IOUtils.deleteFilesIgnoringExceptions(dest.getDirectory(), copyOneFile.tmpName);
+        }
+        if (streamContext != null) {
+          streamContext.cancel(null);
+        }
+        completedCopies.add(this);
+        notifyProgress();
+      }
+    }
+
+    /** Stop copying this file. */
+    void abort() {
+      aborted = true;
+      if (streamContext != null) {
+        streamContext.cancel(null);
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return "SimpleCopyJob(ord="
@@ -264,6 +549,8 @@ public class SimpleCopyJob extends CopyJob {
         + totBytes
         + ") filesCopied="
         + copiedFiles.size()
+        + " inFlightFiles="
+        + inFlightCopies.size()
         + ")";
   }
 
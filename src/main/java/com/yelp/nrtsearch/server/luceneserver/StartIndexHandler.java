@@ -73,8 +73,20 @@ public class StartIndexHandler implements Handler<StartIndexRequest, StartIndexR
           String.format("Index %s is already started", indexState.getName()));
     }
 
-    final ShardState shardState = indexState.getShard(0);
+    final ShardState shardState = indexState.getSearchShard();
     final Mode mode = startIndexRequest.getMode();
+    if (indexState.getNumShards() > 1) {
+      if (!mode.equals(Mode.STANDALONE)) {
+        throw new IllegalArgumentException(
+            "Index with multiple shards can only be started in STANDALONE mode: "
+                + indexState.getName());
+      }
+      if (startIndexRequest.hasRestore()) {
+        throw new IllegalArgumentException(
+            "Restoring data is not supported for index with multiple shards: "
+                + indexState.getName());
+      }
+    }
     final long primaryGen;
     final ReplicationServerClient primaryClient;
     Path dataPath = null;
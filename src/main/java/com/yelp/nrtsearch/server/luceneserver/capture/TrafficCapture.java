@@ -0,0 +1,270 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.capture;
+
+import com.yelp.nrtsearch.server.config.TrafficCaptureConfig;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import com.yelp.nrtsearch.server.monitoring.TrafficCaptureMetrics;
+import io.grpc.stub.StreamObserver;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Captures a sample of the search requests and add document streams received by the server to a
+ * rotating {@link TrafficLog}, for replay against another server. Request threads only sample and
+ * enqueue requests. Serialization and file writes happen on a single background thread. The
+ * queue is bounded, and requests are dropped instead of blocking when it is full, so capture
+ * overhead on the request path stays bounded.
+ */
+public class TrafficCapture implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(TrafficCapture.class);
+  private static final long POLL_TIMEOUT_MS = 100;
+  private static final TrafficCapture DISABLED = new TrafficCapture();
+
+  private static TrafficCapture instance = DISABLED;
+
+  private final boolean enabled;
+  private final Path directory;
+  private final double sampleRate;
+  private final boolean captureIndexing;
+  private final long maxFileSizeBytes;
+  private final int maxFiles;
+  private final BlockingQueue<TrafficLog.Record> queue;
+  private final AtomicLong nextStreamId = new AtomicLong();
+  private final long captureStartNanos;
+  private final long captureStartMs;
+  private final Thread writerThread;
+
+  private volatile boolean closed;
+  private DataOutputStream output;
+  private long fileBytes;
+  private int fileNumber;
+
+  /**
+   * Initialize the capture instance from server configuration.
+   *
+   * @param config traffic capture config
+   * @throws IOException on error creating capture directory
+   */
+  public static synchronized void initialize(TrafficCaptureConfig config) throws IOException {
+    instance.close();
+    instance = config.getEnabled() ? new TrafficCapture(config) : DISABLED;
+  }
+
+  /** Get the capture instance. */
+  public static TrafficCapture getInstance() {
+    return instance;
+  }
+
+  private TrafficCapture() {
+    this.enabled = false;
+    this.directory = null;
+    this.sampleRate = 0;
+    this.captureIndexing = false;
+    this.maxFileSizeBytes = 0;
+    this.maxFiles = 0;
+    this.queue = null;
+    this.captureStartNanos = 0;
+    this.captureStartMs = 0;
+    this.writerThread = null;
+  }
+
+  /**
+   * Constructor. Starts the background writer thread.
+   *
+   * @param config traffic capture config
+   * @throws IOException on error creating capture directory
+   */
+  public TrafficCapture(TrafficCaptureConfig config) throws IOException {
+    this.enabled = true;
+    this.directory = Paths.get(config.getDirectory());
+    this.sampleRate = config.getSampleRate();
+    this.captureIndexing = config.getCaptureIndexing();
+    this.maxFileSizeBytes = config.getMaxFileSizeBytes();
+    this.maxFiles = config.getMaxFiles();
+    this.queue = new ArrayBlockingQueue<>(config.getMaxQueuedRequests());
+    this.captureStartNanos = System.nanoTime();
+    this.captureStartMs = System.currentTimeMillis();
+    Files.createDirectories(directory);
+    this.writerThread = new Thread(this::writeLoop, "TrafficCaptureWriter");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+    logger.info("Capturing {} of request traffic to: {}", sampleRate, directory);
+  }
+
+  /** Get if traffic capture is enabled. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  private boolean sample() {
+    return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  private long getTimestampNanos() {
+    return System.nanoTime() - captureStartNanos;
+  }
+
+  private void enqueue(TrafficLog.Record record) {
+    if (closed) {
+      return;
+    }
+    if (queue.offer(record)) {
+      TrafficCaptureMetrics.capturedRecords.labels(record.getType().name()).inc();
+    } else {
+      TrafficCaptureMetrics.droppedRecords.labels(record.getType().name()).inc();
+    }
+  }
+
+  /**
+   * Capture a search request, if sampled.
+   *
+   * @param searchRequest search request
+   */
+  public void captureSearch(SearchRequest searchRequest) {
+    if (enabled && sample()) {
+      enqueue(
+          new TrafficLog.Record(
+              TrafficLog.RecordType.SEARCH, getTimestampNanos(), 0, searchRequest));
+    }
+  }
+
+  /**
+   * Wrap the request observer of an add documents stream, so that the stream is captured if it is
+   * sampled. The sampling decision is made once for the whole stream.
+   *
+   * @param requestObserver add documents request observer
+   * @return observer to use for the stream
+   */
+  public StreamObserver<AddDocumentRequest> captureAddDocuments(
+      StreamObserver<AddDocumentRequest> requestObserver) {
+    if (!enabled || !captureIndexing || !sample()) {
+      return requestObserver;
+    }
+    long streamId = nextStreamId.incrementAndGet();
+    return new StreamObserver<>() {
+      @Override
+      public void onNext(AddDocumentRequest value) {
+        enqueue(
+            new TrafficLog.Record(
+                TrafficLog.RecordType.ADD_DOCUMENT, getTimestampNanos(), streamId, value));
+        requestObserver.onNext(value);
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        enqueue(
+            new TrafficLog.Record(
+                TrafficLog.RecordType.ADD_DOCUMENTS_COMPLETED,
+                getTimestampNanos(),
+                streamId,
+                null));
+        requestObserver.onError(t);
+      }
+
+      @Override
+      public void onCompleted() {
+        enqueue(
+            new TrafficLog.Record(
+                TrafficLog.RecordType.ADD_DOCUMENTS_COMPLETED,
+                getTimestampNanos(),
+                streamId,
+                null));
+        requestObserver.onCompleted();
+      }
+    };
+  }
+
+  private void writeLoop() {
+    try {
+      while (!closed || !queue.isEmpty()) {
+        TrafficLog.Record record = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (record == null) {
+          if (output != null) {
+            output.flush();
+          }
+          continue;
+        }
+        if (output == null || fileBytes >= maxFileSizeBytes) {
+          rotate();
+        }
+        fileBytes += TrafficLog.writeRecord(output, record);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      logger.error("Error writing traffic capture log, stopping capture", e);
+      closed = true;
+    } finally {
+      closeOutput();
+    }
+  }
+
+  private void rotate() throws IOException {
+    closeOutput();
+    Path file =
+        directory.resolve(
+            String.format(
+                "%s%d-%06d%s",
+                TrafficLog.FILE_PREFIX, captureStartMs, fileNumber++, TrafficLog.FILE_SUFFIX));
+    output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    fileBytes = TrafficLog.writeHeader(output, captureStartMs);
+
+    List<Path> files = TrafficLog.listFiles(directory);
+    for (int i = 0; i < files.size() - maxFiles; ++i) {
+      Files.deleteIfExists(files.get(i));
+    }
+  }
+
+  private void closeOutput() {
+    if (output != null) {
+      try {
+        output.close();
+      } catch (IOException e) {
+        logger.warn("Error closing traffic capture log", e);
+      }
+      output = null;
+    }
+  }
+
+  /** Stop capturing, and write any queued requests. */
+  @Override
+  public void close() {
+    if (!enabled || closed) {
+      return;
+    }
+    closed = true;
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.capture;
+
+import com.google.protobuf.Message;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Binary log format for captured request traffic. A log file starts with a header containing a
+ * magic value, format version and the capture start time. It is followed by a sequence of length
+ * delimited records:
+ *
+ * <pre>
+ * header: magic (4 bytes) | version (int) | capture start epoch ms (long)
+ * record: type (byte) | nanos since capture start (long) | stream id (long) | length (int) | data
+ * </pre>
+ *
+ * <p>The record data is the serialized request protobuf, and is empty for records that end an add
+ * documents stream. The stream id groups the {@link AddDocumentRequest}s sent on the same stream.
+ */
+public class TrafficLog {
+  static final byte[] MAGIC = new byte[] {'N', 'R', 'T', 'C'};
+  static final int VERSION = 1;
+  public static final String FILE_PREFIX = "capture-";
+  public static final String FILE_SUFFIX = ".log";
+
+  private TrafficLog() {}
+
+  /** Type of captured record. */
+  public enum RecordType {
+    SEARCH,
+    ADD_DOCUMENT,
+    ADD_DOCUMENTS_COMPLETED
+  }
+
+  /** Single captured record. */
+  public static class Record {
+    private final RecordType type;
+    private final long timestampNanos;
+    private final long streamId;
+    private final Message request;
+
+    /**
+     * Constructor.
+     *
+     * @param type record type
+     * @param timestampNanos nanoseconds since capture start
+     * @param streamId id of add documents stream, or 0 for search records
+     * @param request request message, or null when ending an add documents stream
+     */
+    public Record(RecordType type, long timestampNanos, long streamId, Message request) {
+      this.type = type;
+      this.timestampNanos = timestampNanos;
+      this.streamId = streamId;
+      this.request = request;
+    }
+
+    public RecordType getType() {
+      return type;
+    }
+
+    public long getTimestampNanos() {
+      return timestampNanos;
+    }
+
+    public long getStreamId() {
+      return streamId;
+    }
+
+    public SearchRequest getSearchRequest() {
+      return (SearchRequest) request;
+    }
+
+    public AddDocumentRequest getAddDocumentRequest() {
+      return (AddDocumentRequest) request;
+    }
+  }
+
+  /**
+   * Write log file header.
+   *
+   * @param output file output
+   * @param captureStartMs capture start time, epoch millis
+   * @return number of bytes written
+   * @throws IOException on error writing
+   */
+  static int writeHeader(DataOutputStream output, long captureStartMs) throws IOException {
+    output.write(MAGIC);
+    output.writeInt(VERSION);
+    output.writeLong(captureStartMs);
+    return MAGIC.length + Integer.BYTES + Long.BYTES;
+  }
+
+  /**
+   * Write a record to a log file.
+   *
+   * @param output file output
+   * @param record record to write
+   * @return number of bytes written
+   * @throws IOException on error writing
+   */
+  static int writeRecord(DataOutputStream output, Record record) throws IOException {
+    byte[] data = record.request == null ? new byte[0] : record.request.toByteArray();
+    output.writeByte(record.type.ordinal());
+    output.writeLong(record.timestampNanos);
+    output.writeLong(record.streamId);
+    output.writeInt(data.length);
+    output.write(data);
+    return 1 + Long.BYTES + Long.BYTES + Integer.BYTES + data.length;
+  }
+
+  /**
+   * List the capture log files in a directory, in the order they were written.
+   *
+   * @param directory capture directory
+   * @return log files
+   * @throws IOException on error listing directory
+   */
+  public static List<Path> listFiles(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(
+              p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+              })
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  /** Sequential reader of the records in a capture log file. */
+  public static class Reader implements Closeable {
+    private final DataInputStream input;
+    private final long captureStartMs;
+
+    /**
+     * Open file and validate header.
+     *
+     * @param file file to read
+     * @throws IOException on error reading file, or if the header is invalid
+     */
+    public Reader(Path file) throws IOException {
+      this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+      try {
+        byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+          throw new IOException("Invalid traffic capture file header: " + file);
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+          throw new IOException("Unsupported traffic capture file version: " + version);
+        }
+        captureStartMs = input.readLong();
+      } catch (IOException e) {
+        input.close();
+        throw e;
+      }
+    }
+
+    /** Get capture start time, epoch millis. */
+    public long getCaptureStartMs() {
+      return captureStartMs;
+    }
+
+    /**
+     * Read the next record. A truncated record at the end of the file, such as from a server that
+     * did not shut down cleanly, is treated as the end of the file.
+     *
+     * @return next record, or null if there are no more records
+     * @throws IOException on error reading file
+     */
+    public Record next() throws IOException {
+      try {
+        int typeOrdinal = input.readByte();
+        if (typeOrdinal < 0 || typeOrdinal >= RecordType.values().length) {
+          throw new IOException("Invalid traffic capture record type: " + typeOrdinal);
+        }
+        RecordType type = RecordType.values()[typeOrdinal];
+        long timestampNanos = input.readLong();
+        long streamId = input.readLong();
+        byte[] data = new byte[input.readInt()];
+        input.readFully(data);
+        Message request;
+        switch (type) {
+          case SEARCH:
+            request = SearchRequest.parseFrom(data);
+            break;
+          case ADD_DOCUMENT:
+            request = AddDocumentRequest.parseFrom(data);
+            break;
+          default:
+            request = null;
+        }
+        return new Record(type, timestampNanos, streamId, request);
+      } catch (EOFException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.capture;
+
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
+import com.yelp.nrtsearch.server.grpc.AddDocumentResponse;
+import com.yelp.nrtsearch.server.grpc.LuceneServerGrpc;
+import com.yelp.nrtsearch.server.grpc.SearchResponse;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a captured {@link TrafficLog} against a server. Requests are issued at their captured
+ * relative times divided by a rate scale, or as fast as possible when the rate scale is 0. The
+ * number of outstanding requests is bounded, so that an overloaded target slows down replay
+ * instead of queuing requests without limit. Open add documents streams are not bounded, since
+ * they are only completed by later records in the capture; a stream counts as outstanding once it
+ * is completed and waiting for the server response. Latency, error and throughput statistics are
+ * collected for each request type.
+ */
+public class TrafficReplayer {
+  private final LuceneServerGrpc.LuceneServerStub stub;
+  private final double rateScale;
+  private final int maxInFlight;
+  private final boolean replaySearch;
+  private final boolean replayIndexing;
+  private final Semaphore inFlight;
+  private final ReplayStats searchStats = new ReplayStats("search");
+  private final ReplayStats indexingStats = new ReplayStats("addDocuments");
+  private final Map<Long, ReplayStream> openStreams = new HashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param stub async stub for target server
+   * @param rateScale multiplier for the captured request rate, or 0 to replay at max rate
+   * @param maxInFlight max number of outstanding searches and completed add documents streams
+   * @param replaySearch if search requests should be replayed
+   * @param replayIndexing if add documents streams should be replayed
+   */
+  public TrafficReplayer(
+      LuceneServerGrpc.LuceneServerStub stub,
+      double rateScale,
+      int maxInFlight,
+      boolean replaySearch,
+      boolean replayIndexing) {
+    if (rateScale < 0) {
+      throw new IllegalArgumentException("rateScale must be >= 0");
+    }
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("maxInFlight must be > 0");
+    }
+    this.stub = stub;
+    this.rateScale = rateScale;
+    this.maxInFlight = maxInFlight;
+    this.replaySearch = replaySearch;
+    this.replayIndexing = replayIndexing;
+    this.inFlight = new Semaphore(maxInFlight);
+  }
+
+  /** Get statistics for replayed search requests. */
+  public ReplayStats getSearchStats() {
+    return searchStats;
+  }
+
+  /** Get statistics for replayed add documents streams. */
+  public ReplayStats getIndexingStats() {
+    return indexingStats;
+  }
+
+  /**
+   * Replay the records in the given capture log files, in order. Blocks until all replayed
+   * requests complete.
+   *
+   * @param files capture log files
+   * @throws IOException on error reading files
+   * @throws InterruptedException if interrupted while replaying
+   */
+  public void replay(List<Path> files) throws IOException, InterruptedException {
+    long replayStartNanos = System.nanoTime();
+    long firstTimestampNanos = -1;
+    for (Path file : files) {
+      try (TrafficLog.Reader reader = new TrafficLog.Reader(file)) {
+        TrafficLog.Record record;
+        while ((record = reader.next()) != null) {
+          if (!shouldReplay(record)) {
+            continue;
+          }
+          if (firstTimestampNanos < 0) {
+            firstTimestampNanos = record.getTimestampNanos();
+          }
+          if (rateScale > 0) {
+            long targetNanos =
+                replayStartNanos
+                    + (long) ((record.getTimestampNanos() - firstTimestampNanos) / rateScale);
+            long waitNanos = targetNanos - System.nanoTime();
+            if (waitNanos > 0) {
+              TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+          }
+          issue(record);
+        }
+      }
+    }
+    // complete any streams that were still open when the capture ended
+    for (ReplayStream stream : openStreams.values()) {
+      stream.complete();
+    }
+    openStreams.clear();
+    inFlight.acquire(maxInFlight);
+    inFlight.release(maxInFlight);
+    long durationNanos = System.nanoTime() - replayStartNanos;
+    searchStats.setDurationNanos(durationNanos);
+    indexingStats.setDurationNanos(durationNanos);
+  }
+
+  private boolean shouldReplay(TrafficLog.Record record) {
+    if (record.getType() == TrafficLog.RecordType.SEARCH) {
+      return replaySearch;
+    }
+    return replayIndexing;
+  }
+
+  private void issue(TrafficLog.Record record) throws InterruptedException {
+    switch (record.getType()) {
+      case SEARCH:
+        inFlight.acquire();
+        long searchStartNanos = System.nanoTime();
+        stub.search(
+            record.getSearchRequest(),
+            new StreamObserver<>() {
+              @Override
+              public void onNext(SearchResponse value) {}
+
+              @Override
+              public void onError(Throwable t) {
+                searchStats.recordError();
+                inFlight.release();
+              }
+
+              @Override
+              public void onCompleted() {
+                searchStats.recordLatency(System.nanoTime() - searchStartNanos);
+                inFlight.release();
+              }
+            });
+        break;
+      case ADD_DOCUMENT:
+        ReplayStream stream = openStreams.get(record.getStreamId());
+        if (stream == null) {
+          stream = new ReplayStream();
+          openStreams.put(record.getStreamId(), stream);
+        }
+        stream.requestObserver.onNext(record.getAddDocumentRequest());
+        break;
+      case ADD_DOCUMENTS_COMPLETED:
+        ReplayStream completed = openStreams.remove(record.getStreamId());
+        if (completed != null) {
+          completed.complete();
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown record type: " + record.getType());
+    }
+  }
+
+  /**
+   * Replayed add documents stream. The stream only holds an in flight permit after it is completed,
+   * because the replay thread that would complete it may itself be waiting for a permit.
+   */
+  private class ReplayStream implements StreamObserver<AddDocumentResponse> {
+    private final long streamStartNanos = System.nanoTime();
+    private final StreamObserver<AddDocumentRequest> requestObserver;
+    private boolean holdsPermit = false;
+    private boolean done = false;
+
+    ReplayStream() {
+      // start the call last, the response observer may be invoked immediately
+      requestObserver = stub.addDocuments(this);
+    }
+
+    /** Complete the request stream, holding a permit until the server responds. */
+    void complete() throws InterruptedException {
+      inFlight.acquire();
+      synchronized (this) {
+        if (done) {
+          inFlight.release();
+        } else {
+          holdsPermit = true;
+        }
+      }
+      requestObserver.onCompleted();
+    }
+
+    @Override
+    public void onNext(AddDocumentResponse value) {}
+
+    @Override
+    public void onError(Throwable t) {
+      indexingStats.recordError();
+      finish();
+    }
+
+    @Override
+    public void onCompleted() {
+      indexingStats.recordLatency(System.nanoTime() - streamStartNanos);
+      finish();
+    }
+
+    private synchronized void finish() {
+      done = true;
+      if (holdsPermit) {
+        holdsPermit = false;
+        inFlight.release();
+      }
+    }
+  }
+
+  /** Latency, error and throughput statistics for a replayed request type. */
+  public static class ReplayStats {
+    // upper bounds of latency histogram buckets, in ms
+    private static final long[] BUCKET_BOUNDS_MS =
+        new long[] {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, Long.MAX_VALUE};
+
+    private final String name;
+    private long[] latencies = new long[1024];
+    private int count;
+    private int errors;
+    private long durationNanos;
+
+    ReplayStats(String name) {
+      this.name = name;
+    }
+
+    synchronized void recordLatency(long nanos) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = nanos;
+    }
+
+    synchronized void recordError() {
+      errors++;
+    }
+
+    synchronized void setDurationNanos(long durationNanos) {
+      this.durationNanos = durationNanos;
+    }
+
+    /** Get number of successful requests. */
+    public synchronized int getCount() {
+      return count;
+    }
+
+    /** Get number of failed requests. */
+    public synchronized int getErrors() {
+      return errors;
+    }
+
+    /**
+     * Get latency percentile of successful requests.
+     *
+     * @param percentile percentile in [0, 100]
+     * @return latency in ms, or 0 if there were no successful requests
+     */
+    public synchronized double getLatencyPercentileMs(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+      return sorted[Math.max(0, Math.min(index, count - 1))] / 1000000.0;
+    }
+
+    /** Get a human readable summary of the statistics, including a latency histogram. */
+    public synchronized String summary() {
+      StringBuilder sb = new StringBuilder();
+      int total = count + errors;
+      double durationSec = durationNanos / 1000000000.0;
+      sb.append(
+          String.format(
+              "%s: requests=%d errors=%d (%.2f%%) throughput=%.1f/s%n",
+              name,
+              total,
+              errors,
+              total == 0 ? 0.0 : 100.0 * errors / total,
+              durationSec == 0 ? 0.0 : total / durationSec));
+      sb.append(
+          String.format(
+              "  latency ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f%n",
+              getLatencyPercentileMs(50),
+              getLatencyPercentileMs(90),
+              getLatencyPercentileMs(99),
+              getLatencyPercentileMs(100)));
+      long[] bucketCounts = new long[BUCKET_BOUNDS_MS.length];
+      for (int i = 0; i < count; ++i) {
+        long latencyMs = latencies[i] / 1000000;
+        int bucket = 0;
+        while (latencyMs >= BUCKET_BOUNDS_MS[bucket]) {
+          bucket++;
+        }
+        bucketCounts[bucket]++;
+      }
+      for (int i = 0; i < BUCKET_BOUNDS_MS.length; ++i) {
+        String bound =
+            BUCKET_BOUNDS_MS[i] == Long.MAX_VALUE ? "inf" : String.valueOf(BUCKET_BOUNDS_MS[i]);
+        sb.append(String.format("  < %5s ms: %d%n", bound, bucketCounts[i]));
+      }
+      return sb.toString();
+    }
+  }
+}
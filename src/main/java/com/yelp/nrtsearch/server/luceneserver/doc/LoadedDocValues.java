@@ -94,7 +94,35 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
 
   public abstract SearchResponse.Hit.FieldValue toFieldValue(int index);
 
-  public abstract static class SingleNumericValue<T> extends LoadedDocValues<T> {
+  /**
+   * Interface for doc values that can load raw numeric values for many documents at once into a
+   * {@link NumericColumn}, without decoding each value into an object. The raw values can later be
+   * converted into response field values.
+   */
+  public interface ColumnarValues {
+    /**
+     * Load the raw values for a set of segment documents. Documents must be in increasing order,
+     * and not before any document previously accessed with these doc values.
+     *
+     * @param docIds segment doc ids
+     * @param count number of doc ids to load
+     * @param column column to load values into, this is reset before loading
+     * @throws IOException on error reading doc values
+     */
+    void loadColumn(int[] docIds, int count, NumericColumn column) throws IOException;
+
+    /**
+     * Convert a raw value loaded by {@link #loadColumn(int[], int, NumericColumn)} into a response
+     * field value.
+     *
+     * @param rawValue raw doc value
+     * @return response field value
+     */
+    SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue);
+  }
+
+  public abstract static class SingleNumericValue<T> extends LoadedDocValues<T>
+      implements ColumnarValues {
     private final NumericDocValues docValues;
     private final LongFunction<T> decoder;
     private T value;
@@ -131,6 +159,17 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public T getValue() {
       return get(0);
     }
+
+    @Override
+    public void loadColumn(int[] docIds, int count, NumericColumn column) throws IOException {
+      column.reset(count);
+      for (int i = 0; i < count; ++i) {
+        if (docValues.advanceExact(docIds[i])) {
+          column.addValue(docValues.longValue());
+        }
+        column.endDoc();
+      }
+    }
   }
 
   public static final class SingleBoolean extends SingleNumericValue<Boolean> {
@@ -141,6 +180,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setBooleanValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder().setBooleanValue(rawValue == 1).build();
+    }
   }
 
   public static final class SingleInteger extends SingleNumericValue<Integer> {
@@ -152,6 +196,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setIntValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder().setIntValue((int) rawValue).build();
+    }
   }
 
   public static final class SingleLong extends SingleNumericValue<Long> {
@@ -163,6 +212,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setLongValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder().setLongValue(rawValue).build();
+    }
   }
 
   public static final class SingleFloat extends SingleNumericValue<Float> {
@@ -174,6 +228,13 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setFloatValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder()
+          .setFloatValue(Float.intBitsToFloat((int) rawValue))
+          .build();
+    }
   }
 
   public static final class SingleDouble extends SingleNumericValue<Double> {
@@ -185,6 +246,13 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setDoubleValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder()
+          .setDoubleValue(Double.longBitsToDouble(rawValue))
+          .build();
+    }
   }
 
   public static final class SingleDateTime extends SingleNumericValue<Instant> {
@@ -197,9 +265,25 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
       long epochMs = get(index).toEpochMilli();
       return SearchResponse.Hit.FieldValue.newBuilder().setLongValue(epochMs).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder().setLongValue(rawValue).build();
+    }
   }
 
-  public abstract static class SortedNumericValues<T> extends LoadedDocValues<T> {
+  /** Convert a raw lat/lon doc value into a response field value. */
+  private static SearchResponse.Hit.FieldValue geoPointToFieldValue(long rawValue) {
+    LatLng latLon =
+        LatLng.newBuilder()
+            .setLatitude(GeoEncodingUtils.decodeLatitude((int) (rawValue >> 32)))
+            .setLongitude(GeoEncodingUtils.decodeLongitude((int) rawValue))
+            .build();
+    return SearchResponse.Hit.FieldValue.newBuilder().setLatLngValue(latLon).build();
+  }
+
+  public abstract static class SortedNumericValues<T> extends LoadedDocValues<T>
+      implements ColumnarValues {
     private final SortedNumericDocValues docValues;
     private final LongFunction<T> decoder;
     private final ArrayList<T> values = new ArrayList<>();
@@ -236,6 +320,20 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public int size() {
       return values.size();
     }
+
+    @Override
+    public void loadColumn(int[] docIds, int count, NumericColumn column) throws IOException {
+      column.reset(count);
+      for (int i = 0; i < count; ++i) {
+        if (docValues.advanceExact(docIds[i])) {
+          int valueCount = docValues.docValueCount();
+          for (int j = 0; j < valueCount; ++j) {
+            column.addValue(docValues.nextValue());
+          }
+        }
+        column.endDoc();
+      }
+    }
   }
 
   public static final class SortedBooleans extends SortedNumericValues<Boolean> {
@@ -247,6 +345,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setBooleanValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder().setBooleanValue(rawValue == 1).build();
+    }
   }
 
   public static final class SortedIntegers extends SortedNumericValues<Integer> {
@@ -258,6 +361,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setIntValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder().setIntValue((int) rawValue).build();
+    }
   }
 
   public static final class SortedLongs extends SortedNumericValues<Long> {
@@ -269,6 +377,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setLongValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder().setLongValue(rawValue).build();
+    }
   }
 
   public static final class SortedFloats extends SortedNumericValues<Float> {
@@ -280,6 +393,13 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setFloatValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder()
+          .setFloatValue(NumericUtils.sortableIntToFloat((int) rawValue))
+          .build();
+    }
   }
 
   public static final class SortedDoubles extends SortedNumericValues<Double> {
@@ -291,6 +411,13 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public SearchResponse.Hit.FieldValue toFieldValue(int index) {
       return SearchResponse.Hit.FieldValue.newBuilder().setDoubleValue(get(index)).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder()
+          .setDoubleValue(NumericUtils.sortableLongToDouble(rawValue))
+          .build();
+    }
   }
 
   // Even single points use SortedNumericDocValues, since they are LatLonDocValuesFields
@@ -314,6 +441,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
     public double arcDistance(double lat, double lon) {
       return getValue().arcDistance(lat, lon);
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return geoPointToFieldValue(rawValue);
+    }
   }
 
   public static final class Locations extends SortedNumericValues<GeoPoint> {
@@ -334,6 +466,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
       // assume we actually only have 1 location while declared as multivalued
       return get(0).arcDistance(lat, lon);
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return geoPointToFieldValue(rawValue);
+    }
   }
 
   public static final class SortedDateTimes extends SortedNumericValues<Instant> {
@@ -346,6 +483,11 @@ public abstract class LoadedDocValues<T> extends AbstractList<T> {
       long epochMs = get(index).toEpochMilli();
       return SearchResponse.Hit.FieldValue.newBuilder().setLongValue(epochMs).build();
     }
+
+    @Override
+    public SearchResponse.Hit.FieldValue rawToFieldValue(long rawValue) {
+      return SearchResponse.Hit.FieldValue.newBuilder().setLongValue(rawValue).build();
+    }
   }
 
   public static final class ObjectJsonDocValues extends LoadedDocValues<Struct> {
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.doc;
+
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * Column of raw (undecoded) numeric doc values for a sequence of documents. Values for all
+ * documents are stored in a single primitive array, with the start offset of each document's values
+ * in a second array. Columns can be reset and reused to avoid allocation.
+ */
+public class NumericColumn {
+  private long[] values = new long[16];
+  private int[] docStarts = new int[17];
+  private int numDocs;
+  private int numValues;
+
+  /**
+   * Clear column, and ensure it has capacity for the given number of documents.
+   *
+   * @param expectedDocs expected number of documents
+   */
+  public void reset(int expectedDocs) {
+    docStarts = ArrayUtil.grow(docStarts, expectedDocs + 1);
+    docStarts[0] = 0;
+    numDocs = 0;
+    numValues = 0;
+  }
+
+  /** Add a value for the current document. */
+  public void addValue(long value) {
+    values = ArrayUtil.grow(values, numValues + 1);
+    values[numValues++] = value;
+  }
+
+  /** Finish adding values for the current document, and move to the next one. */
+  public void endDoc() {
+    docStarts = ArrayUtil.grow(docStarts, numDocs + 2);
+    numDocs++;
+    docStarts[numDocs] = numValues;
+  }
+
+  /** Get number of documents in column. */
+  public int getNumDocs() {
+    return numDocs;
+  }
+
+  /**
+   * Get number of values for a document.
+   *
+   * @param docIndex index of document in column
+   */
+  public int getValueCount(int docIndex) {
+    return docStarts[docIndex + 1] - docStarts[docIndex];
+  }
+
+  /**
+   * Get raw value for a document.
+   *
+   * @param docIndex index of document in column
+   * @param valueIndex index of value for document
+   */
+  public long getValue(int docIndex, int valueIndex) {
+    return values[docStarts[docIndex] + valueIndex];
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.facet;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of int[] buffers used to count facet ordinals. Buffers are only pooled when all values are
+ * zero, so callers must reset any counts they read before releasing a buffer. This lets the reset
+ * happen while merging counts, instead of clearing the whole buffer again on acquire.
+ */
+public class CountBufferPool {
+  // Limit the memory held by the pool, larger buffers are not reused
+  private static final int MAX_POOLED_BUFFERS = Runtime.getRuntime().availableProcessors();
+  private static final int MAX_POOLED_BUFFER_SIZE = 1 << 21;
+
+  private static final CountBufferPool INSTANCE =
+      new CountBufferPool(MAX_POOLED_BUFFERS, MAX_POOLED_BUFFER_SIZE);
+
+  private final int maxBuffers;
+  private final int maxBufferSize;
+  private final ConcurrentLinkedQueue<int[]> buffers = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+  /**
+   * Constructor.
+   *
+   * @param maxBuffers max number of buffers to keep in the pool
+   * @param maxBufferSize max length of a buffer to keep in the pool
+   */
+  public CountBufferPool(int maxBuffers, int maxBufferSize) {
+    this.maxBuffers = maxBuffers;
+    this.maxBufferSize = maxBufferSize;
+  }
+
+  /** Get the shared pool instance. */
+  public static CountBufferPool getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Get a zeroed buffer with a length of at least the given size.
+   *
+   * @param size min buffer length
+   * @return count buffer
+   */
+  public int[] acquire(int size) {
+    int[] buffer;
+    while ((buffer = buffers.poll()) != null) {
+      pooledBuffers.decrementAndGet();
+      if (buffer.length >= size) {
+        return buffer;
+      }
+    }
+    return new int[size];
+  }
+
+  /**
+   * Return a buffer to the pool. All values in the buffer must be zero.
+   *
+   * @param buffer count buffer
+   */
+  public void release(int[] buffer) {
+    if (buffer.length > maxBufferSize) {
+      return;
+    }
+    if (pooledBuffers.incrementAndGet() > maxBuffers) {
+      pooledBuffers.decrementAndGet();
+      return;
+    }
+    buffers.offer(buffer);
+  }
+
+  /** Get the number of buffers currently in the pool. */
+  public int getPooledBuffers() {
+    return pooledBuffers.get();
+  }
+}
@@ -41,6 +41,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import org.apache.lucene.facet.DrillSideways;
 import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
@@ -52,10 +53,11 @@ import org.apache.lucene.facet.range.DoubleRange;
 import org.apache.lucene.facet.range.DoubleRangeFacetCounts;
 import org.apache.lucene.facet.range.LongRange;
 import org.apache.lucene.facet.range.LongRangeFacetCounts;
+import org.apache.lucene.facet.sortedset.ConcurrentSortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
-import org.apache.lucene.facet.taxonomy.TaxonomyFacetCounts;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
@@ -68,6 +70,7 @@ public class DrillSidewaysImpl extends DrillSideways {
   private final Map<String, FieldDef> dynamicFields;
   private final List<com.yelp.nrtsearch.server.grpc.FacetResult> grpcFacetResults;
   private final Diagnostics.Builder diagnostics;
+  private final ExecutorService executorService;
 
   /**
    * @param searcher
@@ -77,6 +80,7 @@ public class DrillSidewaysImpl extends DrillSideways {
    * @param searcherAndTaxonomyManager
    * @param shardState
    * @param dynamicFields
+   * @param executorService executor for concurrent search and per segment facet counting
    * @param diagnostics diagnostics builder for storing facet timing
    */
   public DrillSidewaysImpl(
@@ -99,6 +103,7 @@ public class DrillSidewaysImpl extends DrillSideways {
     this.dynamicFields = dynamicFields;
     this.grpcFacetResults = grpcFacetResults;
     this.diagnostics = diagnostics;
+    this.executorService = executorService;
   }
 
   protected Facets buildFacetsResult(
@@ -114,6 +119,7 @@ public class DrillSidewaysImpl extends DrillSideways {
         dynamicFields,
         searcherAndTaxonomyManager,
         grpcFacetResults,
+        executorService,
         diagnostics);
     return null;
   }
@@ -128,6 +134,7 @@ public class DrillSidewaysImpl extends DrillSideways {
       Map<String, FieldDef> dynamicFields,
       SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomyManager,
       List<com.yelp.nrtsearch.server.grpc.FacetResult> grpcFacetResults,
+      ExecutorService executorService,
       Diagnostics.Builder diagnostics)
       throws IOException {
 
@@ -157,7 +164,7 @@ public class DrillSidewaysImpl extends DrillSideways {
       com.yelp.nrtsearch.server.grpc.FacetResult facetResult;
       if (facet.hasScript()) {
         // this facet is a FacetScript, run script against all matching documents
-        facetResult = getScriptFacetResult(facet, drillDowns, indexState);
+        facetResult = getScriptFacetResult(facet, drillDowns, indexState, executorService);
       } else {
         facetResult =
             getFieldFacetResult(
@@ -168,7 +175,8 @@ public class DrillSidewaysImpl extends DrillSideways {
                 facet,
                 dynamicFields,
                 searcherAndTaxonomyManager,
-                indexFieldNameToFacets);
+                indexFieldNameToFacets,
+                executorService);
       }
       if (facetResult != null) {
         grpcFacetResults.add(facetResult);
@@ -179,7 +187,11 @@ public class DrillSidewaysImpl extends DrillSideways {
   }
 
   private static com.yelp.nrtsearch.server.grpc.FacetResult getScriptFacetResult(
-      Facet facet, FacetsCollector drillDowns, IndexState indexState) throws IOException {
+      Facet facet,
+      FacetsCollector drillDowns,
+      IndexState indexState,
+      ExecutorService executorService)
+      throws IOException {
 
     FacetScript.Factory factory =
         ScriptService.getInstance().compile(facet.getScript(), FacetScript.CONTEXT);
@@ -187,67 +199,129 @@ public class DrillSidewaysImpl extends DrillSideways {
         factory.newFactory(
             ScriptParamsUtils.decodeParams(facet.getScript().getParamsMap()), indexState.docLookup);
 
-    Map<Object, Integer> countsMap = new HashMap<>();
-    int totalDocs = 0;
     // run script against all match docs, and aggregate counts
-    for (MatchingDocs matchingDocs : drillDowns.getMatchingDocs()) {
-      FacetScript script = segmentFactory.newInstance(matchingDocs.context);
-      DocIdSetIterator iterator = matchingDocs.bits.iterator();
-      if (iterator == null) {
-        continue;
-      }
-      int docId = iterator.nextDoc();
-      while (docId != DocIdSetIterator.NO_MORE_DOCS) {
-        script.setDocId(docId);
-        Object scriptResult = script.execute();
-        if (scriptResult != null) {
-          processScriptResult(scriptResult, countsMap);
-        }
-        totalDocs++;
-        docId = iterator.nextDoc();
-      }
-    }
-    return buildFacetResultFromCountsGrpc(countsMap, facet, totalDocs);
+    SegmentCounts segmentCounts =
+        countSegments(
+            drillDowns,
+            executorService,
+            FacetValueCounts.KeyType.UNKNOWN,
+            (matchingDocs, counts) -> {
+              FacetScript script = segmentFactory.newInstance(matchingDocs.context);
+              DocIdSetIterator iterator = matchingDocs.bits.iterator();
+              if (iterator == null) {
+                return;
+              }
+              int docId = iterator.nextDoc();
+              while (docId != DocIdSetIterator.NO_MORE_DOCS) {
+                script.setDocId(docId);
+                Object scriptResult = script.execute();
+                if (scriptResult != null) {
+                  processScriptResult(scriptResult, counts.valueCounts);
+                }
+                counts.totalDocs++;
+                docId = iterator.nextDoc();
+              }
+            });
+    return buildFacetResultFromCountsGrpc(
+        segmentCounts.valueCounts, facet, segmentCounts.totalDocs);
   }
 
   private static com.yelp.nrtsearch.server.grpc.FacetResult getDocValuesFacetResult(
-      Facet facet, FacetsCollector drillDowns, IndexableFieldDef fieldDef) throws IOException {
-    Map<Object, Integer> countsMap = new HashMap<>();
-    int totalDocs = 0;
+      Facet facet,
+      FacetsCollector drillDowns,
+      IndexableFieldDef fieldDef,
+      ExecutorService executorService)
+      throws IOException {
+    FacetValueCounts.KeyType keyType = FacetValueCounts.getKeyType(fieldDef);
     // get doc values for all match docs, and aggregate counts
-    for (MatchingDocs matchingDocs : drillDowns.getMatchingDocs()) {
-      LoadedDocValues<?> docValues = fieldDef.getDocValues(matchingDocs.context);
-      DocIdSetIterator iterator = matchingDocs.bits.iterator();
-      if (iterator == null) {
-        continue;
-      }
-      int docId = iterator.nextDoc();
-      while (docId != DocIdSetIterator.NO_MORE_DOCS) {
-        docValues.setDocId(docId);
-        if (!docValues.isEmpty()) {
-          for (Object value : docValues) {
-            countsMap.merge(value, 1, Integer::sum);
-          }
-          totalDocs++;
+    SegmentCounts segmentCounts =
+        countSegments(
+            drillDowns,
+            executorService,
+            keyType,
+            (matchingDocs, counts) -> {
+              LoadedDocValues<?> docValues = fieldDef.getDocValues(matchingDocs.context);
+              DocIdSetIterator iterator = matchingDocs.bits.iterator();
+              if (iterator == null) {
+                return;
+              }
+              int docId = iterator.nextDoc();
+              while (docId != DocIdSetIterator.NO_MORE_DOCS) {
+                docValues.setDocId(docId);
+                if (!docValues.isEmpty()) {
+                  for (Object value : docValues) {
+                    counts.valueCounts.add(value);
+                  }
+                  counts.totalDocs++;
+                }
+                docId = iterator.nextDoc();
+              }
+            });
+    return buildFacetResultFromCountsGrpc(
+        segmentCounts.valueCounts, facet, segmentCounts.totalDocs);
+  }
+
+  private static void processScriptResult(Object scriptResult, FacetValueCounts valueCounts) {
+    if (scriptResult instanceof Iterable) {
+      for (Object v : (Iterable<?>) scriptResult) {
+        if (v != null) {
+          valueCounts.add(v);
         }
-        docId = iterator.nextDoc();
       }
+    } else {
+      valueCounts.add(scriptResult);
     }
-    return buildFacetResultFromCountsGrpc(countsMap, facet, totalDocs);
   }
 
-  private static void processScriptResult(Object scriptResult, Map<Object, Integer> countsMap) {
-    if (scriptResult instanceof Iterable) {
-      ((Iterable<?>) scriptResult)
-          .forEach(
-              v -> {
-                if (v != null) {
-                  countsMap.merge(v, 1, Integer::sum);
-                }
-              });
-    } else {
-      countsMap.merge(scriptResult, 1, Integer::sum);
+  /** Value counts and number of aggregated documents for one or more segments. */
+  static class SegmentCounts {
+    final FacetValueCounts valueCounts;
+    int totalDocs;
+
+    SegmentCounts(FacetValueCounts valueCounts) {
+      this.valueCounts = valueCounts;
     }
+
+    void merge(SegmentCounts other) {
+      valueCounts.merge(other.valueCounts);
+      totalDocs += other.totalDocs;
+    }
+  }
+
+  /** Aggregates counts for the matching docs of a single segment. */
+  @FunctionalInterface
+  interface SegmentCounter {
+    void count(MatchingDocs matchingDocs, SegmentCounts counts) throws IOException;
+  }
+
+  /**
+   * Count the matching docs of each segment, then merge the counts. When there is more than one
+   * segment with hits, slices of segments are counted in parallel using the executor. Slices the
+   * executor rejects are counted on the calling thread, so a saturated search executor does not
+   * fail the facet.
+   */
+  static SegmentCounts countSegments(
+      FacetsCollector drillDowns,
+      ExecutorService executorService,
+      FacetValueCounts.KeyType keyType,
+      SegmentCounter counter)
+      throws IOException {
+    List<SegmentCounts> sliceCounts =
+        ParallelSegmentCounter.countSlices(
+            drillDowns.getMatchingDocs(),
+            executorService,
+            slice -> {
+              SegmentCounts counts = new SegmentCounts(new FacetValueCounts(keyType));
+              for (MatchingDocs matchingDocs : slice) {
+                counter.count(matchingDocs, counts);
+              }
+              return counts;
+            });
+    SegmentCounts totalCounts = sliceCounts.get(0);
+    for (int i = 1; i < sliceCounts.size(); ++i) {
+      totalCounts.merge(sliceCounts.get(i));
+    }
+    return totalCounts;
   }
 
   /**
@@ -304,6 +378,27 @@ public class DrillSidewaysImpl extends DrillSideways {
     return builder.build();
   }
 
+  /**
+   * Build a {@link com.yelp.nrtsearch.server.grpc.FacetResult} given a computed aggregation in the
+   * form of {@link FacetValueCounts}.
+   *
+   * @param valueCounts aggregated values and the number of times they were observed
+   * @param facet facet definition grpc message
+   * @param totalDocs total number of docs aggregated
+   * @return facet result grpc message
+   */
+  public static com.yelp.nrtsearch.server.grpc.FacetResult buildFacetResultFromCountsGrpc(
+      FacetValueCounts valueCounts, Facet facet, int totalDocs) {
+    return com.yelp.nrtsearch.server.grpc.FacetResult.newBuilder()
+        .setName(facet.getName())
+        .setDim(facet.getDim())
+        .addAllPath(facet.getPathsList())
+        .setValue(totalDocs)
+        .setChildCount(valueCounts.size())
+        .addAllLabelValues(valueCounts.getTopN(facet.getTopN()))
+        .build();
+  }
+
   private static com.yelp.nrtsearch.server.grpc.FacetResult getFieldFacetResult(
       FacetsCollector drillDowns,
       Map<String, FacetsCollector> dsDimMap,
@@ -312,7 +407,8 @@ public class DrillSidewaysImpl extends DrillSideways {
       Facet facet,
       Map<String, FieldDef> dynamicFields,
       SearcherTaxonomyManager.SearcherAndTaxonomy searcherAndTaxonomyManager,
-      Map<String, Facets> indexFieldNameToFacets)
+      Map<String, Facets> indexFieldNameToFacets,
+      ExecutorService executorService)
       throws IOException {
 
     String fieldName = facet.getDim();
@@ -421,12 +517,27 @@ public class DrillSidewaysImpl extends DrillSideways {
                 facet.getLabelsList(),
                 fieldDef.getName(),
                 shardState.getSSDVState(indexState, searcherAndTaxonomyManager, fieldDef),
-                c);
+                c,
+                executorService);
         facetResult = filteredSSDVFacetCounts.getTopChildren(facet.getTopN(), fieldDef.getName());
       } else {
-        SortedSetDocValuesFacetCounts sortedSetDocValuesFacetCounts =
-            new SortedSetDocValuesFacetCounts(
-                shardState.getSSDVState(indexState, searcherAndTaxonomyManager, fieldDef), c);
+        SortedSetDocValuesReaderState ssdvState =
+            shardState.getSSDVState(indexState, searcherAndTaxonomyManager, fieldDef);
+        Facets sortedSetDocValuesFacetCounts;
+        if (ParallelSegmentCounter.isParallel(executorService, c)) {
+          try {
+            sortedSetDocValuesFacetCounts =
+                new ConcurrentSortedSetDocValuesFacetCounts(ssdvState, c, executorService);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+          } catch (RejectedExecutionException e) {
+            // executor is saturated, count on this thread
+            sortedSetDocValuesFacetCounts = new SortedSetDocValuesFacetCounts(ssdvState, c);
+          }
+        } else {
+          sortedSetDocValuesFacetCounts = new SortedSetDocValuesFacetCounts(ssdvState, c);
+        }
         facetResult =
             sortedSetDocValuesFacetCounts.getTopChildren(facet.getTopN(), fieldDef.getName());
       }
@@ -463,11 +574,12 @@ public class DrillSidewaysImpl extends DrillSideways {
             indexState.getFacetsConfig().getDimConfig(fieldDef.getName()).indexFieldName;
         if (useCachedOrds) {
           luceneFacets =
-              new TaxonomyFacetCounts(
+              ParallelTaxonomyFacetCounts.create(
                   shardState.getOrdsCache(indexFieldName),
                   searcherAndTaxonomyManager.taxonomyReader,
                   indexState.getFacetsConfig(),
-                  c);
+                  c,
+                  executorService);
         } else {
           luceneFacets =
               new FastTaxonomyFacetCounts(
@@ -489,11 +601,12 @@ public class DrillSidewaysImpl extends DrillSideways {
         if (luceneFacets == null) {
           if (useCachedOrds) {
             luceneFacets =
-                new TaxonomyFacetCounts(
+                ParallelTaxonomyFacetCounts.create(
                     shardState.getOrdsCache(indexFieldName),
                     searcherAndTaxonomyManager.taxonomyReader,
                     indexState.getFacetsConfig(),
-                    drillDowns);
+                    drillDowns,
+                    executorService);
           } else {
             luceneFacets =
                 new FastTaxonomyFacetCounts(
@@ -535,7 +648,7 @@ public class DrillSidewaysImpl extends DrillSideways {
         throw new IllegalArgumentException(
             "Doc values facet requires doc values enabled : " + fieldName);
       }
-      return getDocValuesFacetResult(facet, drillDowns, indexableFieldDef);
+      return getDocValuesFacetResult(facet, drillDowns, indexableFieldDef, executorService);
     }
     return buildFacetResultGrpc(facetResult, facet.getName());
   }
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.facet;
+
+import com.yelp.nrtsearch.server.grpc.LabelAndValue;
+import com.yelp.nrtsearch.server.luceneserver.field.DoubleFieldDef;
+import com.yelp.nrtsearch.server.luceneserver.field.FieldDef;
+import com.yelp.nrtsearch.server.luceneserver.field.FloatFieldDef;
+import com.yelp.nrtsearch.server.luceneserver.field.IntFieldDef;
+import com.yelp.nrtsearch.server.luceneserver.field.LongFieldDef;
+import it.unimi.dsi.fastutil.doubles.Double2IntMap;
+import it.unimi.dsi.fastutil.doubles.Double2IntMaps;
+import it.unimi.dsi.fastutil.doubles.Double2IntOpenHashMap;
+import it.unimi.dsi.fastutil.floats.Float2IntMap;
+import it.unimi.dsi.fastutil.floats.Float2IntMaps;
+import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMaps;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts the number of times each facet value is observed. Integer, Long, Float and Double values
+ * are counted in fastutil primitive maps, so there is no boxed key or count stored per value. The
+ * key type is either provided up front from the field type, or taken from the first value added. If
+ * a value of another type is added later, the counts move to an object keyed map, which keeps
+ * values of different types as separate labels. Not thread safe, use one instance per segment and
+ * {@link #merge(FacetValueCounts)} the results.
+ */
+public class FacetValueCounts {
+
+  /** Type of the keys being counted. */
+  public enum KeyType {
+    UNKNOWN,
+    INT,
+    LONG,
+    FLOAT,
+    DOUBLE,
+    OBJECT
+  }
+
+  private KeyType keyType = KeyType.UNKNOWN;
+  private Int2IntOpenHashMap intCounts;
+  private Long2IntOpenHashMap longCounts;
+  private Float2IntOpenHashMap floatCounts;
+  private Double2IntOpenHashMap doubleCounts;
+  private Object2IntOpenHashMap<Object> objectCounts;
+
+  /** Constructor, the key type is taken from the first added value. */
+  public FacetValueCounts() {}
+
+  /**
+   * Constructor.
+   *
+   * @param keyType expected type of keys
+   */
+  public FacetValueCounts(KeyType keyType) {
+    setKeyType(keyType);
+  }
+
+  /**
+   * Get the key type for the doc values of a field.
+   *
+   * @param fieldDef field definition
+   * @return key type, or {@link KeyType#UNKNOWN} if the field does not have primitive values
+   */
+  public static KeyType getKeyType(FieldDef fieldDef) {
+    if (fieldDef instanceof IntFieldDef) {
+      return KeyType.INT;
+    } else if (fieldDef instanceof LongFieldDef) {
+      return KeyType.LONG;
+    } else if (fieldDef instanceof FloatFieldDef) {
+      return KeyType.FLOAT;
+    } else if (fieldDef instanceof DoubleFieldDef) {
+      return KeyType.DOUBLE;
+    }
+    return KeyType.UNKNOWN;
+  }
+
+  private static KeyType getKeyType(Object value) {
+    if (value instanceof Integer) {
+      return KeyType.INT;
+    } else if (value instanceof Long) {
+      return KeyType.LONG;
+    } else if (value instanceof Float) {
+      return KeyType.FLOAT;
+    } else if (value instanceof Double) {
+      return KeyType.DOUBLE;
+    }
+    return KeyType.OBJECT;
+  }
+
+  /** Get the type of keys currently being counted. */
+  public KeyType getKeyType() {
+    return keyType;
+  }
+
+  /**
+   * Increment the count for a value.
+   *
+   * @param value non null value
+   */
+  public void add(Object value) {
+    switch (keyType) {
+      case INT:
+        if (value instanceof Integer) {
+          intCounts.addTo((Integer) value, 1);
+          return;
+        }
+        break;
+      case LONG:
+        if (value instanceof Long) {
+          longCounts.addTo((Long) value, 1);
+          return;
+        }
+        break;
+      case FLOAT:
+        if (value instanceof Float) {
+          floatCounts.addTo((Float) value, 1);
+          return;
+        }
+        break;
+      case DOUBLE:
+        if (value instanceof Double) {
+          doubleCounts.addTo((Double) value, 1);
+          return;
+        }
+        break;
+      case OBJECT:
+        objectCounts.addTo(value, 1);
+        return;
+      case UNKNOWN:
+        setKeyType(getKeyType(value));
+        add(value);
+        return;
+    }
+    convertToObjectCounts();
+    objectCounts.addTo(value, 1);
+  }
+
+  /**
+   * Add all counts from another instance into this one.
+   *
+   * @param other counts to add
+   */
+  public void merge(FacetValueCounts other) {
+    if (other.keyType == KeyType.UNKNOWN) {
+      return;
+    }
+    if (keyType == KeyType.UNKNOWN) {
+      setKeyType(other.keyType);
+    }
+    if (keyType != other.keyType) {
+      convertToObjectCounts();
+      other.addAllTo(objectCounts);
+      return;
+    }
+    switch (keyType) {
+      case INT:
+        for (Int2IntMap.Entry e : Int2IntMaps.fastIterable(other.intCounts)) {
+          intCounts.addTo(e.getIntKey(), e.getIntValue());
+        }
+        break;
+      case LONG:
+        for (Long2IntMap.Entry e : Long2IntMaps.fastIterable(other.longCounts)) {
+          longCounts.addTo(e.getLongKey(), e.getIntValue());
+        }
+        break;
+      case FLOAT:
+        for (Float2IntMap.Entry e : Float2IntMaps.fastIterable(other.floatCounts)) {
+          floatCounts.addTo(e.getFloatKey(), e.getIntValue());
+        }
+        break;
+      case DOUBLE:
+        for (Double2IntMap.Entry e : Double2IntMaps.fastIterable(other.doubleCounts)) {
+          doubleCounts.addTo(e.getDoubleKey(), e.getIntValue());
+        }
+        break;
+      case OBJECT:
+        other.addAllTo(objectCounts);
+        break;
+      default:
+        throw new IllegalStateException("Unknown key type: " + keyType);
+    }
+  }
+
+  /** Get the number of unique values counted. */
+  public int size() {
+    switch (keyType) {
+      case INT:
+        return intCounts.size();
+      case LONG:
+        return longCounts.size();
+      case FLOAT:
+        return floatCounts.size();
+      case DOUBLE:
+        return doubleCounts.size();
+      case OBJECT:
+        return objectCounts.size();
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Get the values with the highest counts. Only values that are competitive for the top N are
+   * boxed.
+   *
+   * @param topN max number of values to return
+   * @return label and count for the top values, in descending count order
+   */
+  public List<LabelAndValue> getTopN(int topN) {
+    LinkedList<LabelAndValue> labelAndValues = new LinkedList<>();
+    if (topN <= 0 || size() == 0) {
+      return labelAndValues;
+    }
+    TopNQueue queue = new TopNQueue(Math.min(size(), topN));
+    switch (keyType) {
+      case INT:
+        for (Int2IntMap.Entry e : Int2IntMaps.fastIterable(intCounts)) {
+          if (queue.isCompetitive(e.getIntValue())) {
+            queue.add(e.getIntKey(), e.getIntValue());
+          }
+        }
+        break;
+      case LONG:
+        for (Long2IntMap.Entry e : Long2IntMaps.fastIterable(longCounts)) {
+          if (queue.isCompetitive(e.getIntValue())) {
+            queue.add(e.getLongKey(), e.getIntValue());
+          }
+        }
+        break;
+      case FLOAT:
+        for (Float2IntMap.Entry e : Float2IntMaps.fastIterable(floatCounts)) {
+          if (queue.isCompetitive(e.getIntValue())) {
+            queue.add(e.getFloatKey(), e.getIntValue());
+          }
+        }
+        break;
+      case DOUBLE:
+        for (Double2IntMap.Entry e : Double2IntMaps.fastIterable(doubleCounts)) {
+          if (queue.isCompetitive(e.getIntValue())) {
+            queue.add(e.getDoubleKey(), e.getIntValue());
+          }
+        }
+        break;
+      case OBJECT:
+        for (Object2IntMap.Entry<Object> e : Object2IntMaps.fastIterable(objectCounts)) {
+          if (queue.isCompetitive(e.getIntValue())) {
+            queue.add(e.getKey(), e.getIntValue());
+          }
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown key type: " + keyType);
+    }
+
+    // the priority queue is a min heap, use a linked list to reverse the order
+    while (!queue.queue.isEmpty()) {
+      Candidate candidate = queue.queue.poll();
+      labelAndValues.addFirst(
+          LabelAndValue.newBuilder()
+              .setLabel(candidate.key.toString())
+              .setValue(candidate.count)
+              .build());
+    }
+    return labelAndValues;
+  }
+
+  private void setKeyType(KeyType keyType) {
+    this.keyType = keyType;
+    switch (keyType) {
+      case INT:
+        intCounts = new Int2IntOpenHashMap();
+        break;
+      case LONG:
+        longCounts = new Long2IntOpenHashMap();
+        break;
+      case FLOAT:
+        floatCounts = new Float2IntOpenHashMap();
+        break;
+      case DOUBLE:
+        doubleCounts = new Double2IntOpenHashMap();
+        break;
+      case OBJECT:
+        objectCounts = new Object2IntOpenHashMap<>();
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void convertToObjectCounts() {
+    if (keyType == KeyType.OBJECT) {
+      return;
+    }
+    Object2IntOpenHashMap<Object> counts = new Object2IntOpenHashMap<>(size());
+    addAllTo(counts);
+    intCounts = null;
+    longCounts = null;
+    floatCounts = null;
+    doubleCounts = null;
+    keyType = KeyType.OBJECT;
+    objectCounts = counts;
+  }
+
+  private void addAllTo(Object2IntOpenHashMap<Object> target) {
+    switch (keyType) {
+      case INT:
+        for (Int2IntMap.Entry e : Int2IntMaps.fastIterable(intCounts)) {
+          target.addTo(e.getIntKey(), e.getIntValue());
+        }
+        break;
+      case LONG:
+        for (Long2IntMap.Entry e : Long2IntMaps.fastIterable(longCounts)) {
+          target.addTo(e.getLongKey(), e.getIntValue());
+        }
+        break;
+      case FLOAT:
+        for (Float2IntMap.Entry e : Float2IntMaps.fastIterable(floatCounts)) {
+          target.addTo(e.getFloatKey(), e.getIntValue());
+        }
+        break;
+      case DOUBLE:
+        for (Double2IntMap.Entry e : Double2IntMaps.fastIterable(doubleCounts)) {
+          target.addTo(e.getDoubleKey(), e.getIntValue());
+        }
+        break;
+      case OBJECT:
+        for (Object2IntMap.Entry<Object> e : Object2IntMaps.fastIterable(objectCounts)) {
+          target.addTo(e.getKey(), e.getIntValue());
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static class Candidate {
+    final Object key;
+    final int count;
+
+    Candidate(Object key, int count) {
+      this.key = key;
+      this.count = count;
+    }
+  }
+
+  /** Min heap holding the values with the highest counts. */
+  private static class TopNQueue {
+    final int size;
+    final PriorityQueue<Candidate> queue;
+
+    TopNQueue(int size) {
+      this.size = size;
+      this.queue = new PriorityQueue<>(size, (a, b) -> Integer.compare(a.count, b.count));
+    }
+
+    boolean isCompetitive(int count) {
+      return queue.size() < size || count > queue.peek().count;
+    }
+
+    void add(Object key, int count) {
+      if (queue.size() >= size) {
+        queue.poll();
+      }
+      queue.offer(new Candidate(key, count));
+    }
+  }
+}
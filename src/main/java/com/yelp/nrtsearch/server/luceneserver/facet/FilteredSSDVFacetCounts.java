@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
@@ -44,7 +45,8 @@ import org.apache.lucene.util.LongValues;
  * Facet implementation based off the {@link
  * org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts}. Computes facet counts based on
  * the sorted set doc value ordinals for a provided list of values, acting as an inclusion filter.
- * Only applies to a single dimension.
+ * Only applies to a single dimension. When provided an executor, segments are counted in parallel
+ * and the counts merged.
  */
 public class FilteredSSDVFacetCounts extends Facets {
 
@@ -67,6 +69,26 @@ public class FilteredSSDVFacetCounts extends Facets {
   public FilteredSSDVFacetCounts(
       List<String> values, String dim, SortedSetDocValuesReaderState state, FacetsCollector hits)
       throws IOException {
+    this(values, dim, state, hits, null);
+  }
+
+  /**
+   * Facet to count based on sorted set doc values, but only considering the provided values.
+   *
+   * @param values values to count
+   * @param dim facet dimension
+   * @param state reader state
+   * @param hits hits to facet over
+   * @param executor executor to count segments in parallel, or null to count on this thread
+   * @throws IOException
+   */
+  public FilteredSSDVFacetCounts(
+      List<String> values,
+      String dim,
+      SortedSetDocValuesReaderState state,
+      FacetsCollector hits,
+      ExecutorService executor)
+      throws IOException {
     this.state = state;
     this.field = state.getField();
     this.values = values;
@@ -85,11 +107,12 @@ public class FilteredSSDVFacetCounts extends Facets {
       }
     }
 
-    count(hits.getMatchingDocs());
+    count(hits.getMatchingDocs(), executor);
   }
 
   /** Does all the "real work" of tallying up the counts. */
-  private void count(List<MatchingDocs> matchingDocs) throws IOException {
+  private void count(List<MatchingDocs> matchingDocs, ExecutorService executor)
+      throws IOException {
     OrdinalMap ordinalMap;
 
     // TODO: is this right?  really, we need a way to
@@ -111,13 +134,30 @@ public class FilteredSSDVFacetCounts extends Facets {
         throw new IllegalStateException(
             "the SortedSetDocValuesReaderState provided to this class does not match the reader being searched; you must create a new SortedSetDocValuesReaderState every time you open a new IndexReader");
       }
+    }
 
-      countOneSegment(ordinalMap, hits.context.reader(), hits.context.ord, hits);
+    List<int[]> sliceCounts =
+        ParallelSegmentCounter.countSlices(
+            matchingDocs,
+            executor,
+            slice -> {
+              int[] countsForSlice = new int[counts.length];
+              for (MatchingDocs hits : slice) {
+                countOneSegment(
+                    ordinalMap, hits.context.reader(), hits.context.ord, hits, countsForSlice);
+              }
+              return countsForSlice;
+            });
+    for (int[] countsForSlice : sliceCounts) {
+      for (int i = 0; i < counts.length; ++i) {
+        counts[i] += countsForSlice[i];
+      }
     }
   }
 
   private void countOneSegment(
-      OrdinalMap ordinalMap, LeafReader reader, int segOrd, MatchingDocs hits) throws IOException {
+      OrdinalMap ordinalMap, LeafReader reader, int segOrd, MatchingDocs hits, int[] counts)
+      throws IOException {
     SortedSetDocValues segValues = reader.getSortedSetDocValues(field);
     if (segValues == null) {
       // nothing to count
@@ -159,24 +199,34 @@ public class FilteredSSDVFacetCounts extends Facets {
         }
       } else {
         // First count in seg-ord space:
-        final int[] segCounts = new int[numSegOrds];
-        for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
-          int term = (int) segValues.nextOrd();
-          while (term != SortedSetDocValues.NO_MORE_ORDS) {
-            segCounts[term]++;
-            term = (int) segValues.nextOrd();
+        final int[] segCounts = CountBufferPool.getInstance().acquire(numSegOrds);
+        boolean cleared = false;
+        try {
+          for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+            int term = (int) segValues.nextOrd();
+            while (term != SortedSetDocValues.NO_MORE_ORDS) {
+              segCounts[term]++;
+              term = (int) segValues.nextOrd();
+            }
           }
-        }
 
-        // Then, migrate to global ords:
-        for (int ord = 0; ord < numSegOrds; ord++) {
-          int count = segCounts[ord];
-          if (count != 0) {
-            Integer countIndex = globalOrdinalToCountIndex.get(ordMap.get(ord));
-            if (countIndex != null) {
-              counts[countIndex]++;
+          // Then, migrate to global ords, clearing the buffer so it can be pooled:
+          for (int ord = 0; ord < numSegOrds; ord++) {
+            int count = segCounts[ord];
+            if (count != 0) {
+              segCounts[ord] = 0;
+              Integer countIndex = globalOrdinalToCountIndex.get(ordMap.get(ord));
+              if (countIndex != null) {
+                counts[countIndex] += count;
+              }
             }
           }
+          cleared = true;
+        } finally {
+          if (!cleared) {
+            Arrays.fill(segCounts, 0, numSegOrds, 0);
+          }
+          CountBufferPool.getInstance().release(segCounts);
         }
       }
     } else {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.facet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+
+/**
+ * Utility to count facets over the matching docs of each segment in parallel. Segments with hits are
+ * grouped into slices, at most one per executor thread, and each slice is counted by a separate
+ * task. The calling thread counts the first slice, as well as any slice rejected by the executor.
+ * The caller merges the per slice results. Counting is done on the calling thread when there is no
+ * executor or only one segment has hits.
+ */
+public class ParallelSegmentCounter {
+
+  private ParallelSegmentCounter() {}
+
+  /** Counts the matching docs for a slice of segments. */
+  @FunctionalInterface
+  public interface SliceCounter<T> {
+    /**
+     * Count the matching docs of the given segments.
+     *
+     * @param slice matching docs for segments with hits
+     * @return counts for the slice
+     * @throws IOException on error reading index data
+     */
+    T count(List<MatchingDocs> slice) throws IOException;
+  }
+
+  /**
+   * Get if counting the given hits would be done in parallel.
+   *
+   * @param executor executor for counting tasks, may be null
+   * @param hits facet hits
+   * @return if more than one slice would be counted
+   */
+  public static boolean isParallel(ExecutorService executor, FacetsCollector hits) {
+    return executor != null && getSegmentsWithHits(hits.getMatchingDocs()).size() > 1;
+  }
+
+  /**
+   * Count the hits for each slice of segments. The search executor uses an abort policy, so a
+   * slice the executor rejects is counted on the calling thread instead of failing the request.
+   * If counting any slice fails, tasks that have not started are cancelled.
+   *
+   * @param matchingDocs matching docs for all segments
+   * @param executor executor for counting tasks, may be null
+   * @param counter counter for a slice of segments
+   * @param <T> slice counts type
+   * @return counts for each slice
+   * @throws IOException on error reading index data
+   */
+  public static <T> List<T> countSlices(
+      List<MatchingDocs> matchingDocs, ExecutorService executor, SliceCounter<T> counter)
+      throws IOException {
+    List<MatchingDocs> segments = getSegmentsWithHits(matchingDocs);
+    if (executor == null || segments.size() < 2) {
+      return Collections.singletonList(counter.count(segments));
+    }
+
+    List<List<MatchingDocs>> slices = getSlices(segments, getMaxSlices(executor));
+    List<Future<T>> futures = new ArrayList<>(slices.size() - 1);
+    List<T> results = new ArrayList<>(slices.size());
+    try {
+      // the calling thread counts the first slice, and any slice the executor rejects
+      for (int i = 1; i < slices.size(); ++i) {
+        List<MatchingDocs> slice = slices.get(i);
+        try {
+          futures.add(executor.submit(() -> counter.count(slice)));
+        } catch (RejectedExecutionException e) {
+          results.add(counter.count(slice));
+        }
+      }
+      results.add(counter.count(slices.get(0)));
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(f -> f.cancel(false));
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      futures.forEach(f -> f.cancel(false));
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      } else if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } catch (IOException | RuntimeException e) {
+      futures.forEach(f -> f.cancel(false));
+      throw e;
+    }
+    return results;
+  }
+
+  private static List<MatchingDocs> getSegmentsWithHits(List<MatchingDocs> matchingDocs) {
+    List<MatchingDocs> segments = new ArrayList<>(matchingDocs.size());
+    for (MatchingDocs hits : matchingDocs) {
+      if (hits.totalHits > 0) {
+        segments.add(hits);
+      }
+    }
+    return segments;
+  }
+
+  private static int getMaxSlices(ExecutorService executor) {
+    if (executor instanceof ThreadPoolExecutor) {
+      return Math.max(1, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+    }
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /** Group segments into slices with a similar number of hits, largest segments first. */
+  private static List<List<MatchingDocs>> getSlices(List<MatchingDocs> segments, int maxSlices) {
+    int numSlices = Math.min(segments.size(), maxSlices);
+    List<List<MatchingDocs>> slices = new ArrayList<>(numSlices);
+    long[] sliceHits = new long[numSlices];
+    for (int i = 0; i < numSlices; ++i) {
+      slices.add(new ArrayList<>());
+    }
+    List<MatchingDocs> sorted = new ArrayList<>(segments);
+    sorted.sort(Comparator.comparingInt((MatchingDocs hits) -> hits.totalHits).reversed());
+    for (MatchingDocs hits : sorted) {
+      int minSlice = 0;
+      for (int i = 1; i < numSlices; ++i) {
+        if (sliceHits[i] < sliceHits[minSlice]) {
+          minSlice = i;
+        }
+      }
+      slices.get(minSlice).add(hits);
+      sliceHits[minSlice] += hits.totalHits;
+    }
+    return slices;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.facet;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.IntTaxonomyFacets;
+import org.apache.lucene.facet.taxonomy.OrdinalsReader;
+import org.apache.lucene.facet.taxonomy.TaxonomyFacetCounts;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.IntsRef;
+
+/**
+ * Taxonomy facet counts based off the {@link TaxonomyFacetCounts}, reading ordinals from an {@link
+ * OrdinalsReader} such as the shard ordinals cache. Slices of segments are counted in parallel
+ * into pooled int[] buffers sized to the taxonomy, which are then merged into the facet counts.
+ */
+public class ParallelTaxonomyFacetCounts extends IntTaxonomyFacets {
+  // merging dense buffers costs the taxonomy size per slice, only worth it with enough hits
+  private static final int MIN_HITS_TAXONOMY_DIVISOR = 10;
+
+  private final OrdinalsReader ordinalsReader;
+
+  /**
+   * Create taxonomy facet counts, counting segments in parallel when the executor is provided and
+   * there are enough hits to make it worthwhile.
+   *
+   * @param ordinalsReader reader for the facet ordinals of each document
+   * @param taxoReader taxonomy reader
+   * @param config facets config
+   * @param hits hits to facet over
+   * @param executor executor to count segments in parallel, may be null
+   * @return facet counts
+   * @throws IOException on error reading index data
+   */
+  public static Facets create(
+      OrdinalsReader ordinalsReader,
+      TaxonomyReader taxoReader,
+      FacetsConfig config,
+      FacetsCollector hits,
+      ExecutorService executor)
+      throws IOException {
+    if (ParallelSegmentCounter.isParallel(executor, hits)
+        && getTotalHits(hits) >= taxoReader.getSize() / MIN_HITS_TAXONOMY_DIVISOR) {
+      return new ParallelTaxonomyFacetCounts(ordinalsReader, taxoReader, config, hits, executor);
+    }
+    return new TaxonomyFacetCounts(ordinalsReader, taxoReader, config, hits);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param ordinalsReader reader for the facet ordinals of each document
+   * @param taxoReader taxonomy reader
+   * @param config facets config
+   * @param hits hits to facet over
+   * @param executor executor to count segments in parallel, may be null
+   * @throws IOException on error reading index data
+   */
+  public ParallelTaxonomyFacetCounts(
+      OrdinalsReader ordinalsReader,
+      TaxonomyReader taxoReader,
+      FacetsConfig config,
+      FacetsCollector hits,
+      ExecutorService executor)
+      throws IOException {
+    super(ordinalsReader.getIndexFieldName(), taxoReader, config, hits);
+    this.ordinalsReader = ordinalsReader;
+    count(hits.getMatchingDocs(), taxoReader.getSize(), executor);
+  }
+
+  private void count(List<MatchingDocs> matchingDocs, int numOrds, ExecutorService executor)
+      throws IOException {
+    CountBufferPool pool = CountBufferPool.getInstance();
+    List<int[]> sliceCounts =
+        ParallelSegmentCounter.countSlices(
+            matchingDocs,
+            executor,
+            slice -> {
+              int[] counts = pool.acquire(numOrds);
+              IntsRef scratch = new IntsRef();
+              for (MatchingDocs hits : slice) {
+                OrdinalsReader.OrdinalsSegmentReader ords = ordinalsReader.getReader(hits.context);
+                DocIdSetIterator docs = hits.bits.iterator();
+                if (docs == null) {
+                  continue;
+                }
+                int doc;
+                while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                  ords.get(doc, scratch);
+                  for (int i = 0; i < scratch.length; i++) {
+                    counts[scratch.ints[scratch.offset + i]]++;
+                  }
+                }
+              }
+              return counts;
+            });
+
+    // merge slice counts, clearing the buffers so they can be pooled
+    for (int[] counts : sliceCounts) {
+      for (int ord = 0; ord < numOrds; ++ord) {
+        int count = counts[ord];
+        if (count != 0) {
+          counts[ord] = 0;
+          increment(ord, count);
+        }
+      }
+      pool.release(counts);
+    }
+    rollup();
+  }
+
+  private static long getTotalHits(FacetsCollector hits) {
+    long totalHits = 0;
+    for (MatchingDocs matchingDocs : hits.getMatchingDocs()) {
+      totalHits += matchingDocs.totalHits;
+    }
+    return totalHits;
+  }
+}
@@ -27,11 +27,11 @@ import com.yelp.nrtsearch.server.luceneserver.field.properties.TermQueryable;
 import com.yelp.nrtsearch.server.luceneserver.search.GlobalOrdinalLookup;
 import com.yelp.nrtsearch.server.luceneserver.search.GlobalOrdinalLookup.SortedLookup;
 import com.yelp.nrtsearch.server.luceneserver.search.GlobalOrdinalLookup.SortedSetLookup;
+import com.yelp.nrtsearch.server.luceneserver.search.GlobalOrdinalMap;
+import com.yelp.nrtsearch.server.luceneserver.search.cache.GlobalOrdinalLookupCache;
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import org.apache.lucene.analysis.Analyzer;
@@ -64,7 +64,6 @@ public abstract class TextBaseFieldDef extends IndexableFieldDef
   private final Analyzer searchAnalyzer;
   private final boolean eagerFieldGlobalOrdinals;
 
-  public final Map<IndexReader.CacheKey, GlobalOrdinalLookup> ordinalLookupCache = new HashMap<>();
   private final Object ordinalBuilderLock = new Object();
 
   /**
@@ -350,42 +349,29 @@ public abstract class TextBaseFieldDef extends IndexableFieldDef
       throw new IllegalStateException("Field: " + getName() + " does not use ordinals");
     }
 
-    IndexReader.CacheKey cacheKey = reader.getReaderCacheHelper().getKey();
-    GlobalOrdinalLookup ordinalLookup;
-    synchronized (ordinalLookupCache) {
-      ordinalLookup = ordinalLookupCache.get(cacheKey);
-    }
+    GlobalOrdinalLookupCache lookupCache = GlobalOrdinalLookupCache.getInstance();
+    GlobalOrdinalLookup ordinalLookup = lookupCache.get(this, reader);
 
     if (ordinalLookup == null) {
       // use separate lock to build lookup, to not block cache reads
       synchronized (ordinalBuilderLock) {
         // make sure this wasn't built while we waited for the lock
-        synchronized (ordinalLookupCache) {
-          ordinalLookup = ordinalLookupCache.get(cacheKey);
-        }
+        ordinalLookup = lookupCache.getIfPresent(this, reader);
         if (ordinalLookup == null) {
+          // reuse segment mappings from the last lookup built for this field
+          GlobalOrdinalMap previousMap = lookupCache.getLatestMap(this);
+          boolean incremental = lookupCache.getIncremental();
+          long buildStart = System.nanoTime();
           // build lookup based on doc value type
           if (docValuesType == DocValuesType.SORTED) {
-            ordinalLookup = new SortedLookup(reader, getName());
+            ordinalLookup = new SortedLookup(reader, getName(), previousMap, incremental);
           } else if (docValuesType == DocValuesType.SORTED_SET) {
-            ordinalLookup = new SortedSetLookup(reader, getName());
+            ordinalLookup = new SortedSetLookup(reader, getName(), previousMap, incremental);
           } else {
             throw new IllegalStateException(
                 "Doc value type not usable for ordinals: " + docValuesType);
           }
-
-          // add lookup to the cache
-          synchronized (ordinalLookupCache) {
-            ordinalLookupCache.put(cacheKey, ordinalLookup);
-            reader
-                .getReaderCacheHelper()
-                .addClosedListener(
-                    key -> {
-                      synchronized (ordinalLookupCache) {
-                        ordinalLookupCache.remove(key);
-                      }
-                    });
-          }
+          lookupCache.put(this, reader, ordinalLookup, System.nanoTime() - buildStart);
         }
       }
     }
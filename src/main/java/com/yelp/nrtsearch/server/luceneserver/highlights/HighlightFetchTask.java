@@ -24,6 +24,11 @@ import com.yelp.nrtsearch.server.luceneserver.IndexState;
 import com.yelp.nrtsearch.server.luceneserver.search.FetchTasks.FetchTask;
 import com.yelp.nrtsearch.server.luceneserver.search.SearchContext;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.DoubleAdder;
@@ -41,7 +46,10 @@ public class HighlightFetchTask implements FetchTask {
   private static final double TEN_TO_THE_POWER_SIX = Math.pow(10, 6);
   private final IndexReader indexReader;
   private final Map<String, HighlightSettings> fieldSettings;
+  private final Map<String, HighlightSettings> fastVectorFieldSettings = new HashMap<>();
+  private final Map<Query, List<String>> unifiedFieldsByQuery = new LinkedHashMap<>();
   private final HighlightHandler highlightHandler = HighlightHandler.getInstance();
+  private final NrtUnifiedHighlighter unifiedHighlighter;
 
   private final DoubleAdder timeTakenMs = new DoubleAdder();
 
@@ -53,6 +61,24 @@ public class HighlightFetchTask implements FetchTask {
       throws IOException {
     indexReader = searcherAndTaxonomy.searcher.getIndexReader();
     fieldSettings = createPerFieldSettings(indexReader, highlight, searchQuery, indexState);
+
+    Map<String, HighlightSettings> unifiedFieldSettings = new HashMap<>();
+    for (Entry<String, HighlightSettings> entry : fieldSettings.entrySet()) {
+      HighlightSettings settings = entry.getValue();
+      if (settings.getHighlighterType() == Highlight.Type.UNIFIED) {
+        unifiedFieldSettings.put(entry.getKey(), settings);
+        unifiedFieldsByQuery
+            .computeIfAbsent(settings.getQuery(), k -> new ArrayList<>())
+            .add(entry.getKey());
+      } else {
+        fastVectorFieldSettings.put(entry.getKey(), settings);
+      }
+    }
+    unifiedHighlighter =
+        unifiedFieldSettings.isEmpty()
+            ? null
+            : new NrtUnifiedHighlighter(
+                searcherAndTaxonomy.searcher, indexState.searchAnalyzer, unifiedFieldSettings);
   }
 
   /**
@@ -67,26 +93,64 @@ public class HighlightFetchTask implements FetchTask {
   @Override
   public void processHit(SearchContext searchContext, LeafReaderContext hitLeaf, Builder hit)
       throws IOException {
-    if (fieldSettings.isEmpty()) {
+    processSegmentHits(searchContext, hitLeaf, Collections.singletonList(hit));
+  }
+
+  /**
+   * Add highlighted fragments for hits from a single segment to the response. Fields using the
+   * unified highlighter are highlighted for all the hits together. Also counts the time taken which
+   * can be retrieved by calling {@link #getTimeTakenMs()}.
+   *
+   * @param searchContext search context
+   * @param segment lucene segment containing all the hits
+   * @param hits hit builders for query response
+   * @throws IOException if there is a low-level IO error in highlighter
+   */
+  public void processSegmentHits(
+      SearchContext searchContext, LeafReaderContext segment, List<Builder> hits)
+      throws IOException {
+    if (fieldSettings.isEmpty() || hits.isEmpty()) {
       return;
     }
     long startTime = System.nanoTime();
-    for (Entry<String, HighlightSettings> fieldSetting : fieldSettings.entrySet()) {
-      String fieldName = fieldSetting.getKey();
-      String[] highlights =
-          highlightHandler.getHighlights(
-              indexReader, fieldSetting.getValue(), fieldName, hit.getLuceneDocId());
-      if (highlights != null && highlights.length > 0 && highlights[0] != null) {
-        Highlights.Builder builder = Highlights.newBuilder();
-        for (String fragment : highlights) {
-          builder.addFragments(fragment);
+    for (Builder hit : hits) {
+      for (Entry<String, HighlightSettings> fieldSetting : fastVectorFieldSettings.entrySet()) {
+        String fieldName = fieldSetting.getKey();
+        String[] highlights =
+            highlightHandler.getHighlights(
+                indexReader, fieldSetting.getValue(), fieldName, hit.getLuceneDocId());
+        addHighlights(hit, fieldName, highlights);
+      }
+    }
+    if (unifiedHighlighter != null) {
+      int[] docIds = new int[hits.size()];
+      for (int i = 0; i < docIds.length; ++i) {
+        docIds[i] = hits.get(i).getLuceneDocId();
+      }
+      for (Entry<Query, List<String>> entry : unifiedFieldsByQuery.entrySet()) {
+        Map<String, String[][]> fieldHighlights =
+            unifiedHighlighter.highlight(
+                entry.getValue().toArray(new String[0]), entry.getKey(), docIds);
+        for (Entry<String, String[][]> fieldEntry : fieldHighlights.entrySet()) {
+          for (int i = 0; i < docIds.length; ++i) {
+            addHighlights(hits.get(i), fieldEntry.getKey(), fieldEntry.getValue()[i]);
+          }
         }
-        hit.putHighlights(fieldName, builder.build());
       }
     }
     timeTakenMs.add(((System.nanoTime() - startTime) / TEN_TO_THE_POWER_SIX));
   }
 
+  private static void addHighlights(Builder hit, String fieldName, String[] highlights) {
+    if (highlights != null && highlights.length > 0 && highlights[0] != null) {
+      Highlights.Builder builder = Highlights.newBuilder();
+      for (String fragment : highlights) {
+        builder.addFragments(fragment);
+      }
+      hit.putHighlights(fieldName, builder.build());
+    }
+  }
+
   /**
    * Get the total time taken so far to generate highlights.
    *
@@ -15,6 +15,8 @@
  */
 package com.yelp.nrtsearch.server.luceneserver.highlights;
 
+import com.yelp.nrtsearch.server.grpc.Highlight;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.vectorhighlight.FieldQuery;
 
 /** Holds the context from the search request required to build highlights. */
@@ -25,6 +27,9 @@ public class HighlightSettings {
   private final int fragmentSize;
   private final int maxNumFragments;
   private final FieldQuery fieldQuery;
+  private final Highlight.Type highlighterType;
+  private final Query query;
+  private final boolean fieldMatch;
 
   public HighlightSettings(
       String[] preTags,
@@ -32,11 +37,34 @@ public class HighlightSettings {
       int fragmentSize,
       int maxNumFragments,
       FieldQuery fieldQuery) {
+    this(
+        preTags,
+        postTags,
+        fragmentSize,
+        maxNumFragments,
+        fieldQuery,
+        Highlight.Type.FAST_VECTOR,
+        null,
+        false);
+  }
+
+  public HighlightSettings(
+      String[] preTags,
+      String[] postTags,
+      int fragmentSize,
+      int maxNumFragments,
+      FieldQuery fieldQuery,
+      Highlight.Type highlighterType,
+      Query query,
+      boolean fieldMatch) {
     this.preTags = preTags;
     this.postTags = postTags;
     this.fragmentSize = fragmentSize;
     this.maxNumFragments = maxNumFragments;
     this.fieldQuery = fieldQuery;
+    this.highlighterType = highlighterType;
+    this.query = query;
+    this.fieldMatch = fieldMatch;
   }
 
   public String[] getPreTags() {
@@ -55,10 +83,26 @@ public class HighlightSettings {
     return maxNumFragments;
   }
 
+  /** Get the {@link FieldQuery} for the fast vector highlighter, null for other highlighters. */
   public FieldQuery getFieldQuery() {
     return fieldQuery;
   }
 
+  /** Get the resolved highlighter type, never {@link Highlight.Type#DEFAULT}. */
+  public Highlight.Type getHighlighterType() {
+    return highlighterType;
+  }
+
+  /** Get the lucene query to highlight against. */
+  public Query getQuery() {
+    return query;
+  }
+
+  /** Get if only terms from this field in the query should be highlighted. */
+  public boolean getFieldMatch() {
+    return fieldMatch;
+  }
+
   public static final class Builder {
 
     private String[] preTags;
@@ -66,6 +110,9 @@ public class HighlightSettings {
     private int fragmentSize;
     private int maxNumFragments;
     private FieldQuery fieldQuery;
+    private Highlight.Type highlighterType = Highlight.Type.FAST_VECTOR;
+    private Query query;
+    private boolean fieldMatch;
 
     public Builder() {}
 
@@ -94,8 +141,31 @@ public class HighlightSettings {
       return this;
     }
 
+    public Builder withHighlighterType(Highlight.Type highlighterType) {
+      this.highlighterType = highlighterType;
+      return this;
+    }
+
+    public Builder withQuery(Query query) {
+      this.query = query;
+      return this;
+    }
+
+    public Builder withFieldMatch(boolean fieldMatch) {
+      this.fieldMatch = fieldMatch;
+      return this;
+    }
+
     public HighlightSettings build() {
-      return new HighlightSettings(preTags, postTags, fragmentSize, maxNumFragments, fieldQuery);
+      return new HighlightSettings(
+          preTags,
+          postTags,
+          fragmentSize,
+          maxNumFragments,
+          fieldQuery,
+          highlighterType,
+          query,
+          fieldMatch);
     }
   }
 }
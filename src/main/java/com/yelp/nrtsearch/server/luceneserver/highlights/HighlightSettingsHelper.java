@@ -60,6 +60,22 @@ public class HighlightSettingsHelper {
         fieldSettings.put(field, globalSettings);
       } else {
         Settings settings = fieldSettingsFromRequest.get(field);
+        Highlight.Type highlighterType = getHighlighterType(highlight, field);
+        Query query =
+            settings.hasHighlightQuery()
+                ? QUERY_NODE_MAPPER.getQuery(settings.getHighlightQuery(), indexState)
+                : globalSettings.getQuery();
+        boolean fieldMatch =
+            settings.hasHighlightQuery()
+                ? settings.getFieldMatch()
+                : globalSettings.getFieldMatch();
+        FieldQuery fieldQuery = null;
+        if (highlighterType == Highlight.Type.FAST_VECTOR) {
+          fieldQuery =
+              settings.hasHighlightQuery() || globalSettings.getFieldQuery() == null
+                  ? getFieldQuery(indexReader, query, fieldMatch)
+                  : globalSettings.getFieldQuery();
+        }
         HighlightSettings.Builder builder =
             new Builder()
                 .withPreTags(
@@ -74,10 +90,10 @@ public class HighlightSettingsHelper {
                     settings.hasFragmentSize()
                         ? settings.getFragmentSize().getValue()
                         : globalSettings.getFragmentSize())
-                .withFieldQuery(
-                    settings.hasHighlightQuery()
-                        ? getFieldQuery(indexReader, indexState, settings)
-                        : globalSettings.getFieldQuery());
+                .withFieldQuery(fieldQuery)
+                .withHighlighterType(highlighterType)
+                .withQuery(query)
+                .withFieldMatch(fieldMatch);
         if (!settings.hasMaxNumberOfFragments()) {
           builder.withMaxNumFragments(globalSettings.getMaxNumFragments());
         } else {
@@ -128,15 +144,45 @@ public class HighlightSettingsHelper {
         settings.hasHighlightQuery()
             ? QUERY_NODE_MAPPER.getQuery(settings.getHighlightQuery(), indexState)
             : searchQuery;
-    builder.withFieldQuery(getFieldQuery(indexReader, query, settings.getFieldMatch()));
+    Highlight.Type highlighterType = resolveType(settings.getHighlighterType());
+    builder
+        .withHighlighterType(highlighterType)
+        .withQuery(query)
+        .withFieldMatch(settings.getFieldMatch());
+    if (highlighterType == Highlight.Type.FAST_VECTOR) {
+      builder.withFieldQuery(getFieldQuery(indexReader, query, settings.getFieldMatch()));
+    }
 
     return builder.build();
   }
 
-  private static FieldQuery getFieldQuery(
-      IndexReader indexReader, IndexState indexState, Settings settings) throws IOException {
-    Query query = QUERY_NODE_MAPPER.getQuery(settings.getHighlightQuery(), indexState);
-    return getFieldQuery(indexReader, query, settings.getFieldMatch());
+  /**
+   * Get the highlighter type to use for a field. A field level type other than {@link
+   * Highlight.Type#DEFAULT} overrides the request level type, and {@link Highlight.Type#DEFAULT}
+   * at request level resolves to {@link Highlight.Type#FAST_VECTOR}.
+   *
+   * @param highlight Highlighting-related information in search request
+   * @param field field to highlight
+   * @return highlighter type, never {@link Highlight.Type#DEFAULT}
+   */
+  public static Highlight.Type getHighlighterType(Highlight highlight, String field) {
+    Settings settings = highlight.getFieldSettingsMap().get(field);
+    if (settings != null && settings.getHighlighterType() != Highlight.Type.DEFAULT) {
+      return resolveType(settings.getHighlighterType());
+    }
+    return resolveType(highlight.getSettings().getHighlighterType());
+  }
+
+  private static Highlight.Type resolveType(Highlight.Type type) {
+    switch (type) {
+      case DEFAULT:
+      case FAST_VECTOR:
+        return Highlight.Type.FAST_VECTOR;
+      case UNIFIED:
+        return Highlight.Type.UNIFIED;
+      default:
+        throw new IllegalArgumentException("Unknown highlighter type: " + type);
+    }
   }
 
   private static FieldQuery getFieldQuery(IndexReader indexReader, Query query, boolean fieldMatch)
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.highlights;
+
+import java.io.IOException;
+import java.text.BreakIterator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.uhighlight.LengthGoalBreakIterator;
+import org.apache.lucene.search.uhighlight.Passage;
+import org.apache.lucene.search.uhighlight.PassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.search.uhighlight.WholeBreakIterator;
+
+/**
+ * {@link UnifiedHighlighter} that applies the {@link HighlightSettings} of each field. Offsets are
+ * read from postings when the field indexes them, otherwise from term vectors. All documents
+ * passed to {@link #highlight(String[], Query, int[])} are highlighted together, so hits from the
+ * same segment share a single pass over the postings.
+ */
+public class NrtUnifiedHighlighter extends UnifiedHighlighter {
+
+  // UnifiedHighlighter does not accept Integer.MAX_VALUE
+  private static final int MAX_CONTENT_LENGTH = Integer.MAX_VALUE - 1;
+
+  private final Map<String, HighlightSettings> fieldSettings;
+  private final Map<String, PassageFormatter> fieldFormatters = new HashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param searcher searcher used to retrieve stored field values and term statistics
+   * @param searchAnalyzer index search analyzer, only used if offsets must be recomputed from the
+   *     stored text. Highlighted fields index offsets, so text is not re-analyzed.
+   * @param fieldSettings map of field name to its {@link HighlightSettings}
+   */
+  public NrtUnifiedHighlighter(
+      IndexSearcher searcher,
+      Analyzer searchAnalyzer,
+      Map<String, HighlightSettings> fieldSettings) {
+    super(searcher, searchAnalyzer);
+    this.fieldSettings = fieldSettings;
+    for (Entry<String, HighlightSettings> entry : fieldSettings.entrySet()) {
+      fieldFormatters.put(
+          entry.getKey(),
+          new FragmentsFormatter(
+              entry.getValue().getPreTags()[0], entry.getValue().getPostTags()[0]));
+    }
+    setMaxLength(MAX_CONTENT_LENGTH);
+  }
+
+  /**
+   * Highlight fields for a batch of documents.
+   *
+   * @param fields fields to highlight, all must have {@link HighlightSettings}
+   * @param query query to highlight against
+   * @param docIds global lucene document ids to highlight
+   * @return map of field name to highlight fragments for each document, in the order of docIds.
+   *     Fragments are null for documents with no matches.
+   * @throws IOException if there is a low-level IO error
+   */
+  public Map<String, String[][]> highlight(String[] fields, Query query, int[] docIds)
+      throws IOException {
+    int[] maxPassages = new int[fields.length];
+    for (int i = 0; i < fields.length; ++i) {
+      HighlightSettings settings = fieldSettings.get(fields[i]);
+      maxPassages[i] = isWholeText(settings) ? 1 : settings.getMaxNumFragments();
+    }
+    Map<String, Object[]> fieldHighlights =
+        highlightFieldsAsObjects(fields, query, docIds, maxPassages);
+    Map<String, String[][]> results = new HashMap<>();
+    for (Entry<String, Object[]> entry : fieldHighlights.entrySet()) {
+      String[][] docFragments = new String[docIds.length][];
+      for (int i = 0; i < docIds.length; ++i) {
+        docFragments[i] = (String[]) entry.getValue()[i];
+      }
+      results.put(entry.getKey(), docFragments);
+    }
+    return results;
+  }
+
+  @Override
+  protected BreakIterator getBreakIterator(String field) {
+    HighlightSettings settings = fieldSettings.get(field);
+    if (isWholeText(settings)) {
+      return new WholeBreakIterator();
+    }
+    return LengthGoalBreakIterator.createMinLength(
+        BreakIterator.getSentenceInstance(Locale.ROOT), settings.getFragmentSize());
+  }
+
+  @Override
+  protected PassageFormatter getFormatter(String field) {
+    return fieldFormatters.get(field);
+  }
+
+  @Override
+  protected Predicate<String> getFieldMatcher(String field) {
+    if (fieldSettings.get(field).getFieldMatch()) {
+      return field::equals;
+    }
+    return queryField -> true;
+  }
+
+  @Override
+  protected int getMaxNoHighlightPassages(String field) {
+    // match the fast vector highlighter, which returns nothing for documents without matches
+    return 0;
+  }
+
+  private static boolean isWholeText(HighlightSettings settings) {
+    return settings.getMaxNumFragments() == Integer.MAX_VALUE;
+  }
+
+  /**
+   * Formats each passage as a separate fragment, wrapping matches with the pre and post tags.
+   * Passages are given in document order.
+   */
+  private static class FragmentsFormatter extends PassageFormatter {
+    private final String preTag;
+    private final String postTag;
+
+    FragmentsFormatter(String preTag, String postTag) {
+      this.preTag = preTag;
+      this.postTag = postTag;
+    }
+
+    @Override
+    public Object format(Passage[] passages, String content) {
+      String[] fragments = new String[passages.length];
+      for (int i = 0; i < passages.length; ++i) {
+        fragments[i] = formatPassage(passages[i], content);
+      }
+      return fragments;
+    }
+
+    private String formatPassage(Passage passage, String content) {
+      StringBuilder sb = new StringBuilder();
+      int pos = passage.getStartOffset();
+      for (int i = 0; i < passage.getNumMatches(); ++i) {
+        int start = passage.getMatchStarts()[i];
+        int end = passage.getMatchEnds()[i];
+        // matches may overlap
+        if (start > pos) {
+          sb.append(content, pos, start);
+        }
+        if (end > pos) {
+          sb.append(preTag).append(content, Math.max(pos, start), end).append(postTag);
+          pos = end;
+        }
+      }
+      sb.append(content, pos, Math.max(pos, passage.getEndOffset()));
+      return sb.toString().trim();
+    }
+  }
+}
@@ -138,6 +138,12 @@ public class BackendStateManager implements IndexStateManager {
     if (currentState.isStarted()) {
       throw new IllegalStateException("Cannot change setting for started index: " + indexName);
     }
+    if (currentState.getCurrentStateInfo().getCommitted()
+        && settings.hasNumShards()
+        && settings.getNumShards().getValue() != currentState.getNumShards()) {
+      throw new IllegalArgumentException(
+          "Cannot change numShards for index with committed data: " + indexName);
+    }
     IndexStateInfo updatedStateInfo = mergeSettings(currentState.getCurrentStateInfo(), settings);
     ImmutableIndexState updatedIndexState =
         createIndexState(updatedStateInfo, currentState.getFieldAndFacetState());
@@ -206,7 +212,7 @@ public class BackendStateManager implements IndexStateManager {
     currentState.start(serverMode, dataPath, primaryGen, primaryClient);
     if (serverMode != Mode.REPLICA && !currentState.getCurrentStateInfo().getCommitted()) {
       logger.info("Doing initial commit for index: " + indexName);
-      currentState.commit(globalState.getConfiguration().getBackupWithInArchiver());
+      currentState.commitShards(globalState.getConfiguration().getBackupWithInArchiver());
       IndexStateInfo updatedStateInfo =
           currentState
               .getCurrentStateInfo()
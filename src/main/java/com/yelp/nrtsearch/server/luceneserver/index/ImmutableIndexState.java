@@ -32,6 +32,8 @@ import com.google.protobuf.UInt64Value;
 import com.google.protobuf.util.FieldMaskUtil;
 import com.google.protobuf.util.JsonFormat;
 import com.yelp.nrtsearch.server.backup.Archiver;
+import com.yelp.nrtsearch.server.backup.BackgroundSegmentUploader;
+import com.yelp.nrtsearch.server.config.SegmentUploadConfig;
 import com.yelp.nrtsearch.server.grpc.CreateSnapshotRequest;
 import com.yelp.nrtsearch.server.grpc.Field;
 import com.yelp.nrtsearch.server.grpc.IndexLiveSettings;
@@ -57,6 +59,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -67,6 +71,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
 import org.apache.lucene.expressions.Bindings;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.index.ConcurrentMergeScheduler;
@@ -102,6 +107,9 @@ public class ImmutableIndexState extends IndexState {
   public static final double DEFAULT_NRT_CACHING_MAX_SIZE_MB = 60.0;
   public static final boolean DEFAULT_MERGE_AUTO_THROTTLE = false;
   public static final String DEFAULT_DIRECTORY = "FSDirectory";
+  public static final int DEFAULT_NUM_SHARDS = 1;
+  public static final Lucene50StoredFieldsFormat.Mode DEFAULT_STORED_FIELDS_MODE =
+      Lucene50StoredFieldsFormat.Mode.BEST_SPEED;
 
   // default settings as message, so they can be merged with saved settings
   public static final IndexSettings DEFAULT_INDEX_SETTINGS =
@@ -131,6 +139,8 @@ public class ImmutableIndexState extends IndexState {
   private final Sort indexSort;
   private final boolean indexMergeSchedulerAutoThrottle;
   private final DirectoryFactory directoryFactory;
+  private final int numShards;
+  private final Lucene50StoredFieldsFormat.Mode storedFieldsMode;
 
   public static final double DEFAULT_MAX_REFRESH_SEC = 1.0;
   public static final double DEFAULT_MIN_REFRESH_SEC = 0.05;
@@ -247,6 +257,16 @@ public class ImmutableIndexState extends IndexState {
     indexMergeSchedulerAutoThrottle =
         mergedSettings.getIndexMergeSchedulerAutoThrottle().getValue();
     directoryFactory = DirectoryFactory.get(mergedSettings.getDirectory().getValue());
+    // default unset, since the value cannot be changed once set
+    numShards =
+        mergedSettings.hasNumShards()
+            ? mergedSettings.getNumShards().getValue()
+            : DEFAULT_NUM_SHARDS;
+    storedFieldsMode =
+        mergedSettings.hasStoredFieldsCompression()
+            ? Lucene50StoredFieldsFormat.Mode.valueOf(
+                mergedSettings.getStoredFieldsCompression().getValue())
+            : DEFAULT_STORED_FIELDS_MODE;
 
     // live settings
     mergedLiveSettings =
@@ -269,24 +289,26 @@ public class ImmutableIndexState extends IndexState {
     defaultTerminateAfter = mergedLiveSettings.getDefaultTerminateAfter().getValue();
     maxMergePreCopyDurationSec = mergedLiveSettings.getMaxMergePreCopyDurationSec().getValue();
 
-    // If there is previous shard state, use it. Otherwise, initialize the shard.
-    if (previousShardState != null) {
+    // If there is previous shard state, use it. Otherwise, initialize the shards. The number of
+    // shards may only differ from the previous state if the settings were changed before start.
+    if (previousShardState != null && previousShardState.size() == numShards) {
       shards = previousShardState;
     } else {
       // this is immutable and passed to all subsequent index state objects, can be used
       // for index level locking
-      shards =
-          ImmutableMap.<Integer, ShardState>builder()
-              .put(
-                  0,
-                  new ShardState(
-                      indexStateManager,
-                      getName(),
-                      getRootDir(),
-                      getSearchThreadPoolExecutor(),
-                      0,
-                      !currentStateInfo.getCommitted()))
-              .build();
+      ImmutableMap.Builder<Integer, ShardState> shardsBuilder = ImmutableMap.builder();
+      for (int i = 0; i < numShards; ++i) {
+        shardsBuilder.put(
+            i,
+            new ShardState(
+                indexStateManager,
+                getName(),
+                getRootDir(),
+                getSearchThreadPoolExecutor(),
+                i,
+                !currentStateInfo.getCommitted()));
+      }
+      shards = shardsBuilder.build();
     }
   }
 
@@ -297,7 +319,7 @@ public class ImmutableIndexState extends IndexState {
    * @param base base message value
    * @param updates message with field updates
    * @return merged settings message
-   * @throws IllegalArgumentException if attempting to change index sort
+   * @throws IllegalArgumentException if attempting to change index sort or number of shards
    */
   public static IndexSettings mergeSettings(IndexSettings base, IndexSettings updates) {
     if (base.hasIndexSort()
@@ -305,6 +327,11 @@ public class ImmutableIndexState extends IndexState {
         && !base.getIndexSort().equals(updates.getIndexSort())) {
       throw new IllegalArgumentException("Cannot change index sort value once set");
     }
+    if (base.hasNumShards()
+        && updates.hasNumShards()
+        && base.getNumShards().getValue() != updates.getNumShards().getValue()) {
+      throw new IllegalArgumentException("Cannot change numShards value once set");
+    }
 
     FieldMaskUtil.MergeOptions mergeOptions =
         new FieldMaskUtil.MergeOptions().setReplaceMessageFields(true);
@@ -385,6 +412,16 @@ public class ImmutableIndexState extends IndexState {
     if (isStarted()) {
       throw new IllegalStateException("index \"" + getName() + "\" was already started");
     }
+    if (shards.size() > 1) {
+      if (serverMode != Mode.STANDALONE) {
+        throw new IllegalArgumentException(
+            "Index with multiple shards can only be started in STANDALONE mode: " + getName());
+      }
+      if (dataPath != null) {
+        throw new IllegalArgumentException(
+            "Restoring data is not supported for index with multiple shards: " + getName());
+      }
+    }
 
     // restore data if provided
     if (dataPath != null) {
@@ -402,11 +439,17 @@ public class ImmutableIndexState extends IndexState {
         for (ShardState shard : shards.values()) {
           shard.start();
         }
+        if (shards.size() > 1) {
+          getShard(0).startShardedSearch(shards.values());
+        } else {
+          startSegmentUploader();
+        }
         break;
       case PRIMARY:
         for (ShardState shard : shards.values()) {
           shard.startPrimary(primaryGen);
         }
+        startSegmentUploader();
         break;
       case REPLICA:
         for (ShardState shard : shards.values()) {
@@ -418,6 +461,22 @@ public class ImmutableIndexState extends IndexState {
     }
   }
 
+  private void startSegmentUploader() {
+    SegmentUploadConfig segmentUploadConfig =
+        getGlobalState().getConfiguration().getSegmentUploadConfig();
+    if (segmentUploadConfig.getEnabled() && getGlobalState().getIncArchiver().isPresent()) {
+      getShard(0)
+          .startSegmentUploader(
+              new BackgroundSegmentUploader(
+                  getGlobalState().getIncArchiver().get(),
+                  getGlobalState().getConfiguration().getServiceName(),
+                  IndexBackupUtils.getResourceData(uniqueName),
+                  getRootDir(),
+                  getName(),
+                  segmentUploadConfig));
+    }
+  }
+
   static void restoreIndexData(Path restorePath, Path indexDataRoot) throws IOException {
     Objects.requireNonNull(restorePath);
     Objects.requireNonNull(indexDataRoot);
@@ -581,11 +640,26 @@ public class ImmutableIndexState extends IndexState {
 
   @Override
   public long commit(boolean backupFromIncArchiver) throws IOException {
+    if (shards.size() > 1) {
+      throw new IllegalStateException(
+          "Cannot get single commit generation for index with multiple shards: " + getName());
+    }
+    return commitShards(backupFromIncArchiver)[0];
+  }
+
+  @Override
+  public long[] commitShards(boolean backupFromIncArchiver) throws IOException {
     // the shards map is created once and passed to all subsequent instance
     synchronized (shards) {
-      long gen = -1;
-      for (ShardState shard : shards.values()) {
-        gen = shard.commit();
+      long[] gens;
+      if (shards.size() == 1) {
+        gens = new long[] {getShard(0).commit()};
+      } else {
+        List<ShardState> shardList = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); ++i) {
+          shardList.add(getShard(i));
+        }
+        gens = ShardState.commitShards(shardList);
       }
 
       SnapshotId snapshotId = null;
@@ -604,6 +678,18 @@ public class ImmutableIndexState extends IndexState {
           Collection<String> segmentFiles = getSegmentFilesInSnapshot(this, snapshotId);
           String resourceData = IndexBackupUtils.getResourceData(uniqueName);
           Archiver incArchiver = getGlobalState().getIncArchiver().get();
+          // skip files already uploaded in the background, queued files are uploaded here
+          BackgroundSegmentUploader segmentUploader = getShard(0).getSegmentUploader();
+          Collection<String> preUploadedFiles;
+          try {
+            preUploadedFiles =
+                segmentUploader != null
+                    ? segmentUploader.awaitUploaded(segmentFiles)
+                    : Collections.emptyList();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for segment uploads", e);
+          }
           String versionHash =
               incArchiver.upload(
                   getGlobalState().getConfiguration().getServiceName(),
@@ -611,7 +697,8 @@ public class ImmutableIndexState extends IndexState {
                   getRootDir(),
                   segmentFiles,
                   Collections.emptyList(),
-                  true);
+                  true,
+                  preUploadedFiles);
           incArchiver.blessVersion(
               getGlobalState().getConfiguration().getServiceName(), resourceData, versionHash);
         }
@@ -620,7 +707,7 @@ public class ImmutableIndexState extends IndexState {
           releaseSnapshot(this, getName(), snapshotId);
         }
       }
-      return gen;
+      return gens;
     }
   }
 
@@ -686,7 +773,7 @@ public class ImmutableIndexState extends IndexState {
             origIndexDir,
             IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
 
-    iwc.setCodec(new ServerCodec(indexStateManager));
+    iwc.setCodec(new StoredFieldsSizeCodec(new ServerCodec(indexStateManager, storedFieldsMode)));
 
     TieredMergePolicy mergePolicy;
     if (getGlobalState().getConfiguration().getVirtualSharding()) {
@@ -697,7 +784,7 @@ public class ImmutableIndexState extends IndexState {
     }
     mergePolicy.setMaxMergedSegmentMB(maxMergedSegmentMB);
     mergePolicy.setSegmentsPerTier(segmentsPerTier);
-    iwc.setMergePolicy(mergePolicy);
+    iwc.setMergePolicy(new StoredFieldsSizeMergePolicy(mergePolicy));
 
     return iwc;
   }
@@ -748,6 +835,16 @@ public class ImmutableIndexState extends IndexState {
     return nrtCachingDirectoryMaxSizeMB;
   }
 
+  @Override
+  public int getNumShards() {
+    return numShards;
+  }
+
+  /** Get the compression mode for stored fields written to new segments. */
+  public Lucene50StoredFieldsFormat.Mode getStoredFieldsMode() {
+    return storedFieldsMode;
+  }
+
   @Override
   public double getMinRefreshSec() {
     return minRefreshSec;
@@ -838,8 +935,9 @@ public class ImmutableIndexState extends IndexState {
 
   @Override
   public void close() throws IOException {
-    for (Map.Entry<Integer, ShardState> entry : shards.entrySet()) {
-      entry.getValue().close();
+    // close shard 0 last, since it owns the taxonomy writer used by all shards
+    for (int i = shards.size() - 1; i >= 0; --i) {
+      getShard(i).close();
     }
   }
 
@@ -850,6 +948,18 @@ public class ImmutableIndexState extends IndexState {
     if (settings.getNrtCachingDirectoryMaxMergeSizeMB().getValue() < 0) {
       throw new IllegalArgumentException("nrtCachingDirectoryMaxMergeSizeMB must be >= 0");
     }
+    if (settings.hasNumShards() && settings.getNumShards().getValue() <= 0) {
+      throw new IllegalArgumentException("numShards must be > 0");
+    }
+    if (settings.hasStoredFieldsCompression()) {
+      try {
+        Lucene50StoredFieldsFormat.Mode.valueOf(settings.getStoredFieldsCompression().getValue());
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            "storedFieldsCompression must be one of "
+                + Arrays.toString(Lucene50StoredFieldsFormat.Mode.values()));
+      }
+    }
     int maxMergeCount = settings.getConcurrentMergeSchedulerMaxMergeCount().getValue();
     int maxThreadCount = settings.getConcurrentMergeSchedulerMaxThreadCount().getValue();
     if (maxMergeCount != ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS
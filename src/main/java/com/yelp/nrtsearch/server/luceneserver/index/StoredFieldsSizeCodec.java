@@ -0,0 +1,219 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.index;
+
+import java.io.IOException;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.MergeState;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.TrackingDirectoryWrapper;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Codec that records the size of the stored fields in each new segment as segment attributes, see
+ * {@link #getRawBytes(SegmentInfo)} and {@link #getCompressedBytes(SegmentInfo)}. The segment
+ * format is not changed, and segments are written with the name of the delegate codec, so they are
+ * read without this codec.
+ *
+ * <p>Flushed segments record the uncompressed size of every stored value written. Merges copy
+ * compressed stored fields in bulk, so the uncompressed size of a merged segment is estimated from
+ * the merged segments by {@link StoredFieldsSizeMergePolicy}.
+ */
+public class StoredFieldsSizeCodec extends FilterCodec {
+  static final String RAW_BYTES_ATTRIBUTE = "nrtsearch.storedFieldsRawBytes";
+  static final String COMPRESSED_BYTES_ATTRIBUTE = "nrtsearch.storedFieldsCompressedBytes";
+
+  private final StoredFieldsFormat storedFieldsFormat;
+
+  /**
+   * Constructor.
+   *
+   * @param delegate codec used to write segments
+   */
+  public StoredFieldsSizeCodec(Codec delegate) {
+    super(delegate.getName(), delegate);
+    this.storedFieldsFormat = new SizeTrackingStoredFieldsFormat(delegate.storedFieldsFormat());
+  }
+
+  @Override
+  public StoredFieldsFormat storedFieldsFormat() {
+    return storedFieldsFormat;
+  }
+
+  /**
+   * Get the uncompressed size of the stored field values in a segment, including deleted documents.
+   *
+   * @param info segment info
+   * @return uncompressed size, or -1 if not recorded for the segment
+   */
+  public static long getRawBytes(SegmentInfo info) {
+    return getLongAttribute(info, RAW_BYTES_ATTRIBUTE);
+  }
+
+  /**
+   * Get the size of the stored fields files of a segment, including deleted documents.
+   *
+   * @param info segment info
+   * @return compressed size, or -1 if not recorded for the segment
+   */
+  public static long getCompressedBytes(SegmentInfo info) {
+    return getLongAttribute(info, COMPRESSED_BYTES_ATTRIBUTE);
+  }
+
+  static void setRawBytes(SegmentInfo info, long rawBytes) {
+    info.putAttribute(RAW_BYTES_ATTRIBUTE, Long.toString(rawBytes));
+  }
+
+  private static long getLongAttribute(SegmentInfo info, String key) {
+    String value = info.getAttribute(key);
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Get the uncompressed size of a stored field value, the same as the stored fields writer. */
+  static long getStoredSize(IndexableField field) {
+    BytesRef binaryValue = field.binaryValue();
+    if (binaryValue != null) {
+      return binaryValue.length;
+    }
+    String stringValue = field.stringValue();
+    if (stringValue != null) {
+      return getUTF8Length(stringValue);
+    }
+    Number numericValue = field.numericValue();
+    if (numericValue instanceof Integer || numericValue instanceof Float) {
+      return Integer.BYTES;
+    }
+    return numericValue != null ? Long.BYTES : 0;
+  }
+
+  private static long getUTF8Length(String value) {
+    long length = 0;
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800 || Character.isSurrogate(c)) {
+        // each half of a surrogate pair is 2 of the 4 bytes
+        length += 2;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private static class SizeTrackingStoredFieldsFormat extends StoredFieldsFormat {
+    private final StoredFieldsFormat delegate;
+
+    SizeTrackingStoredFieldsFormat(StoredFieldsFormat delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public StoredFieldsReader fieldsReader(
+        Directory directory, SegmentInfo si, FieldInfos fn, IOContext context) throws IOException {
+      return delegate.fieldsReader(directory, si, fn, context);
+    }
+
+    @Override
+    public StoredFieldsWriter fieldsWriter(Directory directory, SegmentInfo si, IOContext context)
+        throws IOException {
+      TrackingDirectoryWrapper trackingDirectory = new TrackingDirectoryWrapper(directory);
+      return new SizeTrackingStoredFieldsWriter(
+          delegate.fieldsWriter(trackingDirectory, si, context), trackingDirectory, si);
+    }
+  }
+
+  /**
+   * Counts the stored values written when a segment is flushed. The sizes are recorded when the
+   * writer is closed, which is before the segment info is written.
+   */
+  private static class SizeTrackingStoredFieldsWriter extends StoredFieldsWriter {
+    private final StoredFieldsWriter delegate;
+    private final TrackingDirectoryWrapper directory;
+    private final SegmentInfo segmentInfo;
+    private long rawBytes;
+    private boolean flushed;
+    private boolean merged;
+
+    SizeTrackingStoredFieldsWriter(
+        StoredFieldsWriter delegate, TrackingDirectoryWrapper directory, SegmentInfo segmentInfo) {
+      this.delegate = delegate;
+      this.directory = directory;
+      this.segmentInfo = segmentInfo;
+    }
+
+    @Override
+    public void startDocument() throws IOException {
+      delegate.startDocument();
+    }
+
+    @Override
+    public void finishDocument() throws IOException {
+      delegate.finishDocument();
+    }
+
+    @Override
+    public void writeField(FieldInfo info, IndexableField field) throws IOException {
+      rawBytes += getStoredSize(field);
+      delegate.writeField(info, field);
+    }
+
+    @Override
+    public void finish(FieldInfos fis, int numDocs) throws IOException {
+      delegate.finish(fis, numDocs);
+      flushed = true;
+    }
+
+    @Override
+    public int merge(MergeState mergeState) throws IOException {
+      int docCount = delegate.merge(mergeState);
+      merged = true;
+      return docCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+      if (flushed) {
+        setRawBytes(segmentInfo, rawBytes);
+      }
+      if (flushed || merged) {
+        long compressedBytes = 0;
+        for (String file : directory.getCreatedFiles()) {
+          compressedBytes += directory.fileLength(file);
+        }
+        segmentInfo.putAttribute(COMPRESSED_BYTES_ATTRIBUTE, Long.toString(compressedBytes));
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.index.FilterMergePolicy;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+
+/**
+ * Merge policy that records the estimated uncompressed stored fields size of each merged segment,
+ * for {@link StoredFieldsSizeCodec}. The size is the sum of the sizes recorded for the merged
+ * segments, scaled by the fraction of their documents that are live when the merge starts. Merges
+ * are selected by the wrapped policy.
+ */
+public class StoredFieldsSizeMergePolicy extends FilterMergePolicy {
+
+  /**
+   * Constructor.
+   *
+   * @param in merge policy that selects merges
+   */
+  public StoredFieldsSizeMergePolicy(MergePolicy in) {
+    super(in);
+  }
+
+  /** Get the merge policy that selects merges. */
+  public MergePolicy getDelegate() {
+    return in;
+  }
+
+  @Override
+  public MergeSpecification findMerges(
+      MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext)
+      throws IOException {
+    return wrapMerges(super.findMerges(mergeTrigger, segmentInfos, mergeContext));
+  }
+
+  @Override
+  public MergeSpecification findForcedMerges(
+      SegmentInfos segmentInfos,
+      int maxSegmentCount,
+      Map<SegmentCommitInfo, Boolean> segmentsToMerge,
+      MergeContext mergeContext)
+      throws IOException {
+    return wrapMerges(
+        super.findForcedMerges(segmentInfos, maxSegmentCount, segmentsToMerge, mergeContext));
+  }
+
+  @Override
+  public MergeSpecification findForcedDeletesMerges(
+      SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+    return wrapMerges(super.findForcedDeletesMerges(segmentInfos, mergeContext));
+  }
+
+  private static MergeSpecification wrapMerges(MergeSpecification merges) {
+    if (merges == null) {
+      return null;
+    }
+    MergeSpecification wrapped = new MergeSpecification();
+    for (OneMerge merge : merges.merges) {
+      wrapped.add(new SizeTrackingMerge(merge.segments));
+    }
+    return wrapped;
+  }
+
+  /**
+   * Estimate the uncompressed stored fields size of the live documents in a set of segments.
+   *
+   * @param segments segments to merge
+   * @return estimated size, or -1 if the size is not recorded for any of the segments
+   */
+  static long estimateRawBytes(List<SegmentCommitInfo> segments) {
+    long rawBytes = 0;
+    for (SegmentCommitInfo segment : segments) {
+      long segmentBytes = StoredFieldsSizeCodec.getRawBytes(segment.info);
+      if (segmentBytes < 0) {
+        return -1;
+      }
+      int maxDoc = segment.info.maxDoc();
+      if (maxDoc > 0) {
+        int liveDocs = maxDoc - segment.getDelCount() - segment.getSoftDelCount();
+        rawBytes += (long) ((double) segmentBytes * liveDocs / maxDoc);
+      }
+    }
+    return rawBytes;
+  }
+
+  /** Merge that records the estimated size in the merged segment info, before it is written. */
+  private static class SizeTrackingMerge extends OneMerge {
+    SizeTrackingMerge(List<SegmentCommitInfo> segments) {
+      super(segments);
+    }
+
+    @Override
+    public void setMergeInfo(SegmentCommitInfo info) {
+      super.setMergeInfo(info);
+      long rawBytes = estimateRawBytes(segments);
+      if (rawBytes >= 0) {
+        StoredFieldsSizeCodec.setRawBytes(info.info, rawBytes);
+      }
+    }
+  }
+}
@@ -24,4 +24,12 @@ public interface ScriptEngine {
   String getLang();
 
   <T> T compile(String source, ScriptContext<T> context);
+
+  /**
+   * Get if the results of scripts from this engine only depend on the script source, params, and
+   * index data. If false, search responses for requests using these scripts are never cached.
+   */
+  default boolean isCacheable() {
+    return true;
+  }
 }
@@ -99,6 +99,18 @@ public class ScriptService {
     }
   }
 
+  /**
+   * Get if the results of the given script may be cached. Scripts with an unknown lang are
+   * considered cacheable, since they will fail to compile.
+   *
+   * @param script definition of script
+   * @return if script results may be cached
+   */
+  public boolean isCacheable(Script script) {
+    ScriptEngine scriptEngine = scriptEngineMap.get(script.getLang());
+    return scriptEngine == null || scriptEngine.isCacheable();
+  }
+
   private void register(Iterable<ScriptEngine> scriptEngines) {
     scriptEngines.forEach(scriptEngine -> register(scriptEngine.getLang(), scriptEngine));
   }
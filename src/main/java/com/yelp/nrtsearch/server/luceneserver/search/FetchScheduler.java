@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.search;
+
+import com.yelp.nrtsearch.server.grpc.SearchResponse.Hit;
+import com.yelp.nrtsearch.server.luceneserver.field.FieldDef;
+import com.yelp.nrtsearch.server.luceneserver.field.IndexableFieldDef;
+import com.yelp.nrtsearch.server.utils.VirtualThreadPoolExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+
+/**
+ * Plans the parallel fetch of hit fields. Hits are divided into contiguous ranges of lucene doc id,
+ * with range boundaries placed on segment boundaries when possible. This lets each task load the
+ * doc values for a segment once, instead of every task loading them for every segment.
+ *
+ * <p>The number of ranges is based on the estimated cost of fetching all hits, and on the number
+ * of idle workers in the fetch executor. A loaded executor results in fewer, larger tasks, which
+ * avoids queueing work that the calling thread would otherwise do itself.
+ */
+public class FetchScheduler {
+  // relative cost of retrieving a stored field value, compared to a doc value
+  static final int STORED_FIELD_COST = 4;
+  // cost of per hit work that does not depend on the retrieved fields, such as fetch tasks
+  static final int HIT_BASE_COST = 1;
+
+  private FetchScheduler() {}
+
+  /**
+   * Estimate the cost of fetching a single hit.
+   *
+   * @param retrieveFields fields to retrieve
+   * @return hit cost
+   */
+  public static long getHitCost(Map<String, FieldDef> retrieveFields) {
+    long cost = HIT_BASE_COST;
+    for (FieldDef fieldDef : retrieveFields.values()) {
+      if (fieldDef instanceof IndexableFieldDef
+          && !((IndexableFieldDef) fieldDef).hasDocValues()
+          && ((IndexableFieldDef) fieldDef).isStored()) {
+        cost += STORED_FIELD_COST;
+      } else {
+        cost += 1;
+      }
+    }
+    return cost;
+  }
+
+  /**
+   * Get the number of tasks to split the fetch into. This is the smaller of the number of tasks
+   * with at least the min task cost, and the number of idle executor workers plus the calling
+   * thread.
+   *
+   * @param fetchExecutor executor used for parallel fetch
+   * @param maxFetchThreads max number of fetch executor threads
+   * @param totalCost estimated cost of fetching all hits
+   * @param minTaskCost min estimated cost of a single task
+   * @return number of fetch tasks, at least 1
+   */
+  public static int getParallelism(
+      ExecutorService fetchExecutor, int maxFetchThreads, long totalCost, long minTaskCost) {
+    long costParallelism = Math.max(1, totalCost / Math.max(1, minTaskCost));
+    int idleWorkers = getIdleWorkers(fetchExecutor, maxFetchThreads);
+    return (int) Math.min(costParallelism, idleWorkers + 1);
+  }
+
+  /**
+   * Get the number of executor workers available to take new tasks, based on the same active
+   * thread and queue values reported by the {@link
+   * com.yelp.nrtsearch.server.monitoring.ThreadPoolCollector}.
+   */
+  static int getIdleWorkers(ExecutorService fetchExecutor, int maxFetchThreads) {
+    if (fetchExecutor instanceof VirtualThreadPoolExecutor) {
+      VirtualThreadPoolExecutor executor = (VirtualThreadPoolExecutor) fetchExecutor;
+      return Math.max(
+          0, executor.getConcurrency() - executor.getRunningCount() - executor.getWaitingCount());
+    } else if (fetchExecutor instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor executor = (ThreadPoolExecutor) fetchExecutor;
+      return Math.max(
+          0,
+          executor.getMaximumPoolSize() - executor.getActiveCount() - executor.getQueue().size());
+    }
+    return maxFetchThreads;
+  }
+
+  /**
+   * Divide hits into contiguous ranges for parallel fetch. Range boundaries are evenly spaced,
+   * but moved to the nearest segment boundary if it is within a quarter of the range size.
+   *
+   * @param sortedHits hits to fetch, sorted by lucene doc id
+   * @param leaves index reader leaves
+   * @param parallelism target number of ranges
+   * @return hit ranges, views of the sorted hits list
+   */
+  public static List<List<Hit.Builder>> partition(
+      List<Hit.Builder> sortedHits, List<LeafReaderContext> leaves, int parallelism) {
+    int numHits = sortedHits.size();
+    int numRanges = Math.max(1, Math.min(parallelism, numHits));
+    List<List<Hit.Builder>> ranges = new ArrayList<>(numRanges);
+    if (numRanges == 1) {
+      ranges.add(sortedHits);
+      return ranges;
+    }
+
+    List<Integer> segmentStarts = getSegmentStarts(sortedHits, leaves);
+    int tolerance = numHits / numRanges / 4;
+    int rangeStart = 0;
+    for (int i = 1; i < numRanges; ++i) {
+      int ideal = (int) ((long) numHits * i / numRanges);
+      int boundary = nearestSegmentStart(segmentStarts, ideal);
+      int rangeEnd = Math.abs(boundary - ideal) <= tolerance ? boundary : ideal;
+      if (rangeEnd > rangeStart) {
+        ranges.add(sortedHits.subList(rangeStart, rangeEnd));
+        rangeStart = rangeEnd;
+      }
+    }
+    if (rangeStart < numHits) {
+      ranges.add(sortedHits.subList(rangeStart, numHits));
+    }
+    return ranges;
+  }
+
+  /** Get the index of each hit that is the first in its segment. */
+  private static List<Integer> getSegmentStarts(
+      List<Hit.Builder> sortedHits, List<LeafReaderContext> leaves) {
+    List<Integer> segmentStarts = new ArrayList<>();
+    int segmentEndDoc = -1;
+    for (int i = 0; i < sortedHits.size(); ++i) {
+      int docId = sortedHits.get(i).getLuceneDocId();
+      if (docId >= segmentEndDoc) {
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+        segmentEndDoc = leaf.docBase + leaf.reader().maxDoc();
+        segmentStarts.add(i);
+      }
+    }
+    return segmentStarts;
+  }
+
+  /** Find the segment start index closest to the target index. */
+  private static int nearestSegmentStart(List<Integer> segmentStarts, int target) {
+    int low = 0;
+    int high = segmentStarts.size() - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (segmentStarts.get(mid) < target) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int nearest = segmentStarts.get(low);
+    if (low > 0 && target - segmentStarts.get(low - 1) < Math.abs(nearest - target)) {
+      nearest = segmentStarts.get(low - 1);
+    }
+    return nearest;
+  }
+}
@@ -16,12 +16,12 @@
 package com.yelp.nrtsearch.server.luceneserver.search;
 
 import java.io.IOException;
+import java.util.List;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.MultiDocValues;
-import org.apache.lucene.index.MultiDocValues.MultiSortedDocValues;
-import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.LongValues;
 
 /**
@@ -49,67 +49,143 @@ public abstract class GlobalOrdinalLookup {
   /** Get the total number of global ordinals. */
   public abstract long getNumOrdinals();
 
+  /**
+   * Get the mapping between segment and global ordinals used by this lookup, or null if the field
+   * has no ordinals.
+   */
+  public abstract GlobalOrdinalMap getOrdinalMap();
+
   /** Implementation for field using {@link SortedDocValues}. */
   public static class SortedLookup extends GlobalOrdinalLookup {
-    private final SortedDocValues sortedDocValues;
+    private final SortedDocValues[] segmentValues;
+    private final GlobalOrdinalMap ordinalMap;
     private final String field;
 
     public SortedLookup(IndexReader reader, String field) throws IOException {
+      this(reader, field, null, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param reader index reader
+     * @param field field name
+     * @param previousMap ordinal map from a previous reader of the same index, or null
+     * @param incremental if the ordinal map may be built incrementally from the previous map
+     * @throws IOException on error building ordinal map
+     */
+    public SortedLookup(
+        IndexReader reader, String field, GlobalOrdinalMap previousMap, boolean incremental)
+        throws IOException {
       this.field = field;
-      sortedDocValues = MultiDocValues.getSortedValues(reader, field);
+      List<LeafReaderContext> leaves = reader.leaves();
+      segmentValues = new SortedDocValues[leaves.size()];
+      TermsEnum[] segmentTerms = new TermsEnum[leaves.size()];
+      long[] segmentValueCounts = new long[leaves.size()];
+      for (int i = 0; i < leaves.size(); ++i) {
+        SortedDocValues values = leaves.get(i).reader().getSortedDocValues(field);
+        if (values != null) {
+          segmentValues[i] = values;
+          // separate instance for building the map, so lookups do not share its state
+          segmentTerms[i] = leaves.get(i).reader().getSortedDocValues(field).termsEnum();
+          segmentValueCounts[i] = values.getValueCount();
+        }
+      }
+      ordinalMap =
+          GlobalOrdinalMap.build(
+              reader, field, segmentTerms, segmentValueCounts, previousMap, incremental);
     }
 
     @Override
     public LongValues getSegmentMapping(int segmentIndex) {
-      if (sortedDocValues == null || !(sortedDocValues instanceof MultiSortedDocValues)) {
-        return IDENTITY_MAPPING;
-      }
-      return ((MultiSortedDocValues) sortedDocValues).mapping.getGlobalOrds(segmentIndex);
+      return ordinalMap.getSegmentMapping(segmentIndex);
     }
 
     @Override
     public String lookupGlobalOrdinal(long ord) throws IOException {
-      if (sortedDocValues == null) {
+      if (ordinalMap.getValueCount() == 0) {
         throw new IllegalStateException("No ordinals for field: " + field);
       }
-      return sortedDocValues.lookupOrd((int) ord).utf8ToString();
+      return segmentValues[ordinalMap.getSegmentIndex(ord)]
+          .lookupOrd((int) ordinalMap.getSegmentOrd(ord))
+          .utf8ToString();
     }
 
     @Override
     public long getNumOrdinals() {
-      return sortedDocValues == null ? 0 : sortedDocValues.getValueCount();
+      return ordinalMap.getValueCount();
+    }
+
+    @Override
+    public GlobalOrdinalMap getOrdinalMap() {
+      return ordinalMap;
     }
   }
 
   /** Implementation for field using {@link SortedSetDocValues}. */
   public static class SortedSetLookup extends GlobalOrdinalLookup {
-    private final SortedSetDocValues sortedSetDocValues;
+    private final SortedSetDocValues[] segmentValues;
+    private final GlobalOrdinalMap ordinalMap;
     private final String field;
 
     public SortedSetLookup(IndexReader reader, String field) throws IOException {
+      this(reader, field, null, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param reader index reader
+     * @param field field name
+     * @param previousMap ordinal map from a previous reader of the same index, or null
+     * @param incremental if the ordinal map may be built incrementally from the previous map
+     * @throws IOException on error building ordinal map
+     */
+    public SortedSetLookup(
+        IndexReader reader, String field, GlobalOrdinalMap previousMap, boolean incremental)
+        throws IOException {
       this.field = field;
-      sortedSetDocValues = MultiDocValues.getSortedSetValues(reader, field);
+      List<LeafReaderContext> leaves = reader.leaves();
+      segmentValues = new SortedSetDocValues[leaves.size()];
+      TermsEnum[] segmentTerms = new TermsEnum[leaves.size()];
+      long[] segmentValueCounts = new long[leaves.size()];
+      for (int i = 0; i < leaves.size(); ++i) {
+        SortedSetDocValues values = leaves.get(i).reader().getSortedSetDocValues(field);
+        if (values != null) {
+          segmentValues[i] = values;
+          // separate instance for building the map, so lookups do not share its state
+          segmentTerms[i] = leaves.get(i).reader().getSortedSetDocValues(field).termsEnum();
+          segmentValueCounts[i] = values.getValueCount();
+        }
+      }
+      ordinalMap =
+          GlobalOrdinalMap.build(
+              reader, field, segmentTerms, segmentValueCounts, previousMap, incremental);
     }
 
     @Override
     public LongValues getSegmentMapping(int segmentIndex) {
-      if (sortedSetDocValues == null || !(sortedSetDocValues instanceof MultiSortedSetDocValues)) {
-        return IDENTITY_MAPPING;
-      }
-      return ((MultiSortedSetDocValues) sortedSetDocValues).mapping.getGlobalOrds(segmentIndex);
+      return ordinalMap.getSegmentMapping(segmentIndex);
     }
 
     @Override
     public String lookupGlobalOrdinal(long ord) throws IOException {
-      if (sortedSetDocValues == null) {
+      if (ordinalMap.getValueCount() == 0) {
         throw new IllegalStateException("No ordinals for field: " + field);
       }
-      return sortedSetDocValues.lookupOrd(ord).utf8ToString();
+      return segmentValues[ordinalMap.getSegmentIndex(ord)]
+          .lookupOrd(ordinalMap.getSegmentOrd(ord))
+          .utf8ToString();
     }
 
     @Override
     public long getNumOrdinals() {
-      return sortedSetDocValues == null ? 0 : sortedSetDocValues.getValueCount();
+      return ordinalMap.getValueCount();
+    }
+
+    @Override
+    public GlobalOrdinalMap getOrdinalMap() {
+      return ordinalMap;
     }
   }
 
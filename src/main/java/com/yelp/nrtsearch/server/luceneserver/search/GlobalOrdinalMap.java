@@ -0,0 +1,625 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.apache.lucene.index.BaseTermsEnum;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+
+/**
+ * Mapping between segment ordinals and global ordinals for a text doc value field of an index
+ * reader. Unlike {@link OrdinalMap}, this map can be built from the map of a previous reader of the
+ * same index.
+ *
+ * <p>If the new reader contains the same segments, the previous mappings are reused as is. If the
+ * new reader only adds segments, which is the common case for an NRT refresh between merges, the
+ * previous global terms are merged with the terms of the new segments. Mappings for unchanged
+ * segments are then translated to the new global ordinals, instead of merging the terms of every
+ * segment again. Otherwise, such as when segments are merged away, the map is fully rebuilt.
+ */
+public class GlobalOrdinalMap implements Accountable {
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(GlobalOrdinalMap.class);
+  private static final LongValues ZERO_MAPPING =
+      new LongValues() {
+        @Override
+        public long get(long index) {
+          return 0;
+        }
+      };
+
+  /** How the map was created. */
+  public enum BuildType {
+    /** Built by merging the terms of all segments. */
+    FULL,
+    /** Built by merging the previous global terms with the terms of new segments. */
+    INCREMENTAL,
+    /** Previous mappings reused, since all segments are unchanged. */
+    REUSED
+  }
+
+  // identity of the segment ordinals for each leaf, null if the leaf has no ordinals
+  private final SegmentKey[] segmentKeys;
+  private final LongValues[] segmentToGlobalOrds;
+  // global ordinal to the first leaf containing the term, indirect so that
+  // reusing a map only needs to translate the leaf indices
+  private final LongValues globalOrdToBaseSegment;
+  private final int[] baseSegmentToSegment;
+  private final LongValues globalOrdToSegmentOrd;
+  private final long valueCount;
+  private final long ramBytesUsed;
+  private final BuildType buildType;
+  private final int reusedSegments;
+
+  private GlobalOrdinalMap(
+      SegmentKey[] segmentKeys,
+      LongValues[] segmentToGlobalOrds,
+      LongValues globalOrdToBaseSegment,
+      int[] baseSegmentToSegment,
+      LongValues globalOrdToSegmentOrd,
+      long valueCount,
+      long mappingRamBytesUsed,
+      BuildType buildType,
+      int reusedSegments) {
+    this.segmentKeys = segmentKeys;
+    this.segmentToGlobalOrds = segmentToGlobalOrds;
+    this.globalOrdToBaseSegment = globalOrdToBaseSegment;
+    this.baseSegmentToSegment = baseSegmentToSegment;
+    this.globalOrdToSegmentOrd = globalOrdToSegmentOrd;
+    this.valueCount = valueCount;
+    this.buildType = buildType;
+    this.reusedSegments = reusedSegments;
+    this.ramBytesUsed =
+        BASE_RAM_BYTES_USED
+            + RamUsageEstimator.shallowSizeOf(segmentKeys)
+            + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds)
+            + RamUsageEstimator.sizeOf(baseSegmentToSegment)
+            + mappingRamBytesUsed;
+  }
+
+  /**
+   * Build the global ordinal map for a field.
+   *
+   * @param reader index reader
+   * @param field field name
+   * @param segmentTerms terms enum for the ordinals of each leaf, or null if the leaf has no
+   *     ordinals for the field
+   * @param segmentValueCounts number of ordinals for each leaf
+   * @param previous map built for a previous reader of the same index, or null
+   * @param incremental if the map may be built incrementally from the previous map when segments
+   *     have been added
+   * @return global ordinal map
+   * @throws IOException on error reading terms
+   */
+  public static GlobalOrdinalMap build(
+      IndexReader reader,
+      String field,
+      TermsEnum[] segmentTerms,
+      long[] segmentValueCounts,
+      GlobalOrdinalMap previous,
+      boolean incremental)
+      throws IOException {
+    List<LeafReaderContext> leaves = reader.leaves();
+    if (segmentTerms.length != leaves.size() || segmentValueCounts.length != leaves.size()) {
+      throw new IllegalArgumentException("Segment terms must be provided for every leaf");
+    }
+    SegmentKey[] segmentKeys = new SegmentKey[leaves.size()];
+    int numSegmentsWithOrds = 0;
+    for (int i = 0; i < segmentKeys.length; ++i) {
+      if (segmentTerms[i] != null && segmentValueCounts[i] > 0) {
+        segmentKeys[i] = SegmentKey.forLeaf(leaves.get(i).reader(), field);
+        numSegmentsWithOrds++;
+      } else {
+        segmentTerms[i] = null;
+      }
+    }
+
+    if (previous != null) {
+      int[] previousToSegment = previous.getSegmentTranslation(segmentKeys);
+      if (previousToSegment != null) {
+        int previousSegmentsWithOrds = previous.getNumSegmentsWithOrds();
+        if (previousSegmentsWithOrds == numSegmentsWithOrds) {
+          return reuse(previous, segmentKeys, previousToSegment);
+        } else if (incremental && previousSegmentsWithOrds > 0) {
+          return buildIncremental(
+              previous, segmentKeys, segmentTerms, segmentValueCounts, previousToSegment);
+        }
+      }
+    }
+    return buildFull(segmentKeys, segmentTerms, segmentValueCounts, numSegmentsWithOrds);
+  }
+
+  private static GlobalOrdinalMap buildFull(
+      SegmentKey[] segmentKeys,
+      TermsEnum[] segmentTerms,
+      long[] segmentValueCounts,
+      int numSegmentsWithOrds)
+      throws IOException {
+    LongValues[] segmentToGlobalOrds = new LongValues[segmentKeys.length];
+    int[] subToSegment = new int[numSegmentsWithOrds];
+    TermsEnum[] subs = new TermsEnum[numSegmentsWithOrds];
+    long[] weights = new long[numSegmentsWithOrds];
+    int subIndex = 0;
+    for (int i = 0; i < segmentKeys.length; ++i) {
+      if (segmentKeys[i] != null) {
+        subToSegment[subIndex] = i;
+        subs[subIndex] = segmentTerms[i];
+        weights[subIndex] = segmentValueCounts[i];
+        subIndex++;
+      }
+    }
+
+    if (numSegmentsWithOrds == 0) {
+      return new GlobalOrdinalMap(
+          segmentKeys,
+          segmentToGlobalOrds,
+          ZERO_MAPPING,
+          new int[0],
+          GlobalOrdinalLookup.IDENTITY_MAPPING,
+          0,
+          0,
+          BuildType.FULL,
+          0);
+    } else if (numSegmentsWithOrds == 1) {
+      // global ordinals are the same as the segment ordinals
+      segmentToGlobalOrds[subToSegment[0]] = GlobalOrdinalLookup.IDENTITY_MAPPING;
+      return new GlobalOrdinalMap(
+          segmentKeys,
+          segmentToGlobalOrds,
+          ZERO_MAPPING,
+          subToSegment,
+          GlobalOrdinalLookup.IDENTITY_MAPPING,
+          weights[0],
+          0,
+          BuildType.FULL,
+          0);
+    }
+
+    OrdinalMap ordinalMap = OrdinalMap.build(null, subs, weights, PackedInts.DEFAULT);
+    for (int i = 0; i < numSegmentsWithOrds; ++i) {
+      segmentToGlobalOrds[subToSegment[i]] = ordinalMap.getGlobalOrds(i);
+    }
+    LongValues globalOrdToSub =
+        new LongValues() {
+          @Override
+          public long get(long index) {
+            return ordinalMap.getFirstSegmentNumber(index);
+          }
+        };
+    LongValues globalOrdToSegmentOrd =
+        new LongValues() {
+          @Override
+          public long get(long index) {
+            return ordinalMap.getFirstSegmentOrd(index);
+          }
+        };
+    return new GlobalOrdinalMap(
+        segmentKeys,
+        segmentToGlobalOrds,
+        globalOrdToSub,
+        subToSegment,
+        globalOrdToSegmentOrd,
+        ordinalMap.getValueCount(),
+        ordinalMap.ramBytesUsed(),
+        BuildType.FULL,
+        0);
+  }
+
+  private static GlobalOrdinalMap reuse(
+      GlobalOrdinalMap previous, SegmentKey[] segmentKeys, int[] previousToSegment) {
+    LongValues[] segmentToGlobalOrds = new LongValues[segmentKeys.length];
+    for (int i = 0; i < previousToSegment.length; ++i) {
+      if (previousToSegment[i] >= 0) {
+        segmentToGlobalOrds[previousToSegment[i]] = previous.segmentToGlobalOrds[i];
+      }
+    }
+    int[] baseSegmentToSegment = new int[previous.baseSegmentToSegment.length];
+    for (int i = 0; i < baseSegmentToSegment.length; ++i) {
+      baseSegmentToSegment[i] = previousToSegment[previous.baseSegmentToSegment[i]];
+    }
+    // mappings are shared with the previous map, but are counted for both
+    return new GlobalOrdinalMap(
+        segmentKeys,
+        segmentToGlobalOrds,
+        previous.globalOrdToBaseSegment,
+        baseSegmentToSegment,
+        previous.globalOrdToSegmentOrd,
+        previous.valueCount,
+        previous.getMappingRamBytesUsed(),
+        BuildType.REUSED,
+        previous.getNumSegmentsWithOrds());
+  }
+
+  private static GlobalOrdinalMap buildIncremental(
+      GlobalOrdinalMap previous,
+      SegmentKey[] segmentKeys,
+      TermsEnum[] segmentTerms,
+      long[] segmentValueCounts,
+      int[] previousToSegment)
+      throws IOException {
+    // the previous global terms are the first sub, followed by the new segments
+    int[] previousSegments = new int[segmentKeys.length];
+    Arrays.fill(previousSegments, -1);
+    for (int i = 0; i < previousToSegment.length; ++i) {
+      if (previousToSegment[i] >= 0) {
+        previousSegments[previousToSegment[i]] = i;
+      }
+    }
+    int numNewSegments = 0;
+    for (int i = 0; i < segmentKeys.length; ++i) {
+      if (segmentKeys[i] != null && previousSegments[i] < 0) {
+        numNewSegments++;
+      }
+    }
+    TermsEnum[] subs = new TermsEnum[numNewSegments + 1];
+    long[] weights = new long[numNewSegments + 1];
+    int[] subToSegment = new int[numNewSegments + 1];
+    subs[0] = new PreviousGlobalTerms(previous, previousToSegment, segmentTerms).termsEnum();
+    weights[0] = previous.valueCount;
+    subToSegment[0] = -1;
+    int subIndex = 1;
+    for (int i = 0; i < segmentKeys.length; ++i) {
+      if (segmentKeys[i] != null && previousSegments[i] < 0) {
+        subs[subIndex] = segmentTerms[i];
+        weights[subIndex] = segmentValueCounts[i];
+        subToSegment[subIndex] = i;
+        subIndex++;
+      }
+    }
+    OrdinalMap ordinalMap = OrdinalMap.build(null, subs, weights, PackedInts.DEFAULT);
+    long mappingRamBytesUsed = ordinalMap.ramBytesUsed();
+
+    // translate the previous mappings of unchanged segments to the new global ordinals
+    LongValues previousToGlobalOrds = ordinalMap.getGlobalOrds(0);
+    LongValues[] segmentToGlobalOrds = new LongValues[segmentKeys.length];
+    for (int i = 0; i < segmentKeys.length; ++i) {
+      if (segmentKeys[i] == null) {
+        continue;
+      }
+      if (previousSegments[i] >= 0) {
+        LongValues previousMapping = previous.segmentToGlobalOrds[previousSegments[i]];
+        PackedLongValues.Builder builder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        for (long ord = 0; ord < segmentValueCounts[i]; ++ord) {
+          builder.add(previousToGlobalOrds.get(previousMapping.get(ord)));
+        }
+        PackedLongValues mapping = builder.build();
+        segmentToGlobalOrds[i] = mapping;
+        mappingRamBytesUsed += mapping.ramBytesUsed();
+      }
+    }
+    for (int i = 1; i < subs.length; ++i) {
+      segmentToGlobalOrds[subToSegment[i]] = ordinalMap.getGlobalOrds(i);
+    }
+
+    // record the first segment containing each global term
+    PackedLongValues.Builder segmentBuilder = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+    PackedLongValues.Builder segmentOrdBuilder =
+        PackedLongValues.packedBuilder(PackedInts.COMPACT);
+    long valueCount = ordinalMap.getValueCount();
+    for (long ord = 0; ord < valueCount; ++ord) {
+      int sub = ordinalMap.getFirstSegmentNumber(ord);
+      long subOrd = ordinalMap.getFirstSegmentOrd(ord);
+      if (sub == 0) {
+        segmentBuilder.add(previousToSegment[previous.getSegmentIndex(subOrd)]);
+        segmentOrdBuilder.add(previous.getSegmentOrd(subOrd));
+      } else {
+        segmentBuilder.add(subToSegment[sub]);
+        segmentOrdBuilder.add(subOrd);
+      }
+    }
+    PackedLongValues globalOrdToSegment = segmentBuilder.build();
+    PackedLongValues globalOrdToSegmentOrd = segmentOrdBuilder.build();
+    mappingRamBytesUsed += globalOrdToSegment.ramBytesUsed() + globalOrdToSegmentOrd.ramBytesUsed();
+
+    int[] identity = new int[segmentKeys.length];
+    for (int i = 0; i < identity.length; ++i) {
+      identity[i] = i;
+    }
+    return new GlobalOrdinalMap(
+        segmentKeys,
+        segmentToGlobalOrds,
+        globalOrdToSegment,
+        identity,
+        globalOrdToSegmentOrd,
+        valueCount,
+        mappingRamBytesUsed,
+        BuildType.INCREMENTAL,
+        previous.getNumSegmentsWithOrds());
+  }
+
+  /**
+   * Get the index in the new segment keys of each segment in this map. Returns null if any segment
+   * with ordinals in this map is not present in the new segments.
+   */
+  private int[] getSegmentTranslation(SegmentKey[] newSegmentKeys) {
+    Map<SegmentKey, Integer> newSegmentIndex = new HashMap<>();
+    for (int i = 0; i < newSegmentKeys.length; ++i) {
+      if (newSegmentKeys[i] != null) {
+        newSegmentIndex.put(newSegmentKeys[i], i);
+      }
+    }
+    int[] translation = new int[segmentKeys.length];
+    for (int i = 0; i < segmentKeys.length; ++i) {
+      if (segmentKeys[i] == null) {
+        translation[i] = -1;
+      } else {
+        Integer index = newSegmentIndex.get(segmentKeys[i]);
+        if (index == null) {
+          return null;
+        }
+        translation[i] = index;
+      }
+    }
+    return translation;
+  }
+
+  private int getNumSegmentsWithOrds() {
+    int count = 0;
+    for (SegmentKey key : segmentKeys) {
+      if (key != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private long getMappingRamBytesUsed() {
+    return ramBytesUsed
+        - BASE_RAM_BYTES_USED
+        - RamUsageEstimator.shallowSizeOf(segmentKeys)
+        - RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds)
+        - RamUsageEstimator.sizeOf(baseSegmentToSegment);
+  }
+
+  /**
+   * Get segment mapping of local to global ordinals.
+   *
+   * @param segmentIndex index of segment in {@link IndexReader} leaf list
+   */
+  public LongValues getSegmentMapping(int segmentIndex) {
+    if (segmentIndex >= segmentToGlobalOrds.length || segmentToGlobalOrds[segmentIndex] == null) {
+      // segment has no ordinals, so the mapping will not be used
+      return GlobalOrdinalLookup.IDENTITY_MAPPING;
+    }
+    return segmentToGlobalOrds[segmentIndex];
+  }
+
+  /**
+   * Get the index of the first segment that contains the term for a global ordinal.
+   *
+   * @param globalOrd global ordinal
+   */
+  public int getSegmentIndex(long globalOrd) {
+    return baseSegmentToSegment[(int) globalOrdToBaseSegment.get(globalOrd)];
+  }
+
+  /**
+   * Get the segment ordinal of the term for a global ordinal, in the segment given by {@link
+   * #getSegmentIndex(long)}.
+   *
+   * @param globalOrd global ordinal
+   */
+  public long getSegmentOrd(long globalOrd) {
+    return globalOrdToSegmentOrd.get(globalOrd);
+  }
+
+  /** Get the total number of global ordinals. */
+  public long getValueCount() {
+    return valueCount;
+  }
+
+  /** Get how this map was created. */
+  public BuildType getBuildType() {
+    return buildType;
+  }
+
+  /** Get the number of segment mappings that were reused from the previous map. */
+  public int getReusedSegments() {
+    return reusedSegments;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  /**
+   * Identity of the ordinals in a segment. Ordinals are the same for a segment core, as long as the
+   * doc values have not been updated.
+   */
+  private static class SegmentKey {
+    private final Object coreKey;
+    private final long docValuesGen;
+
+    private SegmentKey(Object coreKey, long docValuesGen) {
+      this.coreKey = coreKey;
+      this.docValuesGen = docValuesGen;
+    }
+
+    static SegmentKey forLeaf(LeafReader leafReader, String field) {
+      IndexReader.CacheHelper coreCacheHelper = leafReader.getCoreCacheHelper();
+      // without a core key, the segment can never match a previous map
+      Object coreKey = coreCacheHelper == null ? new Object() : coreCacheHelper.getKey();
+      FieldInfo fieldInfo = leafReader.getFieldInfos().fieldInfo(field);
+      long docValuesGen = fieldInfo == null ? -1 : fieldInfo.getDocValuesGen();
+      return new SegmentKey(coreKey, docValuesGen);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SegmentKey other = (SegmentKey) o;
+      return coreKey == other.coreKey && docValuesGen == other.docValuesGen;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(coreKey), docValuesGen);
+    }
+  }
+
+  /** Terms that can be looked up by ordinal, sorted in ordinal order. */
+  private interface OrdinalTerms {
+    /**
+     * Get the term for an ordinal. The returned value may be reused by later calls.
+     *
+     * @param ord term ordinal
+     * @return term bytes
+     * @throws IOException on error reading term
+     */
+    BytesRef lookupOrd(long ord) throws IOException;
+
+    /** Get the number of terms. */
+    long getValueCount();
+  }
+
+  /** Terms of the previous global ordinals, read from the unchanged segments of the new reader. */
+  private static class PreviousGlobalTerms implements OrdinalTerms {
+    private final GlobalOrdinalMap previous;
+    private final int[] previousToSegment;
+    private final TermsEnum[] segmentTerms;
+
+    PreviousGlobalTerms(
+        GlobalOrdinalMap previous, int[] previousToSegment, TermsEnum[] segmentTerms) {
+      this.previous = previous;
+      this.previousToSegment = previousToSegment;
+      this.segmentTerms = segmentTerms;
+    }
+
+    @Override
+    public BytesRef lookupOrd(long ord) throws IOException {
+      TermsEnum termsEnum = segmentTerms[previousToSegment[previous.getSegmentIndex(ord)]];
+      termsEnum.seekExact(previous.getSegmentOrd(ord));
+      return termsEnum.term();
+    }
+
+    @Override
+    public long getValueCount() {
+      return previous.valueCount;
+    }
+
+    /** Get an enum over the terms in ordinal order. */
+    TermsEnum termsEnum() {
+      return new OrdinalTermsEnum(this);
+    }
+  }
+
+  /**
+   * {@link TermsEnum} over {@link OrdinalTerms}. There are no documents, so term statistics and
+   * postings are not supported.
+   */
+  private static class OrdinalTermsEnum extends BaseTermsEnum {
+    private final OrdinalTerms terms;
+    private final BytesRefBuilder scratch = new BytesRefBuilder();
+    private long currentOrd = -1;
+
+    OrdinalTermsEnum(OrdinalTerms terms) {
+      this.terms = terms;
+    }
+
+    @Override
+    public SeekStatus seekCeil(BytesRef text) throws IOException {
+      long low = 0;
+      long high = terms.getValueCount() - 1;
+      while (low <= high) {
+        long mid = (low + high) >>> 1;
+        int cmp = terms.lookupOrd(mid).compareTo(text);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          seekExact(mid);
+          return SeekStatus.FOUND;
+        }
+      }
+      if (low == terms.getValueCount()) {
+        return SeekStatus.END;
+      }
+      seekExact(low);
+      return SeekStatus.NOT_FOUND;
+    }
+
+    @Override
+    public void seekExact(long ord) throws IOException {
+      currentOrd = ord;
+      scratch.copyBytes(terms.lookupOrd(ord));
+    }
+
+    @Override
+    public BytesRef next() throws IOException {
+      if (currentOrd + 1 >= terms.getValueCount()) {
+        return null;
+      }
+      seekExact(currentOrd + 1);
+      return scratch.get();
+    }
+
+    @Override
+    public BytesRef term() {
+      return scratch.get();
+    }
+
+    @Override
+    public long ord() {
+      return currentOrd;
+    }
+
+    @Override
+    public int docFreq() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long totalTermFreq() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PostingsEnum postings(PostingsEnum reuse, int flags) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ImpactsEnum impacts(int flags) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -32,6 +32,7 @@ import com.yelp.nrtsearch.server.luceneserver.field.IndexableFieldDef;
 import com.yelp.nrtsearch.server.luceneserver.field.TextBaseFieldDef;
 import com.yelp.nrtsearch.server.luceneserver.field.VirtualFieldDef;
 import com.yelp.nrtsearch.server.luceneserver.highlights.HighlightFetchTask;
+import com.yelp.nrtsearch.server.luceneserver.highlights.HighlightSettingsHelper;
 import com.yelp.nrtsearch.server.luceneserver.rescore.QueryRescore;
 import com.yelp.nrtsearch.server.luceneserver.rescore.RescoreOperation;
 import com.yelp.nrtsearch.server.luceneserver.rescore.RescoreTask;
@@ -59,6 +60,7 @@ import java.util.stream.Collectors;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.facet.DrillDownQuery;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.QueryParserBase;
 import org.apache.lucene.queryparser.simple.SimpleQueryParser;
@@ -426,9 +428,20 @@ public class SearchRequestProcessor {
             String.format("Field %s is not stored and cannot support highlights", fieldName));
       }
       FieldType fieldType = ((TextBaseFieldDef) field).getFieldType();
-      if (!fieldType.storeTermVectors()
-          || !fieldType.storeTermVectorPositions()
-          || !fieldType.storeTermVectorOffsets()) {
+      boolean termVectorsWithOffsets =
+          fieldType.storeTermVectors()
+              && fieldType.storeTermVectorPositions()
+              && fieldType.storeTermVectorOffsets();
+      if (HighlightSettingsHelper.getHighlighterType(highlight, fieldName)
+          == Highlight.Type.UNIFIED) {
+        if (!termVectorsWithOffsets
+            && fieldType.indexOptions() != IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) {
+          throw new IllegalArgumentException(
+              String.format(
+                  "Field %s does not index offsets in postings or term vectors and cannot support unified highlights",
+                  fieldName));
+        }
+      } else if (!termVectorsWithOffsets) {
         throw new IllegalArgumentException(
             String.format(
                 "Field %s does not have term vectors with positions and offsets and cannot support highlights",
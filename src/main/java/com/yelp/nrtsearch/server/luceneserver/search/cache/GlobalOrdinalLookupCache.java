@@ -0,0 +1,271 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.search.cache;
+
+import com.yelp.nrtsearch.server.config.GlobalOrdinalsConfig;
+import com.yelp.nrtsearch.server.luceneserver.search.GlobalOrdinalLookup;
+import com.yelp.nrtsearch.server.luceneserver.search.GlobalOrdinalMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * Server level cache of field {@link GlobalOrdinalLookup}s. Entries are keyed on the owning field
+ * and the index reader the lookup was built for, and are removed when the reader is closed. The
+ * estimated memory of cached lookups is bounded, with the least recently used entries evicted
+ * first. An evicted lookup is rebuilt when next needed. See {@link ReaderKeyedCache}.
+ *
+ * <p>The ordinal map of the most recently built lookup for each field is also retained, so that the
+ * next lookup can reuse the mappings of unchanged segments. See {@link GlobalOrdinalMap}. Retained
+ * maps count against the memory limit, and each map is counted once no matter how many lookups
+ * share it. If evicting lookups is not enough to stay within the limit, the retained maps of the
+ * least recently built fields are dropped.
+ */
+public class GlobalOrdinalLookupCache {
+  // estimate of memory used by a cache entry, excluding the ordinal map
+  static final long ENTRY_OVERHEAD_BYTES = 128;
+
+  private static GlobalOrdinalLookupCache instance =
+      new GlobalOrdinalLookupCache(true, Runtime.getRuntime().maxMemory() / 10);
+
+  private final boolean incremental;
+  private final ReaderKeyedCache<Object, GlobalOrdinalLookup> cache;
+  // ordinal map of the last lookup built for each field, in least recently built order
+  private final LinkedHashMap<Object, GlobalOrdinalMap> latestMaps =
+      new LinkedHashMap<>(16, 0.75f, true);
+  // number of cached lookups and latest map entries referencing each ordinal map
+  private final Map<GlobalOrdinalMap, Integer> mapRefCounts = new IdentityHashMap<>();
+
+  // these variables are volatile so that we do not need to sync reads
+  // but updates need to be performed while synchronized on the cache
+  private volatile long latestMapEvictionCount;
+  private volatile long fullBuildCount;
+  private volatile long incrementalBuildCount;
+  private volatile long reusedBuildCount;
+  private volatile long reusedSegmentCount;
+  private volatile long buildTimeNanos;
+
+  /**
+   * Initialize the cache from server configuration.
+   *
+   * @param config global ordinals config
+   */
+  public static void initialize(GlobalOrdinalsConfig config) {
+    instance = new GlobalOrdinalLookupCache(config.getIncremental(), config.getMaxMemoryBytes());
+  }
+
+  /** Get the cache instance. */
+  public static GlobalOrdinalLookupCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param incremental if lookups may be built incrementally from the previous lookup
+   * @param maxRamBytes max estimated memory for cached lookups and retained ordinal maps
+   */
+  public GlobalOrdinalLookupCache(boolean incremental, long maxRamBytes) {
+    this.incremental = incremental;
+    this.cache =
+        new ReaderKeyedCache<>(
+            Integer.MAX_VALUE,
+            maxRamBytes,
+            true,
+            lookup -> decRefMap(lookup.getOrdinalMap()));
+  }
+
+  /** Get if lookups may be built incrementally from the previous lookup. */
+  public boolean getIncremental() {
+    return incremental;
+  }
+
+  /**
+   * Get cached lookup, recording a cache hit or miss.
+   *
+   * @param owner field the lookup is for
+   * @param reader index reader
+   * @return cached lookup, or null if not present
+   */
+  public GlobalOrdinalLookup get(Object owner, IndexReader reader) {
+    return cache.get(reader.getReaderCacheHelper().getKey(), owner);
+  }
+
+  /**
+   * Get cached lookup, without recording cache stats.
+   *
+   * @param owner field the lookup is for
+   * @param reader index reader
+   * @return cached lookup, or null if not present
+   */
+  public GlobalOrdinalLookup getIfPresent(Object owner, IndexReader reader) {
+    return cache.getIfPresent(reader.getReaderCacheHelper().getKey(), owner);
+  }
+
+  /**
+   * Get the ordinal map of the last lookup built for a field, to use as the base for building the
+   * next lookup.
+   *
+   * @param owner field the lookup is for
+   * @return ordinal map, or null if no lookup was built
+   */
+  public GlobalOrdinalMap getLatestMap(Object owner) {
+    synchronized (cache) {
+      return latestMaps.get(owner);
+    }
+  }
+
+  /**
+   * Add a newly built lookup to the cache.
+   *
+   * @param owner field the lookup is for
+   * @param reader index reader the lookup was built for
+   * @param lookup global ordinal lookup
+   * @param buildNanos time taken to build the lookup
+   */
+  public void put(Object owner, IndexReader reader, GlobalOrdinalLookup lookup, long buildNanos) {
+    GlobalOrdinalMap ordinalMap = lookup.getOrdinalMap();
+    synchronized (cache) {
+      switch (ordinalMap.getBuildType()) {
+        case FULL:
+          fullBuildCount++;
+          break;
+        case INCREMENTAL:
+          incrementalBuildCount++;
+          break;
+        case REUSED:
+          reusedBuildCount++;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown build type: " + ordinalMap.getBuildType());
+      }
+      reusedSegmentCount += ordinalMap.getReusedSegments();
+      buildTimeNanos += buildNanos;
+
+      incRefMap(ordinalMap);
+      GlobalOrdinalMap previousLatest = latestMaps.put(owner, ordinalMap);
+      if (previousLatest != null) {
+        decRefMap(previousLatest);
+      }
+      // reference for the cache entry, released by the removal listener
+      incRefMap(ordinalMap);
+      cache.put(reader.getReaderCacheHelper(), owner, lookup, ENTRY_OVERHEAD_BYTES);
+      evictLatestMapsIfNeeded(owner);
+    }
+  }
+
+  private void incRefMap(GlobalOrdinalMap ordinalMap) {
+    if (mapRefCounts.merge(ordinalMap, 1, Integer::sum) == 1) {
+      cache.addRetainedRamBytes(ordinalMap.ramBytesUsed());
+    }
+  }
+
+  private void decRefMap(GlobalOrdinalMap ordinalMap) {
+    if (mapRefCounts.merge(ordinalMap, -1, Integer::sum) == 0) {
+      mapRefCounts.remove(ordinalMap);
+      cache.addRetainedRamBytes(-ordinalMap.ramBytesUsed());
+    }
+  }
+
+  /**
+   * Drop the latest maps of the least recently built fields, if still over the memory limit after
+   * evicting lookups. The map of the field just built is always kept.
+   */
+  private void evictLatestMapsIfNeeded(Object currentOwner) {
+    Iterator<Map.Entry<Object, GlobalOrdinalMap>> iterator = latestMaps.entrySet().iterator();
+    while (cache.ramBytesUsed() > cache.getMaxRamBytes() && iterator.hasNext()) {
+      Map.Entry<Object, GlobalOrdinalMap> entry = iterator.next();
+      if (entry.getKey() != currentOwner) {
+        iterator.remove();
+        latestMapEvictionCount++;
+        decRefMap(entry.getValue());
+      }
+    }
+  }
+
+  /** Remove all entries from the cache. */
+  public void clear() {
+    synchronized (cache) {
+      cache.clear();
+      for (GlobalOrdinalMap ordinalMap : latestMaps.values()) {
+        decRefMap(ordinalMap);
+      }
+      latestMaps.clear();
+    }
+  }
+
+  /** Get total number of cache hits. */
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  /** Get total number of cache misses. */
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  /** Get total number of entries evicted to stay within the memory limit. */
+  public long getEvictionCount() {
+    return cache.getEvictionCount();
+  }
+
+  /** Get total number of entries removed because their reader was closed. */
+  public long getInvalidationCount() {
+    return cache.getInvalidationCount();
+  }
+
+  /** Get total number of latest field maps dropped to stay within the memory limit. */
+  public long getLatestMapEvictionCount() {
+    return latestMapEvictionCount;
+  }
+
+  /** Get total number of lookups built by merging the terms of all segments. */
+  public long getFullBuildCount() {
+    return fullBuildCount;
+  }
+
+  /** Get total number of lookups built incrementally from the previous lookup. */
+  public long getIncrementalBuildCount() {
+    return incrementalBuildCount;
+  }
+
+  /** Get total number of lookups that reused the previous mappings for all segments. */
+  public long getReusedBuildCount() {
+    return reusedBuildCount;
+  }
+
+  /** Get total number of segment mappings reused from a previous lookup. */
+  public long getReusedSegmentCount() {
+    return reusedSegmentCount;
+  }
+
+  /** Get total time spent building lookups, in nanoseconds. */
+  public long getBuildTimeNanos() {
+    return buildTimeNanos;
+  }
+
+  /** Get current number of cached lookups. */
+  public int getCacheSize() {
+    return cache.getCacheSize();
+  }
+
+  /** Get estimated memory used by cached lookups and retained ordinal maps. */
+  public long ramBytesUsed() {
+    return cache.ramBytesUsed();
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.search.cache;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * Cache of values that are only valid for a specific index reader. Entries are keyed on the reader
+ * {@link IndexReader.CacheKey} along with a cache specific key, and all entries for a reader are
+ * removed when it is closed. Cache size is limited by both number of entries and estimated memory
+ * usage, with the least recently used entries evicted first.
+ *
+ * <p>Memory held by the owner of the cache outside of its entries may also be counted against the
+ * memory limit with {@link #addRetainedRamBytes(long)}. All methods synchronize on the cache, the
+ * owner may do the same to update its own state consistently with the cache entries.
+ *
+ * @param <K> cache specific key type
+ * @param <V> cached value type
+ */
+public class ReaderKeyedCache<K, V> {
+
+  /** Listener notified when a value is removed from the cache, while holding the cache lock. */
+  @FunctionalInterface
+  public interface RemovalListener<V> {
+    void onRemoval(V value);
+  }
+
+  private final int maxEntries;
+  private final long maxRamBytes;
+  private final boolean keepMostRecent;
+  private final RemovalListener<V> removalListener;
+  private final LinkedHashMap<EntryKey<K>, Entry<V>> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<IndexReader.CacheKey> registeredReaders = new HashSet<>();
+
+  // these variables are volatile so that we do not need to sync reads
+  // but updates need to be performed under the lock
+  private volatile long hitCount;
+  private volatile long missCount;
+  private volatile long evictionCount;
+  private volatile long invalidationCount;
+  private volatile long ramBytesUsed;
+
+  /**
+   * Constructor.
+   *
+   * @param maxEntries max number of cached values
+   * @param maxRamBytes max estimated memory for cached values and retained memory
+   * @param keepMostRecent if the most recently used entry is always kept, even when over the memory
+   *     limit. Otherwise, values larger than the memory limit are not added.
+   * @param removalListener listener for removed values, or null
+   */
+  public ReaderKeyedCache(
+      int maxEntries,
+      long maxRamBytes,
+      boolean keepMostRecent,
+      RemovalListener<V> removalListener) {
+    this.maxEntries = maxEntries;
+    this.maxRamBytes = maxRamBytes;
+    this.keepMostRecent = keepMostRecent;
+    this.removalListener = removalListener;
+  }
+
+  /**
+   * Get cached value, recording a cache hit or miss.
+   *
+   * @param readerKey index reader cache key
+   * @param key cache specific key
+   * @return cached value, or null if not present
+   */
+  public synchronized V get(IndexReader.CacheKey readerKey, K key) {
+    V value = getIfPresent(readerKey, key);
+    if (value == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+    return value;
+  }
+
+  /**
+   * Get cached value, without recording cache stats.
+   *
+   * @param readerKey index reader cache key
+   * @param key cache specific key
+   * @return cached value, or null if not present
+   */
+  public synchronized V getIfPresent(IndexReader.CacheKey readerKey, K key) {
+    Entry<V> entry = cache.get(new EntryKey<>(readerKey, key));
+    return entry == null ? null : entry.value;
+  }
+
+  /**
+   * Add value to the cache, replacing any existing value for the key.
+   *
+   * @param cacheHelper cache helper of the index reader the value is for
+   * @param key cache specific key
+   * @param value value to cache
+   * @param ramBytes estimated memory used by the entry
+   * @return if the value was added
+   */
+  public synchronized boolean put(
+      IndexReader.CacheHelper cacheHelper, K key, V value, long ramBytes) {
+    if (!keepMostRecent && ramBytes > maxRamBytes) {
+      return false;
+    }
+    IndexReader.CacheKey readerKey = cacheHelper.getKey();
+    if (registeredReaders.add(readerKey)) {
+      cacheHelper.addClosedListener(this::onReaderClosed);
+    }
+    Entry<V> previous = cache.put(new EntryKey<>(readerKey, key), new Entry<>(value, ramBytes));
+    if (previous != null) {
+      ramBytesUsed -= previous.ramBytes;
+      notifyRemoval(previous);
+    }
+    ramBytesUsed += ramBytes;
+    evictIfNeeded();
+    return true;
+  }
+
+  /**
+   * Count memory held outside of the cache entries against the memory limit. Entries are evicted if
+   * the limit is exceeded.
+   *
+   * @param deltaBytes change in retained memory, negative when memory is released
+   */
+  public synchronized void addRetainedRamBytes(long deltaBytes) {
+    ramBytesUsed += deltaBytes;
+    if (deltaBytes > 0) {
+      evictIfNeeded();
+    }
+  }
+
+  private void evictIfNeeded() {
+    int minEntries = keepMostRecent ? 1 : 0;
+    Iterator<Entry<V>> iterator = cache.values().iterator();
+    while ((cache.size() > maxEntries || ramBytesUsed > maxRamBytes)
+        && cache.size() > minEntries
+        && iterator.hasNext()) {
+      Entry<V> entry = iterator.next();
+      iterator.remove();
+      ramBytesUsed -= entry.ramBytes;
+      evictionCount++;
+      notifyRemoval(entry);
+    }
+  }
+
+  private synchronized void onReaderClosed(IndexReader.CacheKey readerKey) {
+    registeredReaders.remove(readerKey);
+    Iterator<Map.Entry<EntryKey<K>, Entry<V>>> iterator = cache.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<EntryKey<K>, Entry<V>> entry = iterator.next();
+      if (entry.getKey().readerKey == readerKey) {
+        iterator.remove();
+        ramBytesUsed -= entry.getValue().ramBytes;
+        invalidationCount++;
+        notifyRemoval(entry.getValue());
+      }
+    }
+  }
+
+  private void notifyRemoval(Entry<V> entry) {
+    if (removalListener != null) {
+      removalListener.onRemoval(entry.value);
+    }
+  }
+
+  /** Remove all entries from the cache. */
+  public synchronized void clear() {
+    Iterator<Entry<V>> iterator = cache.values().iterator();
+    while (iterator.hasNext()) {
+      Entry<V> entry = iterator.next();
+      iterator.remove();
+      ramBytesUsed -= entry.ramBytes;
+      notifyRemoval(entry);
+    }
+  }
+
+  /** Get total number of cache hits. */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /** Get total number of cache misses. */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /** Get total number of entries evicted to stay within size limits. */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /** Get total number of entries removed because their reader was closed. */
+  public long getInvalidationCount() {
+    return invalidationCount;
+  }
+
+  /** Get current number of cached values. */
+  public synchronized int getCacheSize() {
+    return cache.size();
+  }
+
+  /** Get estimated memory used by cached values and retained memory. */
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  /** Get the memory limit. */
+  public long getMaxRamBytes() {
+    return maxRamBytes;
+  }
+
+  private static class EntryKey<K> {
+    private final IndexReader.CacheKey readerKey;
+    private final K key;
+
+    EntryKey(IndexReader.CacheKey readerKey, K key) {
+      this.readerKey = readerKey;
+      this.key = key;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(readerKey, key);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      EntryKey<?> other = (EntryKey<?>) o;
+      return readerKey == other.readerKey && key.equals(other.key);
+    }
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long ramBytes;
+
+    Entry(V value, long ramBytes) {
+      this.value = value;
+      this.ramBytes = ramBytes;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.search.cache;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.yelp.nrtsearch.server.config.ResultCacheConfig;
+import com.yelp.nrtsearch.server.grpc.Script;
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import com.yelp.nrtsearch.server.grpc.SearchResponse;
+import com.yelp.nrtsearch.server.luceneserver.script.ScriptService;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * Cache of complete search responses. Entries are keyed on the identity and version of the index
+ * reader used to execute the search, along with the search request. Since a reader is a point in
+ * time view of the index, a response is valid for as long as the reader is open. When a reader is
+ * closed, such as after a refresh makes it no longer current, all of its entries are removed.
+ *
+ * <p>Cache size is limited by both number of entries and estimated memory usage, with the least
+ * recently used entries evicted first. See {@link ReaderKeyedCache}.
+ */
+public class SearchResultCache {
+  // estimate of memory used by a cache entry, excluding the request and response
+  static final long ENTRY_OVERHEAD_BYTES = 128;
+
+  private static SearchResultCache instance;
+
+  private final ReaderKeyedCache<CacheKey, SearchResponse> cache;
+
+  /**
+   * Initialize the result cache from server configuration. If the cache is not enabled, {@link
+   * #getInstance()} will return null.
+   *
+   * @param config result cache config
+   */
+  public static void initialize(ResultCacheConfig config) {
+    if (config.getEnabled()) {
+      instance = new SearchResultCache(config.getMaxEntries(), config.getMaxMemoryBytes());
+    } else {
+      instance = null;
+    }
+  }
+
+  /** Get the result cache instance, or null if not enabled. */
+  public static SearchResultCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxEntries max number of responses to cache
+   * @param maxRamBytes max estimated memory for cached entries
+   */
+  public SearchResultCache(int maxEntries, long maxRamBytes) {
+    this.cache = new ReaderKeyedCache<>(maxEntries, maxRamBytes, false, null);
+  }
+
+  /**
+   * Get if the response for a request is eligible for caching. Requests are not cached when
+   * profiling, or if they use a script from a {@link
+   * com.yelp.nrtsearch.server.luceneserver.script.ScriptEngine} that is not cacheable.
+   *
+   * @param searchRequest search request
+   * @return if request may be cached
+   */
+  public static boolean isCacheable(SearchRequest searchRequest) {
+    if (searchRequest.getProfile()) {
+      return false;
+    }
+    return scriptsCacheable(searchRequest);
+  }
+
+  private static boolean scriptsCacheable(Message message) {
+    if (message instanceof Script) {
+      ScriptService scriptService = ScriptService.getInstance();
+      return scriptService == null || scriptService.isCacheable((Script) message);
+    }
+    for (Map.Entry<FieldDescriptor, Object> entry : message.getAllFields().entrySet()) {
+      if (entry.getKey().getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+        continue;
+      }
+      if (entry.getKey().isRepeated()) {
+        for (Object value : (List<?>) entry.getValue()) {
+          if (!scriptsCacheable((Message) value)) {
+            return false;
+          }
+        }
+      } else if (!scriptsCacheable((Message) entry.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Create a cache key for a request executed with the given reader. Request parameters that do
+   * not affect the result, such as timeouts and searcher selection, are removed.
+   *
+   * @param reader top level reader used for search
+   * @param searchRequest search request
+   * @return cache key, or null if the reader does not support caching
+   */
+  public static CacheKey createKey(DirectoryReader reader, SearchRequest searchRequest) {
+    IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+    if (cacheHelper == null) {
+      return null;
+    }
+    SearchRequest normalizedRequest =
+        searchRequest.toBuilder()
+            .clearTimeoutSec()
+            .clearTimeoutCheckEvery()
+            .clearDisallowPartialResults()
+            .clearResponseCompression()
+            .clearSearcher()
+            .build();
+    return new CacheKey(cacheHelper, reader.getVersion(), normalizedRequest);
+  }
+
+  /**
+   * Get cached response for key.
+   *
+   * @param key cache key
+   * @return cached response, or null if not present
+   */
+  public SearchResponse get(CacheKey key) {
+    return cache.get(key.cacheHelper.getKey(), key);
+  }
+
+  /**
+   * Add response to the cache. Responses larger than the cache memory limit are not added.
+   *
+   * @param key cache key
+   * @param response search response
+   */
+  public void put(CacheKey key, SearchResponse response) {
+    long entryBytes =
+        ENTRY_OVERHEAD_BYTES + key.request.getSerializedSize() + response.getSerializedSize();
+    cache.put(key.cacheHelper, key, response, entryBytes);
+  }
+
+  /** Remove all entries from the cache. */
+  public void clear() {
+    cache.clear();
+  }
+
+  /** Get total number of cache hits. */
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  /** Get total number of cache misses. */
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  /** Get total number of entries evicted to stay within size limits. */
+  public long getEvictionCount() {
+    return cache.getEvictionCount();
+  }
+
+  /** Get total number of entries removed because their reader was closed. */
+  public long getInvalidationCount() {
+    return cache.getInvalidationCount();
+  }
+
+  /** Get current number of cached responses. */
+  public int getCacheSize() {
+    return cache.getCacheSize();
+  }
+
+  /** Get estimated memory used by cached entries. */
+  public long ramBytesUsed() {
+    return cache.ramBytesUsed();
+  }
+
+  /** Key for cache entries, the reader identity and version, plus the normalized request. */
+  public static class CacheKey {
+    private final IndexReader.CacheHelper cacheHelper;
+    private final long readerVersion;
+    private final SearchRequest request;
+    private final int hashCode;
+
+    CacheKey(IndexReader.CacheHelper cacheHelper, long readerVersion, SearchRequest request) {
+      this.cacheHelper = cacheHelper;
+      this.readerVersion = readerVersion;
+      this.request = request;
+      this.hashCode = Objects.hash(cacheHelper.getKey(), readerVersion, request);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return cacheHelper.getKey() == other.cacheHelper.getKey()
+          && readerVersion == other.readerVersion
+          && request.equals(other.request);
+    }
+  }
+}
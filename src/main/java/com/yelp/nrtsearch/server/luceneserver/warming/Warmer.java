@@ -21,8 +21,10 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
 import com.yelp.nrtsearch.server.backup.Archiver;
 import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import com.yelp.nrtsearch.server.grpc.SearchResponse;
 import com.yelp.nrtsearch.server.luceneserver.IndexState;
 import com.yelp.nrtsearch.server.luceneserver.SearchHandler;
+import com.yelp.nrtsearch.server.monitoring.WarmingMetrics;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -32,9 +34,12 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.lucene.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +49,15 @@ public class Warmer {
   public static final String WARMING_QUERIES_RESOURCE = "_warming_queries";
   public static final String WARMING_QUERIES_DIR = "warming_queries";
   private static final String WARMING_QUERIES_FILE = "warming_queries.txt";
+  private static final String WARMING_QUERIES_BINARY_FILE = "warming_queries.bin";
+
+  /** File format used to back up warming queries. */
+  public enum FileFormat {
+    /** One json encoded request per line */
+    JSON,
+    /** Compressed, chunked, length-delimited protobuf requests, see {@link WarmingQueriesFormat} */
+    BINARY
+  }
 
   private final Archiver archiver;
   private final String service;
@@ -52,8 +66,85 @@ public class Warmer {
   private final ReservoirSampler reservoirSampler;
   private final String index;
   private final int maxWarmingQueries;
+  private final FileFormat fileFormat;
+  private final double maxWarmingTimeSec;
+  private final double warmingQueryTimeoutSec;
+  private final double warmingShutdownTimeoutSec;
 
   public Warmer(Archiver archiver, String service, String index, int maxWarmingQueries) {
+    this(archiver, service, index, maxWarmingQueries, FileFormat.JSON);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param archiver archiver for warming queries backup
+   * @param service service name
+   * @param index index name
+   * @param maxWarmingQueries maximum queries to store for warming
+   * @param fileFormat format to use when backing up warming queries
+   */
+  public Warmer(
+      Archiver archiver,
+      String service,
+      String index,
+      int maxWarmingQueries,
+      FileFormat fileFormat) {
+    this(archiver, service, index, maxWarmingQueries, fileFormat, 0, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param archiver archiver for warming queries backup
+   * @param service service name
+   * @param index index name
+   * @param maxWarmingQueries maximum queries to store for warming
+   * @param fileFormat format to use when backing up warming queries
+   * @param maxWarmingTimeSec time budget for warming from stored queries, or 0 for no limit
+   * @param warmingQueryTimeoutSec timeout for each warming query, or 0 for no timeout
+   */
+  public Warmer(
+      Archiver archiver,
+      String service,
+      String index,
+      int maxWarmingQueries,
+      FileFormat fileFormat,
+      double maxWarmingTimeSec,
+      double warmingQueryTimeoutSec) {
+    this(
+        archiver,
+        service,
+        index,
+        maxWarmingQueries,
+        fileFormat,
+        maxWarmingTimeSec,
+        warmingQueryTimeoutSec,
+        WarmerConfig.DEFAULT_WARMING_SHUTDOWN_TIMEOUT_SEC);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param archiver archiver for warming queries backup
+   * @param service service name
+   * @param index index name
+   * @param maxWarmingQueries maximum queries to store for warming
+   * @param fileFormat format to use when backing up warming queries
+   * @param maxWarmingTimeSec time budget for warming from stored queries, or 0 for no limit
+   * @param warmingQueryTimeoutSec timeout for each warming query, or 0 for no timeout
+   * @param warmingShutdownTimeoutSec time to wait for running warming queries to finish after
+   *     warming completes
+   */
+  public Warmer(
+      Archiver archiver,
+      String service,
+      String index,
+      int maxWarmingQueries,
+      FileFormat fileFormat,
+      double maxWarmingTimeSec,
+      double warmingQueryTimeoutSec,
+      double warmingShutdownTimeoutSec) {
     this.archiver = archiver;
     this.service = service;
     this.index = index;
@@ -61,6 +152,10 @@ public class Warmer {
     this.warmingRequests = Collections.synchronizedList(new ArrayList<>(maxWarmingQueries));
     this.reservoirSampler = new ReservoirSampler(maxWarmingQueries);
     this.maxWarmingQueries = maxWarmingQueries;
+    this.fileFormat = fileFormat;
+    this.maxWarmingTimeSec = maxWarmingTimeSec;
+    this.warmingQueryTimeoutSec = warmingQueryTimeoutSec;
+    this.warmingShutdownTimeoutSec = warmingShutdownTimeoutSec;
   }
 
   public int getNumWarmingRequests() {
@@ -91,16 +186,27 @@ public class Warmer {
     try {
       // Creating a directory since the Archiver requires a directory
       warmingQueriesDir = Files.createDirectory(tmpDirectory.resolve(WARMING_QUERIES_DIR));
-      warmingQueriesFile = warmingQueriesDir.resolve(WARMING_QUERIES_FILE);
-      writer = Files.newBufferedWriter(warmingQueriesFile);
       int count = 0;
-      for (SearchRequest searchRequest : warmingRequests) {
-        writer.write(JsonFormat.printer().omittingInsignificantWhitespace().print(searchRequest));
-        writer.newLine();
-        count++;
+      if (fileFormat == FileFormat.BINARY) {
+        warmingQueriesFile = warmingQueriesDir.resolve(WARMING_QUERIES_BINARY_FILE);
+        List<SearchRequest> requests;
+        synchronized (warmingRequests) {
+          requests = new ArrayList<>(warmingRequests);
+        }
+        count =
+            WarmingQueriesFormat.write(
+                warmingQueriesFile, requests, WarmingQueriesFormat.DEFAULT_CHUNK_SIZE);
+      } else {
+        warmingQueriesFile = warmingQueriesDir.resolve(WARMING_QUERIES_FILE);
+        writer = Files.newBufferedWriter(warmingQueriesFile);
+        for (SearchRequest searchRequest : warmingRequests) {
+          writer.write(JsonFormat.printer().omittingInsignificantWhitespace().print(searchRequest));
+          writer.newLine();
+          count++;
+        }
+        writer.close();
+        writer = null;
       }
-      writer.close();
-      writer = null;
       String versionHash =
           archiver.upload(service, resource, warmingQueriesDir, List.of(), List.of(), true);
       archiver.blessVersion(service, resource, versionHash);
@@ -137,6 +243,9 @@ public class Warmer {
           "No warming queries found in S3 for service: {} and resource: {}", service, resource);
       return;
     }
+    long startNS = System.nanoTime();
+    long deadlineNS =
+        maxWarmingTimeSec > 0 ? startNS + (long) (maxWarmingTimeSec * 1000000000) : Long.MAX_VALUE;
     ThreadPoolExecutor threadPoolExecutor = null;
     if (parallelism > 1) {
       int numThreads = parallelism - 1;
@@ -150,21 +259,44 @@ public class Warmer {
               new NamedThreadFactory("warming-"),
               new ThreadPoolExecutor.CallerRunsPolicy());
     }
-    Path downloadDir = archiver.download(service, resource);
-    Path warmingRequestsDir = downloadDir.resolve(WARMING_QUERIES_DIR);
-    try (BufferedReader reader =
-        Files.newBufferedReader(warmingRequestsDir.resolve(WARMING_QUERIES_FILE))) {
-      String line;
-      int count = 0;
-      while ((line = reader.readLine()) != null) {
-        processLine(indexState, searchHandler, threadPoolExecutor, line);
-        count++;
-      }
-      logger.info("Warmed index: {} with {} warming queries", index, count);
+    try {
+      Path downloadDir = archiver.download(service, resource);
+      Path warmingRequestsDir = downloadDir.resolve(WARMING_QUERIES_DIR);
+      List<SearchRequest> storedRequests = loadRequests(warmingRequestsDir, threadPoolExecutor);
+      long loadedNS = System.nanoTime();
+      recordPhaseTime("load", startNS, loadedNS);
+      WarmingMetrics.warmingQueries.labels(index, "loaded").inc(storedRequests.size());
+
+      List<SearchRequest> plannedRequests =
+          WarmingQueryPlanner.plan(storedRequests, warmingQueryTimeoutSec);
+      long plannedNS = System.nanoTime();
+      recordPhaseTime("plan", loadedNS, plannedNS);
+      WarmingMetrics.warmingQueries
+          .labels(index, "duplicate")
+          .inc(storedRequests.size() - plannedRequests.size());
+
+      int completed =
+          replayRequests(
+              indexState, searchHandler, threadPoolExecutor, plannedRequests, deadlineNS);
+      long endNS = System.nanoTime();
+      recordPhaseTime("replay", plannedNS, endNS);
+      recordPhaseTime("total", startNS, endNS);
+      logger.info(
+          "Warmed index: {} with {} of {} unique warming queries ({} stored) in {} ms",
+          index,
+          completed,
+          plannedRequests.size(),
+          storedRequests.size(),
+          TimeUnit.NANOSECONDS.toMillis(endNS - startNS));
     } finally {
       if (threadPoolExecutor != null) {
+        // don't interrupt running queries, interrupting a thread doing NIO closes the index
+        // files it is reading. Queries are bounded by the warming query timeout.
         threadPoolExecutor.shutdown();
-        threadPoolExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        if (!threadPoolExecutor.awaitTermination(
+            (long) (warmingShutdownTimeoutSec * 1000), TimeUnit.MILLISECONDS)) {
+          logger.warn("Warming queries for index: {} still running after warming completed", index);
+        }
       }
       // Leave warming files on disk, for use if the index is restarted.
       // If we find these files end up being too large, we could consider adding
@@ -172,19 +304,129 @@ public class Warmer {
     }
   }
 
-  private void processLine(
+  private void recordPhaseTime(String phase, long startNS, long endNS) {
+    WarmingMetrics.warmingPhaseTime.labels(index, phase).set((endNS - startNS) / 1000000.0);
+  }
+
+  /**
+   * Load the stored warming requests. If the requests are in the binary format, chunks are decoded
+   * in parallel when a thread pool is provided.
+   */
+  private List<SearchRequest> loadRequests(
+      Path warmingRequestsDir, ThreadPoolExecutor threadPoolExecutor)
+      throws IOException, InterruptedException {
+    List<SearchRequest> requests = new ArrayList<>();
+    Path binaryFile = warmingRequestsDir.resolve(WARMING_QUERIES_BINARY_FILE);
+    if (Files.exists(binaryFile)) {
+      List<Future<List<SearchRequest>>> futures = new ArrayList<>();
+      try (WarmingQueriesFormat.ChunkReader reader =
+          new WarmingQueriesFormat.ChunkReader(binaryFile)) {
+        WarmingQueriesFormat.Chunk chunk;
+        while ((chunk = reader.next()) != null) {
+          if (threadPoolExecutor == null) {
+            requests.addAll(chunk.decode());
+          } else {
+            // the caller decodes the chunk itself when all warming threads are busy
+            futures.add(threadPoolExecutor.submit(chunk::decode));
+          }
+        }
+      }
+      for (Future<List<SearchRequest>> future : futures) {
+        try {
+          requests.addAll(future.get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+          }
+          throw new RuntimeException(e.getCause());
+        }
+      }
+    } else {
+      try (BufferedReader reader =
+          Files.newBufferedReader(warmingRequestsDir.resolve(WARMING_QUERIES_FILE))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          requests.add(parseLine(line));
+        }
+      }
+    }
+    return requests;
+  }
+
+  /**
+   * Replay warming requests in order, until all requests are done or the deadline is reached.
+   * Requests not started before the deadline are skipped, and requests still queued at the deadline
+   * are cancelled. Requests already running are not interrupted, and end at their query timeout.
+   * Failed requests are logged and counted, without stopping warming, whether or not a thread pool
+   * is used.
+   *
+   * @return number of completed requests
+   */
+  private int replayRequests(
       IndexState indexState,
       SearchHandler searchHandler,
       ThreadPoolExecutor threadPoolExecutor,
-      String line)
-      throws InvalidProtocolBufferException, SearchHandler.SearchHandlerException {
+      List<SearchRequest> requests,
+      long deadlineNS)
+      throws InterruptedException {
+    int submitted = 0;
+    int completed = 0;
+    int failed = 0;
+    int timedOut = 0;
+    List<Future<SearchResponse>> futures = new ArrayList<>();
+    for (SearchRequest searchRequest : requests) {
+      if (System.nanoTime() >= deadlineNS) {
+        break;
+      }
+      submitted++;
+      if (threadPoolExecutor == null) {
+        try {
+          searchHandler.handle(indexState, searchRequest);
+          completed++;
+        } catch (Exception e) {
+          logger.warn("Warming query failed for index: {}", index, e);
+          failed++;
+        }
+      } else {
+        futures.add(
+            threadPoolExecutor.submit(() -> searchHandler.handle(indexState, searchRequest)));
+      }
+    }
+    for (Future<SearchResponse> future : futures) {
+      try {
+        if (deadlineNS == Long.MAX_VALUE) {
+          future.get();
+        } else {
+          future.get(Math.max(deadlineNS - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        }
+        completed++;
+      } catch (TimeoutException e) {
+        // only cancel queued queries, running queries finish at their query timeout
+        future.cancel(false);
+        timedOut++;
+      } catch (ExecutionException e) {
+        logger.warn("Warming query failed for index: {}", index, e.getCause());
+        failed++;
+      }
+    }
+    int skipped = requests.size() - submitted;
+    if (skipped > 0 || timedOut > 0) {
+      logger.info(
+          "Warming time budget reached for index: {}, skipped {} queries, cancelled {} queries",
+          index,
+          skipped,
+          timedOut);
+    }
+    WarmingMetrics.warmingQueries.labels(index, "completed").inc(completed);
+    WarmingMetrics.warmingQueries.labels(index, "failed").inc(failed);
+    WarmingMetrics.warmingQueries.labels(index, "timed_out").inc(timedOut);
+    WarmingMetrics.warmingQueries.labels(index, "skipped").inc(skipped);
+    return completed;
+  }
+
+  private SearchRequest parseLine(String line) throws InvalidProtocolBufferException {
     SearchRequest.Builder builder = SearchRequest.newBuilder();
     JsonFormat.parser().merge(line, builder);
-    SearchRequest searchRequest = builder.build();
-    if (threadPoolExecutor == null) {
-      searchHandler.handle(indexState, searchRequest);
-    } else {
-      threadPoolExecutor.submit(() -> searchHandler.handle(indexState, searchRequest));
-    }
+    return builder.build();
   }
 }
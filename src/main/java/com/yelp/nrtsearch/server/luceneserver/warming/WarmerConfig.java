@@ -22,10 +22,18 @@ public class WarmerConfig {
   private static final int DEFAULT_MAX_WARMING_QUERIES = 0;
   private static final int DEFAULT_WARMING_PARALLELISM = 1;
   private static final boolean DEFAULT_WARM_ON_STARTUP = false;
+  private static final String DEFAULT_WARMING_QUERIES_FORMAT = "JSON";
+  private static final double DEFAULT_MAX_WARMING_TIME_SEC = 0;
+  private static final double DEFAULT_WARMING_QUERY_TIMEOUT_SEC = 0;
+  static final double DEFAULT_WARMING_SHUTDOWN_TIMEOUT_SEC = 10;
 
   private final int maxWarmingQueries;
   private final int warmingParallelism;
   private final boolean warmOnStartup;
+  private final Warmer.FileFormat warmingQueriesFormat;
+  private final double maxWarmingTimeSec;
+  private final double warmingQueryTimeoutSec;
+  private final double warmingShutdownTimeoutSec;
 
   /**
    * Configuration for warmer.
@@ -35,9 +43,85 @@ public class WarmerConfig {
    * @param warmOnStartup if true will try to download queries from S3 and use them to warm
    */
   public WarmerConfig(int maxWarmingQueries, int warmingParallelism, boolean warmOnStartup) {
+    this(maxWarmingQueries, warmingParallelism, warmOnStartup, Warmer.FileFormat.JSON);
+  }
+
+  /**
+   * Configuration for warmer.
+   *
+   * @param maxWarmingQueries maximum queries to store for warming
+   * @param warmingParallelism number of parallel queries while warming on startup
+   * @param warmOnStartup if true will try to download queries from S3 and use them to warm
+   * @param warmingQueriesFormat file format used to back up warming queries
+   */
+  public WarmerConfig(
+      int maxWarmingQueries,
+      int warmingParallelism,
+      boolean warmOnStartup,
+      Warmer.FileFormat warmingQueriesFormat) {
+    this(
+        maxWarmingQueries,
+        warmingParallelism,
+        warmOnStartup,
+        warmingQueriesFormat,
+        DEFAULT_MAX_WARMING_TIME_SEC,
+        DEFAULT_WARMING_QUERY_TIMEOUT_SEC);
+  }
+
+  /**
+   * Configuration for warmer.
+   *
+   * @param maxWarmingQueries maximum queries to store for warming
+   * @param warmingParallelism number of parallel queries while warming on startup
+   * @param warmOnStartup if true will try to download queries from S3 and use them to warm
+   * @param warmingQueriesFormat file format used to back up warming queries
+   * @param maxWarmingTimeSec time budget for warming on startup, or 0 for no limit
+   * @param warmingQueryTimeoutSec timeout for each warming query, or 0 for no timeout
+   */
+  public WarmerConfig(
+      int maxWarmingQueries,
+      int warmingParallelism,
+      boolean warmOnStartup,
+      Warmer.FileFormat warmingQueriesFormat,
+      double maxWarmingTimeSec,
+      double warmingQueryTimeoutSec) {
+    this(
+        maxWarmingQueries,
+        warmingParallelism,
+        warmOnStartup,
+        warmingQueriesFormat,
+        maxWarmingTimeSec,
+        warmingQueryTimeoutSec,
+        DEFAULT_WARMING_SHUTDOWN_TIMEOUT_SEC);
+  }
+
+  /**
+   * Configuration for warmer.
+   *
+   * @param maxWarmingQueries maximum queries to store for warming
+   * @param warmingParallelism number of parallel queries while warming on startup
+   * @param warmOnStartup if true will try to download queries from S3 and use them to warm
+   * @param warmingQueriesFormat file format used to back up warming queries
+   * @param maxWarmingTimeSec time budget for warming on startup, or 0 for no limit
+   * @param warmingQueryTimeoutSec timeout for each warming query, or 0 for no timeout
+   * @param warmingShutdownTimeoutSec time to wait for running warming queries to finish after
+   *     warming completes
+   */
+  public WarmerConfig(
+      int maxWarmingQueries,
+      int warmingParallelism,
+      boolean warmOnStartup,
+      Warmer.FileFormat warmingQueriesFormat,
+      double maxWarmingTimeSec,
+      double warmingQueryTimeoutSec,
+      double warmingShutdownTimeoutSec) {
     this.maxWarmingQueries = maxWarmingQueries;
     this.warmingParallelism = warmingParallelism;
     this.warmOnStartup = warmOnStartup;
+    this.warmingQueriesFormat = warmingQueriesFormat;
+    this.maxWarmingTimeSec = maxWarmingTimeSec;
+    this.warmingQueryTimeoutSec = warmingQueryTimeoutSec;
+    this.warmingShutdownTimeoutSec = warmingShutdownTimeoutSec;
   }
 
   public static WarmerConfig fromConfig(YamlConfigReader configReader) {
@@ -47,8 +131,28 @@ public class WarmerConfig {
         configReader.getInteger(CONFIG_PREFIX + "warmingParallelism", DEFAULT_WARMING_PARALLELISM);
     boolean warmOnStartup =
         configReader.getBoolean(CONFIG_PREFIX + "warmOnStartup", DEFAULT_WARM_ON_STARTUP);
+    Warmer.FileFormat warmingQueriesFormat =
+        Warmer.FileFormat.valueOf(
+            configReader
+                .getString(CONFIG_PREFIX + "warmingQueriesFormat", DEFAULT_WARMING_QUERIES_FORMAT)
+                .toUpperCase());
+    double maxWarmingTimeSec =
+        configReader.getDouble(CONFIG_PREFIX + "maxWarmingTimeSec", DEFAULT_MAX_WARMING_TIME_SEC);
+    double warmingQueryTimeoutSec =
+        configReader.getDouble(
+            CONFIG_PREFIX + "warmingQueryTimeoutSec", DEFAULT_WARMING_QUERY_TIMEOUT_SEC);
+    double warmingShutdownTimeoutSec =
+        configReader.getDouble(
+            CONFIG_PREFIX + "warmingShutdownTimeoutSec", DEFAULT_WARMING_SHUTDOWN_TIMEOUT_SEC);
 
-    return new WarmerConfig(maxWarmingQueries, warmingParallelism, warmOnStartup);
+    return new WarmerConfig(
+        maxWarmingQueries,
+        warmingParallelism,
+        warmOnStartup,
+        warmingQueriesFormat,
+        maxWarmingTimeSec,
+        warmingQueryTimeoutSec,
+        warmingShutdownTimeoutSec);
   }
 
   public int getMaxWarmingQueries() {
@@ -62,4 +166,20 @@ public class WarmerConfig {
   public boolean isWarmOnStartup() {
     return warmOnStartup;
   }
+
+  public Warmer.FileFormat getWarmingQueriesFormat() {
+    return warmingQueriesFormat;
+  }
+
+  public double getMaxWarmingTimeSec() {
+    return maxWarmingTimeSec;
+  }
+
+  public double getWarmingQueryTimeoutSec() {
+    return warmingQueryTimeoutSec;
+  }
+
+  public double getWarmingShutdownTimeoutSec() {
+    return warmingShutdownTimeoutSec;
+  }
 }
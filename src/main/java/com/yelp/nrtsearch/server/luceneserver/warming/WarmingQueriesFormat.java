@@ -0,0 +1,285 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.warming;
+
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Compressed binary file format for warming queries. The file starts with a header containing a
+ * magic value and format version, followed by a sequence of chunks. Each chunk contains a number
+ * of length-delimited {@link SearchRequest} messages, compressed as a single LZ4 block. The CRC32
+ * checksum of the uncompressed data is verified when the chunk is decoded:
+ *
+ * <pre>
+ * header: magic (4 bytes) | version (int)
+ * chunk:  num requests (int) | uncompressed length (int) | compressed length (int)
+ *         | checksum (int) | data
+ * </pre>
+ *
+ * <p>Chunks are read sequentially, but can be decompressed and parsed independently, so that
+ * decoding can be done in parallel by the threads running the warming queries.
+ */
+public class WarmingQueriesFormat {
+  static final byte[] MAGIC = new byte[] {'N', 'R', 'T', 'W'};
+  static final int VERSION = 2;
+  // max uncompressed size of a chunk, bounds the memory allocated when reading a chunk
+  static final int MAX_CHUNK_LENGTH = 1 << 26;
+  public static final int DEFAULT_CHUNK_SIZE = 32;
+
+  private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+  private WarmingQueriesFormat() {}
+
+  /**
+   * Write warming queries to a file.
+   *
+   * @param file file to write
+   * @param requests search requests
+   * @param chunkSize max number of requests in each compressed chunk
+   * @return number of requests written
+   * @throws IOException on error writing file
+   */
+  public static int write(Path file, Collection<SearchRequest> requests, int chunkSize)
+      throws IOException {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be > 0");
+    }
+    LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+    int count = 0;
+    try (DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      output.write(MAGIC);
+      output.writeInt(VERSION);
+
+      ByteArrayOutputStream chunkBuffer = new ByteArrayOutputStream();
+      int chunkRequests = 0;
+      for (SearchRequest request : requests) {
+        request.writeDelimitedTo(chunkBuffer);
+        chunkRequests++;
+        count++;
+        if (chunkRequests == chunkSize) {
+          writeChunk(output, compressor, chunkBuffer, chunkRequests);
+          chunkRequests = 0;
+        }
+      }
+      if (chunkRequests > 0) {
+        writeChunk(output, compressor, chunkBuffer, chunkRequests);
+      }
+    }
+    return count;
+  }
+
+  private static void writeChunk(
+      DataOutputStream output,
+      LZ4Compressor compressor,
+      ByteArrayOutputStream chunkBuffer,
+      int numRequests)
+      throws IOException {
+    byte[] data = chunkBuffer.toByteArray();
+    if (data.length > MAX_CHUNK_LENGTH) {
+      throw new IOException(
+          "Warming queries chunk length " + data.length + " exceeds max " + MAX_CHUNK_LENGTH);
+    }
+    byte[] compressed = compressor.compress(data);
+    output.writeInt(numRequests);
+    output.writeInt(data.length);
+    output.writeInt(compressed.length);
+    output.writeInt(checksum(data, data.length));
+    output.write(compressed);
+    chunkBuffer.reset();
+  }
+
+  private static int checksum(byte[] data, int length) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(data, 0, length);
+    return (int) crc32.getValue();
+  }
+
+  private static int maxCompressedLength(int length) {
+    return LZ4_FACTORY.fastCompressor().maxCompressedLength(length);
+  }
+
+  /**
+   * Read all warming queries from a file.
+   *
+   * @param file file to read
+   * @return search requests
+   * @throws IOException on error reading file
+   */
+  public static List<SearchRequest> readAll(Path file) throws IOException {
+    List<SearchRequest> requests = new ArrayList<>();
+    try (ChunkReader reader = new ChunkReader(file)) {
+      Chunk chunk;
+      while ((chunk = reader.next()) != null) {
+        requests.addAll(chunk.decode());
+      }
+    }
+    return requests;
+  }
+
+  /** Sequential reader of the compressed chunks in a warming queries file. */
+  public static class ChunkReader implements Closeable {
+    private final DataInputStream input;
+
+    /**
+     * Open file and validate header.
+     *
+     * @param file file to read
+     * @throws IOException on error reading file, or if the header is invalid
+     */
+    public ChunkReader(Path file) throws IOException {
+      this(Files.newInputStream(file));
+    }
+
+    ChunkReader(InputStream inputStream) throws IOException {
+      this.input = new DataInputStream(new BufferedInputStream(inputStream));
+      try {
+        byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+          throw new IOException("Invalid warming queries file header");
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+          throw new IOException("Unsupported warming queries file version: " + version);
+        }
+      } catch (IOException e) {
+        input.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Read the next chunk from the file. The chunk data is not decompressed.
+     *
+     * @return next chunk, or null if there are no more chunks
+     * @throws IOException on error reading file
+     */
+    public Chunk next() throws IOException {
+      int numRequests;
+      try {
+        numRequests = input.readInt();
+      } catch (EOFException e) {
+        return null;
+      }
+      int uncompressedLength = input.readInt();
+      int compressedLength = input.readInt();
+      if (numRequests < 0
+          || uncompressedLength < 0
+          || uncompressedLength > MAX_CHUNK_LENGTH
+          // each length-delimited request takes at least one byte
+          || numRequests > uncompressedLength
+          || compressedLength < 0
+          || compressedLength > maxCompressedLength(uncompressedLength)) {
+        throw new IOException(
+            "Invalid warming queries chunk, numRequests: "
+                + numRequests
+                + ", uncompressed length: "
+                + uncompressedLength
+                + ", compressed length: "
+                + compressedLength);
+      }
+      int checksum = input.readInt();
+      byte[] compressed = new byte[compressedLength];
+      input.readFully(compressed);
+      return new Chunk(numRequests, uncompressedLength, compressed, checksum);
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  /** Compressed chunk of warming queries. */
+  public static class Chunk {
+    private final int numRequests;
+    private final int uncompressedLength;
+    private final byte[] compressed;
+    private final int checksum;
+
+    Chunk(int numRequests, int uncompressedLength, byte[] compressed, int checksum) {
+      this.numRequests = numRequests;
+      this.uncompressedLength = uncompressedLength;
+      this.compressed = compressed;
+      this.checksum = checksum;
+    }
+
+    /** Get the number of requests in this chunk. */
+    public int getNumRequests() {
+      return numRequests;
+    }
+
+    /**
+     * Decompress and parse the requests in this chunk.
+     *
+     * @return search requests
+     * @throws IOException on error parsing requests, or if the chunk data is corrupt
+     */
+    public List<SearchRequest> decode() throws IOException {
+      LZ4SafeDecompressor decompressor = LZ4_FACTORY.safeDecompressor();
+      byte[] data = new byte[uncompressedLength];
+      int decompressedLength;
+      try {
+        decompressedLength =
+            decompressor.decompress(compressed, 0, compressed.length, data, 0, uncompressedLength);
+      } catch (LZ4Exception e) {
+        throw new IOException("Corrupt warming queries chunk", e);
+      }
+      if (decompressedLength != uncompressedLength) {
+        throw new IOException(
+            "Warming queries chunk decompressed to "
+                + decompressedLength
+                + " bytes, expected "
+                + uncompressedLength);
+      }
+      if (checksum(data, decompressedLength) != checksum) {
+        throw new IOException("Warming queries chunk checksum mismatch");
+      }
+      ByteArrayInputStream dataInput = new ByteArrayInputStream(data);
+      List<SearchRequest> requests = new ArrayList<>();
+      for (int i = 0; i < numRequests; ++i) {
+        SearchRequest request = SearchRequest.parseDelimitedFrom(dataInput);
+        if (request == null) {
+          throw new IOException("Warming queries chunk ended before all requests were read");
+        }
+        requests.add(request);
+      }
+      return requests;
+    }
+  }
+}
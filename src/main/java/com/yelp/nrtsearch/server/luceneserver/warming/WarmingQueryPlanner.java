@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.warming;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prepares stored warming queries for replay. Requests are normalized so that pages of the same
+ * query are replayed once, duplicates are removed, and the remaining requests are ordered so that
+ * queries touching index fields not yet covered by earlier queries run first. When warming
+ * has a time budget, this gets the widest coverage of field data loaded before the budget runs out.
+ */
+public class WarmingQueryPlanner {
+  // default number of hits retrieved when topHits is not set
+  static final int DEFAULT_TOP_HITS = 10;
+  // facet message field containing the facet index field
+  private static final String FACET_DIM = "dim";
+
+  private WarmingQueryPlanner() {}
+
+  /**
+   * Normalize, deduplicate and order warming requests.
+   *
+   * @param requests stored warming requests
+   * @param queryTimeoutSec timeout to apply to each request, or 0 for no timeout
+   * @return requests to replay, in priority order
+   */
+  public static List<SearchRequest> plan(
+      Collection<SearchRequest> requests, double queryTimeoutSec) {
+    List<SearchRequest> deduplicated = deduplicate(requests);
+    List<SearchRequest> ordered = prioritize(deduplicated);
+    if (queryTimeoutSec <= 0) {
+      return ordered;
+    }
+    List<SearchRequest> withTimeout = new ArrayList<>(ordered.size());
+    for (SearchRequest request : ordered) {
+      if (request.getTimeoutSec() > 0 && request.getTimeoutSec() <= queryTimeoutSec) {
+        withTimeout.add(request);
+      } else {
+        withTimeout.add(request.toBuilder().setTimeoutSec(queryTimeoutSec).build());
+      }
+    }
+    return withTimeout;
+  }
+
+  /**
+   * Remove duplicate requests. Requests that only differ in the page of hits they retrieve are
+   * merged into a single request for the first page, retrieving the largest number of hits.
+   *
+   * @param requests stored warming requests
+   * @return deduplicated requests, in order of first occurrence
+   */
+  static List<SearchRequest> deduplicate(Collection<SearchRequest> requests) {
+    Map<SearchRequest, SearchRequest> unique = new LinkedHashMap<>();
+    for (SearchRequest request : requests) {
+      SearchRequest key = request.toBuilder().clearStartHit().clearTopHits().build();
+      SearchRequest normalized =
+          request.getStartHit() == 0 ? request : request.toBuilder().clearStartHit().build();
+      SearchRequest existing = unique.get(key);
+      if (existing == null || getTopHits(normalized) > getTopHits(existing)) {
+        unique.put(key, normalized);
+      }
+    }
+    return new ArrayList<>(unique.values());
+  }
+
+  private static int getTopHits(SearchRequest request) {
+    return request.getTopHits() == 0 ? DEFAULT_TOP_HITS : request.getTopHits();
+  }
+
+  /**
+   * Order requests so that those referencing fields not referenced by any earlier request run
+   * first. Requests are sorted once by the number of fields they reference, then a single pass
+   * moves the requests that add no new fields after the others, keeping the sorted order within
+   * each group.
+   *
+   * @param requests requests to order
+   * @return ordered requests
+   */
+  static List<SearchRequest> prioritize(List<SearchRequest> requests) {
+    List<Set<String>> requestFields = new ArrayList<>(requests.size());
+    List<Integer> sorted = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); ++i) {
+      requestFields.add(getReferencedFields(requests.get(i)));
+      sorted.add(i);
+    }
+    // stable sort, so equal requests keep their stored order
+    sorted.sort(
+        (a, b) -> Integer.compare(requestFields.get(b).size(), requestFields.get(a).size()));
+
+    List<SearchRequest> ordered = new ArrayList<>(requests.size());
+    List<SearchRequest> remaining = new ArrayList<>();
+    Set<String> covered = new HashSet<>();
+    for (int i : sorted) {
+      // addAll is true if any field was not already covered
+      if (covered.addAll(requestFields.get(i))) {
+        ordered.add(requests.get(i));
+      } else {
+        remaining.add(requests.get(i));
+      }
+    }
+    ordered.addAll(remaining);
+    return ordered;
+  }
+
+  /**
+   * Get the names of index fields referenced by a request. This is an approximation based on the
+   * values of all string message fields with 'field' in their name, such as query fields, retrieve
+   * fields and sort fields, and facet dimensions.
+   *
+   * @param request search request
+   * @return referenced field names
+   */
+  static Set<String> getReferencedFields(SearchRequest request) {
+    Set<String> fields = new HashSet<>();
+    collectFields(request, fields);
+    return fields;
+  }
+
+  private static void collectFields(Message message, Set<String> fields) {
+    for (Map.Entry<FieldDescriptor, Object> entry : message.getAllFields().entrySet()) {
+      FieldDescriptor descriptor = entry.getKey();
+      if (descriptor.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+        if (descriptor.isRepeated()) {
+          for (Object value : (List<?>) entry.getValue()) {
+            collectFields((Message) value, fields);
+          }
+        } else {
+          collectFields((Message) entry.getValue(), fields);
+        }
+      } else if (descriptor.getJavaType() == FieldDescriptor.JavaType.STRING
+          && isFieldName(descriptor)) {
+        if (descriptor.isRepeated()) {
+          for (Object value : (List<?>) entry.getValue()) {
+            fields.add((String) value);
+          }
+        } else {
+          fields.add((String) entry.getValue());
+        }
+      }
+    }
+  }
+
+  private static boolean isFieldName(FieldDescriptor descriptor) {
+    String name = descriptor.getName();
+    return name.toLowerCase().contains("field") || FACET_DIM.equals(name);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.monitoring;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/** Class for managing collection of backup compression metrics. */
+public class BackupCompressionMetrics {
+  public static final Counter uncompressedBytes =
+      Counter.build()
+          .name("nrt_backup_compression_uncompressed_bytes")
+          .help("Number of uncompressed bytes compressed or decompressed.")
+          .labelNames("operation", "mode")
+          .create();
+
+  public static final Counter compressedBytes =
+      Counter.build()
+          .name("nrt_backup_compression_compressed_bytes")
+          .help("Number of compressed bytes produced or consumed.")
+          .labelNames("operation", "mode")
+          .create();
+
+  public static final Counter blockTimeMs =
+      Counter.build()
+          .name("nrt_backup_compression_block_time_ms")
+          .help("Total time spent compressing or decompressing blocks, summed over all threads.")
+          .labelNames("operation", "mode")
+          .create();
+
+  public static final Gauge throughputMBPerSec =
+      Gauge.build()
+          .name("nrt_backup_compression_throughput_mb_per_sec")
+          .help("Uncompressed throughput of the most recently completed stream.")
+          .labelNames("operation", "mode")
+          .create();
+
+  /**
+   * Add all backup compression metrics to the collector registry.
+   *
+   * @param registry collector registry
+   */
+  public static void register(CollectorRegistry registry) {
+    registry.register(uncompressedBytes);
+    registry.register(compressedBytes);
+    registry.register(blockTimeMs);
+    registry.register(throughputMBPerSec);
+  }
+}
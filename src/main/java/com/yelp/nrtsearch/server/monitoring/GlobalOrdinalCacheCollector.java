@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.monitoring;
+
+import com.yelp.nrtsearch.server.luceneserver.search.cache.GlobalOrdinalLookupCache;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Class to manage collection of metrics related to the global ordinal lookup cache. */
+public class GlobalOrdinalCacheCollector extends Collector {
+
+  @Override
+  public List<MetricFamilySamples> collect() {
+    GlobalOrdinalLookupCache lookupCache = GlobalOrdinalLookupCache.getInstance();
+
+    List<MetricFamilySamples> mfs = new ArrayList<>();
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_cache_hits",
+            "Total number of global ordinal cache hits.",
+            lookupCache.getHitCount()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_cache_misses",
+            "Total number of global ordinal cache misses.",
+            lookupCache.getMissCount()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_cache_size",
+            "Total number of field global ordinals in cache.",
+            lookupCache.getCacheSize()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_cache_size_bytes",
+            "Estimated memory used by global ordinal cache.",
+            lookupCache.ramBytesUsed()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_cache_eviction_count",
+            "Total number of global ordinal cache evictions.",
+            lookupCache.getEvictionCount()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_cache_invalidation_count",
+            "Total number of global ordinal cache entries removed when the index reader closed.",
+            lookupCache.getInvalidationCount()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_cache_latest_map_eviction_count",
+            "Total number of retained ordinal maps dropped to stay within the memory limit.",
+            lookupCache.getLatestMapEvictionCount()));
+
+    GaugeMetricFamily builds =
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_builds",
+            "Total number of global ordinal builds, by type.",
+            List.of("type"));
+    builds.addMetric(List.of("full"), lookupCache.getFullBuildCount());
+    builds.addMetric(List.of("incremental"), lookupCache.getIncrementalBuildCount());
+    builds.addMetric(List.of("reused"), lookupCache.getReusedBuildCount());
+    mfs.add(builds);
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_reused_segments",
+            "Total number of segment ordinal mappings reused from the previous index reader.",
+            lookupCache.getReusedSegmentCount()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_global_ordinal_build_time_ms",
+            "Total time spent building global ordinals.",
+            lookupCache.getBuildTimeNanos() / 1000000.0));
+    return mfs;
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.yelp.nrtsearch.server.monitoring;
 
+import com.yelp.nrtsearch.server.luceneserver.index.StoredFieldsSizeCodec;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
@@ -80,6 +81,18 @@ public class IndexMetrics {
           .help("Quantiles of documents per slice.")
           .labelNames("index", "quantile")
           .create();
+  public static final Gauge storedFieldsSizeBytes =
+      Gauge.build()
+          .name("nrt_index_stored_fields_size_bytes")
+          .help("Compressed size of stored fields in index segments that record their size.")
+          .labelNames("index")
+          .create();
+  public static final Gauge storedFieldsRawBytes =
+      Gauge.build()
+          .name("nrt_index_stored_fields_raw_bytes")
+          .help("Uncompressed size of stored fields in index segments that record their size.")
+          .labelNames("index")
+          .create();
   public static final Counter flushCount =
       Counter.build()
           .name("nrt_index_flush_count")
@@ -108,10 +121,21 @@ public class IndexMetrics {
         // This type assumption is the same made by the nrt PrimaryNode class
         SegmentInfos infos = ((StandardDirectoryReader) reader).getSegmentInfos();
         long indexSize = 0;
+        long storedFieldsSize = 0;
+        long storedFieldsRawSize = 0;
         for (SegmentCommitInfo info : infos) {
           indexSize += info.sizeInBytes();
+          // only count segments with both sizes, so the gauges are for the same segments
+          long compressedBytes = StoredFieldsSizeCodec.getCompressedBytes(info.info);
+          long rawBytes = StoredFieldsSizeCodec.getRawBytes(info.info);
+          if (compressedBytes >= 0 && rawBytes >= 0) {
+            storedFieldsSize += compressedBytes;
+            storedFieldsRawSize += rawBytes;
+          }
         }
         sizeBytes.labels(index).set(indexSize);
+        storedFieldsSizeBytes.labels(index).set(storedFieldsSize);
+        storedFieldsRawBytes.labels(index).set(storedFieldsRawSize);
       } catch (Exception ignored) {
         // don't let an exception here stop creation of a new searcher
       }
@@ -167,6 +191,8 @@ public class IndexMetrics {
     registry.register(numSlices);
     registry.register(sliceSegments);
     registry.register(sliceDocs);
+    registry.register(storedFieldsSizeBytes);
+    registry.register(storedFieldsRawBytes);
     registry.register(flushCount);
   }
 
@@ -18,11 +18,12 @@ package com.yelp.nrtsearch.server.monitoring;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
 import io.prometheus.client.Summary;
 
 /**
  * Class for managing collection of nrt related metrics. Collects metrics on publishing of new nrt
- * points and pre copying merged segments.
+ * points, pre copying merged segments, and searcher refreshes.
  */
 public class NrtMetrics {
   public static final Gauge searcherVersion =
@@ -38,6 +39,25 @@ public class NrtMetrics {
           .help("Number of nrt points created on the primary.")
           .labelNames("index")
           .create();
+  public static final Histogram nrtPointNotifyTime =
+      Histogram.build()
+          .name("nrt_point_notify_time_ms")
+          .help("Time for a replica to acknowledge a new nrt point notification (ms).")
+          .buckets(1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000)
+          .labelNames("index", "replica")
+          .create();
+  public static final Counter nrtPointNotifyFailure =
+      Counter.build()
+          .name("nrt_point_notify_failure_count")
+          .help("Number of failed new nrt point notifications to replicas.")
+          .labelNames("index", "replica")
+          .create();
+  public static final Counter nrtPointNotifySkipped =
+      Counter.build()
+          .name("nrt_point_notify_skipped_count")
+          .help("Number of replicas not notified of a new nrt point (in_flight, quarantined).")
+          .labelNames("index", "reason")
+          .create();
   public static final Summary nrtPrimaryMergeTime =
       Summary.build()
           .name("nrt_primary_merge_time_ms")
@@ -98,6 +118,53 @@ public class NrtMetrics {
           .labelNames("index")
           .create();
 
+  public static final Summary nrtCopyJobThroughput =
+      Summary.build()
+          .name("nrt_copy_job_throughput_mb_per_sec")
+          .help("Data copy throughput of completed replica copy jobs (MB/s).")
+          .quantile(0.5, 0.05)
+          .quantile(0.95, 0.01)
+          .quantile(0.99, 0.01)
+          .labelNames("index")
+          .create();
+  public static final Gauge nrtCopyInFlightFiles =
+      Gauge.build()
+          .name("nrt_copy_in_flight_files")
+          .help("Number of files currently being received concurrently by replica copy jobs.")
+          .labelNames("index")
+          .create();
+
+  public static final Counter refreshDecisions =
+      Counter.build()
+          .name("nrt_refresh_decision_count")
+          .help("Number of refresh thread decisions (scheduled, waiting, skip).")
+          .labelNames("index", "decision")
+          .create();
+  public static final Summary refreshTime =
+      Summary.build()
+          .name("nrt_refresh_time_ms")
+          .help("Time to refresh searcher, including warming (ms).")
+          .quantile(0.5, 0.05)
+          .quantile(0.95, 0.01)
+          .quantile(0.99, 0.01)
+          .labelNames("index")
+          .create();
+  public static final Summary refreshLag =
+      Summary.build()
+          .name("nrt_refresh_lag_ms")
+          .help("Max time index changes waited before becoming visible to search (ms).")
+          .quantile(0.5, 0.05)
+          .quantile(0.95, 0.01)
+          .quantile(0.99, 0.01)
+          .labelNames("index")
+          .create();
+  public static final Gauge refreshIntervalSec =
+      Gauge.build()
+          .name("nrt_refresh_interval_sec")
+          .help("Current interval between searcher refreshes (sec).")
+          .labelNames("index")
+          .create();
+
   /**
    * Add all nrt metrics to the collector registry.
    *
@@ -106,6 +173,9 @@ public class NrtMetrics {
   public static void register(CollectorRegistry registry) {
     registry.register(searcherVersion);
     registry.register(nrtPrimaryPointCount);
+    registry.register(nrtPointNotifyTime);
+    registry.register(nrtPointNotifyFailure);
+    registry.register(nrtPointNotifySkipped);
     registry.register(nrtPrimaryMergeTime);
     registry.register(nrtPointFailure);
     registry.register(nrtPointSize);
@@ -113,5 +183,11 @@ public class NrtMetrics {
     registry.register(nrtMergeFailure);
     registry.register(nrtMergeSize);
     registry.register(nrtMergeTime);
+    registry.register(nrtCopyJobThroughput);
+    registry.register(nrtCopyInFlightFiles);
+    registry.register(refreshDecisions);
+    registry.register(refreshTime);
+    registry.register(refreshLag);
+    registry.register(refreshIntervalSec);
   }
 }
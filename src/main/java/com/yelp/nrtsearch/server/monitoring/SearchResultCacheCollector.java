@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.monitoring;
+
+import com.yelp.nrtsearch.server.luceneserver.search.cache.SearchResultCache;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Class to manage collection of metrics related to the search result cache. */
+public class SearchResultCacheCollector extends Collector {
+
+  @Override
+  public List<MetricFamilySamples> collect() {
+    SearchResultCache resultCache = SearchResultCache.getInstance();
+    if (resultCache == null) {
+      return Collections.emptyList();
+    }
+
+    List<MetricFamilySamples> mfs = new ArrayList<>();
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_search_result_cache_hits",
+            "Total number of search result cache hits.",
+            resultCache.getHitCount()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_search_result_cache_misses",
+            "Total number of search result cache misses.",
+            resultCache.getMissCount()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_search_result_cache_size",
+            "Total number of entries in search result cache.",
+            resultCache.getCacheSize()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_search_result_cache_size_bytes",
+            "Estimated memory used by search result cache.",
+            resultCache.ramBytesUsed()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_search_result_cache_eviction_count",
+            "Total number of search result cache evictions.",
+            resultCache.getEvictionCount()));
+    mfs.add(
+        new GaugeMetricFamily(
+            "nrt_search_result_cache_invalidation_count",
+            "Total number of search result cache entries removed when the index reader closed.",
+            resultCache.getInvalidationCount()));
+    return mfs;
+  }
+}
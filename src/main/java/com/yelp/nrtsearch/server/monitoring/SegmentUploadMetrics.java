@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.monitoring;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/** Class for managing collection of background segment upload metrics. */
+public class SegmentUploadMetrics {
+  public static final Gauge backlogFiles =
+      Gauge.build()
+          .name("nrt_segment_upload_backlog_files")
+          .help("Number of segment files waiting for, or in the middle of, background upload.")
+          .labelNames("index")
+          .create();
+
+  public static final Gauge backlogBytes =
+      Gauge.build()
+          .name("nrt_segment_upload_backlog_bytes")
+          .help("Size of segment files waiting for, or in the middle of, background upload.")
+          .labelNames("index")
+          .create();
+
+  public static final Counter uploads =
+      Counter.build()
+          .name("nrt_segment_upload_count")
+          .help("Number of background segment file uploads, by result.")
+          .labelNames("index", "result")
+          .create();
+
+  public static final Counter preUploadedFiles =
+      Counter.build()
+          .name("nrt_segment_upload_pre_uploaded_count")
+          .help("Number of files in backed up commits that were uploaded ahead of the commit.")
+          .labelNames("index")
+          .create();
+
+  /**
+   * Add all background segment upload metrics to the collector registry.
+   *
+   * @param registry collector registry
+   */
+  public static void register(CollectorRegistry registry) {
+    registry.register(backlogFiles);
+    registry.register(backlogBytes);
+    registry.register(uploads);
+    registry.register(preUploadedFiles);
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.yelp.nrtsearch.server.monitoring;
 
+import com.yelp.nrtsearch.server.utils.VirtualThreadPoolExecutor;
 import io.prometheus.client.Collector;
 import io.prometheus.client.Counter;
 import io.prometheus.client.GaugeMetricFamily;
@@ -29,7 +30,8 @@ import java.util.concurrent.ThreadPoolExecutor;
 /**
  * Collector implementation to gather metrics for {@link ThreadPoolExecutor}. Records thread and
  * queue usage, as well as rejection count. Executors must be added with {@link #addPool(String,
- * ThreadPoolExecutor)}.
+ * ThreadPoolExecutor)}. For a {@link VirtualThreadPoolExecutor}, the concurrency limit is reported
+ * as the pool size, and tasks waiting for a permit are reported as queued.
  */
 public class ThreadPoolCollector extends Collector {
 
@@ -97,6 +99,17 @@ public class ThreadPoolCollector extends Collector {
 
     for (Map.Entry<String, ThreadPoolExecutor> entry : pools.entrySet()) {
       List<String> poolLabel = Collections.singletonList(entry.getKey());
+      if (entry.getValue() instanceof VirtualThreadPoolExecutor) {
+        // report the concurrency limit as the pool size, and tasks waiting for a permit as queued
+        VirtualThreadPoolExecutor executor = (VirtualThreadPoolExecutor) entry.getValue();
+        poolSize.addMetric(poolLabel, executor.getConcurrency());
+        poolMax.addMetric(poolLabel, executor.getConcurrency());
+        poolActive.addMetric(poolLabel, executor.getRunningCount());
+        poolTasks.addMetric(poolLabel, executor.getTaskCount());
+        poolQueueSize.addMetric(poolLabel, executor.getWaitingCount());
+        poolQueueRemaining.addMetric(poolLabel, executor.getRemainingCapacity());
+        continue;
+      }
       poolSize.addMetric(poolLabel, entry.getValue().getPoolSize());
       poolMax.addMetric(poolLabel, entry.getValue().getMaximumPoolSize());
       poolActive.addMetric(poolLabel, entry.getValue().getActiveCount());
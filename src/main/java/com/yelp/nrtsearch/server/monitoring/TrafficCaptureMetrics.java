@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.monitoring;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+
+/** Class for managing collection of request traffic capture metrics. */
+public class TrafficCaptureMetrics {
+  public static final Counter capturedRecords =
+      Counter.build()
+          .name("nrt_traffic_capture_record_count")
+          .help("Number of request records queued for capture.")
+          .labelNames("type")
+          .create();
+
+  public static final Counter droppedRecords =
+      Counter.build()
+          .name("nrt_traffic_capture_dropped_count")
+          .help("Number of request records dropped because the capture queue was full.")
+          .labelNames("type")
+          .create();
+
+  /**
+   * Add all traffic capture metrics to the collector registry.
+   *
+   * @param registry collector registry
+   */
+  public static void register(CollectorRegistry registry) {
+    registry.register(capturedRecords);
+    registry.register(droppedRecords);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.monitoring;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/** Class for managing collection of metrics for index warming from stored queries. */
+public class WarmingMetrics {
+  public static final Gauge warmingPhaseTime =
+      Gauge.build()
+          .name("nrt_warming_phase_time_ms")
+          .help("Time taken by each phase of the last index warming (ms).")
+          .labelNames("index", "phase")
+          .create();
+
+  public static final Counter warmingQueries =
+      Counter.build()
+          .name("nrt_warming_query_count")
+          .help("Number of warming queries, by result.")
+          .labelNames("index", "result")
+          .create();
+
+  /**
+   * Add all warming metrics to the collector registry.
+   *
+   * @param registry collector registry
+   */
+  public static void register(CollectorRegistry registry) {
+    registry.register(warmingPhaseTime);
+    registry.register(warmingQueries);
+  }
+}
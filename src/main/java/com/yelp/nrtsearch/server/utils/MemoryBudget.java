@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.utils;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Memory limit shared by the consumers of a restore, such as buffered download parts and extracted
+ * file data waiting to be written. Consumers that cannot wait for memory, because waiting could
+ * stall the consumer that frees it, use {@link #tryReserve(long)} and fall back to another strategy
+ * when the budget is exhausted.
+ */
+public class MemoryBudget {
+  private final long maxBytes;
+  private long usedBytes;
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes max number of bytes that may be reserved
+   */
+  public MemoryBudget(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be > 0");
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Reserve memory if it is available, without waiting.
+   *
+   * @param bytes number of bytes
+   * @return if the memory was reserved
+   */
+  public synchronized boolean tryReserve(long bytes) {
+    if (usedBytes + bytes > maxBytes) {
+      return false;
+    }
+    usedBytes += bytes;
+    return true;
+  }
+
+  /**
+   * Reserve memory, waiting for it to be released while the given condition is true. Once the
+   * condition is false, the memory is reserved even if that exceeds the budget. The condition is
+   * checked each time memory is released, and must only change before a call to {@link
+   * #release(long)}.
+   *
+   * @param bytes number of bytes
+   * @param canWait if memory held by others will be released without action by the caller
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public synchronized void reserve(long bytes, BooleanSupplier canWait)
+      throws InterruptedException {
+    while (usedBytes + bytes > maxBytes && canWait.getAsBoolean()) {
+      wait();
+    }
+    usedBytes += bytes;
+  }
+
+  /**
+   * Release reserved memory.
+   *
+   * @param bytes number of bytes
+   */
+  public synchronized void release(long bytes) {
+    usedBytes -= bytes;
+    notifyAll();
+  }
+
+  /** Get the number of bytes currently reserved. */
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /** Get the max number of bytes that may be reserved. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+}
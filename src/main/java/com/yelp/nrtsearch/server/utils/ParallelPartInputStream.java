@@ -0,0 +1,309 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Input stream over the concatenation of the parts of an object, which drains parts concurrently.
+ * Up to a configurable number of parts ahead of the reader are downloaded at once, each fully read
+ * into memory chunks by an executor thread. Memory used by buffered parts is bounded by a {@link
+ * MemoryBudget}, which may be shared with other restore consumers. A part that does not fit in the
+ * remaining memory is spilled to a temporary file instead. Buffer threads
+ * never wait for memory, so the part needed by the reader always makes progress. Memory is
+ * released as the reader consumes each chunk, and spill files are deleted once their part is
+ * consumed.
+ */
+public class ParallelPartInputStream extends InputStream {
+  private static final Logger logger = LoggerFactory.getLogger(ParallelPartInputStream.class);
+  private static final int CHUNK_SIZE = 1024 * 1024;
+  private static final long STATUS_INTERVAL_MS = 5000;
+
+  /** Opens the content stream of an object part. */
+  @FunctionalInterface
+  public interface PartOpener {
+    /**
+     * Open stream for part content.
+     *
+     * @param partNumber part number, starting at 1
+     * @return part content stream
+     * @throws IOException on error opening part
+     */
+    InputStream open(int partNumber) throws IOException;
+  }
+
+  private final int numParts;
+  private final PartOpener partOpener;
+  private final ExecutorService executor;
+  private final int partConcurrency;
+  private final MemoryBudget memoryBudget;
+  private final Path spillDirectory;
+  private final AtomicLong bufferedBytes = new AtomicLong();
+  private final Deque<Future<BufferedPart>> pendingParts = new ArrayDeque<>();
+
+  private int queuedPart = 1;
+  private int currentPart = 0;
+  private BufferedPart current;
+  private long lastStatusTimeMs = System.currentTimeMillis();
+  private volatile boolean closed;
+
+  /**
+   * Constructor. Starts buffering the first parts.
+   *
+   * @param numParts number of object parts
+   * @param partOpener opens part content streams
+   * @param executor executor to buffer parts
+   * @param partConcurrency max number of parts buffered ahead of the reader
+   * @param memoryBudget memory limit for buffered parts
+   * @param spillDirectory directory for temporary files of parts that do not fit in memory
+   */
+  public ParallelPartInputStream(
+      int numParts,
+      PartOpener partOpener,
+      ExecutorService executor,
+      int partConcurrency,
+      MemoryBudget memoryBudget,
+      Path spillDirectory) {
+    if (partConcurrency <= 0) {
+      throw new IllegalArgumentException("partConcurrency must be > 0");
+    }
+    this.numParts = numParts;
+    this.partOpener = partOpener;
+    this.executor = executor;
+    this.partConcurrency = partConcurrency;
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = spillDirectory;
+    queueParts();
+  }
+
+  /** Get the number of bytes currently buffered in memory by this stream. */
+  public long getBufferedBytes() {
+    return bufferedBytes.get();
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int read = read(b, 0, 1);
+    return read < 0 ? -1 : b[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (len == 0) {
+      return 0;
+    }
+    while (true) {
+      if (current != null) {
+        int read = current.read(b, off, len);
+        if (read > 0) {
+          return read;
+        }
+        current.close();
+        current = null;
+      }
+      if (!nextPart()) {
+        return -1;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (current != null) {
+      current.close();
+      current = null;
+    }
+    for (Future<BufferedPart> future : pendingParts) {
+      if (future.isDone() && !future.isCancelled()) {
+        try {
+          future.get().close();
+        } catch (InterruptedException | ExecutionException ignored) {
+          // part failed, nothing to release
+        }
+      } else {
+        future.cancel(true);
+      }
+    }
+    pendingParts.clear();
+  }
+
+  private void queueParts() {
+    while (pendingParts.size() < partConcurrency && queuedPart <= numParts) {
+      final int part = queuedPart;
+      pendingParts.add(executor.submit(() -> bufferPart(part)));
+      queuedPart++;
+    }
+  }
+
+  private boolean nextPart() throws IOException {
+    if (pendingParts.isEmpty()) {
+      return false;
+    }
+    Future<BufferedPart> future = pendingParts.poll();
+    queueParts();
+
+    long currentTimeMs = System.currentTimeMillis();
+    if (currentTimeMs - lastStatusTimeMs > STATUS_INTERVAL_MS) {
+      double percentCompleted = 100.0 * currentPart / ((double) numParts);
+      logger.info(
+          String.format(
+              "Download status: %.2f%%, buffered bytes: %d",
+              percentCompleted, bufferedBytes.get()));
+      lastStatusTimeMs = currentTimeMs;
+    }
+
+    try {
+      current = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while downloading file part", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Error downloading file part", e.getCause());
+    }
+    currentPart++;
+    return true;
+  }
+
+  private boolean reserve(long bytes) {
+    if (memoryBudget.tryReserve(bytes)) {
+      bufferedBytes.addAndGet(bytes);
+      return true;
+    }
+    return false;
+  }
+
+  private void release(long bytes) {
+    bufferedBytes.addAndGet(-bytes);
+    memoryBudget.release(bytes);
+  }
+
+  private BufferedPart bufferPart(int part) throws IOException {
+    BufferedPart bufferedPart = new BufferedPart();
+    try (InputStream partStream = partOpener.open(part)) {
+      while (true) {
+        if (!reserve(CHUNK_SIZE)) {
+          bufferedPart.spillFile =
+              Files.createTempFile(spillDirectory, "part-" + part + "-", ".tmp");
+          try (OutputStream spillStream =
+              new BufferedOutputStream(Files.newOutputStream(bufferedPart.spillFile))) {
+            partStream.transferTo(spillStream);
+          }
+          logger.debug("Spilled part {} to {}", part, bufferedPart.spillFile);
+          break;
+        }
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int read = partStream.readNBytes(chunk, 0, CHUNK_SIZE);
+        if (read < CHUNK_SIZE) {
+          release(CHUNK_SIZE - read);
+          if (read > 0) {
+            bufferedPart.chunks.add(Arrays.copyOf(chunk, read));
+          }
+          break;
+        }
+        bufferedPart.chunks.add(chunk);
+      }
+    } catch (Throwable t) {
+      bufferedPart.close();
+      throw t;
+    }
+    if (closed) {
+      // stream was closed while this part was buffering
+      bufferedPart.close();
+    }
+    return bufferedPart;
+  }
+
+  /** Part content buffered in memory chunks, followed by an optional spill file. */
+  private class BufferedPart implements Closeable {
+    private final List<byte[]> chunks = new ArrayList<>();
+    private Path spillFile;
+    private InputStream spillStream;
+    private int chunkIndex;
+    private int chunkPos;
+    private boolean partClosed;
+
+    private int read(byte[] b, int off, int len) throws IOException {
+      while (chunkIndex < chunks.size()) {
+        byte[] chunk = chunks.get(chunkIndex);
+        if (chunkPos < chunk.length) {
+          int toCopy = Math.min(len, chunk.length - chunkPos);
+          System.arraycopy(chunk, chunkPos, b, off, toCopy);
+          chunkPos += toCopy;
+          return toCopy;
+        }
+        // release consumed chunk
+        chunks.set(chunkIndex, null);
+        release(chunk.length);
+        chunkIndex++;
+        chunkPos = 0;
+      }
+      if (spillFile == null) {
+        return -1;
+      }
+      if (spillStream == null) {
+        spillStream = new BufferedInputStream(Files.newInputStream(spillFile));
+      }
+      return spillStream.read(b, off, len);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (partClosed) {
+        return;
+      }
+      partClosed = true;
+      for (int i = chunkIndex; i < chunks.size(); ++i) {
+        byte[] chunk = chunks.get(i);
+        if (chunk != null) {
+          release(chunk.length);
+          chunks.set(i, null);
+        }
+      }
+      if (spillStream != null) {
+        spillStream.close();
+      }
+      if (spillFile != null) {
+        Files.deleteIfExists(spillFile);
+      }
+    }
+  }
+}
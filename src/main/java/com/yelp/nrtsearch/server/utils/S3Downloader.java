@@ -22,6 +22,7 @@ import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.yelp.nrtsearch.server.config.RestoreConfig;
 import java.io.Closeable;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
@@ -41,20 +42,24 @@ public class S3Downloader implements Closeable {
 
   private final ThreadPoolExecutor executor;
   private final AmazonS3 s3;
+  private final RestoreConfig restoreConfig;
 
   public S3Downloader(AmazonS3 s3) {
-    this.s3 = s3;
-    this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(NUM_S3_THREADS);
+    this(s3, (ThreadPoolExecutor) Executors.newFixedThreadPool(NUM_S3_THREADS));
   }
 
   public S3Downloader(AmazonS3 s3, int numS3Threads) {
-    this.s3 = s3;
-    this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(numS3Threads);
+    this(s3, (ThreadPoolExecutor) Executors.newFixedThreadPool(numS3Threads));
   }
 
   public S3Downloader(AmazonS3 s3, ThreadPoolExecutor executor) {
+    this(s3, executor, RestoreConfig.defaultConfig());
+  }
+
+  public S3Downloader(AmazonS3 s3, ThreadPoolExecutor executor, RestoreConfig restoreConfig) {
     this.s3 = s3;
     this.executor = executor;
+    this.restoreConfig = restoreConfig;
   }
 
   /**
@@ -105,9 +110,21 @@ public class S3Downloader implements Closeable {
   }
 
   private InputStream getObjectStream(String bucketName, String key, int numParts) {
-    // enumerate the individual part streams and return a combined view
-    Enumeration<InputStream> objectEnum = getObjectEnum(bucketName, key, numParts);
-    return new SequenceInputStream(objectEnum);
+    if (!restoreConfig.isParallelDownload()) {
+      // enumerate the individual part streams and return a combined view
+      Enumeration<InputStream> objectEnum = getObjectEnum(bucketName, key, numParts);
+      return new SequenceInputStream(objectEnum);
+    }
+    // drain the individual parts concurrently and return a combined view
+    return new ParallelPartInputStream(
+        numParts,
+        part ->
+            s3.getObject(new GetObjectRequest(bucketName, key).withPartNumber(part))
+                .getObjectContent(),
+        executor,
+        restoreConfig.getPartConcurrency(),
+        restoreConfig.getMemoryBudget(),
+        restoreConfig.getSpillPath());
   }
 
   private Enumeration<InputStream> getObjectEnum(String bucketName, String key, int numParts) {
@@ -16,6 +16,7 @@
 package com.yelp.nrtsearch.server.utils;
 
 import com.yelp.nrtsearch.server.config.ThreadPoolConfiguration;
+import com.yelp.nrtsearch.server.config.ThreadPoolConfiguration.ExecutorMode;
 import com.yelp.nrtsearch.server.monitoring.ThreadPoolCollector;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -34,7 +35,9 @@ public class ThreadPoolExecutorFactory {
     INDEX,
     LUCENESERVER,
     REPLICATIONSERVER,
-    FETCH
+    FETCH,
+    DOC_PARSING,
+    SEARCH_STREAM
   }
 
   private static final Logger logger =
@@ -47,84 +50,75 @@ public class ThreadPoolExecutorFactory {
    */
   public static ThreadPoolExecutor getThreadPoolExecutor(
       ExecutorType executorType, ThreadPoolConfiguration threadPoolConfiguration) {
-    ThreadPoolExecutor threadPoolExecutor;
+    String name;
+    int threads;
+    int bufferedItems;
+    ExecutorMode executorMode;
+    int virtualConcurrency;
     if (executorType.equals(ExecutorType.SEARCH)) {
-      logger.info(
-          "Creating LuceneSearchExecutor of size "
-              + threadPoolConfiguration.getMaxSearchingThreads());
-      BlockingQueue<Runnable> docsToIndex =
-          new LinkedBlockingQueue<Runnable>(threadPoolConfiguration.getMaxSearchBufferedItems());
-      // same as Executors.newFixedThreadPool except we want a NamedThreadFactory instead of
-      // defaultFactory
-      threadPoolExecutor =
-          new ThreadPoolExecutor(
-              threadPoolConfiguration.getMaxSearchingThreads(),
-              threadPoolConfiguration.getMaxSearchingThreads(),
-              0,
-              TimeUnit.SECONDS,
-              docsToIndex,
-              new NamedThreadFactory("LuceneSearchExecutor"));
-
+      name = "LuceneSearchExecutor";
+      threads = threadPoolConfiguration.getMaxSearchingThreads();
+      bufferedItems = threadPoolConfiguration.getMaxSearchBufferedItems();
+      executorMode = threadPoolConfiguration.getSearchExecutorMode();
+      virtualConcurrency = threadPoolConfiguration.getSearchVirtualConcurrency();
     } else if (executorType.equals(ExecutorType.INDEX)) {
-      logger.info(
-          "Creating LuceneIndexingExecutor of size "
-              + threadPoolConfiguration.getMaxIndexingThreads());
-      BlockingQueue<Runnable> docsToIndex =
-          new LinkedBlockingQueue<Runnable>(threadPoolConfiguration.getMaxIndexingBufferedItems());
-      threadPoolExecutor =
-          new ThreadPoolExecutor(
-              threadPoolConfiguration.getMaxIndexingThreads(),
-              threadPoolConfiguration.getMaxIndexingThreads(),
-              0,
-              TimeUnit.SECONDS,
-              docsToIndex,
-              new NamedThreadFactory("LuceneIndexingExecutor"));
+      name = "LuceneIndexingExecutor";
+      threads = threadPoolConfiguration.getMaxIndexingThreads();
+      bufferedItems = threadPoolConfiguration.getMaxIndexingBufferedItems();
+      executorMode = threadPoolConfiguration.getIndexingExecutorMode();
+      virtualConcurrency = threadPoolConfiguration.getIndexingVirtualConcurrency();
     } else if (executorType.equals(ExecutorType.LUCENESERVER)) {
-      logger.info(
-          "Creating GrpcLuceneServerExecutor of size "
-              + threadPoolConfiguration.getMaxGrpcLuceneserverThreads());
-      BlockingQueue<Runnable> docsToIndex =
-          new LinkedBlockingQueue<Runnable>(
-              threadPoolConfiguration.getMaxGrpcLuceneserverBufferedItems());
-      threadPoolExecutor =
-          new ThreadPoolExecutor(
-              threadPoolConfiguration.getMaxGrpcLuceneserverThreads(),
-              threadPoolConfiguration.getMaxGrpcLuceneserverThreads(),
-              0,
-              TimeUnit.SECONDS,
-              docsToIndex,
-              new NamedThreadFactory("GrpcLuceneServerExecutor"));
+      name = "GrpcLuceneServerExecutor";
+      threads = threadPoolConfiguration.getMaxGrpcLuceneserverThreads();
+      bufferedItems = threadPoolConfiguration.getMaxGrpcLuceneserverBufferedItems();
+      executorMode = threadPoolConfiguration.getGrpcLuceneserverExecutorMode();
+      virtualConcurrency = threadPoolConfiguration.getGrpcLuceneserverVirtualConcurrency();
     } else if (executorType.equals(ExecutorType.REPLICATIONSERVER)) {
-      logger.info(
-          "Creating GrpcReplicationServerExecutor of size "
-              + threadPoolConfiguration.getMaxGrpcReplicationserverThreads());
-      BlockingQueue<Runnable> docsToIndex =
-          new LinkedBlockingQueue<Runnable>(
-              threadPoolConfiguration.getMaxGrpcReplicationserverBufferedItems());
-      threadPoolExecutor =
-          new ThreadPoolExecutor(
-              threadPoolConfiguration.getMaxGrpcReplicationserverThreads(),
-              threadPoolConfiguration.getMaxGrpcReplicationserverThreads(),
-              0,
-              TimeUnit.SECONDS,
-              docsToIndex,
-              new NamedThreadFactory("GrpcReplicationServerExecutor"));
+      name = "GrpcReplicationServerExecutor";
+      threads = threadPoolConfiguration.getMaxGrpcReplicationserverThreads();
+      bufferedItems = threadPoolConfiguration.getMaxGrpcReplicationserverBufferedItems();
+      executorMode = threadPoolConfiguration.getGrpcReplicationserverExecutorMode();
+      virtualConcurrency = threadPoolConfiguration.getGrpcReplicationserverVirtualConcurrency();
     } else if (executorType.equals(ExecutorType.FETCH)) {
-      logger.info(
-          "Creating LuceneFetchExecutor of size " + threadPoolConfiguration.getMaxFetchThreads());
-      BlockingQueue<Runnable> docsToIndex =
-          new LinkedBlockingQueue<Runnable>(threadPoolConfiguration.getMaxSearchBufferedItems());
-      threadPoolExecutor =
-          new ThreadPoolExecutor(
-              threadPoolConfiguration.getMaxFetchThreads(),
-              threadPoolConfiguration.getMaxFetchThreads(),
-              0,
-              TimeUnit.SECONDS,
-              docsToIndex,
-              new NamedThreadFactory("LuceneFetchExecutor"));
+      name = "LuceneFetchExecutor";
+      threads = threadPoolConfiguration.getMaxFetchThreads();
+      bufferedItems = threadPoolConfiguration.getMaxSearchBufferedItems();
+      executorMode = threadPoolConfiguration.getFetchExecutorMode();
+      virtualConcurrency = threadPoolConfiguration.getFetchVirtualConcurrency();
+    } else if (executorType.equals(ExecutorType.DOC_PARSING)) {
+      name = "LuceneDocParsingExecutor";
+      threads = threadPoolConfiguration.getMaxDocParsingThreads();
+      bufferedItems = threadPoolConfiguration.getMaxDocParsingBufferedItems();
+      executorMode = threadPoolConfiguration.getDocParsingExecutorMode();
+      virtualConcurrency = threadPoolConfiguration.getDocParsingVirtualConcurrency();
+    } else if (executorType.equals(ExecutorType.SEARCH_STREAM)) {
+      name = "SearchStreamExecutor";
+      threads = threadPoolConfiguration.getMaxSearchStreamThreads();
+      bufferedItems = threadPoolConfiguration.getMaxSearchStreamBufferedItems();
+      executorMode = threadPoolConfiguration.getSearchStreamExecutorMode();
+      virtualConcurrency = threadPoolConfiguration.getSearchStreamVirtualConcurrency();
     } else {
       throw new RuntimeException("Invalid executor type provided " + executorType.toString());
     }
+
+    ThreadPoolExecutor threadPoolExecutor;
+    if (executorMode == ExecutorMode.VIRTUAL && !VirtualThreadPoolExecutor.isSupported()) {
+      logger.warn(
+          "Virtual threads not supported by runtime, using platform thread executor for " + name);
+      executorMode = ExecutorMode.PLATFORM;
+    }
+    if (executorMode == ExecutorMode.VIRTUAL) {
+      logger.info("Creating virtual thread " + name + " with concurrency " + virtualConcurrency);
+      threadPoolExecutor = new VirtualThreadPoolExecutor(name, virtualConcurrency, bufferedItems);
+    } else {
+      logger.info("Creating " + name + " of size " + threads);
+      BlockingQueue<Runnable> taskQueue = new LinkedBlockingQueue<Runnable>(bufferedItems);
+      // same as Executors.newFixedThreadPool except we want a NamedThreadFactory instead of
+      // defaultFactory
+      threadPoolExecutor =
+          new ThreadPoolExecutor(
+              threads, threads, 0, TimeUnit.SECONDS, taskQueue, new NamedThreadFactory(name));
+    }
     ThreadPoolCollector.addPool(executorType.name(), threadPoolExecutor);
     return threadPoolExecutor;
   }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadPoolExecutor} that runs every task on its own thread, and limits the number of
+ * concurrently running tasks with a {@link Semaphore} instead of a fixed number of threads. Tasks
+ * blocked waiting for a permit do not occupy a running slot, and tasks that block while running
+ * (such as waiting for an nrt generation) do not hold up the task queue.
+ *
+ * <p>Threads are virtual threads, which requires runtime support (java 21+), see {@link
+ * #isSupported()}. Since virtual threads are cheap, the concurrency limit is expected to be much
+ * larger than the size of an equivalent platform thread pool. The number of tasks either running
+ * or waiting for a permit is limited to concurrency + maxBufferedItems, further tasks are passed to
+ * the {@link java.util.concurrent.RejectedExecutionHandler}.
+ */
+public class VirtualThreadPoolExecutor extends ThreadPoolExecutor {
+  private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  private final int concurrency;
+  private final int maxBufferedItems;
+  private final Semaphore permits;
+  private final AtomicInteger pendingTasks = new AtomicInteger();
+
+  /**
+   * Constructor.
+   *
+   * @param name executor name, used as thread name prefix
+   * @param concurrency max number of concurrently running tasks
+   * @param maxBufferedItems max number of tasks waiting to run
+   * @throws IllegalStateException if the runtime does not support virtual threads
+   */
+  public VirtualThreadPoolExecutor(String name, int concurrency, int maxBufferedItems) {
+    this(concurrency, maxBufferedItems, requireVirtualThreadFactory(name));
+  }
+
+  /**
+   * Constructor that creates task threads with the given factory, instead of as virtual threads.
+   * Platform threads are reused while idle.
+   *
+   * @param concurrency max number of concurrently running tasks
+   * @param maxBufferedItems max number of tasks waiting to run
+   * @param threadFactory factory for task threads
+   */
+  public VirtualThreadPoolExecutor(
+      int concurrency, int maxBufferedItems, ThreadFactory threadFactory) {
+    super(
+        0,
+        Integer.MAX_VALUE,
+        IDLE_THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new SynchronousQueue<>(),
+        threadFactory);
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("concurrency must be > 0");
+    }
+    if (maxBufferedItems < 0) {
+      throw new IllegalArgumentException("maxBufferedItems must be >= 0");
+    }
+    this.concurrency = concurrency;
+    this.maxBufferedItems = maxBufferedItems;
+    this.permits = new Semaphore(concurrency);
+  }
+
+  /** Get if the runtime supports virtual threads. */
+  public static boolean isSupported() {
+    return getThreadFactory("") != null;
+  }
+
+  private static ThreadFactory requireVirtualThreadFactory(String name) {
+    ThreadFactory threadFactory = getThreadFactory(name);
+    if (threadFactory == null) {
+      throw new IllegalStateException("Virtual threads not supported by runtime");
+    }
+    return threadFactory;
+  }
+
+  /**
+   * Get a factory for named virtual threads, or null if the runtime does not support virtual
+   * threads.
+   */
+  static ThreadFactory getThreadFactory(String name) {
+    try {
+      Method ofVirtual = Thread.class.getMethod("ofVirtual");
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = ofVirtual.invoke(null);
+      builder =
+          builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (command == null) {
+      throw new NullPointerException();
+    }
+    if (pendingTasks.incrementAndGet() > concurrency + maxBufferedItems) {
+      pendingTasks.decrementAndGet();
+      getRejectedExecutionHandler().rejectedExecution(command, this);
+      return;
+    }
+    try {
+      super.execute(new PermitRunnable(command));
+    } catch (RejectedExecutionException e) {
+      pendingTasks.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /** Get the max number of concurrently running tasks. */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /** Get the number of tasks currently holding a permit to run. */
+  public int getRunningCount() {
+    return concurrency - permits.availablePermits();
+  }
+
+  /** Get the number of tasks waiting for a permit to run. */
+  public int getWaitingCount() {
+    return Math.max(0, pendingTasks.get() - getRunningCount());
+  }
+
+  /** Get the number of additional tasks that may wait for a permit before being rejected. */
+  public int getRemainingCapacity() {
+    return Math.max(0, concurrency + maxBufferedItems - pendingTasks.get());
+  }
+
+  /** Wrapper that runs a task while holding a concurrency permit. */
+  private class PermitRunnable implements Runnable {
+    private final Runnable task;
+
+    PermitRunnable(Runnable task) {
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      try {
+        permits.acquireUninterruptibly();
+        try {
+          task.run();
+        } finally {
+          permits.release();
+        }
+      } finally {
+        pendingTasks.decrementAndGet();
+      }
+    }
+  }
+}
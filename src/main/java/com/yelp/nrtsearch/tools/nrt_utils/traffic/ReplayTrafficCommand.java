@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.tools.nrt_utils.traffic;
+
+import com.yelp.nrtsearch.server.grpc.LuceneServerClient;
+import com.yelp.nrtsearch.server.luceneserver.capture.TrafficLog;
+import com.yelp.nrtsearch.server.luceneserver.capture.TrafficReplayer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Callable;
+import picocli.CommandLine;
+
+@CommandLine.Command(
+    name = ReplayTrafficCommand.REPLAY_TRAFFIC,
+    description = "Replay captured request traffic against the server")
+public class ReplayTrafficCommand implements Callable<Integer> {
+  public static final String REPLAY_TRAFFIC = "replayTraffic";
+
+  @CommandLine.Option(
+      names = {"-h", "--hostname", "--host"},
+      description = "Host name of server to replay traffic to (default: ${DEFAULT-VALUE})",
+      defaultValue = "localhost")
+  private String hostname;
+
+  @CommandLine.Option(
+      names = {"-p", "--port"},
+      description = "Port number of server to replay traffic to (default: ${DEFAULT-VALUE})",
+      defaultValue = "6000")
+  private int port;
+
+  @CommandLine.Option(
+      names = {"-c", "--capturePath"},
+      description = "Traffic capture directory, or a single capture log file",
+      required = true)
+  private String capturePath;
+
+  @CommandLine.Option(
+      names = {"-r", "--rateScale"},
+      description =
+          "Multiplier for the captured request rate, 0 replays at max rate (default: ${DEFAULT-VALUE})",
+      defaultValue = "1.0")
+  private double rateScale;
+
+  @CommandLine.Option(
+      names = {"--maxInFlight"},
+      description =
+          "Max number of outstanding searches and add documents streams (default: ${DEFAULT-VALUE})",
+      defaultValue = "64")
+  private int maxInFlight;
+
+  @CommandLine.Option(
+      names = {"--skipSearch"},
+      description = "Do not replay search requests")
+  private boolean skipSearch;
+
+  @CommandLine.Option(
+      names = {"--skipIndexing"},
+      description = "Do not replay add documents streams")
+  private boolean skipIndexing;
+
+  @Override
+  public Integer call() throws Exception {
+    Path path = Paths.get(capturePath);
+    List<Path> files = Files.isDirectory(path) ? TrafficLog.listFiles(path) : List.of(path);
+    LuceneServerClient client = new LuceneServerClient(hostname, port);
+    try {
+      TrafficReplayer replayer =
+          new TrafficReplayer(
+              client.getAsyncStub(), rateScale, maxInFlight, !skipSearch, !skipIndexing);
+      replayer.replay(files);
+      if (!skipSearch) {
+        System.out.print(replayer.getSearchStats().summary());
+      }
+      if (!skipIndexing) {
+        System.out.print(replayer.getIndexingStats().summary());
+      }
+    } finally {
+      client.shutdown();
+    }
+    return 0;
+  }
+}
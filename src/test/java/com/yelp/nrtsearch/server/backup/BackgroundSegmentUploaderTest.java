@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.yelp.nrtsearch.server.config.SegmentUploadConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BackgroundSegmentUploaderTest {
+  private static final String SERVICE = "test_service";
+  private static final String RESOURCE = "test_index_data";
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path indexRootDir;
+  private Archiver archiver;
+  private BackgroundSegmentUploader uploader;
+
+  @Before
+  public void setup() throws IOException {
+    indexRootDir = folder.newFolder("test_index").toPath();
+    Files.createDirectories(IndexArchiver.getIndexDataDir(indexRootDir));
+    archiver = mock(Archiver.class);
+  }
+
+  @After
+  public void cleanup() {
+    if (uploader != null) {
+      uploader.close();
+    }
+  }
+
+  private BackgroundSegmentUploader getUploader(int maxConcurrentUploads) {
+    uploader =
+        new BackgroundSegmentUploader(
+            archiver,
+            SERVICE,
+            RESOURCE,
+            indexRootDir,
+            "test_index",
+            new SegmentUploadConfig(true, maxConcurrentUploads, 0));
+    return uploader;
+  }
+
+  private void writeFiles(String... fileNames) throws IOException {
+    for (String fileName : fileNames) {
+      Files.writeString(IndexArchiver.getIndexDataDir(indexRootDir).resolve(fileName), fileName);
+    }
+  }
+
+  private void verifyUploaded(String fileName, int count) throws IOException {
+    verify(archiver, times(count))
+        .uploadIndexFiles(eq(SERVICE), eq(RESOURCE), eq(indexRootDir), eq(Set.of(fileName)));
+  }
+
+  @Test
+  public void testIsSegmentFile() {
+    assertTrue(BackgroundSegmentUploader.isSegmentFile("_0.cfs"));
+    assertTrue(BackgroundSegmentUploader.isSegmentFile("_1_Lucene84_0.doc"));
+    assertFalse(BackgroundSegmentUploader.isSegmentFile("segments_2"));
+    assertFalse(BackgroundSegmentUploader.isSegmentFile("pending_segments_2"));
+    assertFalse(BackgroundSegmentUploader.isSegmentFile("write.lock"));
+  }
+
+  @Test
+  public void testUploadsTo() {
+    BackgroundSegmentUploader uploader = getUploader(1);
+    assertTrue(uploader.uploadsTo(SERVICE, RESOURCE));
+    assertFalse(uploader.uploadsTo("other_service", RESOURCE));
+    assertFalse(uploader.uploadsTo(SERVICE, "other_resource"));
+  }
+
+  @Test
+  public void testUploadsNewFilesOnce() throws Exception {
+    writeFiles("_0.cfs", "_0.cfe", "_0.si", "segments_1");
+    BackgroundSegmentUploader uploader = getUploader(2);
+    uploader.addFiles(List.of("_0.cfs", "_0.cfe", "_0.si", "segments_1", "_1.cfs"));
+    uploader.addFiles(List.of("_0.cfs", "_0.cfe", "_0.si"));
+
+    Set<String> preUploaded =
+        uploader.awaitUploaded(List.of("_0.cfs", "_0.cfe", "_0.si", "segments_1"));
+    assertEquals(Set.of("_0.cfs", "_0.cfe", "_0.si"), preUploaded);
+    assertEquals(0, uploader.getBacklogFiles());
+    verifyUploaded("_0.cfs", 1);
+    verifyUploaded("_0.cfe", 1);
+    verifyUploaded("_0.si", 1);
+    verifyUploaded("segments_1", 0);
+    verifyUploaded("_1.cfs", 0);
+  }
+
+  @Test
+  public void testFailedUploadNotReported() throws Exception {
+    writeFiles("_0.cfs", "_0.si");
+    doThrow(new RuntimeException("upload failed"))
+        .when(archiver)
+        .uploadIndexFiles(any(), any(), any(), eq(Set.of("_0.cfs")));
+    BackgroundSegmentUploader uploader = getUploader(1);
+    uploader.addFiles(List.of("_0.cfs", "_0.si"));
+
+    Set<String> preUploaded = uploader.awaitUploaded(List.of("_0.cfs", "_0.si"));
+    assertEquals(Set.of("_0.si"), preUploaded);
+
+    // failed file is retried when seen again
+    uploader.addFiles(List.of("_0.cfs", "_0.si"));
+    uploader.awaitUploaded(List.of("_0.cfs", "_0.si"));
+    verifyUploaded("_0.cfs", 2);
+    verifyUploaded("_0.si", 1);
+  }
+
+  @Test
+  public void testQueuedUploadsCancelled() throws Exception {
+    writeFiles("_0.cfs", "_1.cfs");
+    CountDownLatch uploadStarted = new CountDownLatch(1);
+    CountDownLatch finishUpload = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              uploadStarted.countDown();
+              finishUpload.await();
+              return null;
+            })
+        .when(archiver)
+        .uploadIndexFiles(any(), any(), any(), eq(Set.of("_0.cfs")));
+    BackgroundSegmentUploader uploader = getUploader(1);
+    uploader.addFiles(List.of("_0.cfs"));
+    uploadStarted.await();
+    uploader.addFiles(List.of("_1.cfs"));
+    assertEquals(2, uploader.getBacklogFiles());
+
+    // queued upload is left for the commit
+    assertEquals(Set.of(), uploader.awaitUploaded(List.of("_1.cfs")));
+    assertEquals(1, uploader.getBacklogFiles());
+    finishUpload.countDown();
+    assertEquals(Set.of("_0.cfs"), uploader.awaitUploaded(List.of("_0.cfs")));
+
+    assertEquals(0, uploader.getBacklogFiles());
+    verifyUploaded("_0.cfs", 1);
+    verifyUploaded("_0.cfe", 1);
+    verifyUploaded("_0.si", 1);
+    verifyUploaded("segments_1", 0);
+    verifyUploaded("_1.cfs", 0);
+  }
+
+  @Test
+  public void testFailedUploadNotReported() throws Exception {
+    writeFiles("_0.cfs", "_0.si");
+    doThrow(new RuntimeException("upload failed"))
+        .when(archiver)
+        .uploadIndexFiles(any(), any(), any(), eq(Set.of("_0.cfs")));
+    BackgroundSegmentUploader uploader = getUploader(1);
+    uploader.addFiles(List.of("_0.cfs", "_0.si"));
+
+    Set<String> preUploaded = uploader.awaitUploaded(List.of("_0.cfs", "_0.si"));
+    assertEquals(Set.of("_0.si"), preUploaded);
+
+    // failed file is retried when seen again
+    uploader.addFiles(List.of("_0.cfs", "_0.si"));
+    uploader.awaitUploaded(List.of("_0.cfs", "_0.si"));
+    verifyUploaded("_0.cfs", 2);
+    verifyUploaded("_0.si", 1);
+  }
+
+  @Test
+  public void testQueuedUploadsCancelled() throws Exception {
+    writeFiles("_0.cfs", "_1.cfs");
+    CountDownLatch uploadStarted = new CountDownLatch(1);
+    CountDownLatch finishUpload = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              uploadStarted.countDown();
+              finishUpload.await();
+              return null;
+            })
+        .when(archiver)
+        .uploadIndexFiles(any(), any(), any(), eq(Set.of("_0.cfs")));
+    BackgroundSegmentUploader uploader = getUploader(1);
+    uploader.addFiles(List.of("_0.cfs"));
+    uploadStarted.await();
+    uploader.addFiles(List.of("_1.cfs"));
+    assertEquals(2, uploader.getBacklogFiles());
+
+    Thread commitThread =
+        new Thread(
+            () -> {
+              try {
+                assertEquals(Set.of("_0.cfs"), uploader.awaitUploaded(List.of("_1.cfs", "_0.cfs")));
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            });
+    commitThread.start();
+    finishUpload.countDown();
+    commitThread.join();
+
+    assertEquals(0, uploader.getBacklogFiles());
+    verifyUploaded("_0.cfs", 1);
+    verify(archiver, never()).uploadIndexFiles(any(), any(), any(), eq(Set.of("_1.cfs")));
+  }
+
+  @Test
+  public void testDeletedFileTrackingDropped() throws Exception {
+    writeFiles("_0.cfs", "_1.cfs");
+    BackgroundSegmentUploader uploader = getUploader(2);
+    uploader.addFiles(List.of("_0.cfs", "_1.cfs"));
+    uploader.awaitUploaded(List.of("_0.cfs", "_1.cfs"));
+
+    // merged away and recreated, must be uploaded again
+    Files.delete(IndexArchiver.getIndexDataDir(indexRootDir).resolve("_0.cfs"));
+    uploader.awaitUploaded(List.of("_1.cfs"));
+    writeFiles("_0.cfs");
+    uploader.addFiles(List.of("_0.cfs", "_1.cfs"));
+    assertEquals(Set.of("_0.cfs", "_1.cfs"), uploader.awaitUploaded(List.of("_0.cfs", "_1.cfs")));
+    verifyUploaded("_0.cfs", 2);
+    verifyUploaded("_1.cfs", 1);
+  }
+}
@@ -16,10 +16,15 @@
 package com.yelp.nrtsearch.server.backup;
 
 import static com.yelp.nrtsearch.server.grpc.GrpcServer.rmDir;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.amazonaws.util.IOUtils;
+import com.yelp.nrtsearch.server.config.BackupCompressionConfig;
+import com.yelp.nrtsearch.server.config.RestoreConfig;
+import com.yelp.nrtsearch.server.utils.MemoryBudget;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -27,6 +32,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import net.jpountz.lz4.LZ4FrameInputStream;
 import net.jpountz.lz4.LZ4FrameOutputStream;
@@ -100,6 +108,150 @@ public class TarImplTest {
     checkTarAndSourceDirMatch(sourceDir, destTarFile_includeFileAndDir, List.of());
   }
 
+  private static final BackupCompressionConfig PARALLEL_CONFIG =
+      new BackupCompressionConfig(4, 16 * 1024, 0);
+
+  private Path createRandomSourceDir() throws IOException {
+    Path sourceDir = Files.createDirectory(tarTestBaseDirectory.resolve("dirToTar"));
+    Path subDir = Files.createDirectory(sourceDir.resolve("subDir"));
+    Random random = new Random(42);
+    byte[] data1 = new byte[300 * 1024];
+    // compressible content
+    for (int i = 0; i < data1.length; ++i) {
+      data1[i] = (byte) ('a' + random.nextInt(4));
+    }
+    byte[] data2 = new byte[100 * 1024];
+    random.nextBytes(data2);
+    Files.write(sourceDir.resolve("test1"), data1);
+    Files.write(subDir.resolve("test2"), data2);
+    Files.write(subDir.resolve("empty"), new byte[0]);
+    return sourceDir;
+  }
+
+  private void assertExtractedMatches(Path sourceDir, Path extractedDir) throws IOException {
+    for (String file : List.of("test1", "subDir/test2", "subDir/empty")) {
+      assertArrayEquals(
+          Files.readAllBytes(sourceDir.resolve(file)),
+          Files.readAllBytes(extractedDir.resolve("dirToTar").resolve(file)));
+    }
+  }
+
+  @Test
+  public void parallelLZ4BuildTar() throws IOException {
+    Path sourceDir = createRandomSourceDir();
+    Path tarFile = tarTestBaseDirectory.resolve("parallel.tar.lz4");
+    new TarImpl(Tar.CompressionMode.LZ4, PARALLEL_CONFIG)
+        .buildTar(sourceDir, tarFile, List.of(), List.of());
+
+    // readable with single threaded decompression
+    Path singleDir = tarTestBaseDirectory.resolve("single");
+    new TarImpl(Tar.CompressionMode.LZ4).extractTar(tarFile, singleDir);
+    assertExtractedMatches(sourceDir, singleDir);
+
+    Path parallelDir = tarTestBaseDirectory.resolve("parallel");
+    new TarImpl(Tar.CompressionMode.LZ4, PARALLEL_CONFIG).extractTar(tarFile, parallelDir);
+    assertExtractedMatches(sourceDir, parallelDir);
+  }
+
+  @Test
+  public void parallelGzipBuildTar() throws IOException {
+    Path sourceDir = createRandomSourceDir();
+    Path tarFile = tarTestBaseDirectory.resolve("parallel.tar.gz");
+    new TarImpl(Tar.CompressionMode.GZIP, PARALLEL_CONFIG)
+        .buildTar(sourceDir, tarFile, List.of(), List.of());
+
+    Path singleDir = tarTestBaseDirectory.resolve("single");
+    new TarImpl(Tar.CompressionMode.GZIP).extractTar(tarFile, singleDir);
+    assertExtractedMatches(sourceDir, singleDir);
+
+    Path parallelDir = tarTestBaseDirectory.resolve("parallel");
+    new TarImpl(Tar.CompressionMode.GZIP, PARALLEL_CONFIG).extractTar(tarFile, parallelDir);
+    assertExtractedMatches(sourceDir, parallelDir);
+  }
+
+  @Test
+  public void parallelExtractSingleFrameTar() throws IOException {
+    Path sourceDir = createRandomSourceDir();
+    Path tarFile = tarTestBaseDirectory.resolve("single.tar.lz4");
+    new TarImpl(Tar.CompressionMode.LZ4).buildTar(sourceDir, tarFile, List.of(), List.of());
+
+    Path parallelDir = tarTestBaseDirectory.resolve("parallel");
+    new TarImpl(Tar.CompressionMode.LZ4, PARALLEL_CONFIG).extractTar(tarFile, parallelDir);
+    assertExtractedMatches(sourceDir, parallelDir);
+  }
+
+  @Test
+  public void parallelExtractFileWrites() throws IOException {
+    Path sourceDir = createRandomSourceDir();
+    Path tarFile = tarTestBaseDirectory.resolve("parallel.tar.lz4");
+    new TarImpl(Tar.CompressionMode.LZ4, PARALLEL_CONFIG)
+        .buildTar(sourceDir, tarFile, List.of(), List.of());
+
+    // small buffer limit, so that the reader waits for chunk writes
+    RestoreConfig restoreConfig = new RestoreConfig(false, 4, 1024 * 1024, "", 4);
+    Path extractDir = tarTestBaseDirectory.resolve("extract");
+    new TarImpl(Tar.CompressionMode.LZ4, PARALLEL_CONFIG, restoreConfig)
+        .extractTar(tarFile, extractDir);
+    assertExtractedMatches(sourceDir, extractDir);
+    assertEquals(0, restoreConfig.getMemoryBudget().getUsedBytes());
+  }
+
+  @Test
+  public void parallelExtractSharedBudgetExhausted() throws IOException {
+    Path sourceDir = createRandomSourceDir();
+    Path tarFile = tarTestBaseDirectory.resolve("parallel.tar.lz4");
+    new TarImpl(Tar.CompressionMode.LZ4, PARALLEL_CONFIG)
+        .buildTar(sourceDir, tarFile, List.of(), List.of());
+
+    RestoreConfig restoreConfig = new RestoreConfig(false, 4, 1024 * 1024, "", 4);
+    // all memory is held by another consumer, such as download parts not read yet
+    MemoryBudget memoryBudget = restoreConfig.getMemoryBudget();
+    assertTrue(memoryBudget.tryReserve(memoryBudget.getMaxBytes()));
+    Path extractDir = tarTestBaseDirectory.resolve("extract");
+    new TarImpl(Tar.CompressionMode.LZ4, PARALLEL_CONFIG, restoreConfig)
+        .extractTar(tarFile, extractDir);
+    assertExtractedMatches(sourceDir, extractDir);
+    assertEquals(memoryBudget.getMaxBytes(), memoryBudget.getUsedBytes());
+  }
+
+  @Test
+  public void parallelDecompressChecksums() throws IOException {
+    byte[] data = new byte[1024 * 1024];
+    new Random(7).nextBytes(data);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (LZ4FrameOutputStream lz4OutputStream =
+        new LZ4FrameOutputStream(
+            compressed,
+            LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB,
+            LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE,
+            LZ4FrameOutputStream.FLG.Bits.BLOCK_CHECKSUM,
+            LZ4FrameOutputStream.FLG.Bits.CONTENT_CHECKSUM)) {
+      lz4OutputStream.write(data);
+    }
+    byte[] compressedBytes = compressed.toByteArray();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      try (InputStream inputStream =
+          new ParallelLZ4DecompressorInputStream(
+              new ByteArrayInputStream(compressedBytes), executor, 8)) {
+        assertArrayEquals(data, inputStream.readAllBytes());
+      }
+
+      // corrupt the frame content checksum
+      compressedBytes[compressedBytes.length - 1] ^= 0x1;
+      try (InputStream inputStream =
+          new ParallelLZ4DecompressorInputStream(
+              new ByteArrayInputStream(compressedBytes), executor, 8)) {
+        inputStream.readAllBytes();
+        fail();
+      } catch (IOException e) {
+        assertTrue(e.getMessage().contains("checksum mismatch"));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   private void checkTarAndSourceDirMatch(Path sourceDir, Path destTarFile, List<String> ignoreFiles)
       throws IOException {
     try (final FileInputStream fileInputStream = new FileInputStream(destTarFile.toFile());
@@ -36,6 +36,8 @@ public class FileCopyConfigTest {
     assertEquals(FileCopyConfig.DEFAULT_CHUNK_SIZE, config.getChunkSize());
     assertEquals(FileCopyConfig.DEFAULT_ACK_EVERY, config.getAckEvery());
     assertEquals(FileCopyConfig.DEFAULT_MAX_IN_FLIGHT, config.getMaxInFlight());
+    assertEquals(FileCopyConfig.DEFAULT_COPY_CONCURRENCY, config.getCopyConcurrency());
+    assertFalse(config.getZeroCopy());
   }
 
   @Test
@@ -48,16 +50,25 @@ public class FileCopyConfigTest {
             "  ackedCopy: true",
             "  chunkSize: 100",
             "  ackEvery: 10",
-            "  maxInFlight: 1000");
+            "  maxInFlight: 1000",
+            "  copyConcurrency: 4",
+            "  zeroCopy: true");
     FileCopyConfig config = getConfig(configFile);
     assertTrue(config.getAckedCopy());
     assertEquals(100, config.getChunkSize());
     assertEquals(10, config.getAckEvery());
     assertEquals(1000, config.getMaxInFlight());
+    assertEquals(4, config.getCopyConcurrency());
+    assertTrue(config.getZeroCopy());
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void invalidAckEvery() {
     new FileCopyConfig(true, 100, 1000, 10);
   }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCopyConcurrency() {
+    new FileCopyConfig(true, 100, 10, 1000, 0, false);
+  }
 }
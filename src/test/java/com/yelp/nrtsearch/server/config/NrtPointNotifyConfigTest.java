@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.config;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import org.junit.Test;
+
+public class NrtPointNotifyConfigTest {
+  private static NrtPointNotifyConfig getConfig(String configFile) {
+    return NrtPointNotifyConfig.fromConfig(
+        new YamlConfigReader(new ByteArrayInputStream(configFile.getBytes())));
+  }
+
+  @Test
+  public void testDefault() {
+    String configFile = "nodeName: \"lucene_server_foo\"";
+    NrtPointNotifyConfig config = getConfig(configFile);
+    assertEquals(NrtPointNotifyConfig.DEFAULT_DEADLINE_MS, config.getDeadlineMs());
+    assertEquals(NrtPointNotifyConfig.DEFAULT_QUARANTINE_MS, config.getQuarantineMs());
+    assertEquals(NrtPointNotifyConfig.DEFAULT_MAX_QUARANTINE_MS, config.getMaxQuarantineMs());
+  }
+
+  @Test
+  public void testConfig() {
+    String configFile =
+        String.join(
+            "\n",
+            "nodeName: \"lucene_server_foo\"",
+            "nrtPointNotify:",
+            "  deadlineMs: 100",
+            "  quarantineMs: 200",
+            "  maxQuarantineMs: 1000");
+    NrtPointNotifyConfig config = getConfig(configFile);
+    assertEquals(100, config.getDeadlineMs());
+    assertEquals(200, config.getQuarantineMs());
+    assertEquals(1000, config.getMaxQuarantineMs());
+  }
+
+  @Test
+  public void testQuarantineBackoff() {
+    NrtPointNotifyConfig config = new NrtPointNotifyConfig(100, 200, 1000);
+    assertEquals(200, config.getQuarantineMs(1));
+    assertEquals(400, config.getQuarantineMs(2));
+    assertEquals(800, config.getQuarantineMs(3));
+    assertEquals(1000, config.getQuarantineMs(4));
+    assertEquals(1000, config.getQuarantineMs(100));
+  }
+
+  @Test
+  public void testNoQuarantine() {
+    NrtPointNotifyConfig config = new NrtPointNotifyConfig(100, 0, 0);
+    assertEquals(0, config.getQuarantineMs(5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDeadline() {
+    new NrtPointNotifyConfig(0, 200, 1000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxQuarantine() {
+    new NrtPointNotifyConfig(100, 200, 100);
+  }
+}
@@ -71,6 +71,17 @@ public class AckedCopyTest {
   }
 
   public void setUp(int chunkSize, int ackEvery, int maxInFlight) throws IOException {
+    setUp(chunkSize, ackEvery, maxInFlight, 1);
+  }
+
+  public void setUp(int chunkSize, int ackEvery, int maxInFlight, int copyConcurrency)
+      throws IOException {
+    setUp(chunkSize, ackEvery, maxInFlight, copyConcurrency, true);
+  }
+
+  public void setUp(
+      int chunkSize, int ackEvery, int maxInFlight, int copyConcurrency, boolean ackedCopy)
+      throws IOException {
     // setup S3 for backup/restore
     s3Directory = folder.newFolder("s3").toPath();
     archiverDirectory = folder.newFolder("archiver").toPath();
@@ -86,10 +97,11 @@ public class AckedCopyTest {
         String.join(
             "\n",
             "FileCopyConfig:",
-            "  ackedCopy: true",
+            "  ackedCopy: " + ackedCopy,
             "  chunkSize: " + chunkSize,
             "  ackEvery: " + ackEvery,
-            "  maxInFlight: " + maxInFlight);
+            "  maxInFlight: " + maxInFlight,
+            "  copyConcurrency: " + copyConcurrency);
 
     // set up primary servers
     String testIndex = "test_index";
@@ -171,6 +183,24 @@ public class AckedCopyTest {
     testReplication();
   }
 
+  @Test
+  public void ack2Limit2Concurrent() throws IOException, InterruptedException {
+    setUp(2, 2, 2, 4);
+    testReplication();
+  }
+
+  @Test
+  public void ack2Limit2LargeChunkConcurrent() throws IOException, InterruptedException {
+    setUp(1024, 2, 2, 4);
+    testReplication();
+  }
+
+  @Test
+  public void noAckConcurrent() throws IOException, InterruptedException {
+    setUp(2, 2, 2, 4, false);
+    testReplication();
+  }
+
   private void testReplication() throws IOException, InterruptedException {
     // index 2 documents to primary
     GrpcServer.TestServer testServerPrimary =
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest.MultiValuedField;
+import com.yelp.nrtsearch.server.luceneserver.ServerTestCase;
+import io.grpc.testing.GrpcCleanupRule;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class SearchStreamTest extends ServerTestCase {
+  private static final int NUM_DOCS = 100;
+  private static final int SEGMENT_CHUNK = 10;
+  private static final int HITS_CHUNK_SIZE = 7;
+
+  @ClassRule public static final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  @Override
+  protected String getExtraConfig() {
+    return "searchStreamHitsChunkSize: " + HITS_CHUNK_SIZE;
+  }
+
+  @Override
+  protected FieldDefRequest getIndexDef(String name) {
+    return getFieldsFromJson(
+        String.join(
+            "\n",
+            "{",
+            "  \"indexName\": \"" + name + "\",",
+            "  \"field\": [",
+            "    {\"name\": \"doc_id\", \"type\": \"ATOM\", \"storeDocValues\": true},",
+            "    {\"name\": \"int_field\", \"type\": \"INT\", \"search\": true,",
+            "     \"storeDocValues\": true}",
+            "  ]",
+            "}"));
+  }
+
+  @Override
+  protected void initIndex(String name) throws Exception {
+    List<AddDocumentRequest> requestChunk = new ArrayList<>();
+    for (int id = 0; id < NUM_DOCS; ++id) {
+      requestChunk.add(
+          AddDocumentRequest.newBuilder()
+              .setIndexName(name)
+              .putFields(
+                  "doc_id", MultiValuedField.newBuilder().addValue(String.valueOf(id)).build())
+              .putFields(
+                  "int_field", MultiValuedField.newBuilder().addValue(String.valueOf(id)).build())
+              .build());
+      if (requestChunk.size() == SEGMENT_CHUNK) {
+        addDocuments(requestChunk.stream());
+        requestChunk.clear();
+        getGlobalState().getIndex(name).getShard(0).writer.commit();
+      }
+    }
+  }
+
+  private SearchRequest getRequest(int startHit, int topHits) {
+    return SearchRequest.newBuilder()
+        .setIndexName(DEFAULT_TEST_INDEX)
+        .setStartHit(startHit)
+        .setTopHits(topHits)
+        .addRetrieveFields("doc_id")
+        .addRetrieveFields("int_field")
+        .setQuery(
+            Query.newBuilder()
+                .setRangeQuery(
+                    RangeQuery.newBuilder().setField("int_field").setLower("10").setUpper("89")))
+        .addQuerySort(
+            QuerySortField.newBuilder()
+                .setFields(
+                    SortFields.newBuilder()
+                        .addSortedFields(
+                            SortType.newBuilder().setFieldName("int_field").setReverse(true))))
+        .build();
+  }
+
+  @Test
+  public void testStreamedHits() {
+    verifyStreamMatchesSearch(getRequest(0, NUM_DOCS));
+  }
+
+  @Test
+  public void testStreamedHitsWithOffset() {
+    verifyStreamMatchesSearch(getRequest(5, 50));
+  }
+
+  @Test
+  public void testStreamNoHits() {
+    SearchRequest request =
+        getRequest(0, 10).toBuilder()
+            .setQuery(
+                Query.newBuilder()
+                    .setTermQuery(TermQuery.newBuilder().setField("doc_id").setTextValue("none")))
+            .build();
+    List<SearchResponse> responses = getStreamResponses(request);
+    assertEquals(1, responses.size());
+    assertEquals(0, responses.get(0).getHitsCount());
+    assertEquals(0, responses.get(0).getTotalHits().getValue());
+  }
+
+  private void verifyStreamMatchesSearch(SearchRequest request) {
+    SearchResponse expected = getGrpcServer().getBlockingStub().search(request);
+    List<SearchResponse> responses = getStreamResponses(request);
+
+    int expectedChunks = (expected.getHitsCount() + HITS_CHUNK_SIZE - 1) / HITS_CHUNK_SIZE;
+    assertEquals(expectedChunks + 1, responses.size());
+
+    List<SearchResponse.Hit> streamedHits = new ArrayList<>();
+    for (int i = 0; i < expectedChunks; ++i) {
+      SearchResponse chunk = responses.get(i);
+      assertTrue(chunk.getHitsCount() > 0);
+      assertTrue(chunk.getHitsCount() <= HITS_CHUNK_SIZE);
+      assertEquals(0, chunk.getTotalHits().getValue());
+      streamedHits.addAll(chunk.getHitsList());
+    }
+    assertEquals(expected.getHitsList(), streamedHits);
+
+    SearchResponse last = responses.get(responses.size() - 1);
+    assertEquals(0, last.getHitsCount());
+    assertEquals(expected.getTotalHits(), last.getTotalHits());
+    assertEquals(
+        expected.getSearchState().getSearcherVersion(),
+        last.getSearchState().getSearcherVersion());
+    assertEquals(
+        expected.getSearchState().getLastDocId(), last.getSearchState().getLastDocId());
+  }
+
+  private List<SearchResponse> getStreamResponses(SearchRequest request) {
+    Iterator<SearchResponse> iterator = getGrpcServer().getBlockingStub().searchStream(request);
+    List<SearchResponse> responses = new ArrayList<>();
+    iterator.forEachRemaining(responses::add);
+    return responses;
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.protobuf.Int32Value;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest.MultiValuedField;
+import com.yelp.nrtsearch.server.grpc.LuceneServerGrpc.LuceneServerBlockingStub;
+import com.yelp.nrtsearch.server.luceneserver.IndexState;
+import com.yelp.nrtsearch.server.luceneserver.ServerTestCase;
+import com.yelp.nrtsearch.server.luceneserver.ShardState;
+import com.yelp.nrtsearch.server.luceneserver.ShardedDirectoryReader;
+import io.grpc.StatusRuntimeException;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class ShardedIndexTest extends ServerTestCase {
+  private static final int NUM_DOCS = 100;
+  private static final int NUM_SHARDS = 3;
+
+  @ClassRule public static final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  @Override
+  protected FieldDefRequest getIndexDef(String name) throws IOException {
+    return getFieldsFromResourceFile("/search/registerFieldsHitsThreshold.json");
+  }
+
+  @Override
+  protected void initIndices() throws Exception {
+    LuceneServerBlockingStub blockingStub = getGrpcServer().getBlockingStub();
+    blockingStub.createIndex(
+        CreateIndexRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+    blockingStub.registerFields(getIndexDef(DEFAULT_TEST_INDEX));
+    blockingStub.settingsV2(
+        SettingsV2Request.newBuilder()
+            .setIndexName(DEFAULT_TEST_INDEX)
+            .setSettings(
+                IndexSettings.newBuilder()
+                    .setNumShards(Int32Value.newBuilder().setValue(NUM_SHARDS).build())
+                    .build())
+            .build());
+    blockingStub.startIndex(
+        StartIndexRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+    addDocuments(getDocs(0).stream());
+    blockingStub.refresh(RefreshRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+  }
+
+  private List<AddDocumentRequest> getDocs(int intOffset) {
+    List<AddDocumentRequest> docs = new ArrayList<>();
+    for (int i = 0; i < NUM_DOCS; ++i) {
+      docs.add(
+          AddDocumentRequest.newBuilder()
+              .setIndexName(DEFAULT_TEST_INDEX)
+              .putFields(
+                  "doc_id", MultiValuedField.newBuilder().addValue(String.valueOf(i)).build())
+              .putFields(
+                  "int_field",
+                  MultiValuedField.newBuilder().addValue(String.valueOf(i + intOffset)).build())
+              .putFields(
+                  "text_field", MultiValuedField.newBuilder().addValue("term" + (i % 2)).build())
+              .build());
+    }
+    return docs;
+  }
+
+  private SearchResponse search(String term) {
+    return getGrpcServer()
+        .getBlockingStub()
+        .search(
+            SearchRequest.newBuilder()
+                .setIndexName(DEFAULT_TEST_INDEX)
+                .setTopHits(NUM_DOCS)
+                .setQuery(
+                    Query.newBuilder()
+                        .setTermQuery(
+                            TermQuery.newBuilder()
+                                .setField("text_field")
+                                .setTextValue(term)
+                                .build())
+                        .build())
+                .addRetrieveFields("int_field")
+                .build());
+  }
+
+  @Test
+  public void testDocumentsInAllShards() throws Exception {
+    IndexState indexState = getGlobalState().getIndex(DEFAULT_TEST_INDEX);
+    assertEquals(NUM_SHARDS, indexState.getNumShards());
+    assertEquals(NUM_SHARDS, indexState.getShards().size());
+    int totalDocs = 0;
+    for (int i = 0; i < NUM_SHARDS; ++i) {
+      int shardDocs = indexState.getShard(i).writer.getDocStats().numDocs;
+      assertTrue(shardDocs > 0);
+      totalDocs += shardDocs;
+    }
+    assertEquals(NUM_DOCS, totalDocs);
+  }
+
+  @Test
+  public void testSearchAllShards() {
+    SearchResponse response = search("term0");
+    assertEquals(NUM_DOCS / 2, response.getTotalHits().getValue());
+    assertEquals(NUM_DOCS / 2, response.getHitsCount());
+    response = search("term1");
+    assertEquals(NUM_DOCS / 2, response.getTotalHits().getValue());
+  }
+
+  @Test
+  public void testUpdateAndDelete() throws Exception {
+    LuceneServerBlockingStub blockingStub = getGrpcServer().getBlockingStub();
+    // updates replace the existing document in its shard
+    addDocuments(getDocs(1000).stream());
+    blockingStub.refresh(RefreshRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+    SearchResponse response = search("term0");
+    assertEquals(NUM_DOCS / 2, response.getTotalHits().getValue());
+    for (SearchResponse.Hit hit : response.getHitsList()) {
+      assertTrue(hit.getFieldsOrThrow("int_field").getFieldValue(0).getIntValue() >= 1000);
+    }
+
+    blockingStub.delete(
+        AddDocumentRequest.newBuilder()
+            .setIndexName(DEFAULT_TEST_INDEX)
+            .putFields("doc_id", MultiValuedField.newBuilder().addValue("0").addValue("2").build())
+            .build());
+    blockingStub.refresh(RefreshRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+    assertEquals(NUM_DOCS / 2 - 2, search("term0").getTotalHits().getValue());
+
+    // restore original docs for other tests
+    addDocuments(getDocs(0).stream());
+    blockingStub.refresh(RefreshRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+  }
+
+  @Test
+  public void testCannotChangeNumShards() {
+    try {
+      getGrpcServer()
+          .getBlockingStub()
+          .settingsV2(
+              SettingsV2Request.newBuilder()
+                  .setIndexName(DEFAULT_TEST_INDEX)
+                  .setSettings(
+                      IndexSettings.newBuilder()
+                          .setNumShards(Int32Value.newBuilder().setValue(1).build())
+                          .build())
+                  .build());
+      fail();
+    } catch (StatusRuntimeException e) {
+      assertTrue(e.getMessage().contains("Cannot change"));
+    }
+  }
+
+  @Test
+  public void testCommitShardGens() throws Exception {
+    addDocuments(getDocs(0).stream());
+    CommitResponse response =
+        getGrpcServer()
+            .getBlockingStub()
+            .commit(CommitRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+    assertEquals(NUM_SHARDS, response.getShardGensCount());
+    assertEquals(response.getShardGens(0), response.getGen());
+    IndexState indexState = getGlobalState().getIndex(DEFAULT_TEST_INDEX);
+    for (int i = 0; i < NUM_SHARDS; ++i) {
+      assertTrue(response.getShardGens(i) > 0);
+      assertFalse(indexState.getShard(i).writer.hasUncommittedChanges());
+    }
+
+    try {
+      indexState.commit(false);
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("index with multiple shards"));
+    }
+  }
+
+  @Test
+  public void testSnapshotNotSupported() {
+    try {
+      getGrpcServer()
+          .getBlockingStub()
+          .createSnapshot(
+              CreateSnapshotRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+      fail();
+    } catch (StatusRuntimeException e) {
+      assertTrue(
+          e.getMessage()
+              .contains(
+                  "Snapshot is not supported for index with multiple shards: "
+                      + DEFAULT_TEST_INDEX));
+    }
+  }
+
+  @Test
+  public void testSearchShard() throws Exception {
+    IndexState indexState = getGlobalState().getIndex(DEFAULT_TEST_INDEX);
+    ShardState searchShard = indexState.getSearchShard();
+    assertTrue(searchShard.isShardedSearch());
+    SearcherAndTaxonomy s = searchShard.acquire();
+    try {
+      assertEquals(NUM_DOCS, s.searcher.getIndexReader().numDocs());
+    } finally {
+      searchShard.release(s);
+    }
+  }
+
+  @Test
+  public void testReaderVersionIncreases() throws Exception {
+    ShardState shardState = getGlobalState().getIndex(DEFAULT_TEST_INDEX).getShard(0);
+    long initialVersion;
+    IndexReader.CacheKey initialKey;
+    SearcherAndTaxonomy s = shardState.acquire();
+    try {
+      assertTrue(s.searcher.getIndexReader() instanceof ShardedDirectoryReader);
+      initialVersion = ((ShardedDirectoryReader) s.searcher.getIndexReader()).getVersion();
+      initialKey = s.searcher.getIndexReader().getReaderCacheHelper().getKey();
+    } finally {
+      shardState.release(s);
+    }
+
+    // a change to a single shard gives a new reader with a greater version
+    addDocuments(getDocs(0).subList(0, 1).stream());
+    getGrpcServer()
+        .getBlockingStub()
+        .refresh(RefreshRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+    s = shardState.acquire();
+    try {
+      ShardedDirectoryReader reader = (ShardedDirectoryReader) s.searcher.getIndexReader();
+      assertTrue(reader.getVersion() > initialVersion);
+      assertNotSame(initialKey, reader.getReaderCacheHelper().getKey());
+    } finally {
+      shardState.release(s);
+    }
+  }
+
+  @Test
+  public void testReaderClosedListener() throws IOException {
+    List<Directory> directories = new ArrayList<>();
+    List<DirectoryReader> shardReaders = new ArrayList<>();
+    try {
+      for (int i = 0; i < 2; ++i) {
+        Directory directory = new ByteBuffersDirectory();
+        directories.add(directory);
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+          writer.addDocument(new Document());
+        }
+        shardReaders.add(DirectoryReader.open(directory));
+      }
+      ShardedDirectoryReader reader = new ShardedDirectoryReader(shardReaders, 1);
+      assertEquals(2, reader.numDocs());
+      IndexReader.CacheKey key = reader.getReaderCacheHelper().getKey();
+      assertSame(key, reader.getReaderCacheHelper().getKey());
+      List<IndexReader.CacheKey> closedKeys = new ArrayList<>();
+      reader.getReaderCacheHelper().addClosedListener(closedKeys::add);
+      reader.close();
+      assertEquals(Collections.singletonList(key), closedKeys);
+      for (DirectoryReader shardReader : shardReaders) {
+        assertEquals(0, shardReader.getRefCount());
+      }
+    } finally {
+      IOUtils.close(directories);
+    }
+  }
+}
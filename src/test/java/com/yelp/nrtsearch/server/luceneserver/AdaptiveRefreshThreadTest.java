@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveRefreshThreadTest {
+  private Directory directory;
+  private IndexWriter writer;
+  private SearcherManager manager;
+  private AtomicInteger refreshCount;
+
+  @Before
+  public void setup() throws IOException {
+    directory = new ByteBuffersDirectory();
+    writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+    manager = new SearcherManager(writer, null);
+    refreshCount = new AtomicInteger();
+    manager.addListener(
+        new ReferenceManager.RefreshListener() {
+          @Override
+          public void beforeRefresh() {}
+
+          @Override
+          public void afterRefresh(boolean didRefresh) {
+            if (didRefresh) {
+              refreshCount.incrementAndGet();
+            }
+          }
+        });
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    manager.close();
+    writer.close();
+    directory.close();
+  }
+
+  private boolean isCurrent() throws IOException {
+    IndexSearcher searcher = manager.acquire();
+    try {
+      return ((DirectoryReader) searcher.getIndexReader()).isCurrent();
+    } finally {
+      manager.release(searcher);
+    }
+  }
+
+  private AdaptiveRefreshThread<IndexSearcher> startThread(double maxSec, double minSec) {
+    AdaptiveRefreshThread<IndexSearcher> thread =
+        new AdaptiveRefreshThread<>(writer, manager, this::isCurrent, maxSec, minSec, "test");
+    thread.start();
+    return thread;
+  }
+
+  private long addDoc(String id) throws IOException {
+    Document document = new Document();
+    document.add(new StringField("id", id, Field.Store.NO));
+    return writer.addDocument(document);
+  }
+
+  private int numDocs() throws IOException {
+    IndexSearcher searcher = manager.acquire();
+    try {
+      return searcher.getIndexReader().numDocs();
+    } finally {
+      manager.release(searcher);
+    }
+  }
+
+  @Test
+  public void testWaitForGeneration() throws Exception {
+    AdaptiveRefreshThread<IndexSearcher> thread = startThread(60, 0.01);
+    try {
+      long gen = addDoc("1");
+      assertTrue(thread.waitForGeneration(gen, 10000));
+      assertEquals(1, numDocs());
+      assertTrue(thread.getSearchingGen() >= gen);
+    } finally {
+      thread.close();
+    }
+  }
+
+  @Test
+  public void testSkipWhenCurrent() throws Exception {
+    AdaptiveRefreshThread<IndexSearcher> thread = startThread(0.01, 0.01);
+    try {
+      long gen = addDoc("1");
+      assertTrue(thread.waitForGeneration(gen, 10000));
+      int count = refreshCount.get();
+      // no index changes, refreshes should be skipped
+      Thread.sleep(200);
+      assertEquals(count, refreshCount.get());
+    } finally {
+      thread.close();
+    }
+  }
+
+  @Test
+  public void testWaitTimeout() throws Exception {
+    AdaptiveRefreshThread<IndexSearcher> thread = startThread(60, 60);
+    try {
+      long gen = addDoc("1");
+      assertFalse(thread.waitForGeneration(gen, 10));
+      assertEquals(0, numDocs());
+    } finally {
+      thread.close();
+    }
+  }
+
+  @Test
+  public void testRefreshIntervalBackoff() {
+    AdaptiveRefreshThread<IndexSearcher> thread =
+        new AdaptiveRefreshThread<>(writer, manager, this::isCurrent, 1.0, 0.05, "test");
+    try {
+      assertEquals(1000000000L, thread.getRefreshIntervalNS(false, 0));
+      assertEquals(50000000L, thread.getRefreshIntervalNS(true, 0));
+      // back off while waiting when refresh is expensive
+      assertEquals(200000000L, thread.getRefreshIntervalNS(true, 20000000L));
+      // never wait longer than the max interval
+      assertEquals(1000000000L, thread.getRefreshIntervalNS(true, 500000000L));
+      assertEquals(1000000000L, thread.getRefreshIntervalNS(false, 500000000L));
+    } finally {
+      thread.close();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidStaleSec() {
+    new AdaptiveRefreshThread<>(writer, manager, this::isCurrent, 0.01, 1.0, "test");
+  }
+}
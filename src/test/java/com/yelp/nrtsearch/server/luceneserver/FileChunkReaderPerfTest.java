@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import com.google.protobuf.ByteString;
+import com.yelp.nrtsearch.server.grpc.RawFileChunk;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares throughput and allocation rate of serving an index file through an {@link
+ * org.apache.lucene.store.IndexInput} against memory mapped zero copy serving. Each chunk is
+ * wrapped in a {@link RawFileChunk} and serialized, as gRPC would do when sending to a replica.
+ * Excluded from the default test run, run with: ./gradlew test -PincludePerfTests=true --tests
+ * '*FileChunkReaderPerfTest'
+ */
+public class FileChunkReaderPerfTest {
+  private static final Logger logger = LoggerFactory.getLogger(FileChunkReaderPerfTest.class);
+  private static final String FILE_NAME = "perf_file";
+  private static final int FILE_SIZE = 256 * 1024 * 1024;
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int ITERATIONS = 10;
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void compareServingModes() throws IOException {
+    try (Directory directory = FSDirectory.open(folder.getRoot().toPath())) {
+      byte[] block = new byte[1024 * 1024];
+      new Random(1234).nextBytes(block);
+      try (IndexOutput output = directory.createOutput(FILE_NAME, IOContext.DEFAULT)) {
+        for (int i = 0; i < FILE_SIZE / block.length; ++i) {
+          output.writeBytes(block, block.length);
+        }
+      }
+      runMode(directory, false);
+      runMode(directory, true);
+    }
+  }
+
+  private void runMode(Directory directory, boolean zeroCopy) throws IOException {
+    com.sun.management.ThreadMXBean threadMXBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+      serveFile(directory, zeroCopy);
+    }
+    long startAllocated = threadMXBean.getThreadAllocatedBytes(threadId);
+    long startNS = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; ++i) {
+      serveFile(directory, zeroCopy);
+    }
+    double seconds = (System.nanoTime() - startNS) / 1000000000.0;
+    long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - startAllocated;
+    double totalMB = ((double) FILE_SIZE * ITERATIONS) / 1024 / 1024;
+    logger.info(
+        String.format(
+            "zeroCopy=%s: %.2f MB/s, %.2f MB allocated per MB served",
+            zeroCopy, totalMB / seconds, (allocated / 1024.0 / 1024.0) / totalMB));
+  }
+
+  private void serveFile(Directory directory, boolean zeroCopy) throws IOException {
+    try (FileChunkReader reader =
+        FileChunkReader.open(directory, FILE_NAME, 0, CHUNK_SIZE, zeroCopy)) {
+      while (reader.hasRemaining()) {
+        ByteString content = reader.nextChunk();
+        RawFileChunk rawFileChunk = RawFileChunk.newBuilder().setContent(content).build();
+        rawFileChunk.writeTo(OutputStream.nullOutputStream());
+      }
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.yelp.nrtsearch.server.luceneserver.FileChunkReader.IndexInputChunkReader;
+import com.yelp.nrtsearch.server.luceneserver.FileChunkReader.MappedFileChunkReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FlushInfo;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.NRTCachingDirectory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileChunkReaderTest {
+  private static final String FILE_NAME = "test_file";
+  private static final int FILE_SIZE = 100_000;
+  private static final IOContext FLUSH_CONTEXT = new IOContext(new FlushInfo(1, FILE_SIZE));
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private byte[] fileData;
+
+  @Before
+  public void setUp() {
+    fileData = new byte[FILE_SIZE];
+    new Random(1234).nextBytes(fileData);
+  }
+
+  private void writeFile(Directory directory) throws IOException {
+    writeFile(directory, IOContext.DEFAULT);
+  }
+
+  private void writeFile(Directory directory, IOContext context) throws IOException {
+    try (IndexOutput output = directory.createOutput(FILE_NAME, context)) {
+      output.writeBytes(fileData, fileData.length);
+    }
+  }
+
+  private byte[] readAll(FileChunkReader reader, int chunkSize) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    while (reader.hasRemaining()) {
+      ByteString chunk = reader.nextChunk();
+      assertTrue(chunk.size() <= chunkSize);
+      chunk.writeTo(outputStream);
+    }
+    assertEquals(reader.getFileLength(), reader.getFileOffset());
+    return outputStream.toByteArray();
+  }
+
+  private byte[] expected(int fpStart) {
+    byte[] expected = new byte[FILE_SIZE - fpStart];
+    System.arraycopy(fileData, fpStart, expected, 0, expected.length);
+    return expected;
+  }
+
+  @Test
+  public void testIndexInputReader() throws IOException {
+    try (Directory directory = FSDirectory.open(folder.getRoot().toPath())) {
+      writeFile(directory);
+      for (int chunkSize : new int[] {1, 1000, 64 * 1024, FILE_SIZE, FILE_SIZE * 2}) {
+        for (int fpStart : new int[] {0, 10, FILE_SIZE - 1, FILE_SIZE}) {
+          try (FileChunkReader reader =
+              FileChunkReader.open(directory, FILE_NAME, fpStart, chunkSize, false)) {
+            assertTrue(reader instanceof IndexInputChunkReader);
+            assertArrayEquals(expected(fpStart), readAll(reader, chunkSize));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testZeroCopyReader() throws IOException {
+    try (Directory directory = FSDirectory.open(folder.getRoot().toPath())) {
+      writeFile(directory);
+      for (int chunkSize : new int[] {1, 1000, 64 * 1024, FILE_SIZE, FILE_SIZE * 2}) {
+        for (int fpStart : new int[] {0, 10, FILE_SIZE - 1, FILE_SIZE}) {
+          try (FileChunkReader reader =
+              FileChunkReader.open(directory, FILE_NAME, fpStart, chunkSize, true)) {
+            assertTrue(reader instanceof MappedFileChunkReader);
+            assertArrayEquals(expected(fpStart), readAll(reader, chunkSize));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testZeroCopyReaderWindows() throws IOException {
+    try (Directory directory = FSDirectory.open(folder.getRoot().toPath())) {
+      writeFile(directory);
+      for (int chunkSize : new int[] {1000, 1300, 7000}) {
+        for (int fpStart : new int[] {0, 10, FILE_SIZE - 1}) {
+          try (FileChunkReader reader =
+              MappedFileChunkReader.open(
+                  folder.getRoot().toPath().resolve(FILE_NAME), fpStart, chunkSize, 3000)) {
+            assertArrayEquals(expected(fpStart), readAll(reader, chunkSize));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testChunkValidAfterClose() throws IOException {
+    try (Directory directory = FSDirectory.open(folder.getRoot().toPath())) {
+      writeFile(directory);
+      ByteString chunk;
+      try (FileChunkReader reader = FileChunkReader.open(directory, FILE_NAME, 0, 1000, true)) {
+        chunk = reader.nextChunk();
+      }
+      byte[] expected = new byte[1000];
+      System.arraycopy(fileData, 0, expected, 0, expected.length);
+      assertArrayEquals(expected, chunk.toByteArray());
+    }
+  }
+
+  @Test
+  public void testCachedFileFallback() throws IOException {
+    try (Directory directory =
+        new NRTCachingDirectory(FSDirectory.open(folder.getRoot().toPath()), 10, 10)) {
+      writeFile(directory, FLUSH_CONTEXT);
+      try (FileChunkReader reader = FileChunkReader.open(directory, FILE_NAME, 0, 1000, true)) {
+        assertTrue(reader instanceof IndexInputChunkReader);
+        assertArrayEquals(fileData, readAll(reader, 1000));
+      }
+    }
+  }
+
+  @Test
+  public void testUncachedFileZeroCopy() throws IOException {
+    try (Directory directory =
+        new NRTCachingDirectory(FSDirectory.open(folder.getRoot().toPath()), 10, 10)) {
+      writeFile(directory, FLUSH_CONTEXT);
+      directory.sync(Collections.singletonList(FILE_NAME));
+      try (FileChunkReader reader = FileChunkReader.open(directory, FILE_NAME, 0, 1000, true)) {
+        assertTrue(reader instanceof MappedFileChunkReader);
+        assertArrayEquals(fileData, readAll(reader, 1000));
+      }
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReadPastEnd() throws IOException {
+    try (Directory directory = FSDirectory.open(folder.getRoot().toPath())) {
+      writeFile(directory);
+      try (FileChunkReader reader =
+          FileChunkReader.open(directory, FILE_NAME, FILE_SIZE, 1000, true)) {
+        assertFalse(reader.hasRemaining());
+        reader.nextChunk();
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidStartOffset() throws IOException {
+    try (Directory directory = FSDirectory.open(folder.getRoot().toPath())) {
+      writeFile(directory);
+      FileChunkReader.open(directory, FILE_NAME, FILE_SIZE + 1, 1000, true);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidChunkSize() throws IOException {
+    try (Directory directory = FSDirectory.open(folder.getRoot().toPath())) {
+      writeFile(directory);
+      FileChunkReader.open(directory, FILE_NAME, 0, 0, true);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest.MultiValuedField;
+import com.yelp.nrtsearch.server.luceneserver.AddDocumentHandler.DocumentsContext;
+import io.grpc.testing.GrpcCleanupRule;
+import java.util.Arrays;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class LuceneDocumentBuilderTest extends ServerTestCase {
+  @ClassRule public static final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private DocumentsContext buildDocument(AddDocumentRequest request) throws Exception {
+    return AddDocumentHandler.LuceneDocumentBuilder.getDocumentsContext(
+        request, getGlobalState().getIndex(DEFAULT_TEST_INDEX));
+  }
+
+  @Test
+  public void testFieldNamesDistinct() throws Exception {
+    AddDocumentRequest request =
+        AddDocumentRequest.newBuilder()
+            .setIndexName(DEFAULT_TEST_INDEX)
+            .putFields("doc_id", MultiValuedField.newBuilder().addValue("1").build())
+            .putFields(
+                "license_no",
+                MultiValuedField.newBuilder().addValue("10").addValue("20").addValue("30").build())
+            .putFields(
+                "vendor_name_atom",
+                MultiValuedField.newBuilder().addValue("first").addValue("second").build())
+            .build();
+    DocumentsContext documentsContext = buildDocument(request);
+    String[] fieldNames = documentsContext.getRootDocument().getValues(IndexState.FIELD_NAMES);
+    String[] expected =
+        new String[] {"doc_id", "license_no", "vendor_name_atom", IndexState.NESTED_PATH};
+    Arrays.sort(fieldNames);
+    Arrays.sort(expected);
+    assertArrayEquals(expected, fieldNames);
+  }
+
+  @Test
+  public void testBufferReusedBetweenDocuments() throws Exception {
+    AddDocumentRequest first =
+        AddDocumentRequest.newBuilder()
+            .setIndexName(DEFAULT_TEST_INDEX)
+            .putFields("doc_id", MultiValuedField.newBuilder().addValue("1").build())
+            .putFields("count", MultiValuedField.newBuilder().addValue("5").build())
+            .build();
+    AddDocumentRequest second =
+        AddDocumentRequest.newBuilder()
+            .setIndexName(DEFAULT_TEST_INDEX)
+            .putFields("doc_id", MultiValuedField.newBuilder().addValue("2").build())
+            .build();
+    buildDocument(first);
+    String[] fieldNames = buildDocument(second).getRootDocument().getValues(IndexState.FIELD_NAMES);
+    Arrays.sort(fieldNames);
+    assertArrayEquals(new String[] {IndexState.NESTED_PATH, "doc_id"}, fieldNames);
+  }
+}
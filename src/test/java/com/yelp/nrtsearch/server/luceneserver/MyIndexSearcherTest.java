@@ -28,11 +28,27 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager.SearcherAndTaxonomy;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.IndexSearcher.LeafSlice;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
 import org.junit.ClassRule;
 import org.junit.Test;
 
@@ -184,6 +200,62 @@ public class MyIndexSearcherTest extends ServerTestCase {
     }
   }
 
+  @Test
+  public void testBulkScorerMatchesScorer() throws IOException {
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    for (int i = 0; i < NUM_DOCS; i += 3) {
+      builder.add(
+          new BoostQuery(IntPoint.newExactQuery("int_field", i), 1 + (i % 7)),
+          BooleanClause.Occur.SHOULD);
+    }
+    builder.add(IntPoint.newRangeQuery("int_field", 40, 60), BooleanClause.Occur.SHOULD);
+    Query query = builder.build();
+
+    SearcherAndTaxonomy s = null;
+    ShardState shardState = getGlobalState().getIndex(DOCS_INDEX).getShard(0);
+    try {
+      s = shardState.acquire();
+      IndexSearcher searcher = s.searcher;
+
+      // collected through MyIndexSearcher, which uses the BulkScorer of each segment
+      TopScoreDocCollector collector = TopScoreDocCollector.create(NUM_DOCS, Integer.MAX_VALUE);
+      searcher.search(query, collector);
+      Map<Integer, Float> bulkScorerHits = new HashMap<>();
+      for (ScoreDoc scoreDoc : collector.topDocs().scoreDocs) {
+        bulkScorerHits.put(scoreDoc.doc, scoreDoc.score);
+      }
+
+      // iterate the Scorer of each segment doc at a time
+      Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE, 1);
+      Map<Integer, Float> scorerHits = new HashMap<>();
+      for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
+        Scorer scorer = weight.scorer(context);
+        if (scorer == null) {
+          continue;
+        }
+        Bits liveDocs = context.reader().getLiveDocs();
+        DocIdSetIterator iterator = scorer.iterator();
+        for (int doc = iterator.nextDoc();
+            doc != DocIdSetIterator.NO_MORE_DOCS;
+            doc = iterator.nextDoc()) {
+          if (liveDocs == null || liveDocs.get(doc)) {
+            scorerHits.put(context.docBase + doc, scorer.score());
+          }
+        }
+      }
+
+      assertEquals(48, scorerHits.size());
+      assertEquals(scorerHits.keySet(), bulkScorerHits.keySet());
+      for (Map.Entry<Integer, Float> entry : scorerHits.entrySet()) {
+        assertEquals(entry.getValue(), bulkScorerHits.get(entry.getKey()), 0.0001);
+      }
+    } finally {
+      if (s != null) {
+        shardState.release(s);
+      }
+    }
+  }
+
   @Test(expected = NullPointerException.class)
   public void testNullWrappedExecutor() throws IOException {
     new ExecutorWithParams(null, 10, 10, 1);
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.yelp.nrtsearch.server.config.NrtPointNotifyConfig;
+import com.yelp.nrtsearch.server.grpc.ReplicationServerClient;
+import com.yelp.nrtsearch.server.grpc.TransferStatus;
+import com.yelp.nrtsearch.server.luceneserver.NRTPrimaryNode.NrtPointNotifier;
+import com.yelp.nrtsearch.server.luceneserver.NRTPrimaryNode.ReplicaDetails;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NrtPointNotifierTest {
+  private static final String INDEX_NAME = "test_index";
+  private static final long PRIMARY_GEN = 1;
+
+  private final Queue<ReplicaDetails> replicasInfos = new ConcurrentLinkedQueue<>();
+  private final List<ReplicationServerClient> clients = new ArrayList<>();
+  private final List<List<NotifyCall>> clientCalls = new ArrayList<>();
+
+  private static class NotifyCall {
+    final long version;
+    final StreamObserver<TransferStatus> observer;
+
+    NotifyCall(long version, StreamObserver<TransferStatus> observer) {
+      this.version = version;
+      this.observer = observer;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    replicasInfos.clear();
+    clients.clear();
+    clientCalls.clear();
+  }
+
+  private void addReplicas(int count) {
+    for (int i = 0; i < count; ++i) {
+      ReplicationServerClient client = mock(ReplicationServerClient.class);
+      when(client.getHost()).thenReturn("replica_host");
+      when(client.getPort()).thenReturn(9000 + i);
+      List<NotifyCall> calls = new ArrayList<>();
+      doAnswer(
+              invocation -> {
+                calls.add(new NotifyCall(invocation.getArgument(2), invocation.getArgument(4)));
+                return null;
+              })
+          .when(client)
+          .newNRTPointAsync(anyString(), anyLong(), anyLong(), any(), any());
+      clients.add(client);
+      clientCalls.add(calls);
+      replicasInfos.add(new ReplicaDetails(i, client));
+    }
+  }
+
+  private NrtPointNotifier getNotifier(long quarantineMs) {
+    return new NrtPointNotifier(
+        INDEX_NAME,
+        PRIMARY_GEN,
+        new NrtPointNotifyConfig(5000, quarantineMs, quarantineMs * 4),
+        replicasInfos,
+        msg -> {});
+  }
+
+  private ReplicaDetails getReplica(int index) {
+    return new ArrayList<>(replicasInfos).get(index);
+  }
+
+  private void assertVersions(int replica, long... versions) {
+    List<NotifyCall> calls = clientCalls.get(replica);
+    assertEquals(versions.length, calls.size());
+    for (int i = 0; i < versions.length; ++i) {
+      assertEquals(versions[i], calls.get(i).version);
+    }
+  }
+
+  private NotifyCall lastCall(int replica) {
+    List<NotifyCall> calls = clientCalls.get(replica);
+    return calls.get(calls.size() - 1);
+  }
+
+  @Test
+  public void testNotifiesAllReplicasWithoutWaiting() {
+    addReplicas(3);
+    NrtPointNotifier notifier = getNotifier(1000);
+    notifier.notifyReplicas(5);
+    // every replica has a notification in flight before any has responded
+    for (int i = 0; i < 3; ++i) {
+      assertVersions(i, 5);
+    }
+    for (int i = 0; i < 3; ++i) {
+      lastCall(i).observer.onCompleted();
+    }
+    for (int i = 0; i < 3; ++i) {
+      assertVersions(i, 5);
+    }
+  }
+
+  @Test
+  public void testSlowReplicaDoesNotBlockOthers() {
+    addReplicas(2);
+    NrtPointNotifier notifier = getNotifier(1000);
+    notifier.notifyReplicas(5);
+    lastCall(1).observer.onCompleted();
+    notifier.notifyReplicas(6);
+    notifier.notifyReplicas(7);
+    lastCall(1).observer.onCompleted();
+
+    // replica 0 has not responded, so it is not sent new points
+    assertVersions(0, 5);
+    assertVersions(1, 5, 6, 7);
+  }
+
+  @Test
+  public void testInFlightResendsLatestVersion() {
+    addReplicas(1);
+    NrtPointNotifier notifier = getNotifier(1000);
+    notifier.notifyReplicas(5);
+    notifier.notifyReplicas(6);
+    notifier.notifyReplicas(7);
+    assertVersions(0, 5);
+
+    // only the latest version is sent once the replica responds
+    lastCall(0).observer.onCompleted();
+    assertVersions(0, 5, 7);
+
+    // nothing newer to send
+    lastCall(0).observer.onCompleted();
+    assertVersions(0, 5, 7);
+
+    notifier.notifyReplicas(8);
+    assertVersions(0, 5, 7, 8);
+  }
+
+  @Test
+  public void testFailedReplicaQuarantined() {
+    addReplicas(2);
+    NrtPointNotifier notifier = getNotifier(60000);
+    notifier.notifyReplicas(5);
+    lastCall(0).observer.onError(Status.DEADLINE_EXCEEDED.asRuntimeException());
+    lastCall(1).observer.onCompleted();
+    assertTrue(getReplica(0).isQuarantined());
+    assertFalse(getReplica(1).isQuarantined());
+
+    notifier.notifyReplicas(6);
+    assertVersions(0, 5);
+    assertVersions(1, 5, 6);
+    assertEquals(2, replicasInfos.size());
+  }
+
+  @Test
+  public void testFailedReplicaNotifiedAfterQuarantine() {
+    addReplicas(1);
+    // no quarantine time, the replica is only skipped while a notification is in flight
+    NrtPointNotifier notifier = getNotifier(0);
+    notifier.notifyReplicas(5);
+    lastCall(0).observer.onError(Status.DEADLINE_EXCEEDED.asRuntimeException());
+    assertFalse(getReplica(0).isQuarantined());
+
+    notifier.notifyReplicas(6);
+    assertVersions(0, 5, 6);
+    lastCall(0).observer.onCompleted();
+    assertFalse(getReplica(0).isQuarantined());
+  }
+
+  @Test
+  public void testFailedResendQuarantined() {
+    addReplicas(1);
+    NrtPointNotifier notifier = getNotifier(60000);
+    notifier.notifyReplicas(5);
+    notifier.notifyReplicas(6);
+    lastCall(0).observer.onCompleted();
+    assertVersions(0, 5, 6);
+
+    lastCall(0).observer.onError(Status.INTERNAL.asRuntimeException());
+    assertTrue(getReplica(0).isQuarantined());
+    notifier.notifyReplicas(7);
+    assertVersions(0, 5, 6);
+  }
+
+  @Test
+  public void testUnavailableReplicaRemoved() {
+    addReplicas(2);
+    NrtPointNotifier notifier = getNotifier(1000);
+    ReplicaDetails unavailableReplica = getReplica(0);
+    notifier.notifyReplicas(5);
+    lastCall(0).observer.onError(Status.UNAVAILABLE.asRuntimeException());
+    lastCall(1).observer.onCompleted();
+
+    assertEquals(1, replicasInfos.size());
+    assertFalse(replicasInfos.contains(unavailableReplica));
+    verify(clients.get(0)).close();
+
+    notifier.notifyReplicas(6);
+    assertVersions(0, 5);
+    assertVersions(1, 5, 6);
+  }
+
+  @Test
+  public void testNotifyExceptionQuarantined() {
+    addReplicas(1);
+    doAnswer(
+            invocation -> {
+              throw new IllegalStateException("channel shutdown");
+            })
+        .when(clients.get(0))
+        .newNRTPointAsync(anyString(), anyLong(), anyLong(), any(), any());
+    NrtPointNotifier notifier = getNotifier(60000);
+    notifier.notifyReplicas(5);
+    assertTrue(getReplica(0).isQuarantined());
+    assertEquals(1, replicasInfos.size());
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import io.grpc.testing.GrpcCleanupRule;
+import org.junit.ClassRule;
+
+/**
+ * Run the multi index indexing tests with pipelined indexing. Only one batch may be in flight, so
+ * the stream must wait for each batch to be indexed before receiving more documents.
+ */
+public class PipelinedMultiIndexAddDocumentsTest extends MultiIndexAddDocumentsTest {
+  @ClassRule public static final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  @Override
+  protected String getExtraConfig() {
+    return String.join("\n", "pipelinedIndexing: true", "pipelinedIndexingMaxInFlightBatches: 1");
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.yelp.nrtsearch.server.grpc.SearchResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class StreamFlowControlTest {
+
+  @SuppressWarnings("unchecked")
+  private ServerCallStreamObserver<SearchResponse> mockObserver() {
+    return (ServerCallStreamObserver<SearchResponse>) mock(ServerCallStreamObserver.class);
+  }
+
+  private CompletableFuture<Void> awaitReadyAsync(SearchHandler.StreamFlowControl flowControl) {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            flowControl.awaitReady();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        });
+  }
+
+  @Test
+  public void testReady() throws Exception {
+    ServerCallStreamObserver<SearchResponse> observer = mockObserver();
+    when(observer.isReady()).thenReturn(true);
+    new SearchHandler.StreamFlowControl(observer).awaitReady();
+  }
+
+  @Test(timeout = 10000)
+  public void testWaitsForOnReady() throws Exception {
+    ServerCallStreamObserver<SearchResponse> observer = mockObserver();
+    AtomicBoolean ready = new AtomicBoolean(false);
+    when(observer.isReady()).thenAnswer(invocation -> ready.get());
+    SearchHandler.StreamFlowControl flowControl = new SearchHandler.StreamFlowControl(observer);
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    verify(observer).setOnReadyHandler(onReady.capture());
+
+    CompletableFuture<Void> waiter = awaitReadyAsync(flowControl);
+    Thread.sleep(200);
+    assertFalse(waiter.isDone());
+    ready.set(true);
+    onReady.getValue().run();
+    waiter.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test(timeout = 10000)
+  public void testCancelledWhileWaiting() throws Exception {
+    ServerCallStreamObserver<SearchResponse> observer = mockObserver();
+    AtomicBoolean cancelled = new AtomicBoolean(false);
+    when(observer.isReady()).thenReturn(false);
+    when(observer.isCancelled()).thenAnswer(invocation -> cancelled.get());
+    SearchHandler.StreamFlowControl flowControl = new SearchHandler.StreamFlowControl(observer);
+    ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+    verify(observer).setOnCancelHandler(onCancel.capture());
+
+    CompletableFuture<Void> waiter = awaitReadyAsync(flowControl);
+    Thread.sleep(200);
+    assertFalse(waiter.isDone());
+    cancelled.set(true);
+    onCancel.getValue().run();
+    try {
+      waiter.get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      StatusRuntimeException statusException = (StatusRuntimeException) e.getCause();
+      assertEquals(Status.Code.CANCELLED, statusException.getStatus().getCode());
+    }
+  }
+}
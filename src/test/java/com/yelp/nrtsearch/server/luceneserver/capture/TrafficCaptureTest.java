@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.yelp.nrtsearch.server.config.TrafficCaptureConfig;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest.MultiValuedField;
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import com.yelp.nrtsearch.server.luceneserver.ServerTestCase;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TrafficCaptureTest extends ServerTestCase {
+  private static final int NUM_SEARCHES = 10;
+
+  private Path getCaptureDir() {
+    return folder.getRoot().toPath().resolve("capture");
+  }
+
+  @Override
+  protected String getExtraConfig() {
+    return String.join(
+        "\n", "trafficCapture:", "  enabled: true", "  directory: " + getCaptureDir());
+  }
+
+  @Override
+  protected void initIndex(String name) throws Exception {
+    addDocsFromResourceFile(name, "/addDocs.csv");
+  }
+
+  private SearchRequest getSearchRequest(int i) {
+    return SearchRequest.newBuilder()
+        .setIndexName(DEFAULT_TEST_INDEX)
+        .setTopHits(i + 1)
+        .addRetrieveFields("doc_id")
+        .build();
+  }
+
+  private List<TrafficLog.Record> readRecords(Path directory) throws IOException {
+    List<TrafficLog.Record> records = new ArrayList<>();
+    for (Path file : TrafficLog.listFiles(directory)) {
+      try (TrafficLog.Reader reader = new TrafficLog.Reader(file)) {
+        TrafficLog.Record record;
+        while ((record = reader.next()) != null) {
+          records.add(record);
+        }
+      }
+    }
+    return records;
+  }
+
+  @Test
+  public void testCaptureAndReplay() throws Exception {
+    List<SearchRequest> searchRequests = new ArrayList<>();
+    for (int i = 0; i < NUM_SEARCHES; ++i) {
+      SearchRequest request = getSearchRequest(i);
+      searchRequests.add(request);
+      getGrpcServer().getBlockingStub().search(request);
+    }
+    TrafficCapture.getInstance().close();
+
+    List<TrafficLog.Record> records = readRecords(getCaptureDir());
+    List<SearchRequest> capturedSearches = new ArrayList<>();
+    int addDocuments = 0;
+    int completedStreams = 0;
+    long lastTimestamp = -1;
+    for (TrafficLog.Record record : records) {
+      assertTrue(record.getTimestampNanos() >= lastTimestamp);
+      lastTimestamp = record.getTimestampNanos();
+      switch (record.getType()) {
+        case SEARCH:
+          capturedSearches.add(record.getSearchRequest());
+          break;
+        case ADD_DOCUMENT:
+          assertEquals(DEFAULT_TEST_INDEX, record.getAddDocumentRequest().getIndexName());
+          addDocuments++;
+          break;
+        case ADD_DOCUMENTS_COMPLETED:
+          completedStreams++;
+          break;
+      }
+    }
+    assertEquals(searchRequests, capturedSearches);
+    assertEquals(2, addDocuments);
+    assertEquals(1, completedStreams);
+
+    TrafficReplayer replayer = new TrafficReplayer(getGrpcServer().getStub(), 0, 4, true, true);
+    replayer.replay(TrafficLog.listFiles(getCaptureDir()));
+    assertEquals(NUM_SEARCHES, replayer.getSearchStats().getCount());
+    assertEquals(0, replayer.getSearchStats().getErrors());
+    assertEquals(1, replayer.getIndexingStats().getCount());
+    assertEquals(0, replayer.getIndexingStats().getErrors());
+    assertTrue(replayer.getSearchStats().summary().contains("search: requests=10 errors=0"));
+  }
+
+  @Test(timeout = 60000)
+  public void testReplayStreamsOverInFlightLimit() throws Exception {
+    Path captureDir = folder.newFolder("interleaved").toPath();
+    TrafficCapture capture =
+        new TrafficCapture(
+            new TrafficCaptureConfig(true, captureDir.toString(), 1.0, true, 1000000, 3, 1000));
+    int numStreams = 5;
+    List<StreamObserver<AddDocumentRequest>> observers = new ArrayList<>();
+    for (int i = 0; i < numStreams; ++i) {
+      observers.add(
+          capture.captureAddDocuments(
+              new StreamObserver<>() {
+                @Override
+                public void onNext(AddDocumentRequest value) {}
+
+                @Override
+                public void onError(Throwable t) {}
+
+                @Override
+                public void onCompleted() {}
+              }));
+    }
+    // all streams are open at once, with documents and searches interleaved between them
+    for (int i = 0; i < numStreams; ++i) {
+      for (StreamObserver<AddDocumentRequest> observer : observers) {
+        observer.onNext(
+            AddDocumentRequest.newBuilder()
+                .setIndexName(DEFAULT_TEST_INDEX)
+                .putFields("doc_id", MultiValuedField.newBuilder().addValue("100").build())
+                .build());
+        capture.captureSearch(getSearchRequest(i));
+      }
+    }
+    for (StreamObserver<AddDocumentRequest> observer : observers) {
+      observer.onCompleted();
+    }
+    capture.close();
+
+    TrafficReplayer replayer = new TrafficReplayer(getGrpcServer().getStub(), 0, 2, true, true);
+    replayer.replay(TrafficLog.listFiles(captureDir));
+    assertEquals(numStreams * numStreams, replayer.getSearchStats().getCount());
+    assertEquals(0, replayer.getSearchStats().getErrors());
+    assertEquals(numStreams, replayer.getIndexingStats().getCount());
+    assertEquals(0, replayer.getIndexingStats().getErrors());
+  }
+
+  @Test
+  public void testRotation() throws Exception {
+    Path captureDir = folder.newFolder("rotation").toPath();
+    TrafficCapture capture =
+        new TrafficCapture(
+            new TrafficCaptureConfig(true, captureDir.toString(), 1.0, true, 100, 3, 1000));
+    StreamObserver<AddDocumentRequest> observer =
+        capture.captureAddDocuments(
+            new StreamObserver<>() {
+              @Override
+              public void onNext(AddDocumentRequest value) {}
+
+              @Override
+              public void onError(Throwable t) {}
+
+              @Override
+              public void onCompleted() {}
+            });
+    for (int i = 0; i < 20; ++i) {
+      capture.captureSearch(getSearchRequest(i));
+      observer.onNext(AddDocumentRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+    }
+    observer.onCompleted();
+    capture.close();
+
+    assertEquals(3, TrafficLog.listFiles(captureDir).size());
+    List<TrafficLog.Record> records = readRecords(captureDir);
+    // oldest files are removed, the newest records are kept
+    TrafficLog.Record last = records.get(records.size() - 1);
+    assertEquals(TrafficLog.RecordType.ADD_DOCUMENTS_COMPLETED, last.getType());
+    assertEquals(1, last.getStreamId());
+  }
+}
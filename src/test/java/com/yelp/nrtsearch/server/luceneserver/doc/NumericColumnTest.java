@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.doc;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class NumericColumnTest {
+
+  @Test
+  public void testMultiValued() {
+    NumericColumn column = new NumericColumn();
+    column.reset(3);
+    column.addValue(1);
+    column.addValue(2);
+    column.endDoc();
+    column.endDoc();
+    column.addValue(3);
+    column.endDoc();
+
+    assertEquals(3, column.getNumDocs());
+    assertEquals(2, column.getValueCount(0));
+    assertEquals(0, column.getValueCount(1));
+    assertEquals(1, column.getValueCount(2));
+    assertEquals(1, column.getValue(0, 0));
+    assertEquals(2, column.getValue(0, 1));
+    assertEquals(3, column.getValue(2, 0));
+  }
+
+  @Test
+  public void testGrowAndReuse() {
+    NumericColumn column = new NumericColumn();
+    column.reset(1);
+    for (int i = 0; i < 100; ++i) {
+      for (int j = 0; j <= i % 3; ++j) {
+        column.addValue(i * 10 + j);
+      }
+      column.endDoc();
+    }
+    assertEquals(100, column.getNumDocs());
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(i % 3 + 1, column.getValueCount(i));
+      for (int j = 0; j <= i % 3; ++j) {
+        assertEquals(i * 10 + j, column.getValue(i, j));
+      }
+    }
+
+    column.reset(2);
+    assertEquals(0, column.getNumDocs());
+    column.addValue(5);
+    column.endDoc();
+    assertEquals(1, column.getNumDocs());
+    assertEquals(1, column.getValueCount(0));
+    assertEquals(5, column.getValue(0, 0));
+  }
+}
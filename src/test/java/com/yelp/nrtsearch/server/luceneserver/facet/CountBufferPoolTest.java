@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.facet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class CountBufferPoolTest {
+
+  @Test
+  public void testReuseBuffer() {
+    CountBufferPool pool = new CountBufferPool(2, 100);
+    int[] buffer = pool.acquire(10);
+    assertEquals(10, buffer.length);
+    pool.release(buffer);
+    assertEquals(1, pool.getPooledBuffers());
+
+    assertSame(buffer, pool.acquire(5));
+    assertEquals(0, pool.getPooledBuffers());
+  }
+
+  @Test
+  public void testDropsSmallBuffer() {
+    CountBufferPool pool = new CountBufferPool(2, 100);
+    int[] buffer = pool.acquire(10);
+    pool.release(buffer);
+
+    int[] larger = pool.acquire(20);
+    assertNotSame(buffer, larger);
+    assertEquals(20, larger.length);
+    assertEquals(0, pool.getPooledBuffers());
+  }
+
+  @Test
+  public void testMaxBuffers() {
+    CountBufferPool pool = new CountBufferPool(2, 100);
+    pool.release(new int[10]);
+    pool.release(new int[10]);
+    pool.release(new int[10]);
+    assertEquals(2, pool.getPooledBuffers());
+  }
+
+  @Test
+  public void testMaxBufferSize() {
+    CountBufferPool pool = new CountBufferPool(2, 100);
+    pool.release(new int[101]);
+    assertEquals(0, pool.getPooledBuffers());
+    pool.release(new int[100]);
+    assertEquals(1, pool.getPooledBuffers());
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.facet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.yelp.nrtsearch.server.luceneserver.facet.DrillSidewaysImpl.SegmentCounts;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DrillSidewaysImplTest {
+  private ThreadPoolExecutor executor;
+  private CountDownLatch blockLatch;
+
+  @Before
+  public void setUp() {
+    executor =
+        new ThreadPoolExecutor(
+            2,
+            2,
+            0,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new ThreadPoolExecutor.AbortPolicy());
+    blockLatch = new CountDownLatch(1);
+  }
+
+  @After
+  public void cleanUp() throws InterruptedException {
+    blockLatch.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  private static FacetsCollector getHits(int... segmentHits) {
+    List<MatchingDocs> matchingDocs = new ArrayList<>();
+    for (int hits : segmentHits) {
+      matchingDocs.add(new MatchingDocs(null, null, hits, null));
+    }
+    FacetsCollector facetsCollector = mock(FacetsCollector.class);
+    when(facetsCollector.getMatchingDocs()).thenReturn(matchingDocs);
+    return facetsCollector;
+  }
+
+  private static void countHits(MatchingDocs matchingDocs, SegmentCounts counts) {
+    for (int i = 0; i < matchingDocs.totalHits; ++i) {
+      counts.valueCounts.add(matchingDocs.totalHits);
+    }
+    counts.totalDocs += matchingDocs.totalHits;
+  }
+
+  @Test
+  public void testCountSegments() throws IOException {
+    SegmentCounts counts =
+        DrillSidewaysImpl.countSegments(
+            getHits(10, 0, 5, 7),
+            executor,
+            FacetValueCounts.KeyType.INT,
+            DrillSidewaysImplTest::countHits);
+    assertEquals(22, counts.totalDocs);
+    assertEquals(3, counts.valueCounts.size());
+  }
+
+  @Test
+  public void testCountSegmentsRejected() throws IOException {
+    // occupy all executor threads, so that any submitted task is rejected
+    for (int i = 0; i < executor.getMaximumPoolSize(); ++i) {
+      executor.execute(
+          () -> {
+            try {
+              blockLatch.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+    }
+    List<Thread> countingThreads = new ArrayList<>();
+    SegmentCounts counts =
+        DrillSidewaysImpl.countSegments(
+            getHits(10, 5, 7),
+            executor,
+            FacetValueCounts.KeyType.INT,
+            (matchingDocs, segmentCounts) -> {
+              countingThreads.add(Thread.currentThread());
+              countHits(matchingDocs, segmentCounts);
+            });
+    assertEquals(22, counts.totalDocs);
+    assertEquals(3, counts.valueCounts.size());
+    assertEquals(3, countingThreads.size());
+    for (Thread thread : countingThreads) {
+      assertEquals(Thread.currentThread(), thread);
+    }
+  }
+}
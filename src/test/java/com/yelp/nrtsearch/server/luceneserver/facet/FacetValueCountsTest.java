@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.facet;
+
+import static org.junit.Assert.assertEquals;
+
+import com.yelp.nrtsearch.server.grpc.LabelAndValue;
+import com.yelp.nrtsearch.server.luceneserver.facet.FacetValueCounts.KeyType;
+import java.util.List;
+import org.junit.Test;
+
+public class FacetValueCountsTest {
+
+  @Test
+  public void testEmpty() {
+    FacetValueCounts counts = new FacetValueCounts();
+    assertEquals(KeyType.UNKNOWN, counts.getKeyType());
+    assertEquals(0, counts.size());
+    assertEquals(0, counts.getTopN(10).size());
+  }
+
+  @Test
+  public void testKeyTypeFromFirstValue() {
+    assertEquals(KeyType.INT, countsOf(1).getKeyType());
+    assertEquals(KeyType.LONG, countsOf(1L).getKeyType());
+    assertEquals(KeyType.FLOAT, countsOf(1.5F).getKeyType());
+    assertEquals(KeyType.DOUBLE, countsOf(1.5).getKeyType());
+    assertEquals(KeyType.OBJECT, countsOf("a").getKeyType());
+  }
+
+  @Test
+  public void testIntCounts() {
+    FacetValueCounts counts = countsOf(1, 2, 2, 3, 3, 3);
+    assertEquals(KeyType.INT, counts.getKeyType());
+    assertEquals(3, counts.size());
+    assertTopN(counts.getTopN(2), "3", 3, "2", 2);
+  }
+
+  @Test
+  public void testFloatLabels() {
+    FacetValueCounts counts = new FacetValueCounts(KeyType.FLOAT);
+    counts.add(0.1F);
+    counts.add(0.1F);
+    assertTopN(counts.getTopN(10), "0.1", 2);
+  }
+
+  @Test
+  public void testMixedTypes() {
+    FacetValueCounts counts = countsOf(1, 1, 1L, "1", 1);
+    assertEquals(KeyType.OBJECT, counts.getKeyType());
+    assertEquals(3, counts.size());
+    List<LabelAndValue> topN = counts.getTopN(1);
+    assertTopN(topN, "1", 3);
+  }
+
+  @Test
+  public void testMerge() {
+    FacetValueCounts counts = countsOf(1L, 2L, 2L);
+    counts.merge(countsOf(2L, 3L, 3L, 3L, 3L));
+    counts.merge(new FacetValueCounts());
+    assertEquals(KeyType.LONG, counts.getKeyType());
+    assertTopN(counts.getTopN(10), "3", 4, "2", 3, "1", 1);
+
+    FacetValueCounts empty = new FacetValueCounts();
+    empty.merge(counts);
+    assertEquals(KeyType.LONG, empty.getKeyType());
+    assertTopN(empty.getTopN(1), "3", 4);
+  }
+
+  @Test
+  public void testMergeMixedTypes() {
+    FacetValueCounts counts = countsOf(1.5, 1.5);
+    counts.merge(countsOf("a", "a", "a"));
+    assertEquals(KeyType.OBJECT, counts.getKeyType());
+    assertTopN(counts.getTopN(10), "a", 3, "1.5", 2);
+  }
+
+  private static FacetValueCounts countsOf(Object... values) {
+    FacetValueCounts counts = new FacetValueCounts();
+    for (Object value : values) {
+      counts.add(value);
+    }
+    return counts;
+  }
+
+  private static void assertTopN(List<LabelAndValue> topN, Object... labelsAndCounts) {
+    assertEquals(labelsAndCounts.length / 2, topN.size());
+    for (int i = 0; i < topN.size(); ++i) {
+      assertEquals(labelsAndCounts[i * 2], topN.get(i).getLabel());
+      assertEquals(((Integer) labelsAndCounts[i * 2 + 1]).doubleValue(), topN.get(i).getValue(), 0);
+    }
+  }
+}
@@ -39,12 +39,16 @@ import org.junit.Test;
 
 public class FilteredSSDVFacetCountsTest extends ServerTestCase {
   private static final String MULTI_SEGMENT_INDEX = "test_index_multi";
+  // segments with multiple docs, so segment ordinal counts can be greater than one
+  private static final String MULTI_DOC_SEGMENT_INDEX = "test_index_multi_doc";
   @ClassRule public static final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
 
   @Override
   public FieldDefRequest getIndexDef(String name) throws IOException {
-    if (MULTI_SEGMENT_INDEX.equals(name)) {
-      return getFieldsFromResourceFile("/facet/filtered_field_facets_multi.json");
+    if (MULTI_SEGMENT_INDEX.equals(name) || MULTI_DOC_SEGMENT_INDEX.equals(name)) {
+      return getFieldsFromResourceFile("/facet/filtered_field_facets_multi.json").toBuilder()
+          .setIndexName(name)
+          .build();
     } else {
       return getFieldsFromResourceFile("/facet/filtered_field_facets.json");
     }
@@ -52,7 +56,7 @@ public class FilteredSSDVFacetCountsTest extends ServerTestCase {
 
   @Override
   public List<String> getIndices() {
-    return Arrays.asList(DEFAULT_TEST_INDEX, MULTI_SEGMENT_INDEX);
+    return Arrays.asList(DEFAULT_TEST_INDEX, MULTI_SEGMENT_INDEX, MULTI_DOC_SEGMENT_INDEX);
   }
 
   @Override
@@ -106,6 +110,11 @@ public class FilteredSSDVFacetCountsTest extends ServerTestCase {
       writer.commit();
       addDocuments(Stream.of(doc3));
       writer.commit();
+    } else if (MULTI_DOC_SEGMENT_INDEX.equals(name)) {
+      addDocuments(Stream.of(doc1, doc2));
+      writer.commit();
+      addDocuments(Stream.of(doc3));
+      writer.commit();
     } else {
       List<AddDocumentRequest> documents = new ArrayList<>();
       documents.add(doc1);
@@ -233,6 +242,8 @@ public class FilteredSSDVFacetCountsTest extends ServerTestCase {
     assertResponse(response, childCount, expectedValues);
     response = doQuery(MULTI_SEGMENT_INDEX, facet);
     assertResponse(response, childCount, expectedValues);
+    response = doQuery(MULTI_DOC_SEGMENT_INDEX, facet);
+    assertResponse(response, childCount, expectedValues);
   }
 
   private void assertResponse(
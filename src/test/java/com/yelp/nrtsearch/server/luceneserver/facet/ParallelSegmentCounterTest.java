@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.facet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelSegmentCounterTest {
+  private ThreadPoolExecutor executor;
+  private CountDownLatch blockLatch;
+
+  @Before
+  public void setUp() {
+    executor =
+        new ThreadPoolExecutor(
+            2,
+            2,
+            0,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new ThreadPoolExecutor.AbortPolicy());
+    blockLatch = new CountDownLatch(1);
+  }
+
+  @After
+  public void cleanUp() throws InterruptedException {
+    blockLatch.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  /** Occupy all executor threads, so that any submitted task is rejected. */
+  private void blockExecutor() {
+    for (int i = 0; i < executor.getMaximumPoolSize(); ++i) {
+      executor.execute(
+          () -> {
+            try {
+              blockLatch.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+    }
+  }
+
+  private static List<MatchingDocs> getMatchingDocs(int... segmentHits) {
+    List<MatchingDocs> matchingDocs = new ArrayList<>();
+    for (int hits : segmentHits) {
+      matchingDocs.add(new MatchingDocs(null, null, hits, null));
+    }
+    return matchingDocs;
+  }
+
+  private static int sumHits(List<MatchingDocs> slice) {
+    int total = 0;
+    for (MatchingDocs hits : slice) {
+      total += hits.totalHits;
+    }
+    return total;
+  }
+
+  @Test
+  public void testCountsSlices() throws IOException {
+    List<Integer> results =
+        ParallelSegmentCounter.countSlices(
+            getMatchingDocs(10, 0, 5, 7), executor, ParallelSegmentCounterTest::sumHits);
+    assertEquals(2, results.size());
+    assertEquals(22, results.stream().mapToInt(Integer::intValue).sum());
+  }
+
+  @Test
+  public void testNoExecutor() throws IOException {
+    List<Integer> results =
+        ParallelSegmentCounter.countSlices(
+            getMatchingDocs(10, 5, 7), null, ParallelSegmentCounterTest::sumHits);
+    assertEquals(Arrays.asList(22), results);
+  }
+
+  @Test
+  public void testCountsRejectedSlices() throws IOException {
+    blockExecutor();
+    List<Thread> countingThreads = new ArrayList<>();
+    List<Integer> results =
+        ParallelSegmentCounter.countSlices(
+            getMatchingDocs(10, 5, 7),
+            executor,
+            slice -> {
+              synchronized (countingThreads) {
+                countingThreads.add(Thread.currentThread());
+              }
+              return sumHits(slice);
+            });
+    assertEquals(2, results.size());
+    assertEquals(22, results.stream().mapToInt(Integer::intValue).sum());
+    assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()), countingThreads);
+  }
+
+  @Test
+  public void testRejectedSliceFailure() {
+    blockExecutor();
+    try {
+      ParallelSegmentCounter.countSlices(
+          getMatchingDocs(10, 5, 7),
+          executor,
+          slice -> {
+            if (sumHits(slice) == 12) {
+              throw new IOException("count failed");
+            }
+            return sumHits(slice);
+          });
+      fail();
+    } catch (IOException e) {
+      assertEquals("count failed", e.getMessage());
+    }
+  }
+}
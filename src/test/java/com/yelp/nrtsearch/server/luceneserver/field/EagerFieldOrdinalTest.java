@@ -29,6 +29,7 @@ import com.yelp.nrtsearch.server.grpc.TermsCollector;
 import com.yelp.nrtsearch.server.luceneserver.ServerTestCase;
 import com.yelp.nrtsearch.server.luceneserver.ShardState;
 import com.yelp.nrtsearch.server.luceneserver.search.GlobalOrdinalLookup;
+import com.yelp.nrtsearch.server.luceneserver.search.cache.GlobalOrdinalLookupCache;
 import io.grpc.testing.GrpcCleanupRule;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -179,7 +180,7 @@ public class EagerFieldOrdinalTest extends ServerTestCase {
     assertTrue(fieldDef instanceof TextBaseFieldDef);
     TextBaseFieldDef textBaseFieldDef = (TextBaseFieldDef) fieldDef;
     GlobalOrdinalLookup lookup =
-        textBaseFieldDef.ordinalLookupCache.get(reader.getReaderCacheHelper().getKey());
+        GlobalOrdinalLookupCache.getInstance().getIfPresent(textBaseFieldDef, reader);
     assertNull(lookup);
   }
 
@@ -187,7 +188,7 @@ public class EagerFieldOrdinalTest extends ServerTestCase {
     assertTrue(fieldDef instanceof TextBaseFieldDef);
     TextBaseFieldDef textBaseFieldDef = (TextBaseFieldDef) fieldDef;
     GlobalOrdinalLookup lookup =
-        textBaseFieldDef.ordinalLookupCache.get(reader.getReaderCacheHelper().getKey());
+        GlobalOrdinalLookupCache.getInstance().getIfPresent(textBaseFieldDef, reader);
     assertNotNull(lookup);
   }
 
@@ -67,6 +67,11 @@ public class HighlightTest extends ServerTestCase {
                 MultiValuedField.newBuilder()
                     .addValue("This is my regular place, the food is good")
                     .build())
+            .putFields(
+                "comment_offsets",
+                MultiValuedField.newBuilder()
+                    .addValue("the food here is amazing, service was good")
+                    .build())
             .build();
     docs.add(request);
     request =
@@ -84,6 +89,12 @@ public class HighlightTest extends ServerTestCase {
                 MultiValuedField.newBuilder()
                     .addValue("There is some amazing food and also drinks here. Must visit!")
                     .build())
+            .putFields(
+                "comment_offsets",
+                MultiValuedField.newBuilder()
+                    .addValue(
+                        "This is my first time eating at this restaurant. The food here is pretty good, the service could be better. My favorite food was chilly chicken.")
+                    .build())
             .build();
     docs.add(request);
     addDocuments(docs.stream());
@@ -310,6 +321,136 @@ public class HighlightTest extends ServerTestCase {
     assertThat(response.getHits(1).getHighlightsMap()).isEmpty();
   }
 
+  @Test
+  public void testUnifiedHighlightPostingsOffsets() {
+    Settings settings =
+        Settings.newBuilder()
+            .setHighlighterType(Highlight.Type.UNIFIED)
+            .setHighlightQuery(
+                Query.newBuilder()
+                    .setMatchQuery(
+                        MatchQuery.newBuilder().setField("comment_offsets").setQuery("food")))
+            .build();
+    Highlight highlight =
+        Highlight.newBuilder().setSettings(settings).addFields("comment_offsets").build();
+    SearchResponse response = doHighlightQuery(highlight);
+
+    assertFields(response);
+
+    assertThat(response.getHits(0).getHighlightsMap().get("comment_offsets").getFragmentsList())
+        .containsExactly("the <em>food</em> here is amazing, service was good");
+    List<String> fragments =
+        response.getHits(1).getHighlightsMap().get("comment_offsets").getFragmentsList();
+    assertThat(fragments).isNotEmpty();
+    assertThat(String.join(" ", fragments))
+        .contains("The <em>food</em> here is pretty good")
+        .contains("My favorite <em>food</em> was chilly chicken.");
+    assertThat(response.getDiagnostics().getHighlightTimeMs()).isGreaterThan(0);
+  }
+
+  @Test
+  public void testUnifiedHighlightMaxNumFragmentsZero() {
+    Settings settings =
+        Settings.newBuilder()
+            .setHighlighterType(Highlight.Type.UNIFIED)
+            .addPreTags("<START>")
+            .addPostTags("<END>")
+            .setFragmentSize(UInt32Value.newBuilder().setValue(10))
+            .setMaxNumberOfFragments(UInt32Value.newBuilder().setValue(0))
+            .setFieldMatch(false)
+            .build();
+    Highlight highlight =
+        Highlight.newBuilder().setSettings(settings).addFields("comment_offsets").build();
+    SearchResponse response = doHighlightQuery(highlight);
+
+    assertThat(response.getHits(0).getHighlightsMap().get("comment_offsets").getFragmentsList())
+        .containsExactly("the <START>food<END> here is amazing, service was good");
+    assertThat(response.getHits(1).getHighlightsMap().get("comment_offsets").getFragmentsList())
+        .containsExactly(
+            "This is my first time eating at this restaurant. The <START>food<END> here is pretty good, the service could be better. My favorite <START>food<END> was chilly chicken.");
+  }
+
+  @Test
+  public void testUnifiedHighlightFieldMatchTrue() {
+    Highlight highlight =
+        Highlight.newBuilder()
+            .setSettings(
+                Settings.newBuilder()
+                    .setHighlighterType(Highlight.Type.UNIFIED)
+                    .setFieldMatch(true))
+            .addFields("comment_offsets")
+            .build();
+    SearchResponse response = doHighlightQuery(highlight);
+
+    assertThat(response.getHitsCount()).isEqualTo(2);
+    assertThat(response.getHits(0).getHighlightsMap()).isEmpty();
+    assertThat(response.getHits(1).getHighlightsMap()).isEmpty();
+  }
+
+  @Test
+  public void testHighlighterTypePerField() {
+    Settings fieldSettings =
+        Settings.newBuilder()
+            .setHighlighterType(Highlight.Type.UNIFIED)
+            .setMaxNumberOfFragments(UInt32Value.newBuilder().setValue(0))
+            .setHighlightQuery(
+                Query.newBuilder()
+                    .setMatchQuery(
+                        MatchQuery.newBuilder().setField("comment_offsets").setQuery("food")))
+            .build();
+    Highlight highlight =
+        Highlight.newBuilder()
+            .addFields("comment")
+            .addFields("comment_offsets")
+            .putFieldSettings("comment_offsets", fieldSettings)
+            .build();
+    SearchResponse response = doHighlightQuery(highlight);
+
+    assertThat(response.getHits(0).getHighlightsMap().get("comment").getFragmentsList())
+        .containsExactly("the <em>food</em> here is amazing, service was good");
+    assertThat(response.getHits(0).getHighlightsMap().get("comment_offsets").getFragmentsList())
+        .containsExactly("the <em>food</em> here is amazing, service was good");
+    assertThat(response.getHits(1).getHighlightsMap().get("comment").getFragmentsList())
+        .containsExactly(
+            "restaurant. The <em>food</em> here is pretty good, the service could be better. My favorite <em>food</em> was chilly chicken");
+    assertThat(response.getHits(1).getHighlightsMap().get("comment_offsets").getFragmentsList())
+        .containsExactly(
+            "This is my first time eating at this restaurant. The <em>food</em> here is pretty good, the service could be better. My favorite <em>food</em> was chilly chicken.");
+  }
+
+  @Test
+  public void testUnifiedHighlightIncompatibleField() {
+    Highlight highlight =
+        Highlight.newBuilder()
+            .setSettings(Settings.newBuilder().setHighlighterType(Highlight.Type.UNIFIED))
+            .addFields("comment.no_term_vectors_with_offsets")
+            .build();
+    try {
+      doHighlightQuery(highlight);
+      fail("No error for invalid field");
+    } catch (StatusRuntimeException e) {
+      assertThat(e.getMessage())
+          .contains(
+              "Field comment.no_term_vectors_with_offsets does not index offsets in postings or term vectors and cannot support unified highlights");
+    }
+
+    highlight =
+        Highlight.newBuilder()
+            .addFields("comment_offsets")
+            .putFieldSettings(
+                "comment_offsets",
+                Settings.newBuilder().setHighlighterType(Highlight.Type.FAST_VECTOR).build())
+            .build();
+    try {
+      doHighlightQuery(highlight);
+      fail("No error for invalid field");
+    } catch (StatusRuntimeException e) {
+      assertThat(e.getMessage())
+          .contains(
+              "Field comment_offsets does not have term vectors with positions and offsets and cannot support highlights");
+    }
+  }
+
   private String indexName() {
     return getIndices().get(0);
   }
@@ -1161,7 +1161,7 @@ public class BackendStateManagerTest {
     verify(mockState, times(3)).getCurrentStateInfo();
     verify(mockState, times(1)).isStarted();
     verify(mockState, times(1)).start(Mode.PRIMARY, Path.of("/tmp"), 1, mockReplicationClient);
-    verify(mockState, times(1)).commit(true);
+    verify(mockState, times(1)).commitShards(true);
     verify(mockState, times(1)).getFieldAndFacetState();
 
     verifyNoMoreInteractions(mockBackend, mockGlobalState, mockState, mockState2);
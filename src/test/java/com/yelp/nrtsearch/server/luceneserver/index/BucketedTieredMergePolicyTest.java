@@ -84,7 +84,9 @@ public class BucketedTieredMergePolicyTest extends ServerTestCase {
 
     ShardState shardState = getGlobalState().getIndex(DEFAULT_TEST_INDEX).getShard(0);
     MergePolicy policy = shardState.writer.getConfig().getMergePolicy();
-    assertTrue(policy instanceof BucketedTieredMergePolicy);
+    assertTrue(policy instanceof StoredFieldsSizeMergePolicy);
+    assertTrue(
+        ((StoredFieldsSizeMergePolicy) policy).getDelegate() instanceof BucketedTieredMergePolicy);
 
     waitForMerges(shardState);
     shardState.maybeRefreshBlocking();
@@ -72,6 +72,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
 import org.apache.lucene.expressions.Bindings;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.index.ConcurrentMergeScheduler;
@@ -452,6 +453,31 @@ public class ImmutableIndexStateTest {
     assertSettingException(expectedMsg, b -> b.setDirectory(wrap("Invalid")));
   }
 
+  @Test
+  public void testStoredFieldsCompression_default() throws IOException {
+    assertEquals(
+        Lucene50StoredFieldsFormat.Mode.BEST_SPEED,
+        getIndexState(getEmptyState()).getStoredFieldsMode());
+  }
+
+  @Test
+  public void testStoredFieldsCompression_set() throws IOException {
+    ImmutableIndexState indexState =
+        getIndexState(
+            getStateWithSettings(
+                IndexSettings.newBuilder()
+                    .setStoredFieldsCompression(wrap("BEST_COMPRESSION"))
+                    .build()));
+    assertEquals(
+        Lucene50StoredFieldsFormat.Mode.BEST_COMPRESSION, indexState.getStoredFieldsMode());
+  }
+
+  @Test
+  public void testStoredFieldsCompression_invalid() throws IOException {
+    String expectedMsg = "storedFieldsCompression must be one of [BEST_SPEED, BEST_COMPRESSION]";
+    assertSettingException(expectedMsg, b -> b.setStoredFieldsCompression(wrap("FASTEST")));
+  }
+
   @Test
   public void testRefreshSec_default() throws IOException {
     assertEquals(
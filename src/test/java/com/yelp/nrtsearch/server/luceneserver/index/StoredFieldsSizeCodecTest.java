@@ -0,0 +1,174 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import org.apache.lucene.codecs.lucene84.Lucene84Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+public class StoredFieldsSizeCodecTest {
+
+  private IndexWriter createWriter(Directory directory) throws IOException {
+    TieredMergePolicy mergePolicy = new TieredMergePolicy();
+    mergePolicy.setNoCFSRatio(0.0);
+    IndexWriterConfig iwc = new IndexWriterConfig();
+    iwc.setCodec(new StoredFieldsSizeCodec(new Lucene84Codec()));
+    iwc.setMergePolicy(new StoredFieldsSizeMergePolicy(mergePolicy));
+    iwc.setUseCompoundFile(false);
+    return new IndexWriter(directory, iwc);
+  }
+
+  private void addSegment(IndexWriter writer, int startId, int numDocs) throws IOException {
+    for (int i = startId; i < startId + numDocs; ++i) {
+      Document document = new Document();
+      document.add(new StringField("id", String.valueOf(i), Field.Store.NO));
+      document.add(new StoredField("f", "abc"));
+      writer.addDocument(document);
+    }
+    writer.commit();
+  }
+
+  private long getStoredFilesLength(Directory directory, SegmentInfo info) throws IOException {
+    long length = 0;
+    for (String file : info.files()) {
+      if (file.endsWith(".fdt") || file.endsWith(".fdx") || file.endsWith(".fdm")) {
+        length += directory.fileLength(file);
+      }
+    }
+    return length;
+  }
+
+  @Test
+  public void testFlushedSegments() throws IOException {
+    try (Directory directory = new ByteBuffersDirectory();
+        IndexWriter writer = createWriter(directory)) {
+      addSegment(writer, 0, 10);
+      addSegment(writer, 10, 10);
+
+      SegmentInfos infos = SegmentInfos.readLatestCommit(directory);
+      assertEquals(2, infos.size());
+      for (SegmentCommitInfo info : infos) {
+        assertEquals(30, StoredFieldsSizeCodec.getRawBytes(info.info));
+        long compressedBytes = StoredFieldsSizeCodec.getCompressedBytes(info.info);
+        assertTrue(compressedBytes > 0);
+        assertEquals(getStoredFilesLength(directory, info.info), compressedBytes);
+      }
+    }
+  }
+
+  @Test
+  public void testMergedSegment() throws IOException {
+    try (Directory directory = new ByteBuffersDirectory();
+        IndexWriter writer = createWriter(directory)) {
+      addSegment(writer, 0, 10);
+      addSegment(writer, 10, 10);
+      for (int i = 10; i < 15; ++i) {
+        writer.deleteDocuments(new Term("id", String.valueOf(i)));
+      }
+      writer.forceMerge(1);
+      writer.commit();
+
+      SegmentInfos infos = SegmentInfos.readLatestCommit(directory);
+      assertEquals(1, infos.size());
+      SegmentInfo info = infos.info(0).info;
+      assertEquals(15, info.maxDoc());
+      assertEquals(45, StoredFieldsSizeCodec.getRawBytes(info));
+      assertEquals(
+          getStoredFilesLength(directory, info), StoredFieldsSizeCodec.getCompressedBytes(info));
+    }
+  }
+
+  @Test
+  public void testSegmentCodecName() throws IOException {
+    try (Directory directory = new ByteBuffersDirectory();
+        IndexWriter writer = createWriter(directory)) {
+      addSegment(writer, 0, 10);
+      SegmentInfos infos = SegmentInfos.readLatestCommit(directory);
+      assertEquals(new Lucene84Codec().getName(), infos.info(0).info.getCodec().getName());
+    }
+  }
+
+  @Test
+  public void testUnknownSize() {
+    SegmentInfo info = getSegmentInfo("0", 10);
+    assertEquals(-1, StoredFieldsSizeCodec.getRawBytes(info));
+    assertEquals(-1, StoredFieldsSizeCodec.getCompressedBytes(info));
+  }
+
+  @Test
+  public void testEstimateRawBytes() {
+    SegmentInfo first = getSegmentInfo("0", 10);
+    StoredFieldsSizeCodec.setRawBytes(first, 100);
+    SegmentInfo second = getSegmentInfo("1", 20);
+    StoredFieldsSizeCodec.setRawBytes(second, 400);
+    assertEquals(
+        50 + 300,
+        StoredFieldsSizeMergePolicy.estimateRawBytes(
+            Arrays.asList(
+                new SegmentCommitInfo(first, 5, 0, 1, 1, 1),
+                new SegmentCommitInfo(second, 3, 2, 1, 1, 1))));
+  }
+
+  @Test
+  public void testEstimateRawBytesUnknown() {
+    SegmentInfo first = getSegmentInfo("0", 10);
+    StoredFieldsSizeCodec.setRawBytes(first, 100);
+    SegmentInfo second = getSegmentInfo("1", 20);
+    assertEquals(
+        -1,
+        StoredFieldsSizeMergePolicy.estimateRawBytes(
+            Arrays.asList(
+                new SegmentCommitInfo(first, 0, 0, 1, 1, 1),
+                new SegmentCommitInfo(second, 0, 0, 1, 1, 1))));
+  }
+
+  private SegmentInfo getSegmentInfo(String name, int maxDoc) {
+    return new SegmentInfo(
+        mock(Directory.class),
+        Version.LATEST,
+        Version.LATEST,
+        name,
+        maxDoc,
+        false,
+        null,
+        Collections.emptyMap(),
+        new byte[StringHelper.ID_LENGTH],
+        new HashMap<>(),
+        null);
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.yelp.nrtsearch.server.grpc.SearchResponse.Hit;
+import com.yelp.nrtsearch.server.utils.VirtualThreadPoolExecutor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.junit.Test;
+
+public class FetchSchedulerTest {
+
+  @Test
+  public void testSingleRange() throws IOException {
+    try (Directory directory = new ByteBuffersDirectory()) {
+      try (DirectoryReader reader = createReader(directory, 10, 10)) {
+        List<Hit.Builder> hits = getHits(0, 100, 1);
+        List<List<Hit.Builder>> ranges = FetchScheduler.partition(hits, reader.leaves(), 1);
+        assertEquals(1, ranges.size());
+        assertEquals(hits, ranges.get(0));
+      }
+    }
+  }
+
+  @Test
+  public void testSnapsToSegmentBoundary() throws IOException {
+    try (Directory directory = new ByteBuffersDirectory()) {
+      try (DirectoryReader reader = createReader(directory, 5, 20)) {
+        // 100 hits, segments start at hit indices 0, 20, 40, 60, 80
+        List<Hit.Builder> hits = getHits(0, 100, 1);
+        List<List<Hit.Builder>> ranges = FetchScheduler.partition(hits, reader.leaves(), 3);
+        assertEquals(3, ranges.size());
+        // ideal boundaries at 33 and 66 are within tolerance of segment starts at 40 and 60
+        assertEquals(40, ranges.get(0).size());
+        assertEquals(20, ranges.get(1).size());
+        assertEquals(40, ranges.get(2).size());
+        assertContiguous(hits, ranges);
+      }
+    }
+  }
+
+  @Test
+  public void testSplitsLargeSegment() throws IOException {
+    try (Directory directory = new ByteBuffersDirectory()) {
+      try (DirectoryReader reader = createReader(directory, 1, 100)) {
+        List<Hit.Builder> hits = getHits(0, 100, 1);
+        List<List<Hit.Builder>> ranges = FetchScheduler.partition(hits, reader.leaves(), 4);
+        assertEquals(4, ranges.size());
+        for (List<Hit.Builder> range : ranges) {
+          assertEquals(25, range.size());
+        }
+        assertContiguous(hits, ranges);
+      }
+    }
+  }
+
+  @Test
+  public void testMoreRangesThanHits() throws IOException {
+    try (Directory directory = new ByteBuffersDirectory()) {
+      try (DirectoryReader reader = createReader(directory, 5, 10)) {
+        List<Hit.Builder> hits = getHits(3, 50, 20);
+        List<List<Hit.Builder>> ranges = FetchScheduler.partition(hits, reader.leaves(), 8);
+        assertEquals(hits.size(), ranges.size());
+        assertContiguous(hits, ranges);
+      }
+    }
+  }
+
+  @Test
+  public void testParallelismFromCost() {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    try {
+      assertEquals(1, FetchScheduler.getParallelism(executor, 4, 50, 100));
+      assertEquals(2, FetchScheduler.getParallelism(executor, 4, 250, 100));
+      // limited by idle workers plus calling thread
+      assertEquals(5, FetchScheduler.getParallelism(executor, 4, 10000, 100));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testParallelismFromLoad() throws Exception {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(3);
+    try {
+      for (int i = 0; i < 3; ++i) {
+        executor.submit(
+            () -> {
+              started.countDown();
+              release.await();
+              return null;
+            });
+      }
+      started.await();
+      assertEquals(2, FetchScheduler.getParallelism(executor, 4, 10000, 100));
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testParallelismVirtualExecutor() {
+    VirtualThreadPoolExecutor executor =
+        new VirtualThreadPoolExecutor(3, 10, new NamedThreadFactory("test"));
+    try {
+      assertEquals(4, FetchScheduler.getParallelism(executor, 3, 10000, 100));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static DirectoryReader createReader(
+      Directory directory, int numSegments, int docsPerSegment) throws IOException {
+    IndexWriterConfig config = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+    try (IndexWriter writer = new IndexWriter(directory, config)) {
+      for (int i = 0; i < numSegments; ++i) {
+        for (int j = 0; j < docsPerSegment; ++j) {
+          writer.addDocument(new Document());
+        }
+        writer.commit();
+      }
+    }
+    DirectoryReader reader = DirectoryReader.open(directory);
+    assertEquals(numSegments, reader.leaves().size());
+    return reader;
+  }
+
+  private static List<Hit.Builder> getHits(int start, int end, int step) {
+    List<Hit.Builder> hits = new ArrayList<>();
+    for (int i = start; i < end; i += step) {
+      hits.add(Hit.newBuilder().setLuceneDocId(i));
+    }
+    return hits;
+  }
+
+  private static void assertContiguous(List<Hit.Builder> hits, List<List<Hit.Builder>> ranges) {
+    List<Hit.Builder> combined = new ArrayList<>();
+    for (List<Hit.Builder> range : ranges) {
+      assertTrue(range.size() > 0);
+      combined.addAll(range);
+    }
+    assertEquals(hits, combined);
+  }
+}
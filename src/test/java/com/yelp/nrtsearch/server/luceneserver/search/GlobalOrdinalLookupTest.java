@@ -155,6 +155,118 @@ public class GlobalOrdinalLookupTest extends ServerTestCase {
     assertEquals("3", ordinalLookup.lookupGlobalOrdinal(1));
   }
 
+  @Test
+  public void testIncrementalBuild() throws Exception {
+    addData("2");
+
+    SearcherTaxonomyManager.SearcherAndTaxonomy s = null;
+    IndexState indexState = getGlobalState().getIndex(DEFAULT_TEST_INDEX);
+    ShardState shardState = indexState.getShard(0);
+    GlobalOrdinalMap valueMap;
+    GlobalOrdinalMap valueMultiMap;
+    try {
+      s = shardState.acquire();
+      valueMap =
+          ((GlobalOrdinalable) indexState.getField(VALUE_FIELD))
+              .getOrdinalLookup(s.searcher.getIndexReader())
+              .getOrdinalMap();
+      valueMultiMap =
+          ((GlobalOrdinalable) indexState.getField(VALUE_MULTI_FIELD))
+              .getOrdinalLookup(s.searcher.getIndexReader())
+              .getOrdinalMap();
+    } finally {
+      if (s != null) {
+        shardState.release(s);
+        s = null;
+      }
+    }
+
+    addData("1");
+    addData("3");
+    try {
+      s = shardState.acquire();
+      IndexReader reader = s.searcher.getIndexReader();
+      GlobalOrdinalLookup lookup =
+          new GlobalOrdinalLookup.SortedLookup(reader, VALUE_FIELD, valueMap, true);
+      assertEquals(GlobalOrdinalMap.BuildType.INCREMENTAL, lookup.getOrdinalMap().getBuildType());
+      assertEquals(1, lookup.getOrdinalMap().getReusedSegments());
+      assertIncrementalLookup(lookup);
+      lookup =
+          new GlobalOrdinalLookup.SortedSetLookup(reader, VALUE_MULTI_FIELD, valueMultiMap, true);
+      assertEquals(GlobalOrdinalMap.BuildType.INCREMENTAL, lookup.getOrdinalMap().getBuildType());
+      assertIncrementalLookup(lookup);
+
+      // incremental disabled
+      lookup = new GlobalOrdinalLookup.SortedLookup(reader, VALUE_FIELD, valueMap, false);
+      assertEquals(GlobalOrdinalMap.BuildType.FULL, lookup.getOrdinalMap().getBuildType());
+      assertIncrementalLookup(lookup);
+
+      // build from the incremental map, with the same segments
+      GlobalOrdinalLookup incrementalLookup =
+          new GlobalOrdinalLookup.SortedLookup(reader, VALUE_FIELD, valueMap, true);
+      lookup =
+          new GlobalOrdinalLookup.SortedLookup(
+              reader, VALUE_FIELD, incrementalLookup.getOrdinalMap(), true);
+      assertEquals(GlobalOrdinalMap.BuildType.REUSED, lookup.getOrdinalMap().getBuildType());
+      assertEquals(3, lookup.getOrdinalMap().getReusedSegments());
+      assertIncrementalLookup(lookup);
+    } finally {
+      if (s != null) {
+        shardState.release(s);
+      }
+    }
+  }
+
+  private void assertIncrementalLookup(GlobalOrdinalLookup lookup) throws IOException {
+    assertEquals(3, lookup.getNumOrdinals());
+    // segments are in the order data was added
+    assertEquals(1, lookup.getSegmentMapping(0).get(0));
+    assertEquals(0, lookup.getSegmentMapping(1).get(0));
+    assertEquals(2, lookup.getSegmentMapping(2).get(0));
+    assertEquals("1", lookup.lookupGlobalOrdinal(0));
+    assertEquals("2", lookup.lookupGlobalOrdinal(1));
+    assertEquals("3", lookup.lookupGlobalOrdinal(2));
+  }
+
+  @Test
+  public void testSegmentsRemoved() throws Exception {
+    addData("2");
+    addData("4");
+
+    SearcherTaxonomyManager.SearcherAndTaxonomy s = null;
+    IndexState indexState = getGlobalState().getIndex(DEFAULT_TEST_INDEX);
+    ShardState shardState = indexState.getShard(0);
+    GlobalOrdinalMap valueMap;
+    try {
+      s = shardState.acquire();
+      valueMap =
+          ((GlobalOrdinalable) indexState.getField(VALUE_FIELD))
+              .getOrdinalLookup(s.searcher.getIndexReader())
+              .getOrdinalMap();
+    } finally {
+      if (s != null) {
+        shardState.release(s);
+        s = null;
+      }
+    }
+
+    clearIndex();
+    addData("1");
+    try {
+      s = shardState.acquire();
+      GlobalOrdinalLookup lookup =
+          new GlobalOrdinalLookup.SortedLookup(
+              s.searcher.getIndexReader(), VALUE_FIELD, valueMap, true);
+      assertEquals(GlobalOrdinalMap.BuildType.FULL, lookup.getOrdinalMap().getBuildType());
+      assertEquals(1, lookup.getNumOrdinals());
+      assertEquals("1", lookup.lookupGlobalOrdinal(0));
+    } finally {
+      if (s != null) {
+        shardState.release(s);
+      }
+    }
+  }
+
   private void addData(String value) throws Exception {
     IndexWriter writer = getGlobalState().getIndex(DEFAULT_TEST_INDEX).getShard(0).writer;
 
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.search.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReaderKeyedCacheTest {
+  private Directory directory;
+  private DirectoryReader reader1;
+  private DirectoryReader reader2;
+  private final List<String> removed = new ArrayList<>();
+
+  @Before
+  public void setup() throws IOException {
+    directory = new ByteBuffersDirectory();
+    try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+      writer.addDocument(new Document());
+    }
+    reader1 = DirectoryReader.open(directory);
+    reader2 = DirectoryReader.open(directory);
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    reader1.close();
+    reader2.close();
+    directory.close();
+  }
+
+  private ReaderKeyedCache<String, String> createCache(
+      int maxEntries, long maxRamBytes, boolean keepMostRecent) {
+    return new ReaderKeyedCache<>(maxEntries, maxRamBytes, keepMostRecent, removed::add);
+  }
+
+  private static IndexReader.CacheKey key(IndexReader reader) {
+    return reader.getReaderCacheHelper().getKey();
+  }
+
+  @Test
+  public void testGetAndPut() {
+    ReaderKeyedCache<String, String> cache = createCache(10, 100, false);
+    assertTrue(cache.put(reader1.getReaderCacheHelper(), "k", "v1", 10));
+    assertTrue(cache.put(reader2.getReaderCacheHelper(), "k", "v2", 20));
+    assertEquals("v1", cache.get(key(reader1), "k"));
+    assertEquals("v2", cache.get(key(reader2), "k"));
+    assertNull(cache.get(key(reader1), "other"));
+    assertNull(cache.getIfPresent(key(reader1), "other"));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(2, cache.getCacheSize());
+    assertEquals(30, cache.ramBytesUsed());
+
+    assertTrue(cache.put(reader1.getReaderCacheHelper(), "k", "v3", 5));
+    assertEquals("v3", cache.getIfPresent(key(reader1), "k"));
+    assertEquals(Arrays.asList("v1"), removed);
+    assertEquals(25, cache.ramBytesUsed());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    ReaderKeyedCache<String, String> cache = createCache(2, 100, false);
+    cache.put(reader1.getReaderCacheHelper(), "a", "va", 10);
+    cache.put(reader1.getReaderCacheHelper(), "b", "vb", 10);
+    cache.get(key(reader1), "a");
+    cache.put(reader1.getReaderCacheHelper(), "c", "vc", 10);
+    assertEquals(Arrays.asList("vb"), removed);
+    assertEquals(1, cache.getEvictionCount());
+
+    cache.put(reader1.getReaderCacheHelper(), "d", "vd", 95);
+    assertEquals(Arrays.asList("vb", "va", "vc"), removed);
+    assertEquals(1, cache.getCacheSize());
+    assertEquals(95, cache.ramBytesUsed());
+  }
+
+  @Test
+  public void testMemoryLimit() {
+    ReaderKeyedCache<String, String> cache = createCache(10, 100, false);
+    assertFalse(cache.put(reader1.getReaderCacheHelper(), "a", "va", 101));
+    assertEquals(0, cache.getCacheSize());
+
+    ReaderKeyedCache<String, String> keepCache = createCache(10, 100, true);
+    assertTrue(keepCache.put(reader1.getReaderCacheHelper(), "a", "va", 60));
+    assertTrue(keepCache.put(reader1.getReaderCacheHelper(), "b", "vb", 101));
+    assertEquals(Arrays.asList("va"), removed);
+    assertEquals("vb", keepCache.getIfPresent(key(reader1), "b"));
+  }
+
+  @Test
+  public void testRetainedRamBytes() {
+    ReaderKeyedCache<String, String> cache = createCache(10, 100, false);
+    cache.put(reader1.getReaderCacheHelper(), "a", "va", 30);
+    cache.put(reader1.getReaderCacheHelper(), "b", "vb", 30);
+    cache.addRetainedRamBytes(50);
+    assertEquals(Arrays.asList("va"), removed);
+    assertEquals(80, cache.ramBytesUsed());
+    cache.addRetainedRamBytes(-50);
+    assertEquals(30, cache.ramBytesUsed());
+    assertEquals(1, cache.getCacheSize());
+  }
+
+  @Test
+  public void testReaderClosed() throws IOException {
+    ReaderKeyedCache<String, String> cache = createCache(10, 100, false);
+    cache.put(reader1.getReaderCacheHelper(), "a", "v1a", 10);
+    cache.put(reader1.getReaderCacheHelper(), "b", "v1b", 10);
+    cache.put(reader2.getReaderCacheHelper(), "a", "v2a", 10);
+    IndexReader.CacheKey reader1Key = key(reader1);
+    reader1.close();
+    assertEquals(2, removed.size());
+    assertTrue(removed.containsAll(Arrays.asList("v1a", "v1b")));
+    assertEquals(2, cache.getInvalidationCount());
+    assertNull(cache.getIfPresent(reader1Key, "a"));
+    assertEquals("v2a", cache.getIfPresent(key(reader2), "a"));
+    assertEquals(10, cache.ramBytesUsed());
+  }
+
+  @Test
+  public void testClear() {
+    ReaderKeyedCache<String, String> cache = createCache(10, 100, false);
+    cache.put(reader1.getReaderCacheHelper(), "a", "va", 10);
+    cache.addRetainedRamBytes(20);
+    cache.clear();
+    assertEquals(Arrays.asList("va"), removed);
+    assertEquals(0, cache.getCacheSize());
+    assertEquals(20, cache.ramBytesUsed());
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.search.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.yelp.nrtsearch.server.config.LuceneServerConfiguration;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest;
+import com.yelp.nrtsearch.server.grpc.AddDocumentRequest.MultiValuedField;
+import com.yelp.nrtsearch.server.grpc.FieldDefRequest;
+import com.yelp.nrtsearch.server.grpc.FunctionScoreQuery;
+import com.yelp.nrtsearch.server.grpc.Query;
+import com.yelp.nrtsearch.server.grpc.RefreshRequest;
+import com.yelp.nrtsearch.server.grpc.Script;
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import com.yelp.nrtsearch.server.grpc.SearchResponse;
+import com.yelp.nrtsearch.server.luceneserver.IndexState;
+import com.yelp.nrtsearch.server.luceneserver.ServerTestCase;
+import com.yelp.nrtsearch.server.luceneserver.ShardState;
+import com.yelp.nrtsearch.server.luceneserver.script.ScriptContext;
+import com.yelp.nrtsearch.server.luceneserver.script.ScriptEngine;
+import com.yelp.nrtsearch.server.luceneserver.warming.Warmer;
+import com.yelp.nrtsearch.server.plugins.Plugin;
+import com.yelp.nrtsearch.server.plugins.ScriptPlugin;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.index.DirectoryReader;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class SearchResultCacheTest extends ServerTestCase {
+  private static final int NUM_DOCS = 20;
+
+  @ClassRule public static final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  public static class TestScriptPlugin extends Plugin implements ScriptPlugin {
+
+    @Override
+    public Iterable<ScriptEngine> getScriptEngines(List<ScriptContext<?>> contexts) {
+      return Collections.singletonList(new NonCacheableScriptEngine());
+    }
+
+    public static class NonCacheableScriptEngine implements ScriptEngine {
+
+      @Override
+      public String getLang() {
+        return "non_cacheable";
+      }
+
+      @Override
+      public <T> T compile(String source, ScriptContext<T> context) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean isCacheable() {
+        return false;
+      }
+    }
+  }
+
+  @Override
+  protected List<Plugin> getPlugins(LuceneServerConfiguration configuration) {
+    return Collections.singletonList(new TestScriptPlugin());
+  }
+
+  @Override
+  protected String getExtraConfig() {
+    return String.join(
+        "\n", "resultCache:", "  enabled: true", "warmer:", "  maxWarmingQueries: 10");
+  }
+
+  @Override
+  protected FieldDefRequest getIndexDef(String name) {
+    return getFieldsFromJson(
+        String.join(
+            "\n",
+            "{",
+            "  \"indexName\": \"" + name + "\",",
+            "  \"field\": [",
+            "    {\"name\": \"doc_id\", \"type\": \"ATOM\", \"storeDocValues\": true},",
+            "    {\"name\": \"int_field\", \"type\": \"INT\", \"storeDocValues\": true}",
+            "  ]",
+            "}"));
+  }
+
+  @Override
+  protected void initIndex(String name) throws Exception {
+    List<AddDocumentRequest> requests = new ArrayList<>();
+    for (int i = 0; i < NUM_DOCS; ++i) {
+      requests.add(getDocRequest(name, i));
+    }
+    addDocuments(requests.stream());
+  }
+
+  private AddDocumentRequest getDocRequest(String name, int id) {
+    return AddDocumentRequest.newBuilder()
+        .setIndexName(name)
+        .putFields("doc_id", MultiValuedField.newBuilder().addValue(String.valueOf(id)).build())
+        .putFields("int_field", MultiValuedField.newBuilder().addValue(String.valueOf(id)).build())
+        .build();
+  }
+
+  private SearchRequest getRequest(int topHits) {
+    return SearchRequest.newBuilder()
+        .setIndexName(DEFAULT_TEST_INDEX)
+        .setTopHits(topHits)
+        .addRetrieveFields("doc_id")
+        .addRetrieveFields("int_field")
+        .build();
+  }
+
+  private SearchResponse doSearch(SearchRequest request) {
+    return getGrpcServer().getBlockingStub().search(request);
+  }
+
+  private void assertSameResults(SearchResponse expected, SearchResponse actual) {
+    assertEquals(expected.getTotalHits(), actual.getTotalHits());
+    assertEquals(expected.getHitsList(), actual.getHitsList());
+    assertEquals(
+        expected.getSearchState().getSearcherVersion(),
+        actual.getSearchState().getSearcherVersion());
+  }
+
+  @Test
+  public void testCachedResponse() {
+    SearchResultCache resultCache = SearchResultCache.getInstance();
+    assertNotNull(resultCache);
+    long startHits = resultCache.getHitCount();
+    long startMisses = resultCache.getMissCount();
+
+    SearchResponse first = doSearch(getRequest(5));
+    SearchResponse second = doSearch(getRequest(5));
+    assertEquals(startMisses + 1, resultCache.getMissCount());
+    assertEquals(startHits + 1, resultCache.getHitCount());
+    assertSameResults(first, second);
+
+    // timeout settings do not change the cache key
+    SearchResponse third = doSearch(getRequest(5).toBuilder().setTimeoutSec(10).build());
+    assertEquals(startHits + 2, resultCache.getHitCount());
+    assertSameResults(first, third);
+
+    // other request parameters do
+    SearchResponse fourth = doSearch(getRequest(6));
+    assertEquals(startMisses + 2, resultCache.getMissCount());
+    assertEquals(6, fourth.getHitsCount());
+  }
+
+  @Test
+  public void testCachedResponseDiagnostics() {
+    SearchResultCache resultCache = SearchResultCache.getInstance();
+    long startHits = resultCache.getHitCount();
+
+    SearchRequest request = getRequest(8);
+    SearchResponse first = doSearch(request);
+    SearchResponse second = doSearch(request);
+    assertEquals(startHits + 1, resultCache.getHitCount());
+    assertSameResults(first, second);
+    // no search was done for the cached response
+    assertTrue(first.getDiagnostics().getFirstPassSearchTimeMs() > 0);
+    assertEquals(0, second.getDiagnostics().getFirstPassSearchTimeMs(), 0);
+    assertEquals(0, second.getDiagnostics().getGetFieldsTimeMs(), 0);
+    assertTrue(second.getSearchState().getTimestamp() >= first.getSearchState().getTimestamp());
+  }
+
+  @Test
+  public void testCachedResponseAddedToWarmer() throws IOException {
+    IndexState indexState = getGlobalState().getIndex(DEFAULT_TEST_INDEX);
+    indexState.initWarmer(null);
+    Warmer warmer = indexState.getWarmer();
+    assertNotNull(warmer);
+    SearchResultCache resultCache = SearchResultCache.getInstance();
+    long startHits = resultCache.getHitCount();
+
+    SearchRequest request = getRequest(9);
+    doSearch(request);
+    doSearch(request);
+    assertEquals(startHits + 1, resultCache.getHitCount());
+    assertEquals(2, warmer.getNumWarmingRequests());
+  }
+
+  @Test
+  public void testProfileNotCached() {
+    SearchResultCache resultCache = SearchResultCache.getInstance();
+    long startHits = resultCache.getHitCount();
+    long startMisses = resultCache.getMissCount();
+
+    SearchRequest request = getRequest(7).toBuilder().setProfile(true).build();
+    doSearch(request);
+    doSearch(request);
+    assertEquals(startHits, resultCache.getHitCount());
+    assertEquals(startMisses, resultCache.getMissCount());
+  }
+
+  @Test
+  public void testInvalidatedOnRefresh() throws Exception {
+    SearchResultCache resultCache = SearchResultCache.getInstance();
+    SearchRequest request = getRequest(100);
+    SearchResponse first = doSearch(request);
+    SearchResponse second = doSearch(request);
+    assertSameResults(first, second);
+    long startMisses = resultCache.getMissCount();
+
+    addDocuments(Collections.singletonList(getDocRequest(DEFAULT_TEST_INDEX, 1000)).stream());
+    getGrpcServer()
+        .getBlockingStub()
+        .refresh(RefreshRequest.newBuilder().setIndexName(DEFAULT_TEST_INDEX).build());
+
+    SearchResponse third = doSearch(request);
+    assertEquals(startMisses + 1, resultCache.getMissCount());
+    assertEquals(first.getHitsCount() + 1, third.getHitsCount());
+    assertTrue(
+        third.getSearchState().getSearcherVersion() > first.getSearchState().getSearcherVersion());
+  }
+
+  @Test
+  public void testIsCacheable() {
+    assertTrue(SearchResultCache.isCacheable(getRequest(10)));
+    assertFalse(SearchResultCache.isCacheable(getRequest(10).toBuilder().setProfile(true).build()));
+
+    Query scriptQuery =
+        Query.newBuilder()
+            .setFunctionScoreQuery(
+                FunctionScoreQuery.newBuilder()
+                    .setScript(Script.newBuilder().setLang("js").setSource("int_field").build()))
+            .build();
+    assertTrue(
+        SearchResultCache.isCacheable(getRequest(10).toBuilder().setQuery(scriptQuery).build()));
+
+    Query nonCacheableQuery =
+        Query.newBuilder()
+            .setFunctionScoreQuery(
+                FunctionScoreQuery.newBuilder()
+                    .setScript(Script.newBuilder().setLang("non_cacheable").setSource("test")))
+            .build();
+    assertFalse(
+        SearchResultCache.isCacheable(
+            getRequest(10).toBuilder().setQuery(nonCacheableQuery).build()));
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    ShardState shardState = getGlobalState().getIndex(DEFAULT_TEST_INDEX).getShard(0);
+    SearcherTaxonomyManager.SearcherAndTaxonomy s = shardState.acquire();
+    try {
+      DirectoryReader reader = (DirectoryReader) s.searcher.getIndexReader();
+      SearchResultCache resultCache = new SearchResultCache(2, 1024 * 1024);
+      SearchResultCache.CacheKey key1 = SearchResultCache.createKey(reader, getRequest(1));
+      SearchResultCache.CacheKey key2 = SearchResultCache.createKey(reader, getRequest(2));
+      SearchResultCache.CacheKey key3 = SearchResultCache.createKey(reader, getRequest(3));
+      SearchResponse response = SearchResponse.newBuilder().build();
+
+      resultCache.put(key1, response);
+      resultCache.put(key2, response);
+      // make key1 most recently used
+      assertNotNull(resultCache.get(key1));
+      resultCache.put(key3, response);
+
+      assertEquals(2, resultCache.getCacheSize());
+      assertEquals(1, resultCache.getEvictionCount());
+      assertNotNull(resultCache.get(key1));
+      assertNull(resultCache.get(key2));
+      assertNotNull(resultCache.get(key3));
+      assertTrue(resultCache.ramBytesUsed() > 2 * SearchResultCache.ENTRY_OVERHEAD_BYTES);
+
+      resultCache.clear();
+      assertEquals(0, resultCache.getCacheSize());
+      assertEquals(0, resultCache.ramBytesUsed());
+    } finally {
+      shardState.release(s);
+    }
+  }
+}
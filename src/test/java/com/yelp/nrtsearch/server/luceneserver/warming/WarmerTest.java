@@ -15,10 +15,14 @@
  */
 package com.yelp.nrtsearch.server.luceneserver.warming;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 import com.amazonaws.auth.AnonymousAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3;
@@ -34,6 +38,7 @@ import com.yelp.nrtsearch.server.luceneserver.SearchHandler;
 import io.findify.s3mock.S3Mock;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -44,6 +49,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 
 public class WarmerTest {
 
@@ -181,12 +187,217 @@ public class WarmerTest {
 
     warmer.warmFromS3(mockIndexState, 3, mockSearchHandler);
 
+    // duplicate queries are only replayed once
     for (SearchRequest testRequest : getTestSearchRequests()) {
-      verify(mockSearchHandler, times(warmingCountPerQuery)).handle(mockIndexState, testRequest);
+      verify(mockSearchHandler, times(1)).handle(mockIndexState, testRequest);
     }
     verifyNoMoreInteractions(mockSearchHandler);
   }
 
+  @Test
+  public void testBackupWarmingQueriesToS3_binary() throws IOException {
+    Warmer binaryWarmer = new Warmer(archiver, service, index, 2, Warmer.FileFormat.BINARY);
+    List<SearchRequest> testRequests = getTestSearchRequests();
+    testRequests.forEach(binaryWarmer::addSearchRequest);
+
+    binaryWarmer.backupWarmingQueriesToS3(service);
+
+    Path downloadPath = archiver.download(service, resource);
+    Path warmingQueriesFile =
+        downloadPath.resolve("warming_queries").resolve("warming_queries.bin");
+    Assertions.assertThat(WarmingQueriesFormat.readAll(warmingQueriesFile))
+        .containsExactlyInAnyOrderElementsOf(testRequests);
+  }
+
+  @Test
+  public void testWarmFromS3_binary()
+      throws IOException, SearchHandler.SearchHandlerException, InterruptedException {
+    Path warmingQueriesDir = folder.newFolder("warming_queries").toPath();
+    int warmingCountPerQuery = 10;
+    List<SearchRequest> requests = new ArrayList<>();
+    for (int i = 0; i < warmingCountPerQuery; i++) {
+      requests.addAll(getTestSearchRequests());
+    }
+    // use small chunks so requests span multiple chunks
+    WarmingQueriesFormat.write(warmingQueriesDir.resolve("warming_queries.bin"), requests, 3);
+    String versionHash =
+        archiver.upload(service, resource, warmingQueriesDir, List.of(), List.of(), false);
+    archiver.blessVersion(service, resource, versionHash);
+
+    IndexState mockIndexState = mock(IndexState.class);
+    SearchHandler mockSearchHandler = mock(SearchHandler.class);
+
+    warmer.warmFromS3(mockIndexState, 3, mockSearchHandler);
+
+    // duplicate queries are only replayed once
+    for (SearchRequest testRequest : getTestSearchRequests()) {
+      verify(mockSearchHandler, times(1)).handle(mockIndexState, testRequest);
+    }
+    verifyNoMoreInteractions(mockSearchHandler);
+  }
+
+  @Test
+  public void testWarmFromS3_queryFailure()
+      throws IOException, SearchHandler.SearchHandlerException, InterruptedException {
+    testQueryFailure(0);
+  }
+
+  @Test
+  public void testWarmFromS3_parallelQueryFailure()
+      throws IOException, SearchHandler.SearchHandlerException, InterruptedException {
+    testQueryFailure(3);
+  }
+
+  private void testQueryFailure(int parallelism)
+      throws IOException, SearchHandler.SearchHandlerException, InterruptedException {
+    Path warmingQueriesDir = folder.newFolder("warming_queries").toPath();
+    List<SearchRequest> requests = getTestSearchRequests();
+    WarmingQueriesFormat.write(warmingQueriesDir.resolve("warming_queries.bin"), requests, 3);
+    String versionHash =
+        archiver.upload(service, resource, warmingQueriesDir, List.of(), List.of(), false);
+    archiver.blessVersion(service, resource, versionHash);
+
+    IndexState mockIndexState = mock(IndexState.class);
+    SearchHandler mockSearchHandler = mock(SearchHandler.class);
+    when(mockSearchHandler.handle(mockIndexState, requests.get(0)))
+        .thenThrow(new SearchHandler.SearchHandlerException("query failed"));
+
+    // failed queries are counted, and do not stop warming
+    warmer.warmFromS3(mockIndexState, parallelism, mockSearchHandler);
+
+    for (SearchRequest testRequest : requests) {
+      verify(mockSearchHandler, times(1)).handle(mockIndexState, testRequest);
+    }
+    verifyNoMoreInteractions(mockSearchHandler);
+  }
+
+  @Test
+  public void testWarmFromS3_pagesDeduplicated()
+      throws IOException, SearchHandler.SearchHandlerException, InterruptedException {
+    Path warmingQueriesDir = folder.newFolder("warming_queries").toPath();
+    SearchRequest firstPage = getTestSearchRequests().get(0).toBuilder().setTopHits(10).build();
+    SearchRequest secondPage = firstPage.toBuilder().setStartHit(10).setTopHits(20).build();
+    WarmingQueriesFormat.write(
+        warmingQueriesDir.resolve("warming_queries.bin"), List.of(firstPage, secondPage), 10);
+    String versionHash =
+        archiver.upload(service, resource, warmingQueriesDir, List.of(), List.of(), false);
+    archiver.blessVersion(service, resource, versionHash);
+
+    IndexState mockIndexState = mock(IndexState.class);
+    SearchHandler mockSearchHandler = mock(SearchHandler.class);
+
+    warmer.warmFromS3(mockIndexState, 0, mockSearchHandler);
+
+    verify(mockSearchHandler).handle(mockIndexState, firstPage.toBuilder().setTopHits(20).build());
+    verifyNoMoreInteractions(mockSearchHandler);
+  }
+
+  @Test
+  public void testWarmFromS3_timeBudget()
+      throws IOException, SearchHandler.SearchHandlerException, InterruptedException {
+    Path warmingQueriesDir = folder.newFolder("warming_queries").toPath();
+    WarmingQueriesFormat.write(
+        warmingQueriesDir.resolve("warming_queries.bin"), getTestSearchRequests(), 10);
+    String versionHash =
+        archiver.upload(service, resource, warmingQueriesDir, List.of(), List.of(), false);
+    archiver.blessVersion(service, resource, versionHash);
+
+    Warmer budgetWarmer =
+        new Warmer(archiver, service, index, 2, Warmer.FileFormat.JSON, 0.5, 0.25);
+    IndexState mockIndexState = mock(IndexState.class);
+    SearchHandler mockSearchHandler = mock(SearchHandler.class);
+    when(mockSearchHandler.handle(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(1000);
+              return null;
+            });
+
+    budgetWarmer.warmFromS3(mockIndexState, 0, mockSearchHandler);
+
+    // first query uses the whole budget, the second is skipped
+    verify(mockSearchHandler, times(1)).handle(any(), any());
+    ArgumentCaptor<SearchRequest> requestCaptor = ArgumentCaptor.forClass(SearchRequest.class);
+    verify(mockSearchHandler).handle(eq(mockIndexState), requestCaptor.capture());
+    assertEquals(0.25, requestCaptor.getValue().getTimeoutSec(), 0);
+  }
+
+  @Test
+  public void testBinaryFormat_invalidHeader() throws IOException {
+    Path file = folder.newFile("invalid.bin").toPath();
+    Files.writeString(file, "{\"indexName\":\"test_index\"}");
+    try {
+      WarmingQueriesFormat.readAll(file);
+      Assertions.fail("expected IOException");
+    } catch (IOException e) {
+      Assertions.assertThat(e.getMessage()).contains("Invalid warming queries file header");
+    }
+  }
+
+  @Test
+  public void testBinaryFormat_checksumMismatch() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("checksum.bin");
+    WarmingQueriesFormat.write(file, getTestSearchRequests(), 10);
+    byte[] data = Files.readAllBytes(file);
+    // header, then num requests, uncompressed length and compressed length before the checksum
+    data[20] ^= 1;
+    Files.write(file, data);
+    try {
+      WarmingQueriesFormat.readAll(file);
+      Assertions.fail("expected IOException");
+    } catch (IOException e) {
+      Assertions.assertThat(e.getMessage()).contains("Warming queries chunk checksum mismatch");
+    }
+  }
+
+  @Test
+  public void testBinaryFormat_invalidChunkLength() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("length.bin");
+    WarmingQueriesFormat.write(file, getTestSearchRequests(), 10);
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+    // uncompressed length follows the header and num requests
+    data.putInt(12, Integer.MAX_VALUE);
+    Files.write(file, data.array());
+    try {
+      WarmingQueriesFormat.readAll(file);
+      Assertions.fail("expected IOException");
+    } catch (IOException e) {
+      Assertions.assertThat(e.getMessage()).contains("Invalid warming queries chunk");
+    }
+  }
+
+  @Test
+  public void testBinaryFormat_unsupportedVersion() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("version.bin");
+    WarmingQueriesFormat.write(file, getTestSearchRequests(), 10);
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+    // version follows the magic value
+    data.putInt(4, 1);
+    Files.write(file, data.array());
+    try {
+      WarmingQueriesFormat.readAll(file);
+      Assertions.fail("expected IOException");
+    } catch (IOException e) {
+      Assertions.assertThat(e.getMessage()).contains("Unsupported warming queries file version: 1");
+    }
+  }
+
+  @Test
+  public void testBinaryFormat_invalidNumRequests() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("num_requests.bin");
+    WarmingQueriesFormat.write(file, getTestSearchRequests(), 10);
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+    // num requests follows the header
+    data.putInt(8, Integer.MAX_VALUE);
+    Files.write(file, data.array());
+    try {
+      WarmingQueriesFormat.readAll(file);
+      Assertions.fail("expected IOException");
+    } catch (IOException e) {
+      Assertions.assertThat(e.getMessage()).contains("Invalid warming queries chunk");
+    }
+  }
+
   private List<SearchRequest> getTestSearchRequests() {
     List<SearchRequest> testRequests = new ArrayList<>();
     for (int i = 0; i < 2; i++) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.luceneserver.warming;
+
+import static org.junit.Assert.assertEquals;
+
+import com.yelp.nrtsearch.server.grpc.BooleanClause;
+import com.yelp.nrtsearch.server.grpc.BooleanQuery;
+import com.yelp.nrtsearch.server.grpc.Facet;
+import com.yelp.nrtsearch.server.grpc.Query;
+import com.yelp.nrtsearch.server.grpc.SearchRequest;
+import com.yelp.nrtsearch.server.grpc.TermQuery;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class WarmingQueryPlannerTest {
+
+  private SearchRequest termRequest(String... fields) {
+    BooleanQuery.Builder builder = BooleanQuery.newBuilder();
+    for (String field : fields) {
+      builder.addClauses(
+          BooleanClause.newBuilder()
+              .setQuery(
+                  Query.newBuilder()
+                      .setTermQuery(TermQuery.newBuilder().setField(field).setTextValue("v"))
+                      .build())
+              .build());
+    }
+    return SearchRequest.newBuilder()
+        .setIndexName("test_index")
+        .setQuery(Query.newBuilder().setBooleanQuery(builder).build())
+        .build();
+  }
+
+  @Test
+  public void testReferencedFields() {
+    SearchRequest request =
+        termRequest("f1", "f2").toBuilder()
+            .addRetrieveFields("f3")
+            .addFacets(Facet.newBuilder().setDim("f4").build())
+            .build();
+    assertEquals(Set.of("f1", "f2", "f3", "f4"), WarmingQueryPlanner.getReferencedFields(request));
+  }
+
+  @Test
+  public void testDeduplicate() {
+    SearchRequest request = termRequest("f1");
+    SearchRequest page1 = request.toBuilder().setTopHits(5).build();
+    SearchRequest page2 = request.toBuilder().setStartHit(5).setTopHits(15).build();
+    SearchRequest other = termRequest("f2");
+    List<SearchRequest> deduplicated =
+        WarmingQueryPlanner.deduplicate(List.of(page1, other, page2, request, other));
+    assertEquals(List.of(request.toBuilder().setTopHits(15).build(), other), deduplicated);
+  }
+
+  @Test
+  public void testDeduplicateDefaultTopHits() {
+    SearchRequest request = termRequest("f1");
+    SearchRequest smaller = request.toBuilder().setTopHits(5).build();
+    assertEquals(List.of(request), WarmingQueryPlanner.deduplicate(List.of(request, smaller)));
+  }
+
+  @Test
+  public void testPrioritize() {
+    SearchRequest r1 = termRequest("f1");
+    SearchRequest r2 = termRequest("f1", "f2");
+    SearchRequest r3 = termRequest("f2", "f3", "f4");
+    SearchRequest r4 = termRequest("f1", "f5");
+    SearchRequest r5 = termRequest("f3", "f4");
+    List<SearchRequest> ordered = WarmingQueryPlanner.prioritize(List.of(r1, r2, r3, r4, r5));
+    // r3 has the most fields, then r2 adds f1 and r4 adds f5, remaining ordered by field count
+    assertEquals(List.of(r3, r2, r4, r5, r1), ordered);
+  }
+
+  @Test
+  public void testPlanQueryTimeout() {
+    SearchRequest noTimeout = termRequest("f1");
+    SearchRequest smallTimeout = termRequest("f2").toBuilder().setTimeoutSec(0.5).build();
+    SearchRequest largeTimeout = termRequest("f3").toBuilder().setTimeoutSec(5).build();
+    List<SearchRequest> planned =
+        WarmingQueryPlanner.plan(List.of(noTimeout, smallTimeout, largeTimeout), 1.0);
+    assertEquals(
+        List.of(
+            noTimeout.toBuilder().setTimeoutSec(1.0).build(),
+            smallTimeout,
+            largeTimeout.toBuilder().setTimeoutSec(1.0).build()),
+        planned);
+  }
+}
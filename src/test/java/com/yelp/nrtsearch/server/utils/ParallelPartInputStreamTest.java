@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelPartInputStreamTest {
+  private static final int NUM_PARTS = 10;
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private ExecutorService executor;
+  private List<byte[]> parts;
+  private byte[] expected;
+
+  @Before
+  public void setup() throws IOException {
+    executor = Executors.newFixedThreadPool(4);
+    parts = new ArrayList<>();
+    Random random = new Random(42);
+    ByteArrayOutputStream expectedStream = new ByteArrayOutputStream();
+    for (int i = 0; i < NUM_PARTS; ++i) {
+      // sizes around the 1mb buffer chunk size
+      byte[] part = new byte[1024 * 1024 - 512 + random.nextInt(1024) + i * 1000];
+      random.nextBytes(part);
+      parts.add(part);
+      expectedStream.write(part);
+    }
+    expected = expectedStream.toByteArray();
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdownNow();
+  }
+
+  private InputStream openPart(int partNumber) {
+    return new ByteArrayInputStream(parts.get(partNumber - 1));
+  }
+
+  private long countFiles(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+
+  @Test
+  public void testBufferedInMemory() throws IOException {
+    Path spillDir = folder.newFolder("spill").toPath();
+    ParallelPartInputStream inputStream =
+        new ParallelPartInputStream(
+            NUM_PARTS,
+            this::openPart,
+            executor,
+            4,
+            new MemoryBudget(100L * 1024 * 1024),
+            spillDir);
+    assertArrayEquals(expected, inputStream.readAllBytes());
+    assertEquals(0, inputStream.getBufferedBytes());
+    assertEquals(0, countFiles(spillDir));
+    inputStream.close();
+  }
+
+  @Test
+  public void testSpillToFile() throws IOException {
+    Path spillDir = folder.newFolder("spill").toPath();
+    // only enough memory for about one part
+    MemoryBudget memoryBudget = new MemoryBudget(2L * 1024 * 1024);
+    ParallelPartInputStream inputStream =
+        new ParallelPartInputStream(
+            NUM_PARTS, this::openPart, executor, 4, memoryBudget, spillDir);
+    byte[] read = new byte[expected.length];
+    int offset = 0;
+    int n;
+    while ((n = inputStream.read(read, offset, Math.min(4096, read.length - offset))) > 0) {
+      offset += n;
+      assertTrue(inputStream.getBufferedBytes() <= 2L * 1024 * 1024);
+    }
+    assertEquals(expected.length, offset);
+    assertArrayEquals(expected, read);
+    assertEquals(-1, inputStream.read());
+    assertEquals(0, inputStream.getBufferedBytes());
+    assertEquals(0, memoryBudget.getUsedBytes());
+    assertEquals(0, countFiles(spillDir));
+    inputStream.close();
+  }
+
+  @Test
+  public void testSharedMemoryBudget() throws IOException {
+    Path spillDir = folder.newFolder("spill").toPath();
+    MemoryBudget memoryBudget = new MemoryBudget(4L * 1024 * 1024);
+    // memory held by another restore consumer
+    assertTrue(memoryBudget.tryReserve(3L * 1024 * 1024));
+    ParallelPartInputStream inputStream =
+        new ParallelPartInputStream(
+            NUM_PARTS, this::openPart, executor, 4, memoryBudget, spillDir);
+    byte[] read = new byte[expected.length];
+    int offset = 0;
+    int n;
+    while ((n = inputStream.read(read, offset, Math.min(4096, read.length - offset))) > 0) {
+      offset += n;
+      assertTrue(inputStream.getBufferedBytes() <= 1024 * 1024);
+    }
+    assertArrayEquals(expected, read);
+    inputStream.close();
+    assertEquals(3L * 1024 * 1024, memoryBudget.getUsedBytes());
+  }
+
+  @Test
+  public void testPartError() throws IOException {
+    Path spillDir = folder.newFolder("spill").toPath();
+    ParallelPartInputStream inputStream =
+        new ParallelPartInputStream(
+            NUM_PARTS,
+            partNumber -> {
+              if (partNumber == 3) {
+                throw new IOException("part failed");
+              }
+              return openPart(partNumber);
+            },
+            executor,
+            4,
+            new MemoryBudget(100L * 1024 * 1024),
+            spillDir);
+    try {
+      inputStream.readAllBytes();
+      fail();
+    } catch (IOException e) {
+      assertEquals("Error downloading file part", e.getMessage());
+      assertEquals("part failed", e.getCause().getMessage());
+    }
+    inputStream.close();
+  }
+}
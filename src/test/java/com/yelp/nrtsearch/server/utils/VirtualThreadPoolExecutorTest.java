@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 Yelp Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yelp.nrtsearch.server.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+
+import com.yelp.nrtsearch.server.config.ThreadPoolConfiguration;
+import com.yelp.nrtsearch.server.config.ThreadPoolConfiguration.ExecutorMode;
+import com.yelp.nrtsearch.server.config.YamlConfigReader;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.junit.Test;
+
+public class VirtualThreadPoolExecutorTest {
+
+  @Test
+  public void testLimitsConcurrency() throws Exception {
+    VirtualThreadPoolExecutor executor =
+        new VirtualThreadPoolExecutor(2, 10, new NamedThreadFactory("test"));
+    try {
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 6; ++i) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  int current = running.incrementAndGet();
+                  maxRunning.accumulateAndGet(current, Math::max);
+                  try {
+                    release.await();
+                  } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                  }
+                  running.decrementAndGet();
+                }));
+      }
+      waitFor(() -> executor.getRunningCount() == 2 && executor.getWaitingCount() == 4);
+      assertEquals(6, executor.getRemainingCapacity());
+
+      release.countDown();
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+      assertEquals(2, maxRunning.get());
+      waitFor(() -> executor.getRunningCount() == 0 && executor.getWaitingCount() == 0);
+      assertEquals(12, executor.getRemainingCapacity());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRejectsOverCapacity() throws Exception {
+    VirtualThreadPoolExecutor executor =
+        new VirtualThreadPoolExecutor(1, 1, new NamedThreadFactory("test"));
+    try {
+      CountDownLatch release = new CountDownLatch(1);
+      Runnable blocking =
+          () -> {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          };
+      Future<?> first = executor.submit(blocking);
+      Future<?> second = executor.submit(blocking);
+      try {
+        executor.submit(blocking);
+        fail();
+      } catch (RejectedExecutionException ignored) {
+      }
+      release.countDown();
+      first.get(10, TimeUnit.SECONDS);
+      second.get(10, TimeUnit.SECONDS);
+      // capacity is available again
+      executor.submit(() -> {}).get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidConcurrency() {
+    new VirtualThreadPoolExecutor(0, 1, new NamedThreadFactory("test"));
+  }
+
+  @Test
+  public void testRequiresVirtualThreads() {
+    assumeFalse(VirtualThreadPoolExecutor.isSupported());
+    try {
+      new VirtualThreadPoolExecutor("test", 1, 1);
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Virtual threads not supported by runtime", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testVirtualConcurrencyConfig() {
+    String configFile =
+        String.join(
+            "\n",
+            "threadPoolConfiguration:",
+            "  maxSearchingThreads: 3",
+            "  maxFetchThreads: 2",
+            "  fetchVirtualConcurrency: 50");
+    ThreadPoolConfiguration threadPoolConfiguration =
+        new ThreadPoolConfiguration(
+            new YamlConfigReader(new ByteArrayInputStream(configFile.getBytes())));
+    assertEquals(
+        3 * ThreadPoolConfiguration.DEFAULT_VIRTUAL_CONCURRENCY_MULTIPLIER,
+        threadPoolConfiguration.getSearchVirtualConcurrency());
+    assertEquals(50, threadPoolConfiguration.getFetchVirtualConcurrency());
+  }
+
+  @Test
+  public void testFactoryExecutorMode() {
+    String configFile =
+        String.join(
+            "\n",
+            "threadPoolConfiguration:",
+            "  maxSearchingThreads: 3",
+            "  maxSearchBufferedItems: 7",
+            "  searchExecutorMode: VIRTUAL",
+            "  searchVirtualConcurrency: 30");
+    ThreadPoolConfiguration threadPoolConfiguration =
+        new ThreadPoolConfiguration(
+            new YamlConfigReader(new ByteArrayInputStream(configFile.getBytes())));
+    assertEquals(ExecutorMode.VIRTUAL, threadPoolConfiguration.getSearchExecutorMode());
+    assertEquals(ExecutorMode.PLATFORM, threadPoolConfiguration.getFetchExecutorMode());
+
+    ThreadPoolExecutor searchExecutor =
+        ThreadPoolExecutorFactory.getThreadPoolExecutor(
+            ThreadPoolExecutorFactory.ExecutorType.SEARCH, threadPoolConfiguration);
+    ThreadPoolExecutor fetchExecutor =
+        ThreadPoolExecutorFactory.getThreadPoolExecutor(
+            ThreadPoolExecutorFactory.ExecutorType.FETCH, threadPoolConfiguration);
+    try {
+      if (VirtualThreadPoolExecutor.isSupported()) {
+        assertTrue(searchExecutor instanceof VirtualThreadPoolExecutor);
+        assertEquals(30, ((VirtualThreadPoolExecutor) searchExecutor).getConcurrency());
+        assertEquals(37, ((VirtualThreadPoolExecutor) searchExecutor).getRemainingCapacity());
+      } else {
+        assertFalse(searchExecutor instanceof VirtualThreadPoolExecutor);
+        assertEquals(3, searchExecutor.getMaximumPoolSize());
+        assertEquals(7, searchExecutor.getQueue().remainingCapacity());
+      }
+      assertFalse(fetchExecutor instanceof VirtualThreadPoolExecutor);
+    } finally {
+      searchExecutor.shutdownNow();
+      fetchExecutor.shutdownNow();
+    }
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long endMs = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > endMs) {
+        fail("Timed out waiting for condition");
+      }
+      Thread.sleep(10);
+    }
+  }
+}